@@ -0,0 +1,55 @@
+package com.chartdb.config;
+
+import com.chartdb.websocket.BrokerRelay;
+import com.chartdb.websocket.LocalBrokerRelay;
+import com.chartdb.websocket.RedisBrokerRelay;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * Selects how diagram topic messages are shared between backend nodes.
+ * {@code collaboration.relay.type=redis} fans out through Redis pub/sub;
+ * the default {@code local} relay keeps everything inside the JVM.
+ *
+ * The redis relay refuses to start for now: event seqs ({@code DiagramEventLog})
+ * and table lock leases ({@code TableLockManager}) are still kept per node, so
+ * across nodes a resume would silently miss events and two nodes could lease
+ * the same table.
+ */
+@Configuration
+public class BrokerRelayConfig {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "collaboration.relay.type", havingValue = "local", matchIfMissing = true)
+    public LocalBrokerRelay localBrokerRelay() {
+        return new LocalBrokerRelay();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "collaboration.relay.type", havingValue = "redis")
+    public RedisMessageListenerContainer brokerRelayListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "collaboration.relay.type", havingValue = "redis")
+    public BrokerRelay redisBrokerRelay(
+            RedisConnectionFactory connectionFactory,
+            RedisMessageListenerContainer brokerRelayListenerContainer,
+            @Value("${collaboration.relay.redis-channel:chartdb:ws:diagram}") String channel) {
+        requireClusterWideState();
+        return new RedisBrokerRelay(connectionFactory, brokerRelayListenerContainer, channel);
+    }
+
+    // Lift once seqs come from a shared counter and leases are checked against the table_locks row
+    private static void requireClusterWideState() {
+        throw new IllegalStateException("collaboration.relay.type=redis is not supported yet: event seqs and "
+            + "table lock leases are kept per node. Run a single node with collaboration.relay.type=local");
+    }
+}
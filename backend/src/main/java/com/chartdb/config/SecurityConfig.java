@@ -7,6 +7,7 @@ import com.chartdb.security.oauth2.CustomOAuth2UserService;
 import com.chartdb.security.oauth2.OAuth2AuthenticationFailureHandler;
 import com.chartdb.security.oauth2.OAuth2AuthenticationSuccessHandler;
 import lombok.extern.slf4j.Slf4j;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -96,11 +97,13 @@ public class SecurityConfig {
             .exceptionHandling(ex -> ex.authenticationEntryPoint(jwtAuthenticationEntryPoint))
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(auth -> auth
+                // Async dispatches complete a request that was already authorized (streamed bodies)
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 // Public endpoints
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/api/public/**").permitAll()
                 .requestMatchers("/api/v1/health/**").permitAll()
-                .requestMatchers("/ws/**").permitAll()
+                .requestMatchers("/ws/**", "/ws-native/**").permitAll()
                 .requestMatchers("/actuator/health").permitAll()
                 // OAuth2 endpoints
                 .requestMatchers("/oauth2/**", "/login/oauth2/**").permitAll()
@@ -1,16 +1,35 @@
 package com.chartdb.config;
 
+import com.chartdb.websocket.BinaryCodecInterceptor;
+import com.chartdb.websocket.BrokerRelayInterceptor;
+import com.chartdb.websocket.DeflateCodecInterceptor;
+import com.chartdb.websocket.DiagramAccessInterceptor;
+import com.chartdb.websocket.DiagramMailboxExecutor;
+import com.chartdb.websocket.DiagramStreamInterceptor;
+import com.chartdb.websocket.PresenceHeartbeatInterceptor;
+import com.chartdb.websocket.PublicDiagramBroadcaster;
+import com.chartdb.websocket.DiagramStreamSubscriptions;
+import com.chartdb.websocket.OutboundBackpressureDecoratorFactory;
+import com.chartdb.websocket.ViewportRouter;
 import com.chartdb.websocket.WebSocketAuthInterceptor;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.server.HandshakeInterceptor;
 
 import java.util.List;
+import java.util.Map;
 
 @Configuration
 @EnableWebSocketMessageBroker
@@ -18,35 +37,108 @@ import java.util.List;
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     
     private final WebSocketAuthInterceptor webSocketAuthInterceptor;
+    private final DiagramAccessInterceptor diagramAccessInterceptor;
+    private final PresenceHeartbeatInterceptor presenceHeartbeatInterceptor;
+    private final BrokerRelayInterceptor brokerRelayInterceptor;
+    private final OutboundBackpressureDecoratorFactory outboundBackpressureDecoratorFactory;
+    private final DiagramStreamSubscriptions diagramStreamSubscriptions;
+    private final DiagramStreamInterceptor diagramStreamInterceptor;
+    private final PublicDiagramBroadcaster publicDiagramBroadcaster;
+    private final BinaryCodecInterceptor binaryCodecInterceptor;
+    private final DeflateCodecInterceptor deflateCodecInterceptor;
+    private final ViewportRouter viewportRouter;
+    private final MeterRegistry meterRegistry;
+    
+    private static final String[] ALLOWED_ORIGIN_PATTERNS = {
+        "http://localhost:*", 
+        "http://127.0.0.1:*", 
+        "http://192.168.*.*:*",
+        "http://62.84.186.161:*",
+        "https://62.84.186.161:*",
+        "https://chartdb.in",
+        "https://www.chartdb.in",
+        "https://*.chartdb.in"
+    };
     
     @Value("${cors.allowed-origins:http://localhost:5173,http://localhost:3000}")
     private List<String> allowedOrigins;
     
+    @Value("${collaboration.inbound.mailbox-limit:1000}")
+    private int mailboxLimit;
+    
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         config.enableSimpleBroker("/topic", "/queue");
         config.setApplicationDestinationPrefixes("/app");
         config.setUserDestinationPrefix("/user");
+        
+        // Mirror /topic/diagram/** onto the cluster relay (see BrokerRelayConfig),
+        // then wrap it for clients on the multiplexed /stream topic
+        config.configureBrokerChannel().interceptors(brokerRelayInterceptor, diagramStreamInterceptor,
+            publicDiagramBroadcaster, deflateCodecInterceptor.fanOutScope());
     }
     
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws")
-            .setAllowedOriginPatterns(
-                "http://localhost:*", 
-                "http://127.0.0.1:*", 
-                "http://192.168.*.*:*",
-                "http://62.84.186.161:*",
-                "https://62.84.186.161:*",
-                "https://chartdb.in",
-                "https://www.chartdb.in",
-                "https://*.chartdb.in"
-            )
+            .setAllowedOriginPatterns(ALLOWED_ORIGIN_PATTERNS)
             .withSockJS();
+        
+        // Plain WebSocket endpoint; required for binary frames (codec:binary-v1 on CONNECT)
+        registry.addEndpoint("/ws-native")
+            .setAllowedOriginPatterns(ALLOWED_ORIGIN_PATTERNS)
+            .addInterceptors(nativeTransportMarker());
     }
     
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        registration.interceptors(webSocketAuthInterceptor);
+        registration.interceptors(webSocketAuthInterceptor, presenceHeartbeatInterceptor, diagramAccessInterceptor,
+            diagramStreamSubscriptions, binaryCodecInterceptor, deflateCodecInterceptor, viewportRouter);
+        
+        // Serialize /app/diagram/{id}/** per diagram; other messages use the pool as before
+        DiagramMailboxExecutor executor = new DiagramMailboxExecutor(mailboxLimit);
+        FunctionCounter.builder("chartdb.websocket.inbound.superseded", executor,
+                DiagramMailboxExecutor::getSupersededCount)
+            .description("Cursor and drag messages replaced by a newer one before they were handled")
+            .register(meterRegistry);
+        FunctionCounter.builder("chartdb.websocket.inbound.rejected", executor,
+                DiagramMailboxExecutor::getRejectedCount)
+            .description("Diagram messages rejected because the diagram's mailbox was full")
+            .register(meterRegistry);
+        registration.taskExecutor(executor)
+            .corePoolSize(Runtime.getRuntime().availableProcessors() * 2);
+    }
+    
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Drop topic copies already routed per viewport before anything is encoded;
+        // binary-encoded batches are no longer JSON, so deflate leaves them alone
+        registration.interceptors(viewportRouter, binaryCodecInterceptor, deflateCodecInterceptor);
+    }
+    
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Per-session outbound queues so a slow client cannot stall the broker
+        registration.addDecoratorFactory(outboundBackpressureDecoratorFactory);
+    }
+    
+    private static HandshakeInterceptor nativeTransportMarker() {
+        return new HandshakeInterceptor() {
+            @Override
+            public boolean beforeHandshake(ServerHttpRequest request,
+                                           ServerHttpResponse response,
+                                           WebSocketHandler wsHandler,
+                                           Map<String, Object> attributes) {
+                attributes.put(BinaryCodecInterceptor.NATIVE_TRANSPORT_ATTRIBUTE, true);
+                return true;
+            }
+            
+            @Override
+            public void afterHandshake(ServerHttpRequest request,
+                                       ServerHttpResponse response,
+                                       WebSocketHandler wsHandler,
+                                       Exception exception) {
+            }
+        };
     }
 }
@@ -26,8 +26,9 @@ public class ColumnController {
     public ResponseEntity<ApiResponse<ColumnResponse>> createColumn(
             @CurrentUser UserPrincipal currentUser,
             @PathVariable String tableId,
+            @RequestHeader(value = "X-Lock-Token", required = false) Long lockToken,
             @Valid @RequestBody CreateColumnRequest request) {
-        ColumnResponse response = columnService.createColumn(tableId, currentUser.getId(), request);
+        ColumnResponse response = columnService.createColumn(tableId, currentUser.getId(), lockToken, request);
         return ResponseEntity.status(HttpStatus.CREATED)
             .body(ApiResponse.success("Column created", response));
     }
@@ -45,8 +46,9 @@ public class ColumnController {
             @CurrentUser UserPrincipal currentUser,
             @PathVariable String tableId,
             @PathVariable String columnId,
+            @RequestHeader(value = "X-Lock-Token", required = false) Long lockToken,
             @Valid @RequestBody UpdateColumnRequest request) {
-        ColumnResponse response = columnService.updateColumn(columnId, currentUser.getId(), request);
+        ColumnResponse response = columnService.updateColumn(columnId, currentUser.getId(), lockToken, request);
         return ResponseEntity.ok(ApiResponse.success("Column updated", response));
     }
     
@@ -54,8 +56,9 @@ public class ColumnController {
     public ResponseEntity<ApiResponse<Void>> deleteColumn(
             @CurrentUser UserPrincipal currentUser,
             @PathVariable String tableId,
-            @PathVariable String columnId) {
-        columnService.deleteColumn(columnId, currentUser.getId());
+            @PathVariable String columnId,
+            @RequestHeader(value = "X-Lock-Token", required = false) Long lockToken) {
+        columnService.deleteColumn(columnId, currentUser.getId(), lockToken);
         return ResponseEntity.ok(ApiResponse.success("Column deleted", null));
     }
     
@@ -63,8 +66,9 @@ public class ColumnController {
     public ResponseEntity<ApiResponse<Void>> reorderColumns(
             @CurrentUser UserPrincipal currentUser,
             @PathVariable String tableId,
+            @RequestHeader(value = "X-Lock-Token", required = false) Long lockToken,
             @RequestBody List<String> columnIds) {
-        columnService.reorderColumns(tableId, currentUser.getId(), columnIds);
+        columnService.reorderColumns(tableId, currentUser.getId(), lockToken, columnIds);
         return ResponseEntity.ok(ApiResponse.success("Columns reordered", null));
     }
 }
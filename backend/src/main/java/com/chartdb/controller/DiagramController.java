@@ -7,18 +7,26 @@ import com.chartdb.dto.request.UpdatePermissionRequest;
 import com.chartdb.dto.response.*;
 import com.chartdb.security.CurrentUser;
 import com.chartdb.security.UserPrincipal;
+import com.chartdb.service.DiagramChangeService;
+import com.chartdb.service.DiagramResponseCache;
 import com.chartdb.service.DiagramService;
+import com.chartdb.service.DiagramStreamWriter;
 import com.chartdb.service.PermissionService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/diagrams")
@@ -27,6 +35,9 @@ public class DiagramController {
     
     private final DiagramService diagramService;
     private final PermissionService permissionService;
+    private final DiagramResponseCache responseCache;
+    private final DiagramStreamWriter streamWriter;
+    private final DiagramChangeService changeService;
     
     @PostMapping
     public ResponseEntity<ApiResponse<DiagramResponse>> createDiagram(
@@ -64,12 +75,71 @@ public class DiagramController {
     /**
      * Get full diagram with all tables, columns, and relationships.
      * This is the main endpoint for loading a diagram in the editor.
+     * The response carries a strong ETag of the diagram revision; a request
+     * whose If-None-Match still matches gets a 304 without the content being
+     * read, and other requests for a cached revision get the cached bytes.
      */
-    @GetMapping("/{diagramId}/full")
-    public ResponseEntity<ApiResponse<DiagramFullResponse>> getFullDiagram(
+    @GetMapping(value = "/{diagramId}/full", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getFullDiagram(
             @CurrentUser UserPrincipal currentUser,
-            @PathVariable String diagramId) {
+            @PathVariable String diagramId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        DiagramService.FullDiagramVersion version = diagramService.getFullDiagramVersion(diagramId, currentUser.getId());
+        if (ifNoneMatch != null && matchesAny(ifNoneMatch, version.eTag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(version.eTag())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .build();
+        }
+        
+        Optional<byte[]> cached = responseCache.get(diagramId, version.revision(), version.permissionLevel());
+        if (cached.isPresent()) {
+            return fullDiagramResponse(version.eTag(), cached.get());
+        }
+        
         DiagramFullResponse response = diagramService.getFullDiagram(diagramId, currentUser.getId());
+        return fullDiagramResponse(
+            DiagramService.fullDiagramETag(response.getRevision(), response.getPermissionLevel()),
+            responseCache.put(response));
+    }
+    
+    /**
+     * Full diagram written to the response as it is read, for diagrams too
+     * large to hold in memory. Same JSON and ETag as the buffered endpoint;
+     * the body is neither cached nor taken from the cache.
+     */
+    @GetMapping(value = "/{diagramId}/full", params = "stream=true", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamFullDiagram(
+            @CurrentUser UserPrincipal currentUser,
+            @PathVariable String diagramId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        DiagramService.FullDiagramVersion version = diagramService.getFullDiagramVersion(diagramId, currentUser.getId());
+        if (ifNoneMatch != null && matchesAny(ifNoneMatch, version.eTag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(version.eTag())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .build();
+        }
+        
+        // The body may be of a later revision than the tag; a stale tag only costs a reload
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .eTag(version.eTag())
+            .cacheControl(CacheControl.noCache().cachePrivate())
+            .body(out -> streamWriter.write(diagramId, version.permissionLevel(), out));
+    }
+    
+    /**
+     * Content written and deleted since the given revision, for clients
+     * catching up after being offline. When the response says
+     * fullReloadRequired, load /full instead.
+     */
+    @GetMapping("/{diagramId}/changes")
+    public ResponseEntity<ApiResponse<DiagramChangesResponse>> getChanges(
+            @CurrentUser UserPrincipal currentUser,
+            @PathVariable String diagramId,
+            @RequestParam long since) {
+        DiagramChangesResponse response = changeService.getChangesSince(diagramId, currentUser.getId(), since);
         return ResponseEntity.ok(ApiResponse.success(response));
     }
     
@@ -126,4 +196,22 @@ public class DiagramController {
         permissionService.removePermission(diagramId, currentUser.getId(), userId);
         return ResponseEntity.ok(ApiResponse.success("Permission removed", null));
     }
+    
+    private static ResponseEntity<byte[]> fullDiagramResponse(String eTag, byte[] body) {
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .eTag(eTag)
+            .cacheControl(CacheControl.noCache().cachePrivate())
+            .body(body);
+    }
+    
+    // If-None-Match uses the weak comparison, so W/ prefixes are ignored
+    private static boolean matchesAny(String ifNoneMatch, String eTag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(eTag)) return true;
+        }
+        return false;
+    }
 }
@@ -3,9 +3,12 @@ package com.chartdb.controller;
 import com.chartdb.dto.response.ApiResponse;
 import com.chartdb.dto.response.DiagramResponse;
 import com.chartdb.service.DiagramService;
+import com.chartdb.websocket.PublicDiagramBroadcaster;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/public")
@@ -13,10 +16,22 @@ import org.springframework.web.bind.annotation.*;
 public class PublicController {
     
     private final DiagramService diagramService;
+    private final PublicDiagramBroadcaster publicDiagramBroadcaster;
     
     @GetMapping("/diagrams/{slug}")
     public ResponseEntity<ApiResponse<DiagramResponse>> getPublicDiagram(@PathVariable String slug) {
         DiagramResponse response = diagramService.getPublicDiagram(slug);
         return ResponseEntity.ok(ApiResponse.success(response));
     }
+    
+    /**
+     * Live read-only view: a {@code snapshot} event with the diagram state, then
+     * the structural deltas editors see, as Server-Sent Events.
+     */
+    @GetMapping(value = "/diagrams/{slug}/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamPublicDiagram(
+            @PathVariable String slug,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return publicDiagramBroadcaster.subscribe(diagramService.getPublicDiagramId(slug), lastEventId);
+    }
 }
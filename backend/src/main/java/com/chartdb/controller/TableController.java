@@ -56,8 +56,9 @@ public class TableController {
             @CurrentUser UserPrincipal currentUser,
             @PathVariable String diagramId,
             @PathVariable String tableId,
+            @RequestHeader(value = "X-Lock-Token", required = false) Long lockToken,
             @Valid @RequestBody UpdateTableRequest request) {
-        TableResponse response = tableService.updateTable(tableId, currentUser.getId(), request);
+        TableResponse response = tableService.updateTable(tableId, currentUser.getId(), lockToken, request);
         return ResponseEntity.ok(ApiResponse.success("Table updated", response));
     }
     
@@ -66,8 +67,9 @@ public class TableController {
             @CurrentUser UserPrincipal currentUser,
             @PathVariable String diagramId,
             @PathVariable String tableId,
+            @RequestHeader(value = "X-Lock-Token", required = false) Long lockToken,
             @Valid @RequestBody MoveTableRequest request) {
-        TableResponse response = tableService.moveTable(tableId, currentUser.getId(), request);
+        TableResponse response = tableService.moveTable(tableId, currentUser.getId(), lockToken, request);
         return ResponseEntity.ok(ApiResponse.success(response));
     }
     
@@ -77,7 +79,7 @@ public class TableController {
             @PathVariable String diagramId,
             @Valid @RequestBody BatchMoveTablesRequest request) {
         tableService.batchMoveTables(diagramId, currentUser.getId(), 
-            request.getTableIds(), request.getDeltaX(), request.getDeltaY());
+            request.getTableIds(), request.getDeltaX(), request.getDeltaY(), request.getLockTokens());
         return ResponseEntity.ok(ApiResponse.success("Tables moved", null));
     }
     
@@ -85,8 +87,9 @@ public class TableController {
     public ResponseEntity<ApiResponse<Void>> deleteTable(
             @CurrentUser UserPrincipal currentUser,
             @PathVariable String diagramId,
-            @PathVariable String tableId) {
-        tableService.deleteTable(tableId, currentUser.getId());
+            @PathVariable String tableId,
+            @RequestHeader(value = "X-Lock-Token", required = false) Long lockToken) {
+        tableService.deleteTable(tableId, currentUser.getId(), lockToken);
         return ResponseEntity.ok(ApiResponse.success("Table deleted", null));
     }
 }
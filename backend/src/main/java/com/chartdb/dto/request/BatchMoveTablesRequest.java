@@ -9,6 +9,7 @@ import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @Builder
@@ -24,4 +25,7 @@ public class BatchMoveTablesRequest {
     
     @NotNull(message = "Delta Y is required")
     private BigDecimal deltaY;
+    
+    // Fencing tokens of the caller's locks, by table id; required for every locked table
+    private Map<String, Long> lockTokens;
 }
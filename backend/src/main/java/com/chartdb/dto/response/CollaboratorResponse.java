@@ -23,6 +23,7 @@ public class CollaboratorResponse {
     private String userDisplayName;
     private String userAvatarUrl;
     private String cursorColor;
+    private Integer userSlot; // identifies the user in binary cursor/move frames
     
     // Position
     private BigDecimal cursorX;
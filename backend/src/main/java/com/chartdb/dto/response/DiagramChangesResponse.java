@@ -0,0 +1,38 @@
+package com.chartdb.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DiagramChangesResponse {
+    
+    private Long since;
+    
+    // Revision to pass as ?since= next time
+    private Long revision;
+    
+    // The changes since that revision are no longer known; load /full instead
+    private Boolean fullReloadRequired;
+    
+    // The diagram's own fields (name, description, visibility, canvas) when they changed; no content
+    private DiagramFullResponse diagram;
+    
+    // Upserted content; tables come without their columns
+    private List<TableResponse> tables;
+    private List<ColumnResponse> columns;
+    private List<RelationshipResponse> relationships;
+    private List<AreaResponse> areas;
+    private List<NoteResponse> notes;
+    private List<CustomTypeResponse> customTypes;
+    private List<DependencyResponse> dependencies;
+    
+    // Deleted content, including the columns of deleted tables
+    private List<TombstoneResponse> deleted;
+}
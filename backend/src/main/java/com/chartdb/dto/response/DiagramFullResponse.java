@@ -21,6 +21,7 @@ public class DiagramFullResponse {
     private String description;
     private String databaseType;
     private Boolean isPublic;
+    private Long revision;
     
     // Canvas state
     private BigDecimal zoom;
@@ -0,0 +1,20 @@
+package com.chartdb.dto.response;
+
+import com.chartdb.model.enums.ChangeEntityType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TombstoneResponse {
+    
+    private ChangeEntityType type;
+    private String id;
+    private Instant deletedAt;
+}
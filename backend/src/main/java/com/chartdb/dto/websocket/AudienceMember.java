@@ -0,0 +1,16 @@
+package com.chartdb.dto.websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AudienceMember {
+    private String userId;
+    private String userDisplayName;
+    private String userAvatarUrl;
+}
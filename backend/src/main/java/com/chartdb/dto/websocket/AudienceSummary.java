@@ -0,0 +1,20 @@
+package com.chartdb.dto.websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AudienceSummary {
+    private String diagramId;
+    private int viewerCount;
+    private int idleCount;
+    private List<AudienceMember> sample; // longest-connected viewers first
+    private Long timestamp;
+}
@@ -25,4 +25,5 @@ public class ColumnMessage {
     private String userId;
     private String userName;
     private Long timestamp;
+    private Long seq;
 }
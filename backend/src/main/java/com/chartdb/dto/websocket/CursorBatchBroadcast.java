@@ -0,0 +1,22 @@
+package com.chartdb.dto.websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorBatchBroadcast {
+    
+    private String diagramId;
+    
+    // Latest cursor of every user that moved since the previous tick
+    private List<CursorBroadcast> cursors;
+    
+    private Long timestamp;
+}
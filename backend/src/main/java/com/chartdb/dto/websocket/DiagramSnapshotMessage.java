@@ -0,0 +1,22 @@
+package com.chartdb.dto.websocket;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DiagramSnapshotMessage {
+    private String diagramId;
+    private long seq; // latest seq reflected in diagram and events; apply topic events after it
+    private String permissionLevel;
+    @JsonRawValue
+    private String diagram; // pre-serialized DiagramFullResponse
+    private List<SequencedEvent> events; // logged events newer than the cached diagram state
+}
@@ -34,4 +34,5 @@ public class DiagramUpdateMessage {
     private BigDecimal y;
     
     private Long timestamp;
+    private Long seq;
 }
@@ -0,0 +1,14 @@
+package com.chartdb.dto.websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JoinRequest {
+    private Boolean snapshot; // reply with the diagram state on /user/queue/diagram/{id}/snapshot
+}
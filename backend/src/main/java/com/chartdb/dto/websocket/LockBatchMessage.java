@@ -0,0 +1,20 @@
+package com.chartdb.dto.websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LockBatchMessage {
+    
+    private String requestId; // Client correlation id, echoed in the result
+    
+    // Tables and columns to lock or unlock together
+    private List<LockTarget> targets;
+}
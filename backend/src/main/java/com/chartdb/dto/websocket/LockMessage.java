@@ -16,11 +16,14 @@ public class LockMessage {
     private String type; // LOCK, UNLOCK, EXTEND, EXPIRED
     private String diagramId;
     private String tableId;
+    private String columnId; // Set for a column lock, null for the whole table
     private String userId;
     private String userName; // Alias for userDisplayName
     private String userDisplayName;
     private String cursorColor;
     private String action; // locked, unlocked
     private Instant expiresAt;
+    private Long fencingToken;
+    private Boolean wait; // Queue for a handoff instead of being denied while the target is held
     private Long timestamp;
 }
@@ -5,14 +5,23 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.Instant;
+import java.util.List;
+
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class LockResultMessage {
     private boolean acquired;
+    private String requestId; // Echoed from a batch request
     private String tableId;
+    private String columnId;
     private String lockedByUserId;
     private String lockedByUserName;
+    private Long fencingToken;
+    private Instant expiresAt;
     private String message;
+    private Integer queuePosition; // Set while waiting; the handoff arrives as another result
+    private List<LockResultMessage> results; // Per-target outcome of a batch, in request order
 }
@@ -24,4 +24,5 @@ public class RelationshipMessage {
     private String userId;
     private String userName;
     private Long timestamp;
+    private Long seq;
 }
@@ -0,0 +1,20 @@
+package com.chartdb.dto.websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumeResponse {
+    private String diagramId;
+    private Long afterSeq;
+    private Long latestSeq;
+    private boolean fullReloadRequired; // the gap was evicted; reload /api/diagrams/{id}/full
+    private List<SequencedEvent> events;
+}
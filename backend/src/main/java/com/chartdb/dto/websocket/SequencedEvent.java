@@ -0,0 +1,16 @@
+package com.chartdb.dto.websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SequencedEvent {
+    private long seq;
+    private String type; // topic suffix, e.g. "table-created", "column-updated", "events"
+    private Object payload;
+}
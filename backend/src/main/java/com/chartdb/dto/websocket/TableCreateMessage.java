@@ -25,6 +25,7 @@ public class TableCreateMessage {
     private String userId;
     private String userName;
     private Long timestamp;
+    private Long seq;
     
     @Data
     @Builder
@@ -15,4 +15,5 @@ public class TableDeleteMessage {
     private String userId;
     private String userName;
     private Long timestamp;
+    private Long seq;
 }
@@ -0,0 +1,22 @@
+package com.chartdb.dto.websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TableMoveBatchMessage {
+    
+    private String diagramId;
+    
+    // Latest position of every table that moved since the previous tick
+    private List<TableMoveMessage> moves;
+    
+    private Long timestamp;
+}
@@ -19,6 +19,12 @@ public class TableMoveMessage {
     private BigDecimal x;
     private BigDecimal y;
     
+    // Set on the last frame of a drag so the position is persisted right away
+    private Boolean dragEnd;
+    
+    // Fencing token of the sender's lock; required when the table is locked
+    private Long fencingToken;
+    
     // For batch moves
     private List<String> tableIds;
     private BigDecimal deltaX;
@@ -0,0 +1,29 @@
+package com.chartdb.dto.websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * The part of the canvas a client currently shows. Uses the canvas transform
+ * convention: screen = canvas * zoom + (x, y). Sending a message without a
+ * positive zoom, width and height switches the session back to full broadcasts.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ViewportMessage {
+    
+    // Canvas pan offset in screen pixels
+    private BigDecimal x;
+    private BigDecimal y;
+    private BigDecimal zoom;
+    
+    // Size of the visible area in screen pixels
+    private BigDecimal width;
+    private BigDecimal height;
+}
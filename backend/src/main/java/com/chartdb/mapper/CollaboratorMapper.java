@@ -2,6 +2,7 @@ package com.chartdb.mapper;
 
 import com.chartdb.dto.response.CollaboratorResponse;
 import com.chartdb.model.ActiveCollaborator;
+import com.chartdb.service.PresenceRegistry;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.MappingConstants;
@@ -19,7 +20,15 @@ public interface CollaboratorMapper {
     @Mapping(target = "selectedTableId", source = "selectedTable.id")
     @Mapping(target = "selectedTableName", source = "selectedTable.name")
     @Mapping(target = "selectedColumnId", source = "selectedColumn.id")
+    @Mapping(target = "userSlot", ignore = true)
     CollaboratorResponse toResponse(ActiveCollaborator collaborator);
     
     List<CollaboratorResponse> toResponseList(List<ActiveCollaborator> collaborators);
+
+    @Mapping(target = "id", source = "collaboratorId")
+    @Mapping(target = "selectedTableName", ignore = true)
+    @Mapping(target = "isActive", constant = "true")
+    @Mapping(target = "isIdle", source = "idle")
+    @Mapping(target = "joinedAt", source = "connectedAt")
+    CollaboratorResponse toResponse(PresenceRegistry.Presence presence);
 }
@@ -1,8 +1,11 @@
 package com.chartdb.mapper;
 
 import com.chartdb.dto.request.CreateDiagramRequest;
+import com.chartdb.dto.response.DiagramFullResponse;
 import com.chartdb.dto.response.DiagramResponse;
 import com.chartdb.dto.response.DiagramSummaryResponse;
+import com.chartdb.dto.response.RelationshipResponse;
+import com.chartdb.dto.response.TableResponse;
 import com.chartdb.model.Diagram;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
@@ -35,6 +38,7 @@ public interface DiagramMapper {
     @Mapping(target = "canvasOffsetY", ignore = true)
     @Mapping(target = "createdAt", ignore = true)
     @Mapping(target = "updatedAt", ignore = true)
+    @Mapping(target = "revision", ignore = true)
     Diagram toEntity(CreateDiagramRequest request);
     
     @Mapping(target = "ownerId", source = "owner.id")
@@ -54,4 +58,28 @@ public interface DiagramMapper {
     List<DiagramResponse> toResponseList(List<Diagram> diagrams);
     
     List<DiagramSummaryResponse> toSummaryResponseList(List<Diagram> diagrams);
+    
+    // Editor state without the caller's permission level
+    default DiagramFullResponse toFullResponse(Diagram diagram, List<TableResponse> tables,
+                                               List<RelationshipResponse> relationships) {
+        return DiagramFullResponse.builder()
+            .id(diagram.getId())
+            .name(diagram.getName())
+            .description(diagram.getDescription())
+            .databaseType(diagram.getDatabaseType())
+            .isPublic(diagram.getIsPublic())
+            .revision(diagram.getRevision())
+            .zoom(diagram.getCanvasZoom())
+            .offsetX(diagram.getCanvasOffsetX())
+            .offsetY(diagram.getCanvasOffsetY())
+            .tableCount(tables.size())
+            .relationshipCount(relationships.size())
+            .ownerId(diagram.getOwner().getId())
+            .ownerDisplayName(diagram.getOwner().getDisplayName())
+            .createdAt(diagram.getCreatedAt())
+            .updatedAt(diagram.getUpdatedAt())
+            .tables(tables)
+            .relationships(relationships)
+            .build();
+    }
 }
@@ -12,7 +12,8 @@ import java.time.Instant;
     @Index(name = "idx_collaborators_diagram", columnList = "diagram_id"),
     @Index(name = "idx_collaborators_session", columnList = "session_id")
 }, uniqueConstraints = {
-    @UniqueConstraint(name = "unique_session", columnNames = {"diagram_id", "user_id", "session_id"})
+    @UniqueConstraint(name = "unique_session", columnNames = {"diagram_id", "user_id", "session_id"}),
+    @UniqueConstraint(name = "unique_diagram_user", columnNames = {"diagram_id", "user_id"})
 })
 @Getter
 @Setter
@@ -101,6 +101,12 @@ public class Diagram extends BaseEntity {
     @Builder.Default
     private Integer versionNumber = 1;
     
+    // Bumped by every write to the diagram's content; only ever changed through DiagramRepository.incrementRevision
+    @Column(name = "revision", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "BIGINT DEFAULT 0 NOT NULL")
+    @Builder.Default
+    private Long revision = 0L;
+    
     // Status
     @Enumerated(EnumType.STRING)
     @Column(length = 20)
@@ -0,0 +1,43 @@
+package com.chartdb.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * When a diagram reached a revision; written by DiagramRevisionService and
+ * kept for the change feed retention.
+ */
+@Entity
+@Table(name = "diagram_revisions", indexes = {
+    @Index(name = "idx_revisions_changed", columnList = "changed_at")
+})
+@IdClass(DiagramRevisionStamp.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DiagramRevisionStamp {
+    
+    @Id
+    @Column(name = "diagram_id", length = 36)
+    private String diagramId;
+    
+    @Id
+    @Column(nullable = false)
+    private Long revision;
+    
+    @Column(name = "changed_at", nullable = false)
+    private Instant changedAt;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String diagramId;
+        private Long revision;
+    }
+}
@@ -0,0 +1,42 @@
+package com.chartdb.model;
+
+import com.chartdb.model.enums.ChangeEntityType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * A deleted table, column, relationship, area or note, reported by the change
+ * feed until the retention runs out. Deleting a table also removes its
+ * columns; only the table is recorded.
+ */
+@Entity
+@Table(name = "diagram_tombstones", indexes = {
+    @Index(name = "idx_tombstones_diagram", columnList = "diagram_id, deleted_at"),
+    @Index(name = "idx_tombstones_deleted", columnList = "deleted_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DiagramTombstone {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "diagram_id", nullable = false, length = 36)
+    private String diagramId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entity_type", nullable = false, length = 20)
+    private ChangeEntityType entityType;
+    
+    @Column(name = "entity_id", nullable = false, length = 36)
+    private String entityId;
+    
+    @Column(name = "deleted_at", nullable = false)
+    private Instant deletedAt;
+}
@@ -10,7 +10,7 @@ import java.time.Instant;
     @Index(name = "idx_locks_table", columnList = "table_id"),
     @Index(name = "idx_locks_expiry", columnList = "expires_at")
 }, uniqueConstraints = {
-    @UniqueConstraint(name = "unique_table_lock", columnNames = {"table_id"})
+    @UniqueConstraint(name = "unique_lock_key", columnNames = {"lock_key"})
 })
 @Getter
 @Setter
@@ -23,10 +23,19 @@ public class TableLock {
     @Column(length = 36)
     private String id;
     
+    // Table id, or "tableId:columnId" for a column lock
+    @Column(name = "lock_key", nullable = false, length = 80)
+    private String lockKey;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "table_id", nullable = false)
     private DiagramTable table;
     
+    // Null when the whole table is locked
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "column_id")
+    private TableColumn column;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
@@ -43,6 +52,10 @@ public class TableLock {
     @Builder.Default
     private Instant expiresAt = Instant.now().plusSeconds(30);
     
+    @Column(name = "fencing_token", nullable = false)
+    @Builder.Default
+    private Long fencingToken = 0L;
+    
     @PrePersist
     protected void onCreate() {
         if (this.id == null) {
@@ -0,0 +1,14 @@
+package com.chartdb.model.enums;
+
+/**
+ * Kinds of diagram content reported by the change feed.
+ */
+public enum ChangeEntityType {
+    TABLE,
+    COLUMN,
+    RELATIONSHIP,
+    AREA,
+    NOTE,
+    CUSTOM_TYPE,
+    DEPENDENCY
+}
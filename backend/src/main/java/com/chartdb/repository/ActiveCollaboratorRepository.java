@@ -57,6 +57,57 @@ public interface ActiveCollaboratorRepository extends JpaRepository<ActiveCollab
         @Param("timestamp") Instant timestamp
     );
     
+    // Checkpoint in-memory presence (selection ids are dropped if the table/column no longer exists)
+    @Modifying
+    @Query(value = "UPDATE active_collaborators SET " +
+           "cursor_x = :x, cursor_y = :y, " +
+           "selected_table_id = (SELECT t.id FROM tables t WHERE t.id = :tableId), " +
+           "selected_column_id = (SELECT c.id FROM columns c WHERE c.id = :columnId), " +
+           "is_idle = :idle, status = :status, " +
+           "last_seen = :lastSeen, last_activity = :lastActivity " +
+           "WHERE diagram_id = :diagramId AND user_id = :userId", nativeQuery = true)
+    int checkpointPresence(
+        @Param("diagramId") String diagramId,
+        @Param("userId") String userId,
+        @Param("x") BigDecimal x,
+        @Param("y") BigDecimal y,
+        @Param("tableId") String tableId,
+        @Param("columnId") String columnId,
+        @Param("idle") boolean idle,
+        @Param("status") String status,
+        @Param("lastSeen") Instant lastSeen,
+        @Param("lastActivity") Instant lastActivity
+    );
+    
+    // Id of the row of a diagram and user, whichever node wrote it
+    @Query("SELECT c.id FROM ActiveCollaborator c WHERE c.diagram.id = :diagramId AND c.user.id = :userId")
+    Optional<String> findIdByDiagramIdAndUserId(@Param("diagramId") String diagramId, @Param("userId") String userId);
+    
+        // Join in one statement (one row per diagram and user); a re-join keeps the row's id and cursor
+    @Modifying
+    @Query(value = "INSERT INTO active_collaborators (id, diagram_id, user_id, session_id, websocket_session_id, " +
+           "cursor_x, cursor_y, cursor_color, user_name, user_avatar, is_active, is_idle, status, " +
+           "connected_at, last_seen, last_activity, created_at, updated_at) " +
+           "VALUES (:id, :diagramId, :userId, :sessionId, :websocketSessionId, 0, 0, :cursorColor, " +
+           ":userName, :userAvatar, true, false, 'ACTIVE', :now, :now, :now, :now, :now) " +
+           "ON DUPLICATE KEY UPDATE session_id = VALUES(session_id), " +
+           "websocket_session_id = VALUES(websocket_session_id), cursor_color = VALUES(cursor_color), " +
+           "user_name = VALUES(user_name), user_avatar = VALUES(user_avatar), " +
+           "is_active = true, is_idle = false, status = 'ACTIVE', " +
+           "last_seen = VALUES(last_seen), last_activity = VALUES(last_activity), " +
+           "updated_at = VALUES(updated_at)", nativeQuery = true)
+    int upsertPresence(
+        @Param("id") String id,
+        @Param("diagramId") String diagramId,
+        @Param("userId") String userId,
+        @Param("sessionId") String sessionId,
+        @Param("websocketSessionId") String websocketSessionId,
+        @Param("cursorColor") String cursorColor,
+        @Param("userName") String userName,
+        @Param("userAvatar") String userAvatar,
+        @Param("now") Instant now
+    );
+
     // Clear selection
     @Modifying
     @Query("UPDATE ActiveCollaborator c SET " +
@@ -89,6 +140,16 @@ public interface ActiveCollaboratorRepository extends JpaRepository<ActiveCollab
     @Query("DELETE FROM ActiveCollaborator c WHERE c.isActive = false AND c.lastSeen < :timestamp")
     void deleteInactiveBefore(@Param("timestamp") Instant timestamp);
     
+    // Delete one session's row; a newer join by the same user has another websocket session and is kept
+    @Modifying
+    @Query("DELETE FROM ActiveCollaborator c WHERE c.diagram.id = :diagramId AND c.user.id = :userId " +
+           "AND c.websocketSessionId = :websocketSessionId")
+    int deleteSession(
+        @Param("diagramId") String diagramId,
+        @Param("userId") String userId,
+        @Param("websocketSessionId") String websocketSessionId
+    );
+    
     // Delete stale sessions (no activity for X seconds)
     @Modifying
     @Query("DELETE FROM ActiveCollaborator c WHERE c.lastSeen < :timestamp")
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.List;
 
 @Repository
@@ -14,6 +15,8 @@ public interface AreaRepository extends JpaRepository<DiagramArea, String> {
 
     List<DiagramArea> findByDiagramIdOrderBySortOrder(String diagramId);
 
+    List<DiagramArea> findByDiagramIdAndUpdatedAtAfter(String diagramId, Instant after);
+
     @Modifying
     @Query("DELETE FROM DiagramArea a WHERE a.diagram.id = :diagramId")
     void deleteByDiagramId(@Param("diagramId") String diagramId);
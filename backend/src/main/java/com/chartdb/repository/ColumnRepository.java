@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
@@ -46,25 +47,31 @@ public interface ColumnRepository extends JpaRepository<TableColumn, String> {
     
     // Reorder columns (shift indices)
     @Modifying
-    @Query("UPDATE TableColumn c SET c.orderIndex = c.orderIndex + 1 " +
+    @Query("UPDATE TableColumn c SET c.orderIndex = c.orderIndex + 1, c.updatedAt = :timestamp " +
            "WHERE c.table.id = :tableId AND c.orderIndex >= :startIndex")
     void shiftOrderIndicesUp(
         @Param("tableId") String tableId,
-        @Param("startIndex") Integer startIndex
+        @Param("startIndex") Integer startIndex,
+        @Param("timestamp") Instant timestamp
     );
     
     @Modifying
-    @Query("UPDATE TableColumn c SET c.orderIndex = c.orderIndex - 1 " +
+    @Query("UPDATE TableColumn c SET c.orderIndex = c.orderIndex - 1, c.updatedAt = :timestamp " +
            "WHERE c.table.id = :tableId AND c.orderIndex > :removedIndex")
     void shiftOrderIndicesDown(
         @Param("tableId") String tableId,
-        @Param("removedIndex") Integer removedIndex
+        @Param("removedIndex") Integer removedIndex,
+        @Param("timestamp") Instant timestamp
     );
     
     // Update order index
     @Modifying
-    @Query("UPDATE TableColumn c SET c.orderIndex = :orderIndex WHERE c.id = :columnId")
-    void updateOrderIndex(@Param("columnId") String columnId, @Param("orderIndex") Integer orderIndex);
+    @Query("UPDATE TableColumn c SET c.orderIndex = :orderIndex, c.updatedAt = :timestamp WHERE c.id = :columnId")
+    void updateOrderIndex(
+        @Param("columnId") String columnId,
+        @Param("orderIndex") Integer orderIndex,
+        @Param("timestamp") Instant timestamp
+    );
     
     // Delete all columns in table
     void deleteByTableId(String tableId);
@@ -78,7 +85,7 @@ public interface ColumnRepository extends JpaRepository<TableColumn, String> {
     
     // Clear foreign key references when a table is deleted
     @Modifying
-    @Query("UPDATE TableColumn c SET c.fkTable = null, c.fkColumn = null, c.isForeignKey = false " +
-           "WHERE c.fkTable.id = :tableId")
-    void clearForeignKeyReferences(@Param("tableId") String tableId);
+    @Query("UPDATE TableColumn c SET c.fkTable = null, c.fkColumn = null, c.isForeignKey = false, " +
+           "c.updatedAt = :timestamp WHERE c.fkTable.id = :tableId")
+    void clearForeignKeyReferences(@Param("tableId") String tableId, @Param("timestamp") Instant timestamp);
 }
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,6 +16,8 @@ public interface CustomTypeRepository extends JpaRepository<DiagramCustomType, S
 
     List<DiagramCustomType> findByDiagramId(String diagramId);
 
+    List<DiagramCustomType> findByDiagramIdAndUpdatedAtAfter(String diagramId, Instant after);
+
     Optional<DiagramCustomType> findByDiagramIdAndName(String diagramId, String name);
 
     @Modifying
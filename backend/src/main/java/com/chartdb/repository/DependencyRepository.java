@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.List;
 
 @Repository
@@ -14,6 +15,8 @@ public interface DependencyRepository extends JpaRepository<DiagramDependency, S
 
     List<DiagramDependency> findByDiagramId(String diagramId);
 
+    List<DiagramDependency> findByDiagramIdAndUpdatedAtAfter(String diagramId, Instant after);
+
     @Modifying
     @Query("DELETE FROM DiagramDependency d WHERE d.diagram.id = :diagramId")
     void deleteByDiagramId(@Param("diagramId") String diagramId);
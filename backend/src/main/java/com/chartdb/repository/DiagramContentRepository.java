@@ -0,0 +1,325 @@
+package com.chartdb.repository;
+
+import com.chartdb.dto.response.ColumnResponse;
+import com.chartdb.dto.response.DiagramFullResponse;
+import com.chartdb.dto.response.RelationshipResponse;
+import com.chartdb.dto.response.TableResponse;
+import com.chartdb.model.enums.RelationshipType;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TimeZone;
+import java.util.function.Consumer;
+
+/**
+ * Reads diagram content straight into response DTOs with plain JDBC, without
+ * loading entities into a persistence context: no entity instances, no
+ * dirty-checking snapshots and no duplicate table rows to merge back together.
+ *
+ * Rows are read through a forward-only result set with {@code fetch-size}
+ * rows per round trip. The forEach methods hand them to the caller one at a
+ * time, so a caller that does not keep them reads a diagram of any size in
+ * constant memory. MySQL
+ * only honours the fetch size with {@code useCursorFetch=true} on the JDBC URL;
+ * without it the driver buffers the whole result set.
+ */
+@Repository
+public class DiagramContentRepository {
+
+    private static final String DIAGRAM_SQL = """
+        SELECT d.id, d.name, d.description, d.database_type, d.is_public, d.revision,
+               d.canvas_zoom, d.canvas_offset_x, d.canvas_offset_y,
+               d.owner_id, u.display_name AS owner_display_name, d.created_at, d.updated_at
+        FROM diagrams d
+        JOIN users u ON u.id = d.owner_id
+        WHERE d.id = ?
+        """;
+
+    private static final String TABLE_FIELDS = """
+        t.id, t.diagram_id, t.name, t.schema_name, t.description,
+        t.position_x, t.position_y, t.width, t.height, t.color,
+        t.is_collapsed, t.is_hidden, t.sort_order,
+        t.is_view, t.is_materialized_view, t.indexes_json, t.created_at, t.updated_at
+        """;
+
+    // Selected with the owning table's id as "id"; needs COLUMN_JOINS
+    private static final String COLUMN_FIELDS = """
+        c.id AS column_id, c.name AS column_name, c.data_type,
+        c.is_primary_key, c.is_foreign_key, c.is_nullable, c.is_unique, c.is_auto_increment,
+        c.default_value, c.check_constraint, c.order_index,
+        c.fk_table_id, ft.name AS fk_table_name, c.fk_column_id, fc.name AS fk_column_name,
+        c.created_at AS column_created_at, c.updated_at AS column_updated_at
+        """;
+
+    private static final String COLUMN_JOINS = """
+        LEFT JOIN tables ft ON ft.id = c.fk_table_id
+        LEFT JOIN columns fc ON fc.id = c.fk_column_id
+        """;
+
+    // Ordered by table, so each table's columns arrive together right after it
+    private static final String TABLES_SQL = "SELECT " + TABLE_FIELDS + ", " + COLUMN_FIELDS + """
+        FROM tables t
+        LEFT JOIN columns c ON c.table_id = t.id
+        """ + COLUMN_JOINS + """
+        WHERE t.diagram_id = ?
+        ORDER BY t.sort_order, t.id, c.order_index, c.id
+        """;
+
+    private static final String CHANGED_TABLES_SQL = "SELECT " + TABLE_FIELDS + """
+        FROM tables t
+        WHERE t.diagram_id = ? AND t.updated_at > ?
+        ORDER BY t.sort_order, t.id
+        """;
+
+    private static final String CHANGED_COLUMNS_SQL = "SELECT t.id, " + COLUMN_FIELDS + """
+        FROM columns c
+        JOIN tables t ON t.id = c.table_id
+        """ + COLUMN_JOINS + """
+        WHERE t.diagram_id = ? AND c.updated_at > ?
+        ORDER BY t.id, c.order_index, c.id
+        """;
+
+    private static final String RELATIONSHIP_SELECT = """
+        SELECT r.id, r.diagram_id, r.name,
+               r.source_table_id, st.name AS source_table_name,
+               r.source_column_id, sc.name AS source_column_name,
+               r.target_table_id, tt.name AS target_table_name,
+               r.target_column_id, tc.name AS target_column_name,
+               r.relationship_type, r.source_handle, r.target_handle, r.path_points,
+               r.cardinality_source, r.cardinality_target, r.created_at, r.updated_at
+        FROM relationships r
+        JOIN tables st ON st.id = r.source_table_id
+        JOIN tables tt ON tt.id = r.target_table_id
+        LEFT JOIN columns sc ON sc.id = r.source_column_id
+        LEFT JOIN columns tc ON tc.id = r.target_column_id
+        """;
+
+    private static final String RELATIONSHIPS_SQL = RELATIONSHIP_SELECT + """
+        WHERE r.diagram_id = ?
+        ORDER BY r.id
+        """;
+
+    private static final String CHANGED_RELATIONSHIPS_SQL = RELATIONSHIP_SELECT + """
+        WHERE r.diagram_id = ? AND r.updated_at > ?
+        ORDER BY r.id
+        """;
+
+    private static final TypeReference<List<Map<String, Object>>> PATH_POINTS = new TypeReference<>() {};
+
+    // Drivers only use the calendar for the duration of one getTimestamp call
+    private static final ThreadLocal<Calendar> UTC =
+        ThreadLocal.withInitial(() -> Calendar.getInstance(TimeZone.getTimeZone("UTC")));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public DiagramContentRepository(DataSource dataSource, ObjectMapper objectMapper,
+                                    @Value("${collaboration.diagram-read.fetch-size:500}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * The diagram's own fields, without content, counts or permission level.
+     */
+    public Optional<DiagramFullResponse> findDiagram(String diagramId) {
+        return jdbcTemplate.query(DIAGRAM_SQL, (rs, rowNum) -> DiagramFullResponse.builder()
+            .id(rs.getString("id"))
+            .name(rs.getString("name"))
+            .description(rs.getString("description"))
+            .databaseType(rs.getString("database_type"))
+            .isPublic(rs.getObject("is_public", Boolean.class))
+            .revision(rs.getLong("revision"))
+            .zoom(rs.getBigDecimal("canvas_zoom"))
+            .offsetX(rs.getBigDecimal("canvas_offset_x"))
+            .offsetY(rs.getBigDecimal("canvas_offset_y"))
+            .ownerId(rs.getString("owner_id"))
+            .ownerDisplayName(rs.getString("owner_display_name"))
+            .createdAt(instant(rs, "created_at"))
+            .updatedAt(instant(rs, "updated_at"))
+            .build(), diagramId).stream().findFirst();
+    }
+
+    /**
+     * The diagram with its tables, columns, relationships and counts, without
+     * the permission level.
+     */
+    public Optional<DiagramFullResponse> findFullDiagram(String diagramId) {
+        return findDiagram(diagramId).map(diagram -> {
+            List<TableResponse> tables = findTables(diagramId);
+            List<RelationshipResponse> relationships = findRelationships(diagramId);
+            diagram.setTables(tables);
+            diagram.setTableCount(tables.size());
+            diagram.setRelationships(relationships);
+            diagram.setRelationshipCount(relationships.size());
+            return diagram;
+        });
+    }
+
+    /**
+     * The diagram's tables in sort order, each with its columns in order.
+     */
+    public List<TableResponse> findTables(String diagramId) {
+        List<TableResponse> tables = new ArrayList<>();
+        forEachTable(diagramId, table -> {
+            table.setColumns(new ArrayList<>());
+            tables.add(table);
+        }, column -> tables.get(tables.size() - 1).getColumns().add(column));
+        return tables;
+    }
+
+    public List<RelationshipResponse> findRelationships(String diagramId) {
+        List<RelationshipResponse> relationships = new ArrayList<>();
+        forEachRelationship(diagramId, relationships::add);
+        return relationships;
+    }
+
+    /**
+     * Tables written after the given time, without their columns.
+     */
+    public List<TableResponse> findTablesChangedSince(String diagramId, Instant since) {
+        return jdbcTemplate.query(CHANGED_TABLES_SQL, changedSince(diagramId, since), (rs, rowNum) -> mapTable(rs));
+    }
+
+    public List<ColumnResponse> findColumnsChangedSince(String diagramId, Instant since) {
+        return jdbcTemplate.query(CHANGED_COLUMNS_SQL, changedSince(diagramId, since), (rs, rowNum) -> mapColumn(rs));
+    }
+
+    public List<RelationshipResponse> findRelationshipsChangedSince(String diagramId, Instant since) {
+        return jdbcTemplate.query(CHANGED_RELATIONSHIPS_SQL, changedSince(diagramId, since),
+            (rs, rowNum) -> mapRelationship(rs));
+    }
+
+    /**
+     * Walk the diagram's tables in sort order. Each table is passed to
+     * {@code onTable} without columns, followed by its columns in order.
+     */
+    public void forEachTable(String diagramId, Consumer<TableResponse> onTable, Consumer<ColumnResponse> onColumn) {
+        String[] currentTableId = {null};
+        jdbcTemplate.query(TABLES_SQL, rs -> {
+            String tableId = rs.getString("id");
+            if (!tableId.equals(currentTableId[0])) {
+                currentTableId[0] = tableId;
+                onTable.accept(mapTable(rs));
+            }
+            if (rs.getString("column_id") != null) {
+                onColumn.accept(mapColumn(rs));
+            }
+        }, diagramId);
+    }
+
+    public void forEachRelationship(String diagramId, Consumer<RelationshipResponse> onRelationship) {
+        jdbcTemplate.query(RELATIONSHIPS_SQL, rs -> {
+            onRelationship.accept(mapRelationship(rs));
+        }, diagramId);
+    }
+
+    private TableResponse mapTable(ResultSet rs) throws SQLException {
+        return TableResponse.builder()
+            .id(rs.getString("id"))
+            .diagramId(rs.getString("diagram_id"))
+            .name(rs.getString("name"))
+            .schemaName(rs.getString("schema_name"))
+            .description(rs.getString("description"))
+            .positionX(rs.getBigDecimal("position_x"))
+            .positionY(rs.getBigDecimal("position_y"))
+            .width(rs.getBigDecimal("width"))
+            .height(rs.getBigDecimal("height"))
+            .color(rs.getString("color"))
+            .isCollapsed(rs.getObject("is_collapsed", Boolean.class))
+            .isHidden(rs.getObject("is_hidden", Boolean.class))
+            .sortOrder(rs.getObject("sort_order", Integer.class))
+            .isView(rs.getObject("is_view", Boolean.class))
+            .isMaterializedView(rs.getObject("is_materialized_view", Boolean.class))
+            .indexes(rs.getString("indexes_json"))
+            .createdAt(instant(rs, "created_at"))
+            .updatedAt(instant(rs, "updated_at"))
+            .build();
+    }
+
+    private ColumnResponse mapColumn(ResultSet rs) throws SQLException {
+        return ColumnResponse.builder()
+            .id(rs.getString("column_id"))
+            .tableId(rs.getString("id"))
+            .name(rs.getString("column_name"))
+            .dataType(rs.getString("data_type"))
+            .isPrimaryKey(rs.getObject("is_primary_key", Boolean.class))
+            .isForeignKey(rs.getObject("is_foreign_key", Boolean.class))
+            .isNullable(rs.getObject("is_nullable", Boolean.class))
+            .isUnique(rs.getObject("is_unique", Boolean.class))
+            .isAutoIncrement(rs.getObject("is_auto_increment", Boolean.class))
+            .defaultValue(rs.getString("default_value"))
+            .checkConstraint(rs.getString("check_constraint"))
+            .orderIndex(rs.getObject("order_index", Integer.class))
+            .fkTableId(rs.getString("fk_table_id"))
+            .fkTableName(rs.getString("fk_table_name"))
+            .fkColumnId(rs.getString("fk_column_id"))
+            .fkColumnName(rs.getString("fk_column_name"))
+            .createdAt(instant(rs, "column_created_at"))
+            .updatedAt(instant(rs, "column_updated_at"))
+            .build();
+    }
+
+    private RelationshipResponse mapRelationship(ResultSet rs) throws SQLException {
+        String type = rs.getString("relationship_type");
+        return RelationshipResponse.builder()
+            .id(rs.getString("id"))
+            .diagramId(rs.getString("diagram_id"))
+            .name(rs.getString("name"))
+            .sourceTableId(rs.getString("source_table_id"))
+            .sourceTableName(rs.getString("source_table_name"))
+            .sourceColumnId(rs.getString("source_column_id"))
+            .sourceColumnName(rs.getString("source_column_name"))
+            .targetTableId(rs.getString("target_table_id"))
+            .targetTableName(rs.getString("target_table_name"))
+            .targetColumnId(rs.getString("target_column_id"))
+            .targetColumnName(rs.getString("target_column_name"))
+            .relationshipType(type != null ? RelationshipType.valueOf(type) : null)
+            .sourceHandle(rs.getString("source_handle"))
+            .targetHandle(rs.getString("target_handle"))
+            .pathPoints(pathPoints(rs.getString("path_points")))
+            .sourceCardinality(rs.getString("cardinality_source"))
+            .targetCardinality(rs.getString("cardinality_target"))
+            .createdAt(instant(rs, "created_at"))
+            .updatedAt(instant(rs, "updated_at"))
+            .build();
+    }
+
+    private List<Map<String, Object>> pathPoints(String json) {
+        if (json == null) return null;
+        try {
+            return objectMapper.readValue(json, PATH_POINTS);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable path points: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    private static PreparedStatementSetter changedSince(String diagramId, Instant since) {
+        return ps -> {
+            ps.setString(1, diagramId);
+            ps.setTimestamp(2, Timestamp.from(since), UTC.get());
+        };
+    }
+
+    // Hibernate writes instants in UTC (hibernate.jdbc.time_zone); read them back the same way
+    private static Instant instant(ResultSet rs, String column) throws SQLException {
+        Timestamp timestamp = rs.getTimestamp(column, UTC.get());
+        return timestamp != null ? timestamp.toInstant() : null;
+    }
+}
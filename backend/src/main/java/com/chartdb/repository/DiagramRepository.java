@@ -73,11 +73,25 @@ public interface DiagramRepository extends JpaRepository<Diagram, String> {
         @Param("timestamp") Instant timestamp
     );
     
+    // Revision and access fields of a diagram, without loading the entity
+    @Query("SELECT d.revision AS revision, d.owner.id AS ownerId, d.isPublic AS isPublic, " +
+           "d.lastAccessedAt AS lastAccessedAt " +
+           "FROM Diagram d WHERE d.id = :diagramId AND (d.status IS NULL OR d.status <> :excludedStatus)")
+    Optional<DiagramAccessView> findAccessViewById(
+        @Param("diagramId") String diagramId,
+        @Param("excludedStatus") DiagramStatus excludedStatus
+    );
+    
     // Update last accessed
     @Modifying
     @Query("UPDATE Diagram d SET d.lastAccessedAt = :timestamp WHERE d.id = :diagramId")
     void updateLastAccessed(@Param("diagramId") String diagramId, @Param("timestamp") Instant timestamp);
     
+    // Bump the revision (see DiagramRevisionService)
+    @Modifying
+    @Query("UPDATE Diagram d SET d.revision = d.revision + 1 WHERE d.id = :diagramId")
+    void incrementRevision(@Param("diagramId") String diagramId);
+    
     // Increment view count
     @Modifying
     @Query("UPDATE Diagram d SET d.viewCount = d.viewCount + 1 WHERE d.id = :diagramId")
@@ -107,4 +121,11 @@ public interface DiagramRepository extends JpaRepository<Diagram, String> {
     
     // Check if slug exists
     boolean existsByPublicSlug(String publicSlug);
+    
+    interface DiagramAccessView {
+        Long getRevision();
+        String getOwnerId();
+        Boolean getIsPublic();
+        Instant getLastAccessedAt();
+    }
 }
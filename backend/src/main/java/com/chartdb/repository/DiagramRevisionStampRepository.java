@@ -0,0 +1,28 @@
+package com.chartdb.repository;
+
+import com.chartdb.model.DiagramRevisionStamp;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface DiagramRevisionStampRepository extends JpaRepository<DiagramRevisionStamp, DiagramRevisionStamp.Key> {
+    
+    // Stamp the diagram's current revision without reading it back first
+    @Modifying
+    @Query(value = "INSERT INTO diagram_revisions (diagram_id, revision, changed_at) " +
+                   "SELECT id, revision, :changedAt FROM diagrams WHERE id = :diagramId",
+           nativeQuery = true)
+    void stampCurrentRevision(@Param("diagramId") String diagramId, @Param("changedAt") Instant changedAt);
+    
+    Optional<DiagramRevisionStamp> findByDiagramIdAndRevision(String diagramId, Long revision);
+    
+    @Modifying
+    @Query("DELETE FROM DiagramRevisionStamp s WHERE s.changedAt < :before")
+    int deleteOlderThan(@Param("before") Instant before);
+}
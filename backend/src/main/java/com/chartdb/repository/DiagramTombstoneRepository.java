@@ -0,0 +1,21 @@
+package com.chartdb.repository;
+
+import com.chartdb.model.DiagramTombstone;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface DiagramTombstoneRepository extends JpaRepository<DiagramTombstone, Long> {
+    
+    List<DiagramTombstone> findByDiagramIdAndDeletedAtAfterOrderByDeletedAt(String diagramId, Instant after);
+    
+    @Modifying
+    @Query("DELETE FROM DiagramTombstone t WHERE t.deletedAt < :before")
+    int deleteOlderThan(@Param("before") Instant before);
+}
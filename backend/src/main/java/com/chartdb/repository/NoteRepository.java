@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.List;
 
 @Repository
@@ -14,6 +15,8 @@ public interface NoteRepository extends JpaRepository<DiagramNote, String> {
 
     List<DiagramNote> findByDiagramId(String diagramId);
 
+    List<DiagramNote> findByDiagramIdAndUpdatedAtAfter(String diagramId, Instant after);
+
     @Modifying
     @Query("DELETE FROM DiagramNote n WHERE n.diagram.id = :diagramId")
     void deleteByDiagramId(@Param("diagramId") String diagramId);
@@ -43,6 +43,13 @@ public interface RelationshipRepository extends JpaRepository<Relationship, Stri
     // Find incoming relationships to a table
     List<Relationship> findByTargetTableId(String targetTableId);
     
+    // Ids of the relationships deleteByTableId and deleteByColumnId remove
+    @Query("SELECT r.id FROM Relationship r WHERE r.sourceTable.id = :tableId OR r.targetTable.id = :tableId")
+    List<String> findIdsByTableId(@Param("tableId") String tableId);
+    
+    @Query("SELECT r.id FROM Relationship r WHERE r.sourceColumn.id = :columnId OR r.targetColumn.id = :columnId")
+    List<String> findIdsByColumnId(@Param("columnId") String columnId);
+    
     // Find relationships involving a column
     @Query("SELECT r FROM Relationship r WHERE r.sourceColumn.id = :columnId OR r.targetColumn.id = :columnId")
     List<Relationship> findByColumnId(@Param("columnId") String columnId);
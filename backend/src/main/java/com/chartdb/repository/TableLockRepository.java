@@ -71,6 +71,36 @@ public interface TableLockRepository extends JpaRepository<TableLock, String> {
     @Query("DELETE FROM TableLock l WHERE l.expiresAt < :now")
     int deleteExpiredLocks(@Param("now") Instant now);
     
+    // Write-through of an in-memory lease (one row per lock key; FK failures mean the table or column is gone)
+    @Modifying
+    @Query(value = "INSERT INTO table_locks (id, lock_key, table_id, column_id, user_id, lock_type, acquired_at, expires_at, fencing_token) " +
+           "VALUES (:id, :lockKey, :tableId, :columnId, :userId, 'edit', :acquiredAt, :expiresAt, :fencingToken) " +
+           "ON DUPLICATE KEY UPDATE user_id = VALUES(user_id), acquired_at = VALUES(acquired_at), " +
+           "expires_at = VALUES(expires_at), fencing_token = VALUES(fencing_token)", nativeQuery = true)
+    int upsertLease(
+        @Param("id") String id,
+        @Param("lockKey") String lockKey,
+        @Param("tableId") String tableId,
+        @Param("columnId") String columnId,
+        @Param("userId") String userId,
+        @Param("acquiredAt") Instant acquiredAt,
+        @Param("expiresAt") Instant expiresAt,
+        @Param("fencingToken") long fencingToken
+    );
+    
+    // Delete a lease only if it has not been superseded by a newer one
+    @Modifying
+    @Query("DELETE FROM TableLock l WHERE l.lockKey = :lockKey AND l.fencingToken = :fencingToken")
+    int deleteByLockKeyAndFencingToken(@Param("lockKey") String lockKey, @Param("fencingToken") long fencingToken);
+    
+    // Unexpired locks with their holders, for recovery on startup
+    @Query("SELECT l FROM TableLock l JOIN FETCH l.table t JOIN FETCH t.diagram JOIN FETCH l.user " +
+           "LEFT JOIN FETCH l.column WHERE l.expiresAt > :now")
+    List<TableLock> findUnexpiredWithHolders(@Param("now") Instant now);
+    
+    @Query("SELECT MAX(l.fencingToken) FROM TableLock l")
+    Long findMaxFencingToken();
+    
     // Delete locks for tables in a diagram
     @Modifying
     @Query("DELETE FROM TableLock l WHERE l.table.diagram.id = :diagramId")
@@ -9,11 +9,12 @@ import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface TableRepository extends JpaRepository<DiagramTable, String> {
+public interface TableRepository extends JpaRepository<DiagramTable, String>, TableRepositoryCustom {
     
     // Find all tables in a diagram
     List<DiagramTable> findByDiagramIdOrderBySortOrderAsc(String diagramId);
@@ -127,4 +128,26 @@ public interface TableRepository extends JpaRepository<DiagramTable, String> {
     
     // Find visible tables only
     List<DiagramTable> findByDiagramIdAndIsHiddenFalse(String diagramId);
+    
+    // Size of tables, for routing their moves by bounding box
+    @Query("SELECT t.id AS id, t.width AS width, t.height AS height, SIZE(t.columns) AS columnCount " +
+           "FROM DiagramTable t WHERE t.id IN :tableIds")
+    List<TableExtent> findExtentsByIdIn(@Param("tableIds") Collection<String> tableIds);
+    
+    // Every table of the diagram with each of its column ids; a table without columns has one row with a null column id
+    @Query("SELECT t.id AS tableId, c.id AS columnId FROM DiagramTable t LEFT JOIN t.columns c " +
+           "WHERE t.diagram.id = :diagramId")
+    List<TableColumnId> findColumnIdsByDiagramId(@Param("diagramId") String diagramId);
+    
+    interface TableExtent {
+        String getId();
+        BigDecimal getWidth();
+        BigDecimal getHeight();
+        Integer getColumnCount();
+    }
+    
+    interface TableColumnId {
+        String getTableId();
+        String getColumnId();
+    }
 }
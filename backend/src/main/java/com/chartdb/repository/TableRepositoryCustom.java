@@ -0,0 +1,13 @@
+package com.chartdb.repository;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+
+public interface TableRepositoryCustom {
+    
+    // Write many table positions of one diagram in a single UPDATE statement
+    int batchUpdatePositions(String diagramId, Collection<PositionUpdate> positions, Instant timestamp);
+    
+    record PositionUpdate(String tableId, BigDecimal x, BigDecimal y) {}
+}
@@ -0,0 +1,51 @@
+package com.chartdb.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+
+import java.time.Instant;
+import java.util.Collection;
+
+public class TableRepositoryImpl implements TableRepositoryCustom {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public int batchUpdatePositions(String diagramId, Collection<PositionUpdate> positions, Instant timestamp) {
+        if (positions.isEmpty()) {
+            return 0;
+        }
+        
+        // UPDATE tables SET position_x = CASE id WHEN :id0 THEN :x0 ... END, ... WHERE id IN (...)
+        StringBuilder caseX = new StringBuilder("CASE id");
+        StringBuilder caseY = new StringBuilder("CASE id");
+        StringBuilder ids = new StringBuilder();
+        for (int i = 0; i < positions.size(); i++) {
+            caseX.append(" WHEN :id").append(i).append(" THEN :x").append(i);
+            caseY.append(" WHEN :id").append(i).append(" THEN :y").append(i);
+            ids.append(i == 0 ? "" : ", ").append(":id").append(i);
+        }
+        caseX.append(" ELSE position_x END");
+        caseY.append(" ELSE position_y END");
+        
+        Query query = entityManager.createNativeQuery(
+            "UPDATE tables SET position_x = " + caseX +
+            ", position_y = " + caseY +
+            ", updated_at = :timestamp" +
+            " WHERE diagram_id = :diagramId AND id IN (" + ids + ")");
+        
+        int i = 0;
+        for (PositionUpdate position : positions) {
+            query.setParameter("id" + i, position.tableId());
+            query.setParameter("x" + i, position.x());
+            query.setParameter("y" + i, position.y());
+            i++;
+        }
+        query.setParameter("timestamp", timestamp);
+        query.setParameter("diagramId", diagramId);
+        
+        return query.executeUpdate();
+    }
+}
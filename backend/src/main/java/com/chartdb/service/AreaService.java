@@ -6,6 +6,7 @@ import com.chartdb.exception.ResourceNotFoundException;
 import com.chartdb.mapper.AreaMapper;
 import com.chartdb.model.Diagram;
 import com.chartdb.model.DiagramArea;
+import com.chartdb.model.enums.ChangeEntityType;
 import com.chartdb.repository.AreaRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -22,6 +23,7 @@ public class AreaService {
     private final AreaRepository areaRepository;
     private final AreaMapper areaMapper;
     private final DiagramService diagramService;
+    private final DiagramRevisionService revisionService;
 
     @Transactional(readOnly = true)
     public List<AreaResponse> getAreas(String diagramId, String userId) {
@@ -42,6 +44,7 @@ public class AreaService {
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new com.chartdb.exception.AccessDeniedException("You don't have permission to edit this diagram");
         }
+        revisionService.markChanged(diagram.getId());
 
         DiagramArea area = areaMapper.toEntity(request);
         area.setDiagram(diagram);
@@ -71,6 +74,7 @@ public class AreaService {
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new com.chartdb.exception.AccessDeniedException("You don't have permission to edit this diagram");
         }
+        revisionService.markChanged(diagram.getId());
 
         DiagramArea area = areaRepository.findById(areaId)
             .orElseThrow(() -> new ResourceNotFoundException("Area", "id", areaId));
@@ -89,11 +93,13 @@ public class AreaService {
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new com.chartdb.exception.AccessDeniedException("You don't have permission to edit this diagram");
         }
+        revisionService.markChanged(diagram.getId());
 
         if (!areaRepository.existsById(areaId)) {
             throw new ResourceNotFoundException("Area", "id", areaId);
         }
 
+        revisionService.markDeleted(diagram.getId(), ChangeEntityType.AREA, List.of(areaId));
         areaRepository.deleteById(areaId);
         log.info("Area deleted: {} from diagram {} by user {}", areaId, diagramId, userId);
     }
@@ -0,0 +1,81 @@
+package com.chartdb.service;
+
+import com.chartdb.dto.websocket.AudienceMember;
+import com.chartdb.dto.websocket.AudienceSummary;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Publishes read-only collaborators as one periodic summary per diagram on
+ * /topic/diagram/{diagramId}/audience instead of a presence message per join,
+ * leave and idle change. Only diagrams whose audience changed since the last
+ * tick are published, so a churn wave costs one message per subscriber per tick.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AudienceAggregator {
+
+    private final PresenceRegistry presenceRegistry;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    @Value("${collaboration.audience.sample-size:8}")
+    private int sampleSize;
+
+    private final Set<String> changed = ConcurrentHashMap.newKeySet();
+
+    public void markChanged(String diagramId) {
+        changed.add(diagramId);
+    }
+
+    @Scheduled(fixedRateString = "${collaboration.audience.broadcast-interval-ms:2000}")
+    public void publishChanged() {
+        for (String diagramId : changed) {
+            // Removed before reading, so a change during the read is published next tick
+            changed.remove(diagramId);
+            try {
+                messagingTemplate.convertAndSend("/topic/diagram/" + diagramId + "/audience", summarize(diagramId));
+            } catch (Exception e) {
+                log.warn("Failed to publish audience of diagram {}: {}", diagramId, e.getMessage());
+            }
+        }
+    }
+
+    private AudienceSummary summarize(String diagramId) {
+        List<PresenceRegistry.Presence> viewers = new ArrayList<>();
+        int idle = 0;
+        for (PresenceRegistry.Presence presence : presenceRegistry.getDiagramPresences(diagramId)) {
+            if (!presence.isAudience()) continue;
+            viewers.add(presence);
+            if (presence.isIdle()) idle++;
+        }
+
+        List<AudienceMember> sample = viewers.stream()
+            .sorted(Comparator.comparing(PresenceRegistry.Presence::getConnectedAt))
+            .limit(sampleSize)
+            .map(presence -> AudienceMember.builder()
+                .userId(presence.getUserId())
+                .userDisplayName(presence.getUserDisplayName())
+                .userAvatarUrl(presence.getUserAvatarUrl())
+                .build())
+            .toList();
+
+        return AudienceSummary.builder()
+            .diagramId(diagramId)
+            .viewerCount(viewers.size())
+            .idleCount(idle)
+            .sample(sample)
+            .timestamp(System.currentTimeMillis())
+            .build();
+    }
+}
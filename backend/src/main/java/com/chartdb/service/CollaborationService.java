@@ -3,22 +3,25 @@ package com.chartdb.service;
 import com.chartdb.dto.response.CollaboratorResponse;
 import com.chartdb.dto.websocket.PresenceMessage;
 import com.chartdb.model.*;
-import com.chartdb.exception.ResourceNotFoundException;
+import com.chartdb.model.enums.PermissionLevel;
 import com.chartdb.mapper.CollaboratorMapper;
 import com.chartdb.repository.ActiveCollaboratorRepository;
-import com.chartdb.repository.TableRepository;
-import com.chartdb.repository.TableLockRepository;
-import com.chartdb.repository.UserRepository;
+import com.chartdb.security.UserPrincipal;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -29,87 +32,126 @@ import java.util.UUID;
 public class CollaborationService {
     
     private final ActiveCollaboratorRepository collaboratorRepository;
-    private final UserRepository userRepository;
-    private final TableRepository tableRepository;
-    private final TableLockRepository lockRepository;
-    private final DiagramService diagramService;
     private final CollaboratorMapper collaboratorMapper;
     private final SimpMessagingTemplate messagingTemplate;
+    private final PresenceRegistry presenceRegistry;
+    private final TableLockManager tableLockManager;
+    private final MeterRegistry meterRegistry;
+    private final DiagramAccessCache accessCache;
+    private final AudienceAggregator audienceAggregator;
     
-    private static final long SESSION_TIMEOUT_SECONDS = 60;
     private static final long IDLE_TIMEOUT_SECONDS = 300;
-    private static final long LOCK_TIMEOUT_SECONDS = 120;
+    
+    @Value("${collaboration.presence.session-timeout-ms:60000}")
+    private long sessionTimeoutMillis;
+    
+    @Value("${collaboration.presence.wheel-tick-ms:1000}")
+    private long wheelTickMillis;
+    
+    @Value("${collaboration.presence.orphan-ttl-ms:900000}")
+    private long orphanTtlMillis;
+    
+    // Fires when a session may have missed its heartbeat deadline
+    private TimingWheel<PresenceRegistry.Presence> sessionWheel;
+    
+    @PostConstruct
+    public void initSessionWheel() {
+        sessionWheel = new TimingWheel<>(wheelTickMillis, 64, 3);
+    }
     
     // ═══════════════════════════════════════════════════════════════
     // COLLABORATION SESSION MANAGEMENT
     // ═══════════════════════════════════════════════════════════════
     
+    /**
+     * Join in one round trip: display data comes from the authenticated
+     * principal, the cursor color from the in-memory user slot, and the row is
+     * written with a single upsert. Access has already been checked against
+     * the ACL cache by DiagramAccessInterceptor.
+     */
     @Transactional
-    public CollaboratorResponse joinDiagram(String diagramId, String userId, String websocketSessionId) {
-        Diagram diagram = diagramService.findDiagramById(diagramId);
-        User user = userRepository.findById(userId)
-            .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
+    public CollaboratorResponse joinDiagram(String diagramId, UserPrincipal user, String websocketSessionId) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Instant now = Instant.now();
         
-        // Check if already in diagram
-        ActiveCollaborator existing = collaboratorRepository
-            .findByDiagramIdAndUserId(diagramId, userId)
-            .orElse(null);
+        // A re-join keeps its collaborator id and cursor: from memory on this node,
+        // otherwise from the row (one per diagram and user) another node may have written
+        Optional<PresenceRegistry.Presence> previous = presenceRegistry.get(diagramId, user.getId());
+        String collaboratorId = previous.map(PresenceRegistry.Presence::getCollaboratorId)
+            .or(() -> collaboratorRepository.findIdByDiagramIdAndUserId(diagramId, user.getId()))
+            .orElseGet(() -> UUID.randomUUID().toString());
+        String sessionId = UUID.randomUUID().toString();
+        boolean audience = isAudience(diagramId, user.getId());
+        PresenceRegistry.Presence presence = presenceRegistry.register(
+            newPresence(collaboratorId, sessionId, diagramId, user, websocketSessionId, previous, now, audience));
         
-        if (existing != null) {
-            existing.setWebsocketSessionId(websocketSessionId);
-            existing.setIsActive(true);
-            existing.setLastSeen(Instant.now());
-            existing = collaboratorRepository.save(existing);
-            return collaboratorMapper.toResponse(existing);
+        try {
+            collaboratorRepository.upsertPresence(
+                presence.getCollaboratorId(),
+                diagramId,
+                user.getId(),
+                presence.getSessionId(),
+                websocketSessionId,
+                presence.getCursorColor(),
+                user.getDisplayName(),
+                user.getAvatarUrl(),
+                now
+            );
+            
+            // A concurrent join elsewhere inserted the row first; the upsert kept its id
+            String rowId = collaboratorRepository.findIdByDiagramIdAndUserId(diagramId, user.getId())
+                .orElse(collaboratorId);
+            if (!rowId.equals(collaboratorId)) {
+                presence = presenceRegistry.register(
+                    newPresence(rowId, sessionId, diagramId, user, websocketSessionId, previous, now, audience));
+            }
+        } catch (RuntimeException e) {
+            presenceRegistry.remove(diagramId, user.getId());
+            throw e;
         }
+        log.info("User {} joined diagram {} with cursor color {}", user.getId(), diagramId, presence.getCursorColor());
         
-        // Assign cursor color based on number of existing collaborators
-        String cursorColor = assignCursorColor(diagramId);
-        
-        ActiveCollaborator collaborator = ActiveCollaborator.builder()
-            .diagram(diagram)
-            .user(user)
-            .sessionId(UUID.randomUUID().toString())
-            .websocketSessionId(websocketSessionId)
-            .cursorColor(cursorColor)
-            .cursorX(BigDecimal.ZERO)
-            .cursorY(BigDecimal.ZERO)
-            .isActive(true)
-            .isIdle(false)
-            .status("ACTIVE")
-            .connectedAt(Instant.now())
-            .lastSeen(Instant.now())
-            .lastActivity(Instant.now())
-            .build();
-        
-        collaborator = collaboratorRepository.save(collaborator);
-        log.info("User {} joined diagram {} with cursor color {}", userId, diagramId, cursorColor);
+        sessionWheel.schedule(presence, presence.getLastSeen().toEpochMilli() + sessionTimeoutMillis);
         
-        // Broadcast join event
-        broadcastPresence(diagramId, "JOIN", collaboratorMapper.toResponse(collaborator));
+        CollaboratorResponse response = collaboratorMapper.toResponse(presence);
+        broadcastPresence(diagramId, "JOIN", response, presence.isAudience());
         
-        return collaboratorMapper.toResponse(collaborator);
+        sample.stop(Timer.builder("chartdb.collaboration.join")
+            .description("Time to register a collaborator joining a diagram")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(meterRegistry));
+        return response;
     }
     
     @Transactional
     public void leaveDiagram(String diagramId, String userId) {
-        collaboratorRepository.findByDiagramIdAndUserId(diagramId, userId)
-            .ifPresent(collaborator -> {
-                CollaboratorResponse response = collaboratorMapper.toResponse(collaborator);
-                
-                // Release any locks held by this user
-                lockRepository.deleteByDiagramIdAndLockedByUserId(diagramId, userId);
-                
-                collaboratorRepository.delete(collaborator);
+        Optional<PresenceRegistry.Presence> presence = presenceRegistry.remove(diagramId, userId);
+        Optional<ActiveCollaborator> collaborator = collaboratorRepository.findByDiagramIdAndUserId(diagramId, userId);
+        
+        // Release any locks held by this user
+        tableLockManager.releaseAllForUser(diagramId, userId);
+        collaborator.ifPresent(collaboratorRepository::delete);
+        
+        presence.map(collaboratorMapper::toResponse)
+            .or(() -> collaborator.map(collaboratorMapper::toResponse))
+            .ifPresent(response -> {
                 log.info("User {} left diagram {}", userId, diagramId);
-                
-                // Broadcast leave event
-                broadcastPresence(diagramId, "LEAVE", response);
+                broadcastPresence(diagramId, "LEAVE", response,
+                    presence.map(PresenceRegistry.Presence::isAudience).orElseGet(() -> isAudience(diagramId, userId)));
             });
     }
     
     @Transactional
     public void leaveByWebsocketSession(String websocketSessionId) {
+        tableLockManager.cancelWaits(websocketSessionId);
+        
+        Optional<PresenceRegistry.Presence> presence = presenceRegistry.getBySession(websocketSessionId);
+        if (presence.isPresent()) {
+            endSession(presence.get(), "disconnected from");
+            return;
+        }
+        
+        // Not joined on this node since it started; fall back to the row
         collaboratorRepository.findByWebsocketSessionId(websocketSessionId)
             .ifPresent(collaborator -> {
                 String diagramId = collaborator.getDiagram().getId();
@@ -117,12 +159,12 @@ public class CollaborationService {
                 CollaboratorResponse response = collaboratorMapper.toResponse(collaborator);
                 
                 // Release any locks held by this user
-                lockRepository.deleteByDiagramIdAndLockedByUserId(diagramId, userId);
+                tableLockManager.releaseAllForUser(diagramId, userId);
                 
                 collaboratorRepository.delete(collaborator);
                 log.info("User {} disconnected from diagram {}", userId, diagramId);
                 
-                broadcastPresence(diagramId, "LEAVE", response);
+                broadcastPresence(diagramId, "LEAVE", response, isAudience(diagramId, userId));
             });
     }
     
@@ -130,57 +172,45 @@ public class CollaborationService {
     // CURSOR AND SELECTION TRACKING
     // ═══════════════════════════════════════════════════════════════
     
-    @Transactional
+    // Served from the presence registry; persisted by checkpointPresence()
     public void updateCursorPosition(String diagramId, String userId, BigDecimal x, BigDecimal y) {
-        collaboratorRepository.findByDiagramIdAndUserId(diagramId, userId)
-            .ifPresent(collaborator -> {
-                collaboratorRepository.updateCursorPosition(collaborator.getId(), x, y, Instant.now());
-            });
+        presenceRegistry.get(diagramId, userId)
+            .ifPresent(presence -> presence.updateCursor(x, y));
     }
     
-    @Transactional
     public void updateSelection(String diagramId, String userId, String tableId, String columnId) {
-        collaboratorRepository.findByDiagramIdAndUserId(diagramId, userId)
-            .ifPresent(collaborator -> {
-                if (tableId != null) {
-                    DiagramTable table = tableRepository.findById(tableId).orElse(null);
-                    collaborator.setSelectedTable(table);
-                } else {
-                    collaborator.setSelectedTable(null);
-                }
-                collaborator.setLastActivity(Instant.now());
-                collaboratorRepository.save(collaborator);
-            });
+        presenceRegistry.get(diagramId, userId)
+            .ifPresent(presence -> presence.updateSelection(tableId, columnId));
     }
     
     @Transactional(readOnly = true)
     public List<CollaboratorResponse> getActiveCollaborators(String diagramId) {
         List<ActiveCollaborator> collaborators = collaboratorRepository.findByDiagramIdAndIsActiveTrue(diagramId);
-        return collaboratorMapper.toResponseList(collaborators);
+        
+        // Overlay live state for collaborators connected to this node
+        return collaborators.stream()
+            .map(collaborator -> presenceRegistry.get(diagramId, collaborator.getUser().getId())
+                .map(collaboratorMapper::toResponse)
+                .orElseGet(() -> collaboratorMapper.toResponse(collaborator)))
+            .toList();
     }
     
     @Transactional(readOnly = true)
     public String getUserCursorColor(String diagramId, String userId) {
-        return collaboratorRepository.findByDiagramIdAndUserId(diagramId, userId)
-            .map(ActiveCollaborator::getCursorColor)
+        return presenceRegistry.get(diagramId, userId)
+            .map(PresenceRegistry.Presence::getCursorColor)
+            .or(() -> collaboratorRepository.findByDiagramIdAndUserId(diagramId, userId)
+                .map(ActiveCollaborator::getCursorColor))
             .orElse("#6366f1"); // default indigo
     }
     
-    @Transactional
     public void markIdle(String diagramId, String userId, boolean idle) {
-        collaboratorRepository.findByDiagramIdAndUserId(diagramId, userId)
-            .ifPresent(collaborator -> {
-                collaboratorRepository.updateIdleStatus(
-                    collaborator.getId(), 
-                    idle, 
-                    idle ? "IDLE" : "ACTIVE"
-                );
+        presenceRegistry.get(diagramId, userId)
+            .ifPresent(presence -> {
+                presence.setIdle(idle);
                 
                 // Broadcast idle status change
-                CollaboratorResponse response = collaboratorMapper.toResponse(collaborator);
-                response.setIsIdle(idle);
-                response.setStatus(idle ? "IDLE" : "ACTIVE");
-                broadcastPresence(diagramId, "UPDATE", response);
+                broadcastPresence(diagramId, "UPDATE", collaboratorMapper.toResponse(presence), presence.isAudience());
             });
     }
     
@@ -188,117 +218,206 @@ public class CollaborationService {
     // TABLE LOCKING MECHANISM
     // ═══════════════════════════════════════════════════════════════
     
-    @Transactional
-    public boolean lockTable(String diagramId, String tableId, String userId) {
-        // Check if already locked by another user
-        Optional<TableLock> existingLock = lockRepository.findByTableId(tableId);
-        
-        if (existingLock.isPresent()) {
-            TableLock lock = existingLock.get();
-            
-            // If locked by same user, extend the lock
-            if (lock.getUser().getId().equals(userId)) {
-                lock.setExpiresAt(Instant.now().plusSeconds(LOCK_TIMEOUT_SECONDS));
-                lockRepository.save(lock);
-                return true;
-            }
-            
-            // If lock has expired, release it
-            if (lock.getExpiresAt().isBefore(Instant.now())) {
-                lockRepository.delete(lock);
-            } else {
-                // Lock is held by another user and not expired
-                log.info("Table {} is locked by user {}", tableId, lock.getUser().getId());
-                return false;
-            }
+    // Served from the in-memory lock manager; table_locks is only a recovery log
+    public TableLockManager.Lease lock(String diagramId, TableLockManager.Target target, String userId, String userName) {
+        TableLockManager.Lease lease = tableLockManager.acquire(diagramId, target, userId, userName);
+        if (lease == null) {
+            log.info("{} is requested by a queued user", target.key());
+        } else if (lease.isHeldBy(userId)) {
+            log.debug("User {} holds lock on {} (token {})", userId, target.key(), lease.fencingToken());
+        } else {
+            log.info("{} is locked by user {}", target.key(), lease.userId());
         }
-        
-        // Create new lock
-        User user = userRepository.findById(userId)
-            .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
-        DiagramTable table = tableRepository.findById(tableId)
-            .orElseThrow(() -> new ResourceNotFoundException("Table", "id", tableId));
-        
-        TableLock lock = TableLock.builder()
-            .table(table)
-            .user(user)
-            .acquiredAt(Instant.now())
-            .expiresAt(Instant.now().plusSeconds(LOCK_TIMEOUT_SECONDS))
-            .build();
-        
-        lockRepository.save(lock);
-        log.info("User {} acquired lock on table {}", userId, tableId);
-        
-        return true;
+        return lease;
     }
     
-    @Transactional
-    public void unlockTable(String diagramId, String tableId, String userId) {
-        lockRepository.findByTableIdAndLockedByUserId(tableId, userId)
-            .ifPresent(lock -> {
-                lockRepository.delete(lock);
-                log.info("User {} released lock on table {}", userId, tableId);
-            });
+    public TableLockManager.Attempt lockOrWait(String diagramId, TableLockManager.Target target, String userId,
+                                               String userName, String sessionId) {
+        TableLockManager.Attempt attempt = tableLockManager.acquireOrWait(diagramId, target, userId, userName, sessionId);
+        if (attempt.isQueued()) {
+            log.debug("User {} queued for {} at position {}", userId, target.key(), attempt.position());
+        }
+        return attempt;
     }
     
-    @Transactional
-    public void unlockTable(String diagramId, String tableId) {
-        lockRepository.deleteByTableId(tableId);
-        log.info("Released all locks on table {}", tableId);
+    public List<TableLockManager.Lease> lockAll(String diagramId, List<TableLockManager.Target> targets,
+                                                String userId, String userName) {
+        List<TableLockManager.Lease> leases = tableLockManager.acquireAll(diagramId, targets, userId, userName);
+        log.debug("User {} requested {} locks in diagram {}: {}", userId, targets.size(), diagramId,
+            leases.stream().allMatch(lease -> lease != null && lease.isHeldBy(userId)) ? "granted" : "denied");
+        return leases;
+    }
+    
+    public void unlock(String diagramId, TableLockManager.Target target, String userId) {
+        tableLockManager.release(target, userId)
+            .ifPresent(lease -> log.info("User {} released lock on {}", userId, target.key()));
+    }
+    
+    public List<TableLockManager.Lease> unlockAll(String diagramId, List<TableLockManager.Target> targets, String userId) {
+        List<TableLockManager.Lease> released = tableLockManager.releaseAll(targets, userId);
+        log.info("User {} released {} locks in diagram {}", userId, released.size(), diagramId);
+        return released;
     }
     
-    @Transactional(readOnly = true)
     public boolean isTableLocked(String tableId) {
-        return lockRepository.existsByTableIdAndExpiresAtAfter(tableId, Instant.now());
+        return tableLockManager.isLocked(tableId);
     }
     
-    @Transactional(readOnly = true)
-    public Optional<TableLock> getTableLock(String tableId) {
-        return lockRepository.findByTableIdAndExpiresAtAfter(tableId, Instant.now());
+    public Optional<TableLockManager.Lease> getTableLock(String tableId) {
+        return tableLockManager.getLease(tableId);
     }
     
     // ═══════════════════════════════════════════════════════════════
     // SCHEDULED CLEANUP
     // ═══════════════════════════════════════════════════════════════
     
-    @Scheduled(fixedRate = 30000)
+    /**
+     * Persist cursor, selection and idle state that changed since the last checkpoint.
+     * Heartbeats flag a presence again when its row's last_seen is getting old,
+     * which keeps live rows clear of the orphan sweep below.
+     */
+    @Scheduled(fixedRateString = "${collaboration.presence.checkpoint-interval-ms:20000}")
     @Transactional
-    public void cleanupStaleSessions() {
-        Instant staleThreshold = Instant.now().minus(SESSION_TIMEOUT_SECONDS, ChronoUnit.SECONDS);
-        collaboratorRepository.deleteStaleSessions(staleThreshold);
-        
-        // Also cleanup expired locks
-        lockRepository.deleteExpiredLocks(Instant.now());
+    public void checkpointPresence() {
+        int written = 0;
+        for (PresenceRegistry.Presence presence : presenceRegistry.getAll()) {
+            if (!presence.checkpoint()) continue;
+            
+            collaboratorRepository.checkpointPresence(
+                presence.getDiagramId(),
+                presence.getUserId(),
+                presence.getCursorX(),
+                presence.getCursorY(),
+                presence.getSelectedTableId(),
+                presence.getSelectedColumnId(),
+                presence.isIdle(),
+                presence.getStatus(),
+                presence.getLastSeen(),
+                presence.getLastActivity()
+            );
+            written++;
+        }
+        if (written > 0) {
+            log.debug("Checkpointed presence for {} collaborators", written);
+        }
+    }
+    
+    /**
+     * Expire sessions whose heartbeat deadline has passed. Heartbeats only move
+     * lastSeen, so a session that is still alive when its entry fires is simply
+     * scheduled again for its new deadline.
+     */
+    @Scheduled(fixedRateString = "${collaboration.presence.wheel-tick-ms:1000}")
+    @Transactional
+    public void expireSessions() {
+        long now = System.currentTimeMillis();
+        sessionWheel.advance(now, presence -> {
+            long deadline = presence.getLastSeen().toEpochMilli() + sessionTimeoutMillis;
+            if (deadline > now) {
+                sessionWheel.schedule(presence, deadline);
+            } else {
+                endSession(presence, "timed out of");
+            }
+        });
+    }
+    
+    /**
+     * Rows of sessions whose node went away without cleaning up. Live rows are
+     * refreshed well within the TTL by checkpoints, so this indexed range delete
+     * only ever catches orphans.
+     */
+    @Scheduled(fixedRateString = "${collaboration.presence.orphan-sweep-ms:300000}")
+    @Transactional
+    public void deleteOrphanedSessions() {
+        collaboratorRepository.deleteStaleSessions(Instant.now().minusMillis(orphanTtlMillis));
     }
     
     // ═══════════════════════════════════════════════════════════════
     // HELPER METHODS
     // ═══════════════════════════════════════════════════════════════
     
-    private String assignCursorColor(String diagramId) {
-        // Predefined cursor colors for collaborators
-        String[] colors = {
-            "#ef4444", // red
-            "#f97316", // orange
-            "#eab308", // yellow
-            "#22c55e", // green
-            "#06b6d4", // cyan
-            "#3b82f6", // blue
-            "#8b5cf6", // violet
-            "#ec4899", // pink
-            "#6366f1", // indigo
-            "#14b8a6"  // teal
-        };
+    private static PresenceRegistry.Presence newPresence(String collaboratorId, String sessionId, String diagramId,
+                                                         UserPrincipal user, String websocketSessionId,
+                                                         Optional<PresenceRegistry.Presence> previous, Instant now,
+                                                         boolean audience) {
+        PresenceRegistry.Presence presence = new PresenceRegistry.Presence(
+            collaboratorId,
+            diagramId,
+            user.getId(),
+            sessionId,
+            websocketSessionId,
+            user.getDisplayName(),
+            user.getAvatarUrl(),
+            null,
+            previous.map(PresenceRegistry.Presence::getCursorX).orElse(BigDecimal.ZERO),
+            previous.map(PresenceRegistry.Presence::getCursorY).orElse(BigDecimal.ZERO),
+            previous.map(PresenceRegistry.Presence::getConnectedAt).orElse(now)
+        );
+        presence.setAudience(audience);
+        return presence;
+    }
+    
+    // Anyone who cannot edit (commenters, viewers, public visitors) joins the audience tier
+    private boolean isAudience(String diagramId, String userId) {
+        PermissionLevel level = accessCache.getLevel(diagramId, userId);
+        return level != PermissionLevel.OWNER && level != PermissionLevel.EDITOR;
+    }
+    
+    /**
+     * End a session held on this node: drop it from memory, delete its row,
+     * release its locks and broadcast LEAVE. A presence that was replaced by a
+     * re-join is left alone.
+     */
+    private void endSession(PresenceRegistry.Presence presence, String reason) {
+        if (!presenceRegistry.remove(presence)) return;
+        
+        String diagramId = presence.getDiagramId();
+        String userId = presence.getUserId();
+        tableLockManager.releaseAllForUser(diagramId, userId);
+        collaboratorRepository.deleteSession(diagramId, userId, presence.getWebsocketSessionId());
+        log.info("User {} {} diagram {}", userId, reason, diagramId);
         
-        long count = collaboratorRepository.countByDiagramIdAndIsActiveTrue(diagramId);
-        return colors[(int) (count % colors.length)];
+        broadcastPresence(diagramId, "LEAVE", collaboratorMapper.toResponse(presence), presence.isAudience());
+    }
+    
+    /**
+     * Editors are announced individually on /presence. Read-only collaborators
+     * only mark the audience summary for its next tick; joins of either tier
+     * do too, so a new editor also receives the current summary. Inside a
+     * transaction the announcement waits for the commit, so nobody is told
+     * about a join or leave that was rolled back.
+     */
+    private void broadcastPresence(String diagramId, String type, CollaboratorResponse collaborator, boolean audience) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    sendPresence(diagramId, type, collaborator, audience);
+                }
+            });
+        } else {
+            sendPresence(diagramId, type, collaborator, audience);
+        }
     }
     
-    private void broadcastPresence(String diagramId, String type, CollaboratorResponse collaborator) {
+    private void sendPresence(String diagramId, String type, CollaboratorResponse collaborator, boolean audience) {
+        if (audience || "JOIN".equals(type)) {
+            audienceAggregator.markChanged(diagramId);
+        }
+        if (audience) return;
+        
         PresenceMessage message = PresenceMessage.builder()
             .type(type)
             .diagramId(diagramId)
+            .action(switch (type) {
+                case "JOIN" -> "joined";
+                case "LEAVE" -> "left";
+                default -> null;
+            })
             .collaborator(collaborator)
+            .userId(collaborator.getUserId())
+            .userDisplayName(collaborator.getUserDisplayName())
+            .userAvatarUrl(collaborator.getUserAvatarUrl())
             .timestamp(Instant.now())
             .build();
         
@@ -10,6 +10,7 @@ import com.chartdb.mapper.ColumnMapper;
 import com.chartdb.model.Diagram;
 import com.chartdb.model.DiagramTable;
 import com.chartdb.model.TableColumn;
+import com.chartdb.model.enums.ChangeEntityType;
 import com.chartdb.repository.ColumnRepository;
 import com.chartdb.repository.RelationshipRepository;
 import com.chartdb.repository.TableRepository;
@@ -18,6 +19,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.List;
 
 @Slf4j
@@ -29,10 +31,13 @@ public class ColumnService {
     private final TableRepository tableRepository;
     private final RelationshipRepository relationshipRepository;
     private final DiagramService diagramService;
+    private final DiagramRevisionService revisionService;
     private final ColumnMapper columnMapper;
+    private final TableLockManager tableLockManager;
+    private final DiagramStructureIndex structureIndex;
     
     @Transactional
-    public ColumnResponse createColumn(String tableId, String userId, CreateColumnRequest request) {
+    public ColumnResponse createColumn(String tableId, String userId, Long lockToken, CreateColumnRequest request) {
         DiagramTable table = tableRepository.findById(tableId)
             .orElseThrow(() -> new ResourceNotFoundException("Table", "id", tableId));
         
@@ -40,6 +45,8 @@ public class ColumnService {
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new AccessDeniedException("You don't have permission to edit this table");
         }
+        tableLockManager.checkWrite(diagram.getId(), TableLockManager.Target.table(tableId), userId, lockToken);
+        revisionService.markChanged(diagram.getId());
         
         if (columnRepository.existsByTableIdAndName(tableId, request.getName())) {
             throw new BadRequestException("Column with name '" + request.getName() + "' already exists");
@@ -67,6 +74,7 @@ public class ColumnService {
         }
         
         column = columnRepository.save(column);
+        structureIndex.columnsCreatedOnCommit(diagram.getId(), tableId, List.of(column.getId()));
         log.info("Column created: {} in table {} by user {}", column.getId(), tableId, userId);
         
         return columnMapper.toResponse(column);
@@ -87,7 +95,7 @@ public class ColumnService {
     }
     
     @Transactional
-    public ColumnResponse updateColumn(String columnId, String userId, UpdateColumnRequest request) {
+    public ColumnResponse updateColumn(String columnId, String userId, Long lockToken, UpdateColumnRequest request) {
         TableColumn column = findColumnById(columnId);
         DiagramTable table = column.getTable();
         Diagram diagram = table.getDiagram();
@@ -95,6 +103,8 @@ public class ColumnService {
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new AccessDeniedException("You don't have permission to edit this column");
         }
+        tableLockManager.checkWrite(diagram.getId(), TableLockManager.Target.column(table.getId(), columnId), userId, lockToken);
+        revisionService.markChanged(diagram.getId());
         
         if (request.getName() != null && !request.getName().equals(column.getName())) {
             if (columnRepository.existsByTableIdAndNameAndIdNot(table.getId(), request.getName(), columnId)) {
@@ -136,7 +146,7 @@ public class ColumnService {
     }
     
     @Transactional
-    public void deleteColumn(String columnId, String userId) {
+    public void deleteColumn(String columnId, String userId, Long lockToken) {
         TableColumn column = findColumnById(columnId);
         DiagramTable table = column.getTable();
         Diagram diagram = table.getDiagram();
@@ -144,23 +154,30 @@ public class ColumnService {
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new AccessDeniedException("You don't have permission to delete this column");
         }
+        tableLockManager.checkWrite(diagram.getId(), TableLockManager.Target.column(table.getId(), columnId), userId, lockToken);
+        revisionService.markChanged(diagram.getId());
         
         int orderIndex = column.getOrderIndex();
         
         // Delete relationships involving this column
+        revisionService.markDeleted(diagram.getId(), ChangeEntityType.RELATIONSHIP,
+            relationshipRepository.findIdsByColumnId(columnId));
         relationshipRepository.deleteByColumnId(columnId);
         
         // Delete the column
+        revisionService.markDeleted(diagram.getId(), ChangeEntityType.COLUMN, List.of(columnId));
         columnRepository.delete(column);
         
         // Shift order indices
-        columnRepository.shiftOrderIndicesDown(table.getId(), orderIndex);
+        columnRepository.shiftOrderIndicesDown(table.getId(), orderIndex, Instant.now());
         
+        tableLockManager.releaseColumnOnCommit(diagram.getId(), table.getId(), columnId);
+        structureIndex.columnsDeletedOnCommit(diagram.getId(), table.getId(), List.of(columnId));
         log.info("Column deleted: {} from table {} by user {}", columnId, table.getId(), userId);
     }
     
     @Transactional
-    public void reorderColumns(String tableId, String userId, List<String> columnIds) {
+    public void reorderColumns(String tableId, String userId, Long lockToken, List<String> columnIds) {
         DiagramTable table = tableRepository.findById(tableId)
             .orElseThrow(() -> new ResourceNotFoundException("Table", "id", tableId));
         
@@ -168,9 +185,12 @@ public class ColumnService {
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new AccessDeniedException("You don't have permission to edit this table");
         }
+        tableLockManager.checkWrite(diagram.getId(), TableLockManager.Target.table(tableId), userId, lockToken);
+        revisionService.markChanged(diagram.getId());
         
+        Instant now = Instant.now();
         for (int i = 0; i < columnIds.size(); i++) {
-            columnRepository.updateOrderIndex(columnIds.get(i), i);
+            columnRepository.updateOrderIndex(columnIds.get(i), i, now);
         }
     }
     
@@ -6,6 +6,7 @@ import com.chartdb.exception.ResourceNotFoundException;
 import com.chartdb.mapper.CustomTypeMapper;
 import com.chartdb.model.Diagram;
 import com.chartdb.model.DiagramCustomType;
+import com.chartdb.model.enums.ChangeEntityType;
 import com.chartdb.repository.CustomTypeRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -22,6 +23,7 @@ public class CustomTypeService {
     private final CustomTypeRepository customTypeRepository;
     private final CustomTypeMapper customTypeMapper;
     private final DiagramService diagramService;
+    private final DiagramRevisionService revisionService;
 
     @Transactional(readOnly = true)
     public List<CustomTypeResponse> getCustomTypes(String diagramId, String userId) {
@@ -42,6 +44,7 @@ public class CustomTypeService {
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new com.chartdb.exception.AccessDeniedException("You don't have permission to edit this diagram");
         }
+        revisionService.markChanged(diagram.getId());
 
         DiagramCustomType customType = customTypeMapper.toEntity(request);
         customType.setDiagram(diagram);
@@ -63,6 +66,7 @@ public class CustomTypeService {
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new com.chartdb.exception.AccessDeniedException("You don't have permission to edit this diagram");
         }
+        revisionService.markChanged(diagram.getId());
 
         DiagramCustomType customType = customTypeRepository.findById(customTypeId)
             .orElseThrow(() -> new ResourceNotFoundException("CustomType", "id", customTypeId));
@@ -81,12 +85,14 @@ public class CustomTypeService {
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new com.chartdb.exception.AccessDeniedException("You don't have permission to edit this diagram");
         }
+        revisionService.markChanged(diagram.getId());
 
         if (!customTypeRepository.existsById(customTypeId)) {
             throw new ResourceNotFoundException("CustomType", "id", customTypeId);
         }
 
         customTypeRepository.deleteById(customTypeId);
+        revisionService.markDeleted(diagram.getId(), ChangeEntityType.CUSTOM_TYPE, List.of(customTypeId));
         log.info("Custom type deleted: {} from diagram {} by user {}", customTypeId, diagramId, userId);
     }
 }
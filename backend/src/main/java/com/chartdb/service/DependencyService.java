@@ -6,6 +6,7 @@ import com.chartdb.exception.ResourceNotFoundException;
 import com.chartdb.mapper.DependencyMapper;
 import com.chartdb.model.Diagram;
 import com.chartdb.model.DiagramDependency;
+import com.chartdb.model.enums.ChangeEntityType;
 import com.chartdb.repository.DependencyRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -22,6 +23,7 @@ public class DependencyService {
     private final DependencyRepository dependencyRepository;
     private final DependencyMapper dependencyMapper;
     private final DiagramService diagramService;
+    private final DiagramRevisionService revisionService;
 
     @Transactional(readOnly = true)
     public List<DependencyResponse> getDependencies(String diagramId, String userId) {
@@ -42,6 +44,7 @@ public class DependencyService {
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new com.chartdb.exception.AccessDeniedException("You don't have permission to edit this diagram");
         }
+        revisionService.markChanged(diagram.getId());
 
         DiagramDependency dependency = dependencyMapper.toEntity(request);
         dependency.setDiagram(diagram);
@@ -63,6 +66,7 @@ public class DependencyService {
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new com.chartdb.exception.AccessDeniedException("You don't have permission to edit this diagram");
         }
+        revisionService.markChanged(diagram.getId());
 
         DiagramDependency dependency = dependencyRepository.findById(dependencyId)
             .orElseThrow(() -> new ResourceNotFoundException("Dependency", "id", dependencyId));
@@ -81,12 +85,14 @@ public class DependencyService {
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new com.chartdb.exception.AccessDeniedException("You don't have permission to edit this diagram");
         }
+        revisionService.markChanged(diagram.getId());
 
         if (!dependencyRepository.existsById(dependencyId)) {
             throw new ResourceNotFoundException("Dependency", "id", dependencyId);
         }
 
         dependencyRepository.deleteById(dependencyId);
+        revisionService.markDeleted(diagram.getId(), ChangeEntityType.DEPENDENCY, List.of(dependencyId));
         log.info("Dependency deleted: {} from diagram {} by user {}", dependencyId, diagramId, userId);
     }
 }
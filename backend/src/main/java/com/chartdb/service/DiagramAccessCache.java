@@ -0,0 +1,134 @@
+package com.chartdb.service;
+
+import com.chartdb.model.DiagramPermission;
+import com.chartdb.model.enums.DiagramStatus;
+import com.chartdb.model.enums.PermissionLevel;
+import com.chartdb.repository.DiagramPermissionRepository;
+import com.chartdb.repository.DiagramRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short-lived cache of each user's effective permission level per diagram,
+ * used to authorize STOMP frames without a query per frame.
+ *
+ * The level follows {@link DiagramService#canUserView} and
+ * {@link DiagramService#canUserEdit}: the owner is OWNER, public diagrams are at
+ * least VIEWER, otherwise the user's DiagramPermission decides. Entries expire
+ * after a short TTL and are evicted when permissions or visibility change.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DiagramAccessCache {
+
+    // Key for anonymous sessions, which can only see public diagrams
+    private static final String ANONYMOUS = "";
+
+    private final DiagramRepository diagramRepository;
+    private final DiagramPermissionRepository permissionRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${collaboration.acl.ttl-ms:30000}")
+    private long ttlMillis;
+
+    // diagramId -> userId -> cached level
+    private final Map<String, Map<String, Entry>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @return the user's level on the diagram, or {@code null} without access
+     */
+    public PermissionLevel getLevel(String diagramId, String userId) {
+        String key = userId != null ? userId : ANONYMOUS;
+        long now = System.currentTimeMillis();
+
+        Map<String, Entry> users = entries.get(diagramId);
+        Entry entry = users != null ? users.get(key) : null;
+        if (entry != null && entry.expiresAt() > now) {
+            return entry.level();
+        }
+
+        PermissionLevel level = load(diagramId, userId);
+        entries.computeIfAbsent(diagramId, id -> new ConcurrentHashMap<>())
+            .put(key, new Entry(level, now + ttlMillis));
+        return level;
+    }
+
+    public boolean canView(String diagramId, String userId) {
+        return getLevel(diagramId, userId) != null;
+    }
+
+    public boolean canEdit(String diagramId, String userId) {
+        PermissionLevel level = getLevel(diagramId, userId);
+        return level != null && level.ordinal() <= PermissionLevel.EDITOR.ordinal();
+    }
+
+    /**
+     * Evict one user's entry, or the whole diagram when {@code userId} is null.
+     * Evicts again after the surrounding transaction commits, so a lookup that
+     * raced with the change cannot keep the old level until the TTL.
+     */
+    public void invalidate(String diagramId, String userId) {
+        evict(diagramId, userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(diagramId, userId);
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        entries.forEach((diagramId, users) -> {
+            users.values().removeIf(entry -> entry.expiresAt() <= now);
+            if (users.isEmpty()) {
+                entries.remove(diagramId, users);
+            }
+        });
+    }
+
+    private void evict(String diagramId, String userId) {
+        if (userId == null) {
+            entries.remove(diagramId);
+            return;
+        }
+        Map<String, Entry> users = entries.get(diagramId);
+        if (users != null) {
+            users.remove(userId);
+        }
+    }
+
+    private PermissionLevel load(String diagramId, String userId) {
+        return transactionTemplate.execute(status -> diagramRepository.findById(diagramId)
+            .filter(diagram -> diagram.getStatus() != DiagramStatus.ARCHIVED)
+            .map(diagram -> {
+                if (userId != null && diagram.getOwner().getId().equals(userId)) {
+                    return PermissionLevel.OWNER;
+                }
+                PermissionLevel level = userId == null ? null : permissionRepository
+                    .findByDiagramIdAndUserId(diagramId, userId)
+                    .map(DiagramPermission::getPermissionLevel)
+                    .orElse(null);
+                if (level == null && Boolean.TRUE.equals(diagram.getIsPublic())) {
+                    return PermissionLevel.VIEWER;
+                }
+                return level;
+            })
+            .orElse(null));
+    }
+
+    private record Entry(PermissionLevel level, long expiresAt) {}
+}
@@ -0,0 +1,158 @@
+package com.chartdb.service;
+
+import com.chartdb.dto.response.AreaResponse;
+import com.chartdb.dto.response.ColumnResponse;
+import com.chartdb.dto.response.CustomTypeResponse;
+import com.chartdb.dto.response.DependencyResponse;
+import com.chartdb.dto.response.DiagramChangesResponse;
+import com.chartdb.dto.response.NoteResponse;
+import com.chartdb.dto.response.RelationshipResponse;
+import com.chartdb.dto.response.TableResponse;
+import com.chartdb.dto.response.TombstoneResponse;
+import com.chartdb.exception.AccessDeniedException;
+import com.chartdb.mapper.AreaMapper;
+import com.chartdb.mapper.CustomTypeMapper;
+import com.chartdb.mapper.DependencyMapper;
+import com.chartdb.mapper.NoteMapper;
+import com.chartdb.model.Diagram;
+import com.chartdb.model.DiagramRevisionStamp;
+import com.chartdb.model.DiagramTombstone;
+import com.chartdb.model.enums.ChangeEntityType;
+import com.chartdb.repository.AreaRepository;
+import com.chartdb.repository.CustomTypeRepository;
+import com.chartdb.repository.DependencyRepository;
+import com.chartdb.repository.DiagramContentRepository;
+import com.chartdb.repository.DiagramRevisionStampRepository;
+import com.chartdb.repository.DiagramTombstoneRepository;
+import com.chartdb.repository.NoteRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Incremental resync: the content written and deleted since a revision.
+ *
+ * A revision is turned into the time it was reached, and every row whose
+ * updated_at is later than that time, less {@code clock-margin-ms}, is
+ * returned. The margin covers writes of concurrent transactions that were
+ * stamped before that time but committed after it, and clocks of other
+ * nodes; rows it picks up twice are harmless upserts. The diagram's own
+ * fields are returned the same way, when its row changed in that window.
+ */
+@Service
+@RequiredArgsConstructor
+public class DiagramChangeService {
+
+    private final DiagramService diagramService;
+    private final DiagramContentRepository contentRepository;
+    private final DiagramRevisionStampRepository stampRepository;
+    private final DiagramTombstoneRepository tombstoneRepository;
+    private final AreaRepository areaRepository;
+    private final NoteRepository noteRepository;
+    private final CustomTypeRepository customTypeRepository;
+    private final DependencyRepository dependencyRepository;
+    private final AreaMapper areaMapper;
+    private final NoteMapper noteMapper;
+    private final CustomTypeMapper customTypeMapper;
+    private final DependencyMapper dependencyMapper;
+
+    @Value("${collaboration.changes.clock-margin-ms:5000}")
+    private long clockMarginMillis;
+
+    @Transactional(readOnly = true)
+    public DiagramChangesResponse getChangesSince(String diagramId, String userId, long since) {
+        // Read before the content, so the revision never claims rows that were not returned
+        Diagram diagram = diagramService.findDiagramById(diagramId);
+
+        if (!diagramService.canUserView(diagram, userId)) {
+            throw new AccessDeniedException("You don't have permission to view this diagram");
+        }
+
+        long revision = diagram.getRevision();
+        DiagramChangesResponse.DiagramChangesResponseBuilder response = DiagramChangesResponse.builder()
+            .since(since)
+            .revision(revision)
+            .fullReloadRequired(false);
+        if (since == revision) {
+            return response
+                .tables(List.of()).columns(List.of()).relationships(List.of())
+                .areas(List.of()).notes(List.of()).customTypes(List.of()).dependencies(List.of())
+                .deleted(List.of())
+                .build();
+        }
+
+        Optional<DiagramRevisionStamp> stamp = since < revision
+            ? stampRepository.findByDiagramIdAndRevision(diagramId, since)
+            : Optional.empty();
+        if (stamp.isEmpty()) {
+            // Purged, never stamped, or ahead of the diagram
+            return response.fullReloadRequired(true).build();
+        }
+
+        Instant after = stamp.get().getChangedAt().minusMillis(clockMarginMillis);
+        if (diagram.getUpdatedAt() != null && diagram.getUpdatedAt().isAfter(after)) {
+            response.diagram(contentRepository.findDiagram(diagramId).orElse(null));
+        }
+        response
+            .tables(contentRepository.findTablesChangedSince(diagramId, after))
+            .columns(contentRepository.findColumnsChangedSince(diagramId, after))
+            .relationships(contentRepository.findRelationshipsChangedSince(diagramId, after))
+            .areas(areaMapper.toResponseList(areaRepository.findByDiagramIdAndUpdatedAtAfter(diagramId, after)))
+            .notes(noteMapper.toResponseList(noteRepository.findByDiagramIdAndUpdatedAtAfter(diagramId, after)))
+            .customTypes(customTypeMapper.toResponseList(
+                customTypeRepository.findByDiagramIdAndUpdatedAtAfter(diagramId, after)))
+            .dependencies(dependencyMapper.toResponseList(
+                dependencyRepository.findByDiagramIdAndUpdatedAtAfter(diagramId, after)));
+        DiagramChangesResponse changes = response.build();
+        changes.setDeleted(tombstones(changes,
+            tombstoneRepository.findByDiagramIdAndDeletedAtAfterOrderByDeletedAt(diagramId, after)));
+        return changes;
+    }
+
+    /**
+     * The latest tombstone per id, leaving out ids that exist again: content
+     * deleted and then recreated (undo) is returned as an upsert.
+     */
+    private static List<TombstoneResponse> tombstones(DiagramChangesResponse changes, List<DiagramTombstone> found) {
+        Map<ChangeEntityType, Set<String>> live = new EnumMap<>(ChangeEntityType.class);
+        live.put(ChangeEntityType.TABLE, ids(changes.getTables(), TableResponse::getId));
+        live.put(ChangeEntityType.COLUMN, ids(changes.getColumns(), ColumnResponse::getId));
+        live.put(ChangeEntityType.RELATIONSHIP, ids(changes.getRelationships(), RelationshipResponse::getId));
+        live.put(ChangeEntityType.AREA, ids(changes.getAreas(), AreaResponse::getId));
+        live.put(ChangeEntityType.NOTE, ids(changes.getNotes(), NoteResponse::getId));
+        live.put(ChangeEntityType.CUSTOM_TYPE, ids(changes.getCustomTypes(), CustomTypeResponse::getId));
+        live.put(ChangeEntityType.DEPENDENCY, ids(changes.getDependencies(), DependencyResponse::getId));
+
+        Map<String, TombstoneResponse> latest = new LinkedHashMap<>();
+        for (DiagramTombstone tombstone : found) {
+            if (live.get(tombstone.getEntityType()).contains(tombstone.getEntityId())) continue;
+            // Ordered by deletion time; a later one replaces an earlier one
+            latest.put(tombstone.getEntityType() + ":" + tombstone.getEntityId(), TombstoneResponse.builder()
+                .type(tombstone.getEntityType())
+                .id(tombstone.getEntityId())
+                .deletedAt(tombstone.getDeletedAt())
+                .build());
+        }
+        return new ArrayList<>(latest.values());
+    }
+
+    private static <T> Set<String> ids(List<T> items, Function<T, String> id) {
+        Set<String> ids = new HashSet<>();
+        for (T item : items) {
+            ids.add(id.apply(item));
+        }
+        return ids;
+    }
+}
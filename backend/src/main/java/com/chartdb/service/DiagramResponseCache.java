@@ -0,0 +1,226 @@
+package com.chartdb.service;
+
+import com.chartdb.dto.response.ApiResponse;
+import com.chartdb.dto.response.DiagramFullResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+
+/**
+ * Serialized /diagrams/{id}/full bodies, keyed by diagram and revision.
+ *
+ * A diagram is serialized once per revision with a placeholder permission
+ * level and kept as the bytes on either side of it; every request then copies
+ * both halves around its own level into a freshly serialized ApiResponse
+ * envelope. Entries are dropped when the diagram is written and evicted least
+ * recently used first once their total size passes {@code max-bytes}; a body
+ * larger than {@code max-entry-bytes} is served but not kept.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DiagramResponseCache {
+
+    private static final String LEVEL_PLACEHOLDER = "{{permissionLevel}}";
+    private static final String DATA_PLACEHOLDER = "{{data}}";
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${collaboration.response-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${collaboration.response-cache.max-entry-bytes:8388608}")
+    private long maxEntryBytes;
+
+    // Access-ordered for LRU eviction; guarded by this
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private Counter hits;
+    private Counter misses;
+
+    @PostConstruct
+    public void registerMetrics() {
+        hits = Counter.builder("chartdb.diagram.response.cache")
+            .description("Full diagram requests by cache outcome")
+            .tag("result", "hit")
+            .register(meterRegistry);
+        misses = Counter.builder("chartdb.diagram.response.cache")
+            .description("Full diagram requests by cache outcome")
+            .tag("result", "miss")
+            .register(meterRegistry);
+        Gauge.builder("chartdb.diagram.response.cache.bytes", this, DiagramResponseCache::totalBytes)
+            .description("Serialized bytes held by the full diagram cache")
+            .register(meterRegistry);
+        Gauge.builder("chartdb.diagram.response.cache.entries", this, DiagramResponseCache::size)
+            .description("Diagrams held by the full diagram cache")
+            .register(meterRegistry);
+    }
+
+    /**
+     * @return the complete ApiResponse body for the revision with the given
+     *         permission level, if that revision is cached
+     */
+    public Optional<byte[]> get(String diagramId, long revision, String permissionLevel) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(diagramId);
+        }
+        if (entry == null || entry.revision() != revision) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(render(entry, permissionLevel));
+    }
+
+    /**
+     * Serialize and keep the response, unless a newer revision is already kept.
+     *
+     * @return the complete ApiResponse body for the response's own permission level
+     */
+    public byte[] put(DiagramFullResponse response) {
+        String permissionLevel = response.getPermissionLevel();
+        byte[] json;
+        response.setPermissionLevel(LEVEL_PLACEHOLDER);
+        try {
+            json = objectMapper.writeValueAsBytes(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize diagram " + response.getId(), e);
+        } finally {
+            response.setPermissionLevel(permissionLevel);
+        }
+
+        // The level is serialized after the content, so the last match is the placeholder
+        byte[] marker = quoted(LEVEL_PLACEHOLDER);
+        int at = lastIndexOf(json, marker);
+        byte[] before = new byte[at];
+        byte[] after = new byte[json.length - at - marker.length];
+        System.arraycopy(json, 0, before, 0, before.length);
+        System.arraycopy(json, at + marker.length, after, 0, after.length);
+        Entry entry = new Entry(response.getRevision(), before, after);
+
+        if (entry.size() <= maxEntryBytes) {
+            store(response.getId(), entry);
+        } else {
+            log.debug("Not caching diagram {}: {} bytes", response.getId(), entry.size());
+        }
+        return render(entry, permissionLevel);
+    }
+
+    /**
+     * Drop the diagram's body now and again after the surrounding transaction
+     * commits, so a load that read the old rows is not kept.
+     */
+    public void invalidate(String diagramId) {
+        remove(diagramId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remove(diagramId);
+                }
+            });
+        }
+    }
+
+    private synchronized void store(String diagramId, Entry entry) {
+        Entry current = entries.get(diagramId);
+        if (current != null) {
+            if (current.revision() > entry.revision()) return;
+            totalBytes -= current.size();
+        }
+        entries.put(diagramId, entry);
+        totalBytes += entry.size();
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            totalBytes -= eldest.next().size();
+            eldest.remove();
+        }
+    }
+
+    private synchronized void remove(String diagramId) {
+        Entry removed = entries.remove(diagramId);
+        if (removed != null) {
+            totalBytes -= removed.size();
+        }
+    }
+
+    private synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    private synchronized int size() {
+        return entries.size();
+    }
+
+    private byte[] render(Entry entry, String permissionLevel) {
+        byte[] envelope;
+        try {
+            // Serialized per request for its timestamp; a few dozen bytes
+            envelope = objectMapper.writeValueAsBytes(ApiResponse.success(DATA_PLACEHOLDER));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize response envelope", e);
+        }
+        byte[] dataMarker = quoted(DATA_PLACEHOLDER);
+        int at = lastIndexOf(envelope, dataMarker);
+        byte[] level = quoted(permissionLevel);
+
+        byte[] body = new byte[envelope.length - dataMarker.length
+            + entry.before().length + level.length + entry.after().length];
+        int offset = 0;
+        System.arraycopy(envelope, 0, body, offset, at);
+        offset += at;
+        System.arraycopy(entry.before(), 0, body, offset, entry.before().length);
+        offset += entry.before().length;
+        System.arraycopy(level, 0, body, offset, level.length);
+        offset += level.length;
+        System.arraycopy(entry.after(), 0, body, offset, entry.after().length);
+        offset += entry.after().length;
+        System.arraycopy(envelope, at + dataMarker.length, body, offset, envelope.length - at - dataMarker.length);
+        return body;
+    }
+
+    // Permission levels and placeholders are plain enum-like ASCII; no escaping needed
+    private static byte[] quoted(String value) {
+        return ("\"" + value + "\"").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int lastIndexOf(byte[] bytes, byte[] target) {
+        outer:
+        for (int i = bytes.length - target.length; i >= 0; i--) {
+            for (int j = 0; j < target.length; j++) {
+                if (bytes[i + j] != target[j]) continue outer;
+            }
+            return i;
+        }
+        throw new IllegalStateException("Placeholder missing from serialized response");
+    }
+
+    /**
+     * @param before the serialized response up to the permission level value
+     * @param after  the serialized response after it
+     */
+    private record Entry(long revision, byte[] before, byte[] after) {
+
+        long size() {
+            return before.length + after.length;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.chartdb.service;
+
+import com.chartdb.model.DiagramTombstone;
+import com.chartdb.model.enums.ChangeEntityType;
+import com.chartdb.repository.DiagramRepository;
+import com.chartdb.repository.DiagramRevisionStampRepository;
+import com.chartdb.repository.DiagramTombstoneRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * Keeps each diagram's revision: a counter bumped in the same transaction as
+ * every write to the diagram or its content, so a reader that sees the rows
+ * of a revision sees exactly that revision. Derived state of the diagram is
+ * dropped at the same time.
+ *
+ * For the change feed, the time each revision was reached and the ids of
+ * deleted content are recorded as well, and purged after {@code retention-ms}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DiagramRevisionService {
+
+    private final DiagramRepository diagramRepository;
+    private final DiagramRevisionStampRepository stampRepository;
+    private final DiagramTombstoneRepository tombstoneRepository;
+    private final DiagramSnapshotCache snapshotCache;
+    private final DiagramResponseCache responseCache;
+
+    @Value("${collaboration.changes.retention-ms:604800000}")
+    private long retentionMillis;
+
+    /**
+     * Record a write to the diagram. Call it from the writing transaction,
+     * before or after the write itself.
+     */
+    @Transactional
+    public void markChanged(String diagramId) {
+        diagramRepository.incrementRevision(diagramId);
+        stampRepository.stampCurrentRevision(diagramId, Instant.now());
+        snapshotCache.invalidate(diagramId);
+        responseCache.invalidate(diagramId);
+    }
+
+    /**
+     * Record deleted content for the change feed. Call it from the deleting
+     * transaction, next to {@link #markChanged}.
+     */
+    @Transactional
+    public void markDeleted(String diagramId, ChangeEntityType type, Collection<String> ids) {
+        if (ids.isEmpty()) return;
+        Instant now = Instant.now();
+        tombstoneRepository.saveAll(ids.stream()
+            .map(id -> DiagramTombstone.builder()
+                .diagramId(diagramId)
+                .entityType(type)
+                .entityId(id)
+                .deletedAt(now)
+                .build())
+            .toList());
+    }
+
+    @Scheduled(fixedRateString = "${collaboration.changes.purge-interval-ms:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        Instant before = Instant.now().minusMillis(retentionMillis);
+        int stamps = stampRepository.deleteOlderThan(before);
+        int tombstones = tombstoneRepository.deleteOlderThan(before);
+        if (stamps > 0 || tombstones > 0) {
+            log.debug("Purged {} revision stamps and {} tombstones", stamps, tombstones);
+        }
+    }
+}
@@ -6,29 +6,29 @@ import com.chartdb.dto.response.*;
 import com.chartdb.exception.AccessDeniedException;
 import com.chartdb.exception.ResourceNotFoundException;
 import com.chartdb.mapper.DiagramMapper;
-import com.chartdb.mapper.RelationshipMapper;
-import com.chartdb.mapper.TableMapper;
 import com.chartdb.model.Diagram;
-import com.chartdb.model.DiagramTable;
-import com.chartdb.model.Relationship;
 import com.chartdb.model.User;
 import com.chartdb.model.enums.DiagramStatus;
 import com.chartdb.model.enums.PermissionLevel;
+import com.chartdb.repository.DiagramContentRepository;
 import com.chartdb.repository.DiagramRepository;
-import com.chartdb.repository.RelationshipRepository;
-import com.chartdb.repository.TableRepository;
 import com.chartdb.repository.UserRepository;
+import com.chartdb.websocket.PublicDiagramBroadcaster;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Service
@@ -36,13 +36,18 @@ import java.util.UUID;
 public class DiagramService {
     
     private final DiagramRepository diagramRepository;
-    private final TableRepository tableRepository;
-    private final RelationshipRepository relationshipRepository;
+    private final DiagramContentRepository contentRepository;
     private final UserRepository userRepository;
     private final DiagramMapper diagramMapper;
-    private final TableMapper tableMapper;
-    private final RelationshipMapper relationshipMapper;
     private final PermissionService permissionService;
+    private final DiagramAccessCache accessCache;
+    private final DiagramRevisionService revisionService;
+    private final PublicDiagramBroadcaster publicDiagramBroadcaster;
+    
+    private static final Duration ACCESS_RECORD_INTERVAL = Duration.ofMinutes(1);
+    
+    // Diagram opens not yet written to last_accessed_at, by diagram id
+    private final Map<String, Instant> pendingAccesses = new ConcurrentHashMap<>();
     
     @Transactional
     public DiagramResponse createDiagram(String userId, CreateDiagramRequest request) {
@@ -99,43 +104,47 @@ public class DiagramService {
      * Get full diagram with all tables, columns, and relationships.
      * This is the main endpoint for loading a diagram in the editor.
      */
-    @Transactional
+    @Transactional(readOnly = true)
     public DiagramFullResponse getFullDiagram(String diagramId, String userId) {
-        Diagram diagram = findDiagramById(diagramId);
+        DiagramRepository.DiagramAccessView diagram = findAccessViewById(diagramId);
+        String permissionLevel = viewPermissionLevel(diagramId, diagram, userId);
         
-        if (!canUserView(diagram, userId)) {
-            throw new AccessDeniedException("You don't have permission to view this diagram");
-        }
-        
-        // Load tables with columns
-        List<DiagramTable> tables = tableRepository.findByDiagramIdWithColumns(diagramId);
-        List<Relationship> relationships = relationshipRepository.findByDiagramId(diagramId);
+        // Header, tables with columns and relationships, read straight into DTOs
+        DiagramFullResponse response = contentRepository.findFullDiagram(diagramId)
+            .orElseThrow(() -> new ResourceNotFoundException("Diagram", "id", diagramId));
         
-        // Get user's permission level
-        PermissionLevel permissionLevel = permissionService.getPermissionLevel(diagramId, userId);
+        recordAccess(diagramId, diagram.getLastAccessedAt());
         
-        // Update last accessed
-        diagramRepository.updateLastAccessed(diagramId, Instant.now());
+        response.setPermissionLevel(permissionLevel);
+        return response;
+    }
+
+    /**
+     * The revision and permission level {@link #getFullDiagram} would return
+     * for this user, read from the diagram row and the user's permission
+     * without loading any content. Counts as an access of the diagram.
+     */
+    @Transactional(readOnly = true)
+    public FullDiagramVersion getFullDiagramVersion(String diagramId, String userId) {
+        DiagramRepository.DiagramAccessView diagram = findAccessViewById(diagramId);
+        String permissionLevel = viewPermissionLevel(diagramId, diagram, userId);
+        recordAccess(diagramId, diagram.getLastAccessedAt());
+        return new FullDiagramVersion(diagram.getRevision(), permissionLevel);
+    }
+    
+    /**
+     * Strong ETag of a full diagram response. The permission level is part of
+     * the body, so it is part of the tag.
+     */
+    public static String fullDiagramETag(Long revision, String permissionLevel) {
+        return "\"r" + revision + "-" + permissionLevel + "\"";
+    }
+    
+    public record FullDiagramVersion(long revision, String permissionLevel) {
         
-        return DiagramFullResponse.builder()
-            .id(diagram.getId())
-            .name(diagram.getName())
-            .description(diagram.getDescription())
-            .databaseType(diagram.getDatabaseType())
-            .isPublic(diagram.getIsPublic())
-            .zoom(diagram.getCanvasZoom())
-            .offsetX(diagram.getCanvasOffsetX())
-            .offsetY(diagram.getCanvasOffsetY())
-            .tableCount(tables.size())
-            .relationshipCount(relationships.size())
-            .ownerId(diagram.getOwner().getId())
-            .ownerDisplayName(diagram.getOwner().getDisplayName())
-            .createdAt(diagram.getCreatedAt())
-            .updatedAt(diagram.getUpdatedAt())
-            .tables(tableMapper.toResponseList(tables))
-            .relationships(relationshipMapper.toResponseList(relationships))
-            .permissionLevel(permissionLevel != null ? permissionLevel.name() : "VIEWER")
-            .build();
+        public String eTag() {
+            return fullDiagramETag(revision, permissionLevel);
+        }
     }
 
     @Transactional(readOnly = true)
@@ -166,6 +175,10 @@ public class DiagramService {
         
         if (request.getIsPublic() != null) {
             diagram.setIsPublic(request.getIsPublic());
+            accessCache.invalidate(diagramId, null);
+            if (!request.getIsPublic()) {
+                publicDiagramBroadcaster.close(diagramId);
+            }
             if (request.getIsPublic() && diagram.getPublicSlug() == null) {
                 diagram.setPublicSlug(generateUniqueSlug());
             }
@@ -176,6 +189,7 @@ public class DiagramService {
         if (request.getCanvasOffsetY() != null) diagram.setCanvasOffsetY(request.getCanvasOffsetY());
         
         diagram = diagramRepository.save(diagram);
+        revisionService.markChanged(diagramId);
         log.info("Diagram updated: {} by user {}", diagramId, userId);
         
         return diagramMapper.toResponse(diagram);
@@ -190,6 +204,9 @@ public class DiagramService {
         }
         
         diagramRepository.archiveDiagram(diagramId, Instant.now());
+        accessCache.invalidate(diagramId, null);
+        revisionService.markChanged(diagramId);
+        publicDiagramBroadcaster.close(diagramId);
         log.info("Diagram archived: {} by user {}", diagramId, userId);
     }
     
@@ -206,6 +223,18 @@ public class DiagramService {
         return diagramMapper.toResponse(diagram);
     }
     
+    /**
+     * Resolve a public slug for the live feed without counting a view.
+     */
+    @Transactional(readOnly = true)
+    public String getPublicDiagramId(String slug) {
+        return diagramRepository.findByPublicSlug(slug)
+            .filter(diagram -> Boolean.TRUE.equals(diagram.getIsPublic()))
+            .filter(diagram -> diagram.getStatus() != DiagramStatus.ARCHIVED)
+            .map(Diagram::getId)
+            .orElseThrow(() -> new ResourceNotFoundException("Diagram", "slug", slug));
+    }
+    
     public Diagram findDiagramById(String diagramId) {
         Diagram diagram = diagramRepository.findById(diagramId)
             .orElseThrow(() -> new ResourceNotFoundException("Diagram", "id", diagramId));
@@ -233,6 +262,46 @@ public class DiagramService {
         return diagram.getOwner().getId().equals(userId);
     }
     
+    /**
+     * Write the opens recorded by the read-only full loads to last_accessed_at.
+     */
+    @Scheduled(fixedRate = 60000)
+    @Transactional
+    public void flushAccesses() {
+        for (String diagramId : List.copyOf(pendingAccesses.keySet())) {
+            Instant accessedAt = pendingAccesses.remove(diagramId);
+            if (accessedAt != null) {
+                diagramRepository.updateLastAccessed(diagramId, accessedAt);
+            }
+        }
+    }
+    
+    private DiagramRepository.DiagramAccessView findAccessViewById(String diagramId) {
+        return diagramRepository.findAccessViewById(diagramId, DiagramStatus.ARCHIVED)
+            .orElseThrow(() -> new ResourceNotFoundException("Diagram", "id", diagramId));
+    }
+    
+    // Same rules as canUserView; a viewer without a permission row (public diagram) is reported as VIEWER
+    private String viewPermissionLevel(String diagramId, DiagramRepository.DiagramAccessView diagram, String userId) {
+        PermissionLevel permissionLevel = permissionService.getPermissionLevel(diagramId, userId);
+        boolean canView = Boolean.TRUE.equals(diagram.getIsPublic())
+            || diagram.getOwnerId().equals(userId)
+            || (permissionLevel != null && permissionLevel.ordinal() <= PermissionLevel.VIEWER.ordinal());
+        if (!canView) {
+            throw new AccessDeniedException("You don't have permission to view this diagram");
+        }
+        return permissionLevel != null ? permissionLevel.name() : "VIEWER";
+    }
+    
+    // Recent-diagram ordering only needs minute precision; skips a write on most opens.
+    // Queued for flushAccesses, so the read-only loads stay read-only
+    private void recordAccess(String diagramId, Instant lastAccessedAt) {
+        Instant now = Instant.now();
+        if (lastAccessedAt == null || lastAccessedAt.isBefore(now.minus(ACCESS_RECORD_INTERVAL))) {
+            pendingAccesses.put(diagramId, now);
+        }
+    }
+    
     private String generateUniqueSlug() {
         String slug;
         do {
@@ -0,0 +1,194 @@
+package com.chartdb.service;
+
+import com.chartdb.dto.response.DiagramFullResponse;
+import com.chartdb.dto.websocket.ResumeResponse;
+import com.chartdb.dto.websocket.SequencedEvent;
+import com.chartdb.mapper.DiagramMapper;
+import com.chartdb.model.enums.DiagramStatus;
+import com.chartdb.repository.DiagramContentRepository;
+import com.chartdb.repository.DiagramRepository;
+import com.chartdb.websocket.DiagramEventLog;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serialized editor state per diagram, handed to late joiners over the
+ * WebSocket instead of a REST full load.
+ *
+ * Events are relayed by clients independently of the transactions that wrote
+ * their changes, so the seq current when the tables are read does not say which
+ * changes the rows contain: a relayed event may still be waiting for its commit.
+ * Each snapshot therefore records the seq of the last event published a replay
+ * margin before its tables were read, and joiners are sent every logged event
+ * after it. Some of those may already be in the snapshot, so joiners must apply
+ * structural events idempotently, by table, column or relationship id.
+ * Concurrent misses share one load. Snapshots are evicted
+ * whenever tables, columns, relationships or the diagram itself are written,
+ * and expire after a TTL well below the event log's idle eviction, so a seq
+ * can never be matched against a log that was dropped and started over.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DiagramSnapshotCache {
+
+    private final DiagramRepository diagramRepository;
+    private final DiagramContentRepository contentRepository;
+    private final DiagramMapper diagramMapper;
+    private final DiagramEventLog eventLog;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${collaboration.snapshot.ttl-ms:300000}")
+    private long ttlMillis;
+
+    @Value("${collaboration.snapshot.replay-margin-ms:5000}")
+    private long replayMarginMillis;
+
+    private final Map<String, CompletableFuture<Optional<Snapshot>>> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * @return the cached snapshot, loading it on a miss; empty if the diagram
+     * does not exist or is archived
+     */
+    public Optional<Snapshot> get(String diagramId) {
+        CompletableFuture<Optional<Snapshot>> future = snapshots.get(diagramId);
+        if (future != null && future.isDone() && isExpired(future.join())) {
+            snapshots.remove(diagramId, future);
+            future = null;
+        }
+        if (future == null) {
+            CompletableFuture<Optional<Snapshot>> loading = new CompletableFuture<>();
+            future = snapshots.putIfAbsent(diagramId, loading);
+            if (future == null) {
+                future = loading;
+                complete(diagramId, loading);
+            }
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * The cached snapshot plus the logged events after its seq. When that gap
+     * is no longer in the event log the snapshot is reloaded.
+     */
+    public Optional<CatchUp> catchUp(String diagramId) {
+        Optional<Snapshot> cached = get(diagramId);
+        if (cached.isEmpty()) return Optional.empty();
+
+        Optional<CatchUp> caughtUp = replay(diagramId, cached.get());
+        if (caughtUp.isPresent()) return caughtUp;
+        return reload(diagramId).map(reloaded -> replay(diagramId, reloaded)
+            .orElseGet(() -> new CatchUp(reloaded, reloaded.seq(), List.of())));
+    }
+
+    /**
+     * Drop the cached snapshot and load a fresh one.
+     */
+    public Optional<Snapshot> reload(String diagramId) {
+        snapshots.remove(diagramId);
+        return get(diagramId);
+    }
+
+    /**
+     * Evict the diagram's snapshot now and again after the surrounding
+     * transaction commits, so a load that read the old rows is not kept.
+     */
+    public void invalidate(String diagramId) {
+        snapshots.remove(diagramId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    snapshots.remove(diagramId);
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void evictExpired() {
+        snapshots.forEach((diagramId, future) -> {
+            if (future.isDone() && (future.isCompletedExceptionally() || isExpired(future.join()))) {
+                snapshots.remove(diagramId, future);
+            }
+        });
+    }
+
+    private Optional<CatchUp> replay(String diagramId, Snapshot snapshot) {
+        if (eventLog.latestSeq(diagramId) == snapshot.seq()) {
+            return Optional.of(new CatchUp(snapshot, snapshot.seq(), List.of()));
+        }
+        ResumeResponse replay = eventLog.resume(diagramId, snapshot.seq());
+        if (replay.isFullReloadRequired()) return Optional.empty();
+        return Optional.of(new CatchUp(snapshot, replay.getLatestSeq(), replay.getEvents()));
+    }
+
+    private void complete(String diagramId, CompletableFuture<Optional<Snapshot>> loading) {
+        try {
+            loading.complete(load(diagramId));
+        } catch (RuntimeException e) {
+            snapshots.remove(diagramId, loading);
+            loading.completeExceptionally(e);
+        }
+    }
+
+    private Optional<Snapshot> load(String diagramId) {
+        // Read before the rows, a margin back: events relayed since then may not have committed yet
+        long loadedAt = System.currentTimeMillis();
+        long seq = eventLog.seqBefore(diagramId, loadedAt - replayMarginMillis);
+
+        DiagramFullResponse state = transactionTemplate.execute(status -> diagramRepository.findById(diagramId)
+            .filter(diagram -> diagram.getStatus() != DiagramStatus.ARCHIVED)
+            .map(diagram -> diagramMapper.toFullResponse(diagram,
+                contentRepository.findTables(diagramId),
+                contentRepository.findRelationships(diagramId)))
+            .orElse(null));
+        if (state == null) {
+            return Optional.empty();
+        }
+
+        try {
+            String json = objectMapper.writeValueAsString(state);
+            log.debug("Loaded snapshot of diagram {} at seq {} ({} chars)", diagramId, seq, json.length());
+            return Optional.of(new Snapshot(seq, json, loadedAt));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize diagram " + diagramId, e);
+        }
+    }
+
+    private boolean isExpired(Optional<Snapshot> snapshot) {
+        return snapshot.map(s -> s.loadedAt() + ttlMillis <= System.currentTimeMillis()).orElse(true);
+    }
+
+    /**
+     * @param seq  the event log seq after which events must be replayed over the state
+     * @param json the serialized {@link DiagramFullResponse}, without a permission level
+     */
+    public record Snapshot(long seq, String json, long loadedAt) {}
+
+    /**
+     * @param seq    the latest seq reflected in the snapshot and events together
+     * @param events logged events after the snapshot's seq, in seq order; some may already be reflected in it
+     */
+    public record CatchUp(Snapshot snapshot, long seq, List<SequencedEvent> events) {}
+}
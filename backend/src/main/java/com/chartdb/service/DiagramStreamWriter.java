@@ -0,0 +1,225 @@
+package com.chartdb.service;
+
+import com.chartdb.dto.response.ApiResponse;
+import com.chartdb.dto.response.DiagramFullResponse;
+import com.chartdb.dto.response.TableResponse;
+import com.chartdb.exception.ResourceNotFoundException;
+import com.chartdb.repository.DiagramContentRepository;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes a /diagrams/{id}/full body straight from the result sets to the
+ * response, one table, column or relationship at a time.
+ *
+ * The JSON has the shape of an ApiResponse of a {@link DiagramFullResponse}
+ * with the same field names; only the field order differs, as the counts are
+ * known only once their arrays have been written. All reads run in one
+ * transaction so tables and relationships come from the same snapshot.
+ *
+ * The rows are read into a spill buffer, which is held in memory up to
+ * {@code spill-memory-bytes} and continues in a temporary file after that.
+ * Only then is the buffer copied to the client, so a slow reader never holds
+ * a pooled connection, a transaction or a server-side cursor open.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DiagramStreamWriter {
+
+    private final DiagramContentRepository contentRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${collaboration.diagram-read.spill-memory-bytes:4194304}")
+    private int spillMemoryBytes;
+
+    // Leaves flushing to the servlet's buffer instead of flushing after every element
+    private ObjectWriter writer;
+
+    @PostConstruct
+    public void createWriter() {
+        writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Stream the diagram's full state for a caller already allowed to view it.
+     */
+    public void write(String diagramId, String permissionLevel, OutputStream out) throws IOException {
+        try (SpillBuffer buffer = new SpillBuffer(spillMemoryBytes)) {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer, JsonEncoding.UTF8)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                transactionTemplate.executeWithoutResult(status -> writeEnvelope(generator, diagramId, permissionLevel));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            // The connection is back in the pool before the client is written to
+            buffer.copyTo(out);
+        }
+    }
+
+    private void writeEnvelope(JsonGenerator generator, String diagramId, String permissionLevel) {
+        DiagramFullResponse diagram = contentRepository.findDiagram(diagramId)
+            .orElseThrow(() -> new ResourceNotFoundException("Diagram", "id", diagramId));
+        diagram.setPermissionLevel(permissionLevel);
+
+        try {
+            generator.writeStartObject();
+            writeFields(generator, ApiResponse.success(null));
+            generator.writeFieldName("data");
+            generator.writeStartObject();
+            writeFields(generator, diagram);
+
+            int[] tableCount = {0};
+            boolean[] inTable = {false};
+            generator.writeArrayFieldStart("tables");
+            contentRepository.forEachTable(diagramId, table -> {
+                try {
+                    if (inTable[0]) {
+                        endTable(generator);
+                    }
+                    startTable(generator, table);
+                    inTable[0] = true;
+                    tableCount[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, column -> {
+                try {
+                    writer.writeValue(generator, column);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (inTable[0]) {
+                endTable(generator);
+            }
+            generator.writeEndArray();
+
+            int[] relationshipCount = {0};
+            generator.writeArrayFieldStart("relationships");
+            contentRepository.forEachRelationship(diagramId, relationship -> {
+                try {
+                    writer.writeValue(generator, relationship);
+                    relationshipCount[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+
+            generator.writeNumberField("tableCount", tableCount[0]);
+            generator.writeNumberField("relationshipCount", relationshipCount[0]);
+            generator.writeEndObject();
+            generator.writeEndObject();
+            log.debug("Streamed diagram {}: {} tables, {} relationships",
+                diagramId, tableCount[0], relationshipCount[0]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The table's own fields, then an open columns array its columns are appended to
+    private void startTable(JsonGenerator generator, TableResponse table) throws IOException {
+        generator.writeStartObject();
+        writeFields(generator, table);
+        generator.writeArrayFieldStart("columns");
+    }
+
+    private void endTable(JsonGenerator generator) throws IOException {
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    /**
+     * Write the value's serialized fields into the object being generated, so
+     * names and null handling follow the DTO's normal serialization.
+     */
+    private void writeFields(JsonGenerator generator, Object value) throws IOException {
+        // A token buffer keeps BigDecimals as they are; a JsonNode would normalize them
+        try (TokenBuffer buffer = new TokenBuffer(objectMapper, false)) {
+            writer.writeValue(buffer, value);
+            try (JsonParser parser = buffer.asParser(objectMapper)) {
+                parser.nextToken();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    generator.copyCurrentEvent(parser);
+                    parser.nextToken();
+                    generator.copyCurrentStructure(parser);
+                }
+            }
+        }
+    }
+
+    /**
+     * Output kept in memory up to a limit and in a temporary file beyond it.
+     * Closing it deletes the file.
+     */
+    private static final class SpillBuffer extends OutputStream {
+
+        private final int memoryLimit;
+        private final ByteArrayOutputStream memory = new ByteArrayOutputStream(8192);
+        private Path file;
+        private OutputStream fileOut;
+
+        SpillBuffer(int memoryLimit) {
+            this.memoryLimit = memoryLimit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (fileOut == null && memory.size() + length > memoryLimit) {
+                file = Files.createTempFile("chartdb-diagram-", ".json");
+                fileOut = new BufferedOutputStream(Files.newOutputStream(file), 65536);
+            }
+            if (fileOut != null) {
+                fileOut.write(bytes, offset, length);
+            } else {
+                memory.write(bytes, offset, length);
+            }
+        }
+
+        void copyTo(OutputStream out) throws IOException {
+            memory.writeTo(out);
+            if (fileOut != null) {
+                fileOut.flush();
+                Files.copy(file, out);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (fileOut != null) {
+                try {
+                    fileOut.close();
+                } finally {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+}
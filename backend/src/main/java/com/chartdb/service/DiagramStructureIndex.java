@@ -0,0 +1,134 @@
+package com.chartdb.service;
+
+import com.chartdb.repository.TableRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * The tables of each diagram and the columns of each table, kept in memory so
+ * lock requests can be checked against them without a query.
+ *
+ * A diagram is read on first use and then kept up to date by the table and
+ * column create and delete paths once their transactions commit. A lookup that
+ * misses reads the diagram again, which picks up a table or column whose
+ * creating transaction committed while the diagram was being read. Diagrams
+ * not looked up for {@code index-idle-ms} are dropped.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DiagramStructureIndex {
+
+    private final TableRepository tableRepository;
+
+    @Value("${collaboration.lock.index-idle-ms:1800000}")
+    private long idleMillis;
+
+    private final Map<String, Structure> diagrams = new ConcurrentHashMap<>();
+
+    /**
+     * Whether the table is part of the diagram and, when {@code columnId} is
+     * not null, the column is part of that table.
+     */
+    public boolean contains(String diagramId, String tableId, String columnId) {
+        Structure structure = diagrams.computeIfAbsent(diagramId, id -> new Structure());
+        synchronized (structure) {
+            structure.lastUsed = System.currentTimeMillis();
+            if (structure.tables != null && structure.contains(tableId, columnId)) return true;
+            // Not read yet, or missing a table or column that committed while it was being read
+            structure.tables = load(diagramId);
+            return structure.contains(tableId, columnId);
+        }
+    }
+
+    /**
+     * Add a table and its columns once the creating transaction commits.
+     */
+    public void tableCreatedOnCommit(String diagramId, String tableId, Collection<String> columnIds) {
+        afterCommit(() -> update(diagramId, tables -> tables.computeIfAbsent(tableId, id -> new HashSet<>())
+            .addAll(columnIds)));
+    }
+
+    public void columnsCreatedOnCommit(String diagramId, String tableId, Collection<String> columnIds) {
+        if (columnIds.isEmpty()) return;
+        afterCommit(() -> update(diagramId, tables -> {
+            Set<String> columns = tables.get(tableId);
+            if (columns != null) columns.addAll(columnIds);
+        }));
+    }
+
+    public void tableDeletedOnCommit(String diagramId, String tableId) {
+        afterCommit(() -> update(diagramId, tables -> tables.remove(tableId)));
+    }
+
+    public void columnsDeletedOnCommit(String diagramId, String tableId, Collection<String> columnIds) {
+        if (columnIds.isEmpty()) return;
+        afterCommit(() -> update(diagramId, tables -> {
+            Set<String> columns = tables.get(tableId);
+            if (columns != null) columns.removeAll(columnIds);
+        }));
+    }
+
+    @Scheduled(fixedRateString = "${collaboration.lock.index-idle-ms:1800000}")
+    public void evictIdle() {
+        long idleSince = System.currentTimeMillis() - idleMillis;
+        diagrams.entrySet().removeIf(entry -> entry.getValue().lastUsed < idleSince);
+    }
+
+    // Diagrams that are not read yet are left alone: reading them later sees the committed change
+    private void update(String diagramId, Consumer<Map<String, Set<String>>> change) {
+        Structure structure = diagrams.get(diagramId);
+        if (structure == null) return;
+        synchronized (structure) {
+            // Waits for a read in progress, so the change is applied on top of it
+            if (structure.tables != null) change.accept(structure.tables);
+        }
+    }
+
+    private Map<String, Set<String>> load(String diagramId) {
+        Map<String, Set<String>> tables = new HashMap<>();
+        for (TableRepository.TableColumnId row : tableRepository.findColumnIdsByDiagramId(diagramId)) {
+            Set<String> columns = tables.computeIfAbsent(row.getTableId(), id -> new HashSet<>());
+            if (row.getColumnId() != null) columns.add(row.getColumnId());
+        }
+        log.debug("Indexed {} tables of diagram {}", tables.size(), diagramId);
+        return tables;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    // tables is null until the diagram has been read, and guarded by the instance
+    private static final class Structure {
+        private Map<String, Set<String>> tables;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        boolean contains(String tableId, String columnId) {
+            Set<String> columns = tables.get(tableId);
+            return columns != null && (columnId == null || columns.contains(columnId));
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.chartdb.exception.ResourceNotFoundException;
 import com.chartdb.mapper.NoteMapper;
 import com.chartdb.model.Diagram;
 import com.chartdb.model.DiagramNote;
+import com.chartdb.model.enums.ChangeEntityType;
 import com.chartdb.repository.NoteRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -22,6 +23,7 @@ public class NoteService {
     private final NoteRepository noteRepository;
     private final NoteMapper noteMapper;
     private final DiagramService diagramService;
+    private final DiagramRevisionService revisionService;
 
     @Transactional(readOnly = true)
     public List<NoteResponse> getNotes(String diagramId, String userId) {
@@ -42,6 +44,7 @@ public class NoteService {
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new com.chartdb.exception.AccessDeniedException("You don't have permission to edit this diagram");
         }
+        revisionService.markChanged(diagram.getId());
 
         DiagramNote note = noteMapper.toEntity(request);
         note.setDiagram(diagram);
@@ -68,6 +71,7 @@ public class NoteService {
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new com.chartdb.exception.AccessDeniedException("You don't have permission to edit this diagram");
         }
+        revisionService.markChanged(diagram.getId());
 
         DiagramNote note = noteRepository.findById(noteId)
             .orElseThrow(() -> new ResourceNotFoundException("Note", "id", noteId));
@@ -86,11 +90,13 @@ public class NoteService {
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new com.chartdb.exception.AccessDeniedException("You don't have permission to edit this diagram");
         }
+        revisionService.markChanged(diagram.getId());
 
         if (!noteRepository.existsById(noteId)) {
             throw new ResourceNotFoundException("Note", "id", noteId);
         }
 
+        revisionService.markDeleted(diagram.getId(), ChangeEntityType.NOTE, List.of(noteId));
         noteRepository.deleteById(noteId);
         log.info("Note deleted: {} from diagram {} by user {}", noteId, diagramId, userId);
     }
@@ -30,6 +30,7 @@ public class PermissionService {
     private final DiagramRepository diagramRepository;
     private final UserRepository userRepository;
     private final PermissionMapper permissionMapper;
+    private final DiagramAccessCache accessCache;
     
     @Transactional
     public void createOwnerPermission(Diagram diagram, User owner) {
@@ -68,6 +69,9 @@ public class PermissionService {
                 .orElse(null);
         }
         
+        // Invited emails have no user yet, so drop the whole diagram's entries
+        accessCache.invalidate(diagramId, targetUser != null ? targetUser.getId() : null);
+        
         if (existingPermission != null) {
             updatePermissionLevel(existingPermission, request.getPermissionLevel());
             return permissionMapper.toResponse(permissionRepository.save(existingPermission));
@@ -120,6 +124,7 @@ public class PermissionService {
         }
         
         permissionRepository.deleteByDiagramIdAndUserId(diagramId, targetUserId);
+        accessCache.invalidate(diagramId, targetUserId);
         log.info("Permission removed from diagram {} for user {} by {}", diagramId, targetUserId, userId);
     }
     
@@ -141,6 +146,7 @@ public class PermissionService {
         
         permission.setPermissionLevel(newLevel);
         permission = permissionRepository.save(permission);
+        accessCache.invalidate(diagramId, targetUserId);
         log.info("Permission updated for user {} on diagram {} to {} by {}", targetUserId, diagramId, newLevel, userId);
         
         return permissionMapper.toResponse(permission);
@@ -0,0 +1,263 @@
+package com.chartdb.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-process presence state for every collaborator connected to this node.
+ * Cursor, selection and idle updates are served from here; the
+ * active_collaborators table is only written on join, leave and checkpoint.
+ */
+@Component
+public class PresenceRegistry {
+
+    // diagramId -> userId -> presence
+    private final Map<String, Map<String, Presence>> diagrams = new ConcurrentHashMap<>();
+
+    // websocketSessionId -> presence (for disconnect handling)
+    private final Map<String, Presence> sessions = new ConcurrentHashMap<>();
+
+    // Cursor colors handed out by slot, so concurrent joiners never need a count query
+    private static final String[] CURSOR_COLORS = {
+        "#ef4444", // red
+        "#f97316", // orange
+        "#eab308", // yellow
+        "#22c55e", // green
+        "#06b6d4", // cyan
+        "#3b82f6", // blue
+        "#8b5cf6", // violet
+        "#ec4899", // pink
+        "#6366f1", // indigo
+        "#14b8a6"  // teal
+    };
+
+    // diagramId -> user slots in use
+    private final Map<String, BitSet> slots = new ConcurrentHashMap<>();
+
+    /**
+     * Register a presence, giving it a user slot and, if it has none, the
+     * cursor color of that slot. A user who re-joins keeps their slot.
+     */
+    public Presence register(Presence presence) {
+        presence.userSlot = get(presence.getDiagramId(), presence.getUserId())
+            .map(Presence::getUserSlot)
+            .orElseGet(() -> allocateSlot(presence.getDiagramId()));
+        if (presence.cursorColor == null) {
+            presence.cursorColor = CURSOR_COLORS[presence.userSlot % CURSOR_COLORS.length];
+        }
+
+        Map<String, Presence> users = diagrams.computeIfAbsent(presence.getDiagramId(), k -> new ConcurrentHashMap<>());
+        Presence previous = users.put(presence.getUserId(), presence);
+        if (previous != null && previous.getWebsocketSessionId() != null) {
+            sessions.remove(previous.getWebsocketSessionId(), previous);
+        }
+        if (presence.getWebsocketSessionId() != null) {
+            sessions.put(presence.getWebsocketSessionId(), presence);
+        }
+        return presence;
+    }
+
+    public Optional<Presence> get(String diagramId, String userId) {
+        Map<String, Presence> users = diagrams.get(diagramId);
+        return users == null ? Optional.empty() : Optional.ofNullable(users.get(userId));
+    }
+
+    public Optional<Presence> getBySession(String websocketSessionId) {
+        return Optional.ofNullable(sessions.get(websocketSessionId));
+    }
+
+    public Optional<Presence> remove(String diagramId, String userId) {
+        Map<String, Presence> users = diagrams.get(diagramId);
+        if (users == null) {
+            return Optional.empty();
+        }
+        Presence removed = users.remove(userId);
+        if (removed != null) {
+            unregister(users, removed);
+        }
+        return Optional.ofNullable(removed);
+    }
+
+    /**
+     * Remove this exact presence, unless the user has re-joined since.
+     */
+    public boolean remove(Presence presence) {
+        Map<String, Presence> users = diagrams.get(presence.getDiagramId());
+        if (users == null || !users.remove(presence.getUserId(), presence)) {
+            return false;
+        }
+        unregister(users, presence);
+        return true;
+    }
+
+    public Collection<Presence> getDiagramPresences(String diagramId) {
+        Map<String, Presence> users = diagrams.get(diagramId);
+        return users == null ? List.of() : List.copyOf(users.values());
+    }
+
+    public List<Presence> getAll() {
+        List<Presence> all = new ArrayList<>();
+        diagrams.values().forEach(users -> all.addAll(users.values()));
+        return all;
+    }
+
+    private void unregister(Map<String, Presence> users, Presence removed) {
+        if (users.isEmpty()) {
+            diagrams.remove(removed.getDiagramId(), users);
+        }
+        if (removed.getWebsocketSessionId() != null) {
+            sessions.remove(removed.getWebsocketSessionId(), removed);
+        }
+        releaseSlot(removed.getDiagramId(), removed.getUserSlot());
+    }
+
+    // Lowest free slot, so slots stay small enough for one-byte varints
+    private int allocateSlot(String diagramId) {
+        int[] slot = new int[1];
+        slots.compute(diagramId, (id, used) -> {
+            if (used == null) {
+                used = new BitSet();
+            }
+            slot[0] = used.nextClearBit(0);
+            used.set(slot[0]);
+            return used;
+        });
+        return slot[0];
+    }
+
+    private void releaseSlot(String diagramId, int slot) {
+        if (slot < 0) return;
+        slots.computeIfPresent(diagramId, (id, used) -> {
+            used.clear(slot);
+            return used.isEmpty() ? null : used;
+        });
+    }
+
+    /**
+     * Mutable presence of one user in one diagram. Updates only touch memory
+     * and flag the entry dirty so the next checkpoint persists it.
+     */
+    @Getter
+    public static class Presence {
+
+        private final String collaboratorId;
+        private final String diagramId;
+        private final String userId;
+        private final String sessionId;
+        private final String websocketSessionId;
+        private final String userDisplayName;
+        private final String userAvatarUrl;
+        private final Instant connectedAt;
+
+        // Assigned from the user slot on register unless given
+        private volatile String cursorColor;
+
+        // Small per-diagram integer identifying the user in binary frames
+        private volatile int userSlot = -1;
+
+        // Read-only tier: announced through the audience summary, not one by one
+        private volatile boolean audience;
+
+        private volatile BigDecimal cursorX;
+        private volatile BigDecimal cursorY;
+        private volatile String selectedTableId;
+        private volatile String selectedColumnId;
+        private volatile boolean idle;
+        private volatile Instant lastSeen;
+        private volatile Instant lastActivity;
+
+        @Getter(AccessLevel.NONE)
+        private volatile Instant persistedLastSeen;
+
+        @Getter(AccessLevel.NONE)
+        private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+        public Presence(String collaboratorId, String diagramId, String userId, String sessionId,
+                        String websocketSessionId, String userDisplayName, String userAvatarUrl,
+                        String cursorColor, BigDecimal cursorX, BigDecimal cursorY, Instant connectedAt) {
+            this.collaboratorId = collaboratorId;
+            this.diagramId = diagramId;
+            this.userId = userId;
+            this.sessionId = sessionId;
+            this.websocketSessionId = websocketSessionId;
+            this.userDisplayName = userDisplayName;
+            this.userAvatarUrl = userAvatarUrl;
+            this.cursorColor = cursorColor;
+            this.cursorX = cursorX;
+            this.cursorY = cursorY;
+            this.connectedAt = connectedAt;
+            this.lastSeen = Instant.now();
+            this.lastActivity = this.lastSeen;
+            this.persistedLastSeen = this.lastSeen;
+        }
+
+        public void setAudience(boolean audience) {
+            this.audience = audience;
+        }
+
+        public void updateCursor(BigDecimal x, BigDecimal y) {
+            this.cursorX = x;
+            this.cursorY = y;
+            touch(true);
+        }
+
+        public void updateSelection(String tableId, String columnId) {
+            this.selectedTableId = tableId;
+            this.selectedColumnId = columnId;
+            touch(true);
+        }
+
+        public void setIdle(boolean idle) {
+            this.idle = idle;
+            touch(!idle);
+        }
+
+        public String getStatus() {
+            return idle ? "IDLE" : "ACTIVE";
+        }
+
+        /**
+         * Clears the dirty flag, returning whether there was anything to persist.
+         * Fields are read after clearing so a concurrent update re-flags the entry.
+         */
+        public boolean checkpoint() {
+            if (!dirty.getAndSet(false)) return false;
+            persistedLastSeen = lastSeen;
+            return true;
+        }
+
+        /**
+         * Keeps the session alive in memory. The row's last_seen is refreshed
+         * only when it is older than {@code persistEvery}, for the orphan sweep.
+         */
+        public void heartbeat(Duration persistEvery) {
+            Instant now = Instant.now();
+            this.lastSeen = now;
+            if (persistedLastSeen.plus(persistEvery).isBefore(now)) {
+                dirty.set(true);
+            }
+        }
+
+        private void touch(boolean activity) {
+            Instant now = Instant.now();
+            this.lastSeen = now;
+            if (activity) {
+                this.lastActivity = now;
+            }
+            dirty.set(true);
+        }
+    }
+}
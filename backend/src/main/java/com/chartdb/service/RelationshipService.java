@@ -11,6 +11,7 @@ import com.chartdb.model.Diagram;
 import com.chartdb.model.DiagramTable;
 import com.chartdb.model.Relationship;
 import com.chartdb.model.TableColumn;
+import com.chartdb.model.enums.ChangeEntityType;
 import com.chartdb.repository.ColumnRepository;
 import com.chartdb.repository.RelationshipRepository;
 import com.chartdb.repository.TableRepository;
@@ -30,6 +31,7 @@ public class RelationshipService {
     private final TableRepository tableRepository;
     private final ColumnRepository columnRepository;
     private final DiagramService diagramService;
+    private final DiagramRevisionService revisionService;
     private final RelationshipMapper relationshipMapper;
     
     @Transactional
@@ -39,6 +41,7 @@ public class RelationshipService {
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new AccessDeniedException("You don't have permission to edit this diagram");
         }
+        revisionService.markChanged(diagram.getId());
         
         DiagramTable sourceTable = tableRepository.findById(request.getSourceTableId())
             .orElseThrow(() -> new BadRequestException("Source table not found"));
@@ -97,6 +100,7 @@ public class RelationshipService {
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new AccessDeniedException("You don't have permission to edit this relationship");
         }
+        revisionService.markChanged(diagram.getId());
         
         if (request.getName() != null) relationship.setName(request.getName());
         if (request.getRelationshipType() != null) relationship.setRelationshipType(request.getRelationshipType());
@@ -118,6 +122,8 @@ public class RelationshipService {
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new AccessDeniedException("You don't have permission to delete this relationship");
         }
+        revisionService.markChanged(diagram.getId());
+        revisionService.markDeleted(diagram.getId(), ChangeEntityType.RELATIONSHIP, List.of(relationshipId));
         
         relationshipRepository.delete(relationship);
         log.info("Relationship deleted: {} from diagram {} by user {}", relationshipId, diagram.getId(), userId);
@@ -0,0 +1,872 @@
+package com.chartdb.service;
+
+import com.chartdb.dto.websocket.LockMessage;
+import com.chartdb.dto.websocket.LockResultMessage;
+import com.chartdb.exception.BadRequestException;
+import com.chartdb.exception.ConflictException;
+import com.chartdb.model.TableLock;
+import com.chartdb.repository.TableLockRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * In-memory, lease-based locks on tables and on single columns.
+ *
+ * A table lease excludes other users from the table and all of its columns; a
+ * column lease excludes them from that column and from the whole table. A set
+ * of targets is granted all together or not at all. Writes for a diagram are
+ * serialized on one of a fixed set of monitors so a batch sees a consistent
+ * view of every table it touches; reads go straight to the concurrent map.
+ *
+ * Requests name their diagram, and every table they target is checked to
+ * belong to it, and every column to its table, against the in-memory
+ * {@link DiagramStructureIndex}. Leases of a table or column that is deleted are released once
+ * the deleting transaction commits, never on a client's say-so.
+ *
+ * A single-target request may instead wait in a FIFO queue per table. Whenever
+ * a lease or an earlier waiter leaves, waiters are granted in arrival order,
+ * skipping none that conflict with someone still ahead of them, and are told
+ * on /user/queue/lock-result of the session that asked. Requests that do not
+ * wait are refused while a conflicting request is queued, so they cannot jump
+ * the queue either.
+ * Leases expire through a timing wheel, and every new lease gets a monotonically
+ * increasing fencing token, which writes to a locked table or column must
+ * present (see {@link #checkWrite}). The table_locks table is written
+ * asynchronously and only read back on startup to recover leases after a
+ * crash; its writes are queued under the diagram's monitor, in the order the
+ * leases were granted and removed.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TableLockManager {
+
+    private final TableLockRepository lockRepository;
+    private final DiagramStructureIndex structureIndex;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${collaboration.lock.lease-seconds:120}")
+    private long leaseSeconds;
+
+    @Value("${collaboration.lock.max-wait-ms:60000}")
+    private long maxWaitMillis;
+
+    @Value("${collaboration.lock.max-waiters:32}")
+    private int maxWaiters;
+
+    @Value("${collaboration.lock.wheel-tick-ms:1000}")
+    private long wheelTickMillis;
+
+    private static final int MONITOR_STRIPES = 64;
+
+    // Lock key (see Target#key) -> current lease
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+    // tableId -> keys of column leases on that table
+    private final Map<String, Set<String>> columnKeys = new ConcurrentHashMap<>();
+    private final Object[] monitors = new Object[MONITOR_STRIPES];
+    private final AtomicLong fencingTokens = new AtomicLong();
+
+    // tableId -> waiters in arrival order; each queue is guarded by its diagram's monitor
+    private final Map<String, WaitQueue> waitQueues = new ConcurrentHashMap<>();
+    private final AtomicInteger waiterCount = new AtomicInteger();
+    private DistributionSummary queuePositions;
+
+    // Single writer keeps upserts and deletes for the same table in order
+    private final ExecutorService persistenceExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "table-lock-persistence");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private TimingWheel<Lease> expiryWheel;
+    private TimingWheel<Waiter> waitWheel;
+
+    @PostConstruct
+    public void recover() {
+        expiryWheel = new TimingWheel<>(wheelTickMillis, 64, 3);
+        waitWheel = new TimingWheel<>(wheelTickMillis, 64, 2);
+        Gauge.builder("chartdb.lock.waiters", waiterCount, AtomicInteger::get)
+            .description("Lock requests queued for a handoff")
+            .register(meterRegistry);
+        queuePositions = DistributionSummary.builder("chartdb.lock.queue.position")
+            .description("Position a lock request was queued at")
+            .publishPercentiles(0.5, 0.95)
+            .register(meterRegistry);
+        for (int i = 0; i < monitors.length; i++) {
+            monitors[i] = new Object();
+        }
+
+        Instant now = Instant.now();
+        // Seeding from the clock keeps tokens increasing across restarts even when
+        // the rows holding the highest tokens were already deleted
+        long seed = now.toEpochMilli() * 1000;
+
+        try {
+            List<TableLock> recovered = transactionTemplate.execute(status -> {
+                lockRepository.deleteExpiredLocks(now);
+                Long maxToken = lockRepository.findMaxFencingToken();
+                fencingTokens.set(Math.max(seed, maxToken == null ? 0 : maxToken));
+                return lockRepository.findUnexpiredWithHolders(now);
+            });
+
+            for (TableLock lock : recovered) {
+                Lease lease = new Lease(
+                    lock.getTable().getDiagram().getId(),
+                    lock.getTable().getId(),
+                    lock.getColumn() == null ? null : lock.getColumn().getId(),
+                    lock.getUser().getId(),
+                    lock.getUser().getDisplayName(),
+                    lock.getFencingToken(),
+                    lock.getAcquiredAt(),
+                    lock.getExpiresAt()
+                );
+                put(lease);
+                expiryWheel.schedule(lease, lease.expiresAt().toEpochMilli());
+            }
+            log.info("Recovered {} table locks", recovered.size());
+        } catch (Exception e) {
+            fencingTokens.set(seed);
+            log.warn("Failed to recover table locks, starting empty: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        persistenceExecutor.shutdown();
+        persistenceExecutor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Try to acquire or extend the lease on a table or column.
+     *
+     * @return the lease now holding the target, or the one blocking it; it
+     *         belongs to {@code userId} if and only if the request was granted,
+     *         and is null when only queued requests are in the way
+     */
+    public Lease acquire(String diagramId, Target target, String userId, String userName) {
+        return acquireAll(diagramId, List.of(target), userId, userName).get(0);
+    }
+
+    /**
+     * Acquire or extend leases on every target, or on none of them if any is
+     * held by another user or another user is queued for it.
+     *
+     * @return one entry per distinct target, in request order: the caller's
+     *         lease when the batch was granted; otherwise the lease blocking
+     *         the target, or null for targets that were free or only queued for
+     * @throws BadRequestException when a target's table is not in the diagram,
+     *         or its column not in the table
+     */
+    public List<Lease> acquireAll(String diagramId, List<Target> targets, String userId, String userName) {
+        Set<Target> distinct = new LinkedHashSet<>(targets);
+        checkTargets(diagramId, distinct);
+        long now = System.currentTimeMillis();
+        Instant expiresAt = Instant.ofEpochMilli(now + TimeUnit.SECONDS.toMillis(leaseSeconds));
+
+        List<Lease> result = new ArrayList<>(distinct.size());
+        synchronized (monitor(diagramId)) {
+            boolean blocked = false;
+            for (Target target : distinct) {
+                Lease blocker = findBlocker(target, userId, now);
+                blocked |= blocker != null || isQueuedFor(target, userId, now);
+                result.add(blocker);
+            }
+            if (blocked) return result;
+
+            result.clear();
+            for (Target target : distinct) {
+                Lease lease = grant(diagramId, target, userId, userName, now, expiresAt);
+                expiryWheel.schedule(lease, expiresAt.toEpochMilli());
+                persist(lease);
+                result.add(lease);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Acquire the target, or queue for it if it is held by someone else or
+     * someone queued earlier needs it. A queued request is told its position
+     * on /user/queue/lock-result of {@code sessionId} before the monitor is
+     * released, so the reply always precedes its handoff; it is granted later
+     * and announced there too, and gives up after {@code max-wait-ms}.
+     *
+     * @return the granted lease, or the current holder with the queue position
+     *         (0 if the queue is full)
+     * @throws BadRequestException when the target's table is not in the diagram,
+     *         or its column not in the table
+     */
+    public Attempt acquireOrWait(String diagramId, Target target, String userId, String userName, String sessionId) {
+        checkTargets(diagramId, List.of(target));
+        long now = System.currentTimeMillis();
+        Waiter waiter;
+        Lease blocker;
+        int position;
+        synchronized (monitor(diagramId)) {
+            WaitQueue queue = waitQueues.get(target.tableId());
+            Waiter probe = new Waiter(diagramId, target, userId, userName, sessionId, now, now + maxWaitMillis);
+            blocker = findBlocker(target, userId, now);
+
+            if (blocker == null
+                    && (queue == null || queue.waiters().stream().noneMatch(ahead -> ahead.conflictsWith(probe)))) {
+                Lease lease = grant(diagramId, target, userId, userName, now,
+                    Instant.ofEpochMilli(now + TimeUnit.SECONDS.toMillis(leaseSeconds)));
+                expiryWheel.schedule(lease, lease.expiresAt().toEpochMilli());
+                persist(lease);
+                return new Attempt(lease, 0);
+            }
+
+            if (queue == null) {
+                queue = new WaitQueue(diagramId, new ArrayDeque<>());
+                waitQueues.put(target.tableId(), queue);
+            }
+            position = 1;
+            for (Waiter ahead : queue.waiters()) {
+                if (ahead.sessionId().equals(sessionId) && ahead.target().equals(target)) {
+                    // Asked again while waiting
+                    notifyQueued(ahead, blocker, position);
+                    return new Attempt(blocker, position);
+                }
+                position++;
+            }
+            if (queue.waiters().size() >= maxWaiters) {
+                return new Attempt(blocker, 0);
+            }
+            waiter = probe;
+            queue.waiters().add(waiter);
+            waiterCount.incrementAndGet();
+            notifyQueued(waiter, blocker, position);
+        }
+
+        queuePositions.record(position);
+        waitWheel.schedule(waiter, waiter.deadline());
+        return new Attempt(blocker, position);
+    }
+
+    public Optional<Lease> release(Target target, String userId) {
+        return releaseAll(List.of(target), userId).stream().findFirst();
+    }
+
+    /**
+     * Release the user's leases on the given targets, or withdraw the user's
+     * queued requests for them, and hand the targets to the next waiters.
+     */
+    public List<Lease> releaseAll(List<Target> targets, String userId) {
+        List<Lease> released = new ArrayList<>();
+        List<Handoff> handoffs = new ArrayList<>();
+        for (Target target : new LinkedHashSet<>(targets)) {
+            Lease current = leases.get(target.key());
+            WaitQueue queue = waitQueues.get(target.tableId());
+            String diagramId = current != null ? current.diagramId() : queue != null ? queue.diagramId() : null;
+            if (diagramId == null) continue;
+
+            synchronized (monitor(diagramId)) {
+                boolean changed = false;
+                if (current != null && current.isHeldBy(userId) && remove(current)) {
+                    unpersist(current);
+                    released.add(current);
+                    changed = true;
+                }
+                changed |= dropWaiters(target.tableId(), waiter ->
+                    waiter.userId().equals(userId) && waiter.target().equals(target), "cancelled", null);
+                if (changed) {
+                    handoffs.addAll(handOff(diagramId, target.tableId()));
+                }
+            }
+        }
+        for (Lease lease : released) {
+            broadcastUnlock(lease, "UNLOCK");
+        }
+        completeHandoffs(handoffs);
+        return released;
+    }
+
+    /**
+     * {@link #releaseTable} once the surrounding transaction, which deletes the
+     * table, commits; right away outside a transaction.
+     */
+    public void releaseTableOnCommit(String diagramId, String tableId) {
+        afterCommit(() -> releaseTable(diagramId, tableId));
+    }
+
+    /**
+     * {@link #releaseColumn} once the surrounding transaction, which deletes
+     * the column, commits; right away outside a transaction.
+     */
+    public void releaseColumnOnCommit(String diagramId, String tableId, String columnId) {
+        afterCommit(() -> releaseColumn(diagramId, tableId, columnId));
+    }
+
+    /**
+     * Release the table's lease and the leases on its columns, whoever holds
+     * them, and turn away everyone waiting for the table.
+     */
+    public List<Lease> releaseTable(String diagramId, String tableId) {
+        List<Lease> released = new ArrayList<>();
+        synchronized (monitor(diagramId)) {
+            Lease tableLease = leases.get(tableId);
+            if (tableLease != null && remove(tableLease)) {
+                released.add(tableLease);
+            }
+            for (String key : columnKeys.getOrDefault(tableId, Set.of())) {
+                Lease columnLease = leases.get(key);
+                if (columnLease != null && remove(columnLease)) {
+                    released.add(columnLease);
+                }
+            }
+            dropWaiters(tableId, waiter -> true, "deleted", "Table was deleted");
+            released.forEach(this::unpersist);
+        }
+        return released;
+    }
+
+    /**
+     * Release the column's lease, whoever holds it, and turn away everyone
+     * waiting for the column.
+     */
+    public Optional<Lease> releaseColumn(String diagramId, String tableId, String columnId) {
+        if (columnId == null) {
+            throw new IllegalArgumentException("A column id is required to release a column lease");
+        }
+        Target target = Target.column(tableId, columnId);
+        Lease released;
+        List<Handoff> handoffs;
+        synchronized (monitor(diagramId)) {
+            released = leases.get(target.key());
+            if (released != null && !remove(released)) {
+                released = null;
+            }
+            if (released != null) {
+                unpersist(released);
+            }
+            boolean dropped = dropWaiters(tableId, waiter -> waiter.target().equals(target), "deleted", "Column was deleted");
+            handoffs = released != null || dropped ? handOff(diagramId, tableId) : List.of();
+        }
+        completeHandoffs(handoffs);
+        return Optional.ofNullable(released);
+    }
+
+    /**
+     * Release every lease the user holds in the diagram and withdraw the
+     * user's queued requests (on leave or session expiry), tell the other
+     * collaborators right away and hand the targets on.
+     */
+    public List<Lease> releaseAllForUser(String diagramId, String userId) {
+        List<Lease> released = new ArrayList<>();
+        List<Handoff> handoffs = new ArrayList<>();
+        synchronized (monitor(diagramId)) {
+            Set<String> tableIds = new HashSet<>();
+            for (Lease lease : leases.values()) {
+                if (lease.diagramId().equals(diagramId) && lease.isHeldBy(userId) && remove(lease)) {
+                    unpersist(lease);
+                    released.add(lease);
+                    tableIds.add(lease.tableId());
+                }
+            }
+            for (Map.Entry<String, WaitQueue> queue : waitQueues.entrySet()) {
+                if (queue.getValue().diagramId().equals(diagramId)
+                        && dropWaiters(queue.getKey(), waiter -> waiter.userId().equals(userId), "cancelled", null)) {
+                    tableIds.add(queue.getKey());
+                }
+            }
+            for (String tableId : tableIds) {
+                handoffs.addAll(handOff(diagramId, tableId));
+            }
+        }
+        for (Lease lease : released) {
+            broadcastUnlock(lease, "RELEASED");
+        }
+        completeHandoffs(handoffs);
+        return released;
+    }
+
+    /**
+     * Withdraw every request the WebSocket session is queued with.
+     */
+    public void cancelWaits(String sessionId) {
+        List<Handoff> handoffs = new ArrayList<>();
+        for (Map.Entry<String, WaitQueue> queue : waitQueues.entrySet()) {
+            String diagramId = queue.getValue().diagramId();
+            synchronized (monitor(diagramId)) {
+                if (dropWaiters(queue.getKey(), waiter -> waiter.sessionId().equals(sessionId), "cancelled", null)) {
+                    handoffs.addAll(handOff(diagramId, queue.getKey()));
+                }
+            }
+        }
+        completeHandoffs(handoffs);
+    }
+
+    public Optional<Lease> getLease(Target target) {
+        long now = System.currentTimeMillis();
+        return Optional.ofNullable(leases.get(target.key())).filter(lease -> !lease.isExpired(now));
+    }
+
+    public Optional<Lease> getLease(String tableId) {
+        return getLease(Target.table(tableId));
+    }
+
+    public boolean isLocked(String tableId) {
+        return getLease(tableId).isPresent();
+    }
+
+    /**
+     * Check a write to the target against its leases. A target nobody has
+     * locked may be written without a token. A locked one only by the holder,
+     * presenting the fencing token of the lease in force; a token of a lease
+     * that has since ended is refused as stale.
+     *
+     * @throws ConflictException when the write must not go through
+     */
+    public void checkWrite(String diagramId, Target target, String userId, Long fencingToken) {
+        String refusal = refuseWrite(diagramId, target, userId, fencingToken);
+        if (refusal != null) {
+            throw new ConflictException(refusal);
+        }
+    }
+
+    public boolean canWrite(String diagramId, Target target, String userId, Long fencingToken) {
+        return refuseWrite(diagramId, target, userId, fencingToken) == null;
+    }
+
+    private String refuseWrite(String diagramId, Target target, String userId, Long fencingToken) {
+        long now = System.currentTimeMillis();
+        synchronized (monitor(diagramId)) {
+            Lease blocker = findBlocker(target, userId, now);
+            if (blocker != null) {
+                return (blocker.columnId() == null ? "Table" : "Column") + " is locked by " + blocker.userName();
+            }
+
+            Lease own = target.columnId() != null ? leases.get(target.key()) : null;
+            if (own == null || own.isExpired(now)) {
+                own = leases.get(target.tableId());
+            }
+            if (own != null && !own.isExpired(now)) {
+                if (fencingToken != null && fencingToken == own.fencingToken()) return null;
+                return "The current lock token is required to write a locked " + (own.columnId() == null ? "table" : "column");
+            }
+            if (fencingToken != null) {
+                return "Lock token " + fencingToken + " is stale; lock the target again";
+            }
+            return null;
+        }
+    }
+
+    @Scheduled(fixedRateString = "${collaboration.lock.wheel-tick-ms:1000}")
+    public void expireLeases() {
+        expiryWheel.advance(System.currentTimeMillis(), lease -> {
+            // Extended or released leases no longer match and are skipped
+            synchronized (monitor(lease.diagramId())) {
+                if (!remove(lease)) return;
+                unpersist(lease);
+            }
+
+            log.info("Lock on {} held by user {} expired", lease.key(), lease.userId());
+
+            broadcastUnlock(lease, "EXPIRED");
+            List<Handoff> handoffs;
+            synchronized (monitor(lease.diagramId())) {
+                handoffs = handOff(lease.diagramId(), lease.tableId());
+            }
+            completeHandoffs(handoffs);
+        });
+
+        waitWheel.advance(System.currentTimeMillis(), waiter -> {
+            List<Handoff> handoffs;
+            synchronized (monitor(waiter.diagramId())) {
+                String tableId = waiter.target().tableId();
+                // Granted or withdrawn waiters are no longer queued
+                if (!dropWaiters(tableId, queued -> queued == waiter, "timeout", "Timed out waiting for the lock")) return;
+                // Waiters held back only by this one may go now
+                handoffs = handOff(waiter.diagramId(), tableId);
+            }
+            completeHandoffs(handoffs);
+        });
+    }
+
+    private void checkTargets(String diagramId, Collection<Target> targets) {
+        for (Target target : targets) {
+            if (structureIndex.contains(diagramId, target.tableId(), target.columnId())) continue;
+            throw new BadRequestException(target.columnId() == null
+                ? "Table " + target.tableId() + " is not part of diagram " + diagramId
+                : "Column " + target.columnId() + " is not part of table " + target.tableId()
+                    + " in diagram " + diagramId);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    // Callers hold the diagram's monitor
+    private Lease grant(String diagramId, Target target, String userId, String userName, long now, Instant expiresAt) {
+        Lease current = leases.get(target.key());
+        // Extensions keep their fencing token
+        Lease lease = current != null && !current.isExpired(now) && current.isHeldBy(userId)
+            ? current.withExpiresAt(expiresAt)
+            : new Lease(diagramId, target.tableId(), target.columnId(), userId, userName,
+                fencingTokens.incrementAndGet(), Instant.ofEpochMilli(now), expiresAt);
+        put(lease);
+        return lease;
+    }
+
+    /**
+     * Grant queued requests on the table that are now free, in arrival order.
+     * A waiter that conflicts with one still queued ahead of it keeps waiting.
+     * Callers hold the diagram's monitor and pass the result to
+     * {@link #completeHandoffs(List)} once they have released it.
+     */
+    private List<Handoff> handOff(String diagramId, String tableId) {
+        WaitQueue queue = waitQueues.get(tableId);
+        if (queue == null) return List.of();
+
+        long now = System.currentTimeMillis();
+        Instant expiresAt = Instant.ofEpochMilli(now + TimeUnit.SECONDS.toMillis(leaseSeconds));
+        List<Handoff> handoffs = new ArrayList<>();
+        List<Waiter> stillWaiting = new ArrayList<>();
+        Iterator<Waiter> waiters = queue.waiters().iterator();
+        while (waiters.hasNext()) {
+            Waiter waiter = waiters.next();
+            if (findBlocker(waiter.target(), waiter.userId(), now) != null
+                    || stillWaiting.stream().anyMatch(ahead -> ahead.conflictsWith(waiter))) {
+                stillWaiting.add(waiter);
+                continue;
+            }
+            waiters.remove();
+            Lease lease = grant(diagramId, waiter.target(), waiter.userId(), waiter.userName(), now, expiresAt);
+            expiryWheel.schedule(lease, expiresAt.toEpochMilli());
+            persist(lease);
+            handoffs.add(new Handoff(waiter, lease));
+        }
+        if (queue.waiters().isEmpty()) {
+            waitQueues.remove(tableId, queue);
+        }
+        return handoffs;
+    }
+
+    private void completeHandoffs(List<Handoff> handoffs) {
+        for (Handoff handoff : handoffs) {
+            Lease lease = handoff.lease();
+            Waiter waiter = handoff.waiter();
+            waiterCount.decrementAndGet();
+            recordWait(waiter, "granted");
+            log.info("Handed lock on {} to user {} after {} ms", lease.key(), lease.userId(),
+                System.currentTimeMillis() - waiter.enqueuedAt());
+
+            messagingTemplate.convertAndSend("/topic/diagram/" + lease.diagramId() + "/table-locked", LockMessage.builder()
+                .type("HANDOFF")
+                .diagramId(lease.diagramId())
+                .tableId(lease.tableId())
+                .columnId(lease.columnId())
+                .userId(lease.userId())
+                .userName(lease.userName())
+                .action("locked")
+                .fencingToken(lease.fencingToken())
+                .expiresAt(lease.expiresAt())
+                .timestamp(System.currentTimeMillis())
+                .build());
+            notifyWaiter(waiter, LockResultMessage.builder()
+                .acquired(true)
+                .tableId(lease.tableId())
+                .columnId(lease.columnId())
+                .lockedByUserId(lease.userId())
+                .lockedByUserName(lease.userName())
+                .fencingToken(lease.fencingToken())
+                .expiresAt(lease.expiresAt())
+                .message("Lock handed over")
+                .build());
+        }
+    }
+
+    /**
+     * Remove matching waiters of the table; with a {@code message} they are
+     * told they will not get the lock. Callers hold the diagram's monitor.
+     *
+     * @return whether any waiter was removed
+     */
+    private boolean dropWaiters(String tableId, Predicate<Waiter> filter,
+                                String outcome, String message) {
+        WaitQueue queue = waitQueues.get(tableId);
+        if (queue == null) return false;
+
+        boolean removed = false;
+        Iterator<Waiter> waiters = queue.waiters().iterator();
+        while (waiters.hasNext()) {
+            Waiter waiter = waiters.next();
+            if (!filter.test(waiter)) continue;
+            waiters.remove();
+            removed = true;
+            waiterCount.decrementAndGet();
+            recordWait(waiter, outcome);
+            if (message != null) {
+                notifyWaiter(waiter, LockResultMessage.builder()
+                    .acquired(false)
+                    .tableId(waiter.target().tableId())
+                    .columnId(waiter.target().columnId())
+                    .message(message)
+                    .build());
+            }
+        }
+        if (queue.waiters().isEmpty()) {
+            waitQueues.remove(tableId, queue);
+        }
+        return removed;
+    }
+
+    // Callers hold the diagram's monitor, so no handoff to the waiter can be sent first
+    private void notifyQueued(Waiter waiter, Lease blocker, int position) {
+        LockResultMessage.LockResultMessageBuilder result = LockResultMessage.builder()
+            .acquired(false)
+            .tableId(waiter.target().tableId())
+            .columnId(waiter.target().columnId())
+            .queuePosition(position)
+            .message("Waiting for the lock");
+        if (blocker != null) {
+            result.lockedByUserId(blocker.userId())
+                .lockedByUserName(blocker.userName())
+                .expiresAt(blocker.expiresAt());
+        }
+        notifyWaiter(waiter, result.build());
+    }
+
+    private void notifyWaiter(Waiter waiter, LockResultMessage result) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(waiter.sessionId());
+        accessor.setLeaveMutable(true);
+        messagingTemplate.convertAndSendToUser(waiter.sessionId(), "/queue/lock-result", result,
+            accessor.getMessageHeaders());
+    }
+
+    private void recordWait(Waiter waiter, String outcome) {
+        Timer.builder("chartdb.lock.wait")
+            .description("Time lock requests spent queued")
+            .tag("outcome", outcome)
+            .publishPercentiles(0.5, 0.95)
+            .register(meterRegistry)
+            .record(System.currentTimeMillis() - waiter.enqueuedAt(), TimeUnit.MILLISECONDS);
+    }
+
+    // Callers hold the diagram's monitor
+    private Lease findBlocker(Target target, String userId, long now) {
+        Lease tableLease = leases.get(target.tableId());
+        if (isBlocking(tableLease, userId, now)) return tableLease;
+
+        if (target.columnId() != null) {
+            Lease columnLease = leases.get(target.key());
+            return isBlocking(columnLease, userId, now) ? columnLease : null;
+        }
+        // A table lock also needs every column of the table
+        for (String key : columnKeys.getOrDefault(target.tableId(), Set.of())) {
+            Lease columnLease = leases.get(key);
+            if (isBlocking(columnLease, userId, now)) return columnLease;
+        }
+        return null;
+    }
+
+    // Whether another user is queued for something the target overlaps; extending
+    // a lease the user already holds is not jumping the queue. Callers hold the diagram's monitor
+    private boolean isQueuedFor(Target target, String userId, long now) {
+        WaitQueue queue = waitQueues.get(target.tableId());
+        if (queue == null) return false;
+        Lease own = leases.get(target.key());
+        if (own != null && !own.isExpired(now) && own.isHeldBy(userId)) return false;
+        return queue.waiters().stream().anyMatch(waiter -> Waiter.conflicts(waiter.userId(), waiter.target(), userId, target));
+    }
+
+    private static boolean isBlocking(Lease lease, String userId, long now) {
+        return lease != null && !lease.isExpired(now) && !lease.isHeldBy(userId);
+    }
+
+    // Callers hold the diagram's monitor (except during recovery)
+    private void put(Lease lease) {
+        leases.put(lease.key(), lease);
+        if (lease.columnId() != null) {
+            columnKeys.computeIfAbsent(lease.tableId(), id -> ConcurrentHashMap.newKeySet()).add(lease.key());
+        }
+    }
+
+    // Callers hold the diagram's monitor
+    private boolean remove(Lease lease) {
+        if (!leases.remove(lease.key(), lease)) return false;
+        if (lease.columnId() != null) {
+            columnKeys.computeIfPresent(lease.tableId(), (id, keys) -> {
+                keys.remove(lease.key());
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+        return true;
+    }
+
+    private Object monitor(String diagramId) {
+        return monitors[Math.floorMod(diagramId.hashCode(), monitors.length)];
+    }
+
+    private void broadcastUnlock(Lease lease, String type) {
+        LockMessage message = LockMessage.builder()
+            .type(type)
+            .diagramId(lease.diagramId())
+            .tableId(lease.tableId())
+            .columnId(lease.columnId())
+            .userId(lease.userId())
+            .userName(lease.userName())
+            .action("unlocked")
+            .fencingToken(lease.fencingToken())
+            .expiresAt(lease.expiresAt())
+            .timestamp(System.currentTimeMillis())
+            .build();
+        messagingTemplate.convertAndSend("/topic/diagram/" + lease.diagramId() + "/table-unlocked", message);
+    }
+
+    // Callers hold the diagram's monitor, so the single writer sees grants and removals in order
+    private void persist(Lease lease) {
+        persistenceExecutor.execute(() -> {
+            try {
+                transactionTemplate.executeWithoutResult(status -> lockRepository.upsertLease(
+                    UUID.randomUUID().toString(),
+                    lease.key(),
+                    lease.tableId(),
+                    lease.columnId(),
+                    lease.userId(),
+                    lease.acquiredAt(),
+                    lease.expiresAt(),
+                    lease.fencingToken()
+                ));
+            } catch (Exception e) {
+                log.warn("Failed to persist lock on {}: {}", lease.key(), e.getMessage());
+            }
+        });
+    }
+
+    // Callers hold the diagram's monitor
+    private void unpersist(Lease lease) {
+        persistenceExecutor.execute(() -> {
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                    lockRepository.deleteByLockKeyAndFencingToken(lease.key(), lease.fencingToken()));
+            } catch (Exception e) {
+                log.warn("Failed to delete lock on {}: {}", lease.key(), e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * @param lease    the granted lease, or the one blocking the target (null
+     *                 when only earlier waiters are in the way)
+     * @param position 1-based queue position while waiting, 0 otherwise
+     */
+    public record Attempt(Lease lease, int position) {
+
+        public boolean isQueued() {
+            return position > 0;
+        }
+    }
+
+    private record Handoff(Waiter waiter, Lease lease) {}
+
+    private record WaitQueue(String diagramId, ArrayDeque<Waiter> waiters) {}
+
+    /**
+     * A queued request. Compared by identity where it matters: the wait wheel
+     * only drops the exact waiter it scheduled.
+     */
+    private record Waiter(String diagramId, Target target, String userId, String userName, String sessionId,
+                          long enqueuedAt, long deadline) {
+
+        boolean conflictsWith(Waiter other) {
+            return conflicts(userId, target, other.userId, other.target);
+        }
+
+        static boolean conflicts(String userId, Target target, String otherUserId, Target other) {
+            return !userId.equals(otherUserId)
+                && target.tableId().equals(other.tableId())
+                && (target.columnId() == null || other.columnId() == null
+                    || target.columnId().equals(other.columnId()));
+        }
+    }
+
+    /**
+     * A whole table, or one of its columns when {@code columnId} is set.
+     */
+    public record Target(String tableId, String columnId) {
+
+        public static Target table(String tableId) {
+            return new Target(tableId, null);
+        }
+
+        public static Target column(String tableId, String columnId) {
+            return new Target(tableId, columnId);
+        }
+
+        /**
+         * The lease map and table_locks.lock_key value: the table id, or table and column id.
+         */
+        public String key() {
+            return columnId == null ? tableId : tableId + ":" + columnId;
+        }
+    }
+
+    public record Lease(String diagramId, String tableId, String columnId, String userId, String userName,
+                        long fencingToken, Instant acquiredAt, Instant expiresAt) {
+
+        public String key() {
+            return new Target(tableId, columnId).key();
+        }
+
+        public boolean isHeldBy(String userId) {
+            return this.userId.equals(userId);
+        }
+
+        public boolean isExpired(long nowMillis) {
+            return expiresAt.toEpochMilli() <= nowMillis;
+        }
+
+        Lease withExpiresAt(Instant expiresAt) {
+            return new Lease(diagramId, tableId, columnId, userId, userName, fencingToken, acquiredAt, expiresAt);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.chartdb.service;
+
+import com.chartdb.dto.websocket.TableMoveBatchMessage;
+import com.chartdb.dto.websocket.TableMoveMessage;
+import com.chartdb.model.Diagram;
+import com.chartdb.repository.TableRepository;
+import com.chartdb.repository.TableRepositoryCustom.PositionUpdate;
+import com.chartdb.websocket.ViewportRouter;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Server-side pipeline for table drags.
+ *
+ * Intermediate drag frames are coalesced latest-wins per table and broadcast on a
+ * fixed-rate tick. The latest position per table is kept in memory and written
+ * behind in one UPDATE per diagram, either when the drag ends or on a short timer.
+ * Flushes of the same diagram run one at a time, so a batch taken later always
+ * commits later and no older position overwrites a newer one.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TableMovePipeline {
+
+    // Canvas size of a table without a stored size: header plus one row per column, as the client draws it
+    private static final double DEFAULT_TABLE_WIDTH = 200;
+    private static final double TABLE_HEADER_HEIGHT = 42;
+    private static final double TABLE_ROW_HEIGHT = 32;
+    private static final double[] UNKNOWN_TABLE_EXTENT = {DEFAULT_TABLE_WIDTH, 300};
+    private static final int FLUSH_STRIPES = 64;
+
+    private final TableRepository tableRepository;
+    private final DiagramService diagramService;
+    private final DiagramRevisionService revisionService;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ViewportRouter viewportRouter;
+    private final TableLockManager tableLockManager;
+
+    // diagramId -> tableId -> latest move not yet broadcast
+    private final Map<String, Map<String, TableMoveMessage>> pendingBroadcasts = new ConcurrentHashMap<>();
+
+    // diagramId -> tableId -> latest position not yet persisted
+    private final Map<String, Map<String, PendingPosition>> pendingWrites = new ConcurrentHashMap<>();
+
+    // tableId -> {width, height} of tables being dragged; reloaded after each flush of their positions
+    private final Map<String, double[]> tableExtents = new ConcurrentHashMap<>();
+
+    // A diagram's flushes take and write their batch under its stripe
+    private final Object[] flushMonitors = new Object[FLUSH_STRIPES];
+
+    {
+        for (int i = 0; i < flushMonitors.length; i++) {
+            flushMonitors[i] = new Object();
+        }
+    }
+
+    /**
+     * Accept a drag frame from the WebSocket. Positions are persisted only after
+     * the sender's edit permission and, for a locked table, the frame's fencing
+     * token have been verified at flush time.
+     */
+    public void submitDrag(String diagramId, TableMoveMessage move) {
+        pendingBroadcasts.compute(diagramId, (id, moves) -> {
+            if (moves == null) {
+                moves = new LinkedHashMap<>();
+            }
+            moves.put(move.getTableId(), move);
+            return moves;
+        });
+
+        enqueueWrite(diagramId, new PendingPosition(move.getTableId(), move.getX(), move.getY(), move.getUserId(),
+            move.getFencingToken(), false));
+
+        if (Boolean.TRUE.equals(move.getDragEnd())) {
+            flush(diagramId);
+        }
+    }
+
+    /**
+     * Accept a position whose edit permission and lock were already checked by
+     * the caller. It is written with the next flush; call {@link #flushNow} to
+     * write it before returning.
+     */
+    public void submitPosition(String diagramId, String tableId, String userId, BigDecimal x, BigDecimal y) {
+        enqueueWrite(diagramId, new PendingPosition(tableId, x, y, userId, null, true));
+    }
+
+    @Scheduled(fixedRateString = "${collaboration.table-move.broadcast-interval-ms:40}")
+    public void broadcastPendingMoves() {
+        for (String diagramId : pendingBroadcasts.keySet()) {
+            Map<String, TableMoveMessage> moves = pendingBroadcasts.remove(diagramId);
+            if (moves == null || moves.isEmpty()) continue;
+
+            TableMoveBatchMessage batch = TableMoveBatchMessage.builder()
+                .diagramId(diagramId)
+                .moves(new ArrayList<>(moves.values()))
+                .timestamp(System.currentTimeMillis())
+                .build();
+
+            try {
+                messagingTemplate.convertAndSend("/topic/diagram/" + diagramId + "/table-moved", batch,
+                    viewportRouter.topicHeaders(diagramId, batch));
+                // The final position of a drag goes to every viewport so no client keeps a stale table
+                loadExtents(moves.keySet());
+                viewportRouter.route(diagramId, "table-moved", batch.getMoves(),
+                    move -> Boolean.TRUE.equals(move.getDragEnd()),
+                    TableMoveMessage::getTableId, this::boundsOf,
+                    visible -> TableMoveBatchMessage.builder()
+                        .diagramId(diagramId)
+                        .moves(visible)
+                        .timestamp(batch.getTimestamp())
+                        .build());
+            } catch (Exception e) {
+                log.warn("Failed to broadcast table moves for diagram {}: {}", diagramId, e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(fixedRateString = "${collaboration.table-move.flush-interval-ms:1000}")
+    public void flushAll() {
+        for (String diagramId : pendingWrites.keySet()) {
+            flush(diagramId);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushAll();
+    }
+
+    public void flush(String diagramId) {
+        try {
+            flushNow(diagramId);
+        } catch (Exception e) {
+            log.warn("Failed to persist table positions for diagram {}: {}", diagramId, e.getMessage());
+        }
+    }
+
+    /**
+     * Write the diagram's pending positions now, in the caller's transaction if
+     * there is one, so a write that follows in it lands on top of them. Failures
+     * are thrown to the caller.
+     */
+    public void flushNow(String diagramId) {
+        synchronized (flushMonitors[Math.floorMod(diagramId.hashCode(), FLUSH_STRIPES)]) {
+            // remove() is atomic with enqueueWrite()'s compute(), so no position is lost
+            Map<String, PendingPosition> positions = pendingWrites.remove(diagramId);
+            if (positions == null || positions.isEmpty()) return;
+            positions.keySet().forEach(tableExtents::remove);
+
+            Integer updated = transactionTemplate.execute(status -> persist(diagramId, positions.values()));
+            log.debug("Persisted {} table positions for diagram {}", updated, diagramId);
+        }
+    }
+
+    private int persist(String diagramId, Iterable<PendingPosition> positions) {
+        Diagram diagram = null;
+        Map<String, Boolean> canEdit = new HashMap<>();
+        List<PositionUpdate> updates = new ArrayList<>();
+
+        for (PendingPosition position : positions) {
+            if (position.x() == null || position.y() == null) continue;
+
+            if (!position.authorized()) {
+                if (diagram == null) {
+                    diagram = diagramService.findDiagramById(diagramId);
+                }
+                Diagram target = diagram;
+                boolean allowed = canEdit.computeIfAbsent(position.userId(),
+                    userId -> diagramService.canUserEdit(target, userId));
+                if (!allowed) {
+                    log.warn("Dropping move of table {} by user {} without edit permission", position.tableId(), position.userId());
+                    continue;
+                }
+                if (!tableLockManager.canWrite(diagramId, TableLockManager.Target.table(position.tableId()),
+                        position.userId(), position.fencingToken())) {
+                    log.info("Dropping move of table {} by user {} without its lock", position.tableId(), position.userId());
+                    continue;
+                }
+            }
+            updates.add(new PositionUpdate(position.tableId(), position.x(), position.y()));
+        }
+
+        if (!updates.isEmpty()) {
+            revisionService.markChanged(diagramId);
+        }
+        return tableRepository.batchUpdatePositions(diagramId, updates, Instant.now());
+    }
+
+    private void loadExtents(Collection<String> tableIds) {
+        List<String> missing = tableIds.stream().filter(id -> !tableExtents.containsKey(id)).toList();
+        if (missing.isEmpty()) return;
+
+        try {
+            for (TableRepository.TableExtent extent : tableRepository.findExtentsByIdIn(missing)) {
+                double width = extent.getWidth() != null ? extent.getWidth().doubleValue() : DEFAULT_TABLE_WIDTH;
+                double height = extent.getHeight() != null
+                    ? extent.getHeight().doubleValue()
+                    : TABLE_HEADER_HEIGHT + TABLE_ROW_HEIGHT * extent.getColumnCount();
+                tableExtents.put(extent.getId(), new double[] {width, height});
+            }
+        } catch (Exception e) {
+            // Routed with the default size until the next tick
+            log.debug("Failed to load table sizes: {}", e.getMessage());
+        }
+    }
+
+    private ViewportRouter.Box boundsOf(TableMoveMessage move) {
+        if (move.getX() == null || move.getY() == null) return null;
+        double[] extent = tableExtents.getOrDefault(move.getTableId(), UNKNOWN_TABLE_EXTENT);
+        double x = move.getX().doubleValue();
+        double y = move.getY().doubleValue();
+        return new ViewportRouter.Box(x, y, x + extent[0], y + extent[1]);
+    }
+
+    private void enqueueWrite(String diagramId, PendingPosition position) {
+        pendingWrites.compute(diagramId, (id, positions) -> {
+            if (positions == null) {
+                positions = new LinkedHashMap<>();
+            }
+            positions.put(position.tableId(), position);
+            return positions;
+        });
+    }
+
+    private record PendingPosition(String tableId, BigDecimal x, BigDecimal y, String userId, Long fencingToken,
+                                   boolean authorized) {}
+}
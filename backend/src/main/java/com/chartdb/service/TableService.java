@@ -13,7 +13,9 @@ import com.chartdb.mapper.TableMapper;
 import com.chartdb.model.Diagram;
 import com.chartdb.model.DiagramTable;
 import com.chartdb.model.TableColumn;
+import com.chartdb.model.enums.ChangeEntityType;
 import com.chartdb.repository.ColumnRepository;
+import com.chartdb.repository.DiagramContentRepository;
 import com.chartdb.repository.RelationshipRepository;
 import com.chartdb.repository.TableRepository;
 import lombok.RequiredArgsConstructor;
@@ -23,7 +25,9 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Service
@@ -33,9 +37,14 @@ public class TableService {
     private final TableRepository tableRepository;
     private final ColumnRepository columnRepository;
     private final RelationshipRepository relationshipRepository;
+    private final DiagramContentRepository contentRepository;
     private final DiagramService diagramService;
+    private final DiagramRevisionService revisionService;
     private final TableMapper tableMapper;
     private final ColumnMapper columnMapper;
+    private final TableMovePipeline tableMovePipeline;
+    private final TableLockManager tableLockManager;
+    private final DiagramStructureIndex structureIndex;
     
     @Transactional
     public TableResponse createTable(String diagramId, String userId, CreateTableRequest request) {
@@ -44,6 +53,7 @@ public class TableService {
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new AccessDeniedException("You don't have permission to edit this diagram");
         }
+        revisionService.markChanged(diagram.getId());
         
         if (tableRepository.existsByDiagramIdAndName(diagramId, request.getName())) {
             throw new BadRequestException("Table with name '" + request.getName() + "' already exists");
@@ -64,6 +74,7 @@ public class TableService {
         table = tableRepository.save(table);
         
         // Create columns if provided
+        List<String> columnIds = new ArrayList<>();
         if (request.getColumns() != null && !request.getColumns().isEmpty()) {
             int orderIndex = 0;
             for (CreateColumnRequest columnRequest : request.getColumns()) {
@@ -73,9 +84,11 @@ public class TableService {
                     column.setOrderIndex(orderIndex++);
                 }
                 columnRepository.save(column);
+                columnIds.add(column.getId());
                 log.debug("Column created: {} in table {}", column.getId(), table.getId());
             }
         }
+        structureIndex.tableCreatedOnCommit(diagramId, table.getId(), columnIds);
         
         log.info("Table created: {} in diagram {} by user {}", table.getId(), diagramId, userId);
         
@@ -92,8 +105,7 @@ public class TableService {
             throw new AccessDeniedException("You don't have permission to view this diagram");
         }
         
-        List<DiagramTable> tables = tableRepository.findByDiagramIdWithColumns(diagramId);
-        return tableMapper.toResponseList(tables);
+        return contentRepository.findTables(diagramId);
     }
     
     @Transactional(readOnly = true)
@@ -109,13 +121,15 @@ public class TableService {
     }
     
     @Transactional
-    public TableResponse updateTable(String tableId, String userId, UpdateTableRequest request) {
+    public TableResponse updateTable(String tableId, String userId, Long lockToken, UpdateTableRequest request) {
         DiagramTable table = findTableById(tableId);
         Diagram diagram = table.getDiagram();
         
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new AccessDeniedException("You don't have permission to edit this table");
         }
+        tableLockManager.checkWrite(diagram.getId(), TableLockManager.Target.table(tableId), userId, lockToken);
+        revisionService.markChanged(diagram.getId());
         
         if (request.getName() != null && !request.getName().equals(table.getName())) {
             if (tableRepository.existsByDiagramIdAndNameAndIdNot(diagram.getId(), request.getName(), tableId)) {
@@ -174,6 +188,7 @@ public class TableService {
         // Track which columns we've processed
         java.util.Set<String> processedIds = new java.util.HashSet<>();
         
+        java.util.List<String> createdIds = new java.util.ArrayList<>();
         int orderIndex = 0;
         for (CreateColumnRequest req : columnRequests) {
             String colId = req.getId();
@@ -192,6 +207,7 @@ public class TableService {
                 }
                 columnRepository.save(newColumn);
                 table.getColumns().add(newColumn);
+                createdIds.add(newColumn.getId());
                 if (colId != null) processedIds.add(colId);
             }
         }
@@ -207,6 +223,10 @@ public class TableService {
             table.getColumns().remove(col);
             columnRepository.delete(col);
         }
+        List<String> removedIds = toRemove.stream().map(TableColumn::getId).toList();
+        revisionService.markDeleted(table.getDiagram().getId(), ChangeEntityType.COLUMN, removedIds);
+        structureIndex.columnsCreatedOnCommit(table.getDiagram().getId(), table.getId(), createdIds);
+        structureIndex.columnsDeletedOnCommit(table.getDiagram().getId(), table.getId(), removedIds);
     }
     
     private void updateColumnFromRequest(TableColumn column, CreateColumnRequest req, int orderIndex) {
@@ -224,51 +244,75 @@ public class TableService {
         columnRepository.save(column);
     }
     
+    /**
+     * The position goes through the move pipeline with any pending drag
+     * positions of the diagram, and is written before this returns, so a
+     * following load sees it under the new revision.
+     */
     @Transactional
-    public TableResponse moveTable(String tableId, String userId, MoveTableRequest request) {
+    public TableResponse moveTable(String tableId, String userId, Long lockToken, MoveTableRequest request) {
         DiagramTable table = findTableById(tableId);
         Diagram diagram = table.getDiagram();
         
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new AccessDeniedException("You don't have permission to edit this table");
         }
+        tableLockManager.checkWrite(diagram.getId(), TableLockManager.Target.table(tableId), userId, lockToken);
         
-        tableRepository.updatePosition(tableId, request.getPositionX(), request.getPositionY(), Instant.now());
-        
-        table.setPositionX(request.getPositionX());
-        table.setPositionY(request.getPositionY());
+        tableMovePipeline.submitPosition(diagram.getId(), tableId, userId, request.getPositionX(), request.getPositionY());
+        tableMovePipeline.flushNow(diagram.getId());
         
-        return tableMapper.toResponse(table);
+        TableResponse response = tableMapper.toResponse(table);
+        response.setPositionX(request.getPositionX());
+        response.setPositionY(request.getPositionY());
+        return response;
     }
     
     @Transactional
-    public void batchMoveTables(String diagramId, String userId, List<String> tableIds, BigDecimal deltaX, BigDecimal deltaY) {
+    public void batchMoveTables(String diagramId, String userId, List<String> tableIds, BigDecimal deltaX, BigDecimal deltaY,
+                                Map<String, Long> lockTokens) {
         Diagram diagram = diagramService.findDiagramById(diagramId);
         
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new AccessDeniedException("You don't have permission to edit this diagram");
         }
+        for (String tableId : tableIds) {
+            tableLockManager.checkWrite(diagramId, TableLockManager.Target.table(tableId), userId,
+                lockTokens == null ? null : lockTokens.get(tableId));
+        }
+        revisionService.markChanged(diagram.getId());
         
+        // Absolute positions still pending would otherwise land after, and undo, the relative move
+        tableMovePipeline.flushNow(diagramId);
         tableRepository.updatePositionsByDelta(tableIds, deltaX, deltaY, Instant.now());
     }
     
     @Transactional
-    public void deleteTable(String tableId, String userId) {
+    public void deleteTable(String tableId, String userId, Long lockToken) {
         DiagramTable table = findTableById(tableId);
         Diagram diagram = table.getDiagram();
         
         if (!diagramService.canUserEdit(diagram, userId)) {
             throw new AccessDeniedException("You don't have permission to delete this table");
         }
+        tableLockManager.checkWrite(diagram.getId(), TableLockManager.Target.table(tableId), userId, lockToken);
+        revisionService.markChanged(diagram.getId());
         
         // Clear FK references to this table
-        columnRepository.clearForeignKeyReferences(tableId);
+        columnRepository.clearForeignKeyReferences(tableId, Instant.now());
         
         // Delete relationships
+        revisionService.markDeleted(diagram.getId(), ChangeEntityType.RELATIONSHIP,
+            relationshipRepository.findIdsByTableId(tableId));
         relationshipRepository.deleteByTableId(tableId);
         
         // Delete the table (cascades to columns)
+        revisionService.markDeleted(diagram.getId(), ChangeEntityType.COLUMN,
+            table.getColumns().stream().map(TableColumn::getId).toList());
+        revisionService.markDeleted(diagram.getId(), ChangeEntityType.TABLE, List.of(tableId));
         tableRepository.delete(table);
+        tableLockManager.releaseTableOnCommit(diagram.getId(), tableId);
+        structureIndex.tableDeletedOnCommit(diagram.getId(), tableId);
         log.info("Table deleted: {} from diagram {} by user {}", tableId, diagram.getId(), userId);
     }
     
@@ -0,0 +1,113 @@
+package com.chartdb.service;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel for lease and timeout expiry.
+ *
+ * Level 0 has one slot per tick; each higher level has slots {@code slotCount}
+ * times wider. Entries are placed on the finest level that can hold their
+ * deadline and cascade down as their slot comes round, so
+ * {@link #advance(long, Consumer)} only touches entries that are due or about
+ * to move one level closer. Scheduling is lock-free: new entries are handed
+ * over through a queue and placed by the advancing thread. There is no
+ * cancellation: callers re-check the item when it fires and ignore stale entries.
+ */
+public class TimingWheel<T> {
+
+    private final long tickMillis;
+    private final int slotCount;
+    private final Queue<Entry<T>> incoming = new ConcurrentLinkedQueue<>();
+
+    // Guarded by this
+    private final ArrayDeque<Entry<T>>[][] levels;
+    private final long[] levelSpans;
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int slotCount, int levelCount) {
+        this.tickMillis = tickMillis;
+        this.slotCount = slotCount;
+        this.levels = new ArrayDeque[levelCount][slotCount];
+        this.levelSpans = new long[levelCount];
+        long span = 1;
+        for (int level = 0; level < levelCount; level++) {
+            levelSpans[level] = span;
+            span *= slotCount;
+            for (int slot = 0; slot < slotCount; slot++) {
+                levels[level][slot] = new ArrayDeque<>();
+            }
+        }
+        // The last fully elapsed tick
+        this.currentTick = System.currentTimeMillis() / tickMillis - 1;
+    }
+
+    public void schedule(T item, long deadlineMillis) {
+        incoming.add(new Entry<>(item, deadlineMillis));
+    }
+
+    /**
+     * Fire every entry whose deadline is at or before {@code nowMillis}, at most
+     * one tick late and never early.
+     */
+    public synchronized void advance(long nowMillis, Consumer<T> expired) {
+        for (Entry<T> entry; (entry = incoming.poll()) != null; ) {
+            place(entry);
+        }
+
+        long targetTick = nowMillis / tickMillis - 1;
+        while (currentTick < targetTick) {
+            long tick = currentTick + 1;
+            // Coarse slots first, so entries cascading two levels end up in this tick's slot
+            for (int level = levels.length - 1; level > 0; level--) {
+                if (tick % levelSpans[level] == 0) {
+                    ArrayDeque<Entry<T>> slot = levels[level][slotIndex(tick / levelSpans[level])];
+                    for (Entry<T> entry; (entry = slot.poll()) != null; ) {
+                        place(entry);
+                    }
+                }
+            }
+            currentTick = tick;
+
+            ArrayDeque<Entry<T>> slot = levels[0][slotIndex(tick)];
+            for (Entry<T> entry; (entry = slot.poll()) != null; ) {
+                expired.accept(entry.item());
+            }
+        }
+    }
+
+    public synchronized int size() {
+        int size = incoming.size();
+        for (ArrayDeque<Entry<T>>[] level : levels) {
+            for (ArrayDeque<Entry<T>> slot : level) {
+                size += slot.size();
+            }
+        }
+        return size;
+    }
+
+    private void place(Entry<T> entry) {
+        // Overdue entries fire on the next tick
+        long deadlineTick = Math.max(entry.deadlineMillis() / tickMillis, currentTick + 1);
+        for (int level = 0; level < levels.length; level++) {
+            long bucket = deadlineTick / levelSpans[level];
+            long distance = bucket - currentTick / levelSpans[level];
+            if (distance >= 1 && distance <= slotCount) {
+                levels[level][slotIndex(bucket)].add(entry);
+                return;
+            }
+        }
+        // Beyond the top level: park in its farthest slot and re-place when that comes round
+        int top = levels.length - 1;
+        levels[top][slotIndex(currentTick / levelSpans[top] + slotCount)].add(entry);
+    }
+
+    private int slotIndex(long bucket) {
+        return (int) (bucket % slotCount);
+    }
+
+    private record Entry<T>(T item, long deadlineMillis) {}
+}
@@ -0,0 +1,282 @@
+package com.chartdb.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+
+/**
+ * Session wrapper that gives every client its own bounded outbound queue.
+ *
+ * Broker threads only enqueue; a per-session drain task does the actual write,
+ * so one slow connection cannot hold up delivery to everyone else. Frames are
+ * queued by class:
+ * <ul>
+ *   <li>cursor and table-move batches are deltas, so a batch that finds an
+ *       earlier one of the same subscription still queued is merged into it
+ *       entry by entry (newest wins per user or table). A move batch that ends
+ *       a drag is never merged into, so the final position is always written;
+ *       more than a small bound of unmerged batches disconnects the session,</li>
+ *   <li>everything else (structural edits, presence, locks, replies) is never
+ *       dropped; a session that stays over the limit is disconnected instead.</li>
+ * </ul>
+ */
+@Slf4j
+public class BackpressureWebSocketSession extends WebSocketSessionDecorator {
+
+    public enum MessageClass { CURSOR, MOVE, STRUCTURAL }
+
+    private static final int HEADER_SCAN_LIMIT = 1024;
+
+    private final Executor drainExecutor;
+    private final int moveLimit;
+    private final int structuralSoftLimit;
+    private final int structuralHardLimit;
+    private final long overLimitGraceMillis;
+
+    // Guarded by this
+    private final ArrayDeque<PendingBatch> cursors = new ArrayDeque<>();
+    private final ArrayDeque<PendingBatch> moves = new ArrayDeque<>();
+    private final ArrayDeque<WebSocketMessage<?>> structural = new ArrayDeque<>();
+    private boolean draining;
+    private long overLimitSince = -1;
+    private long mergedCursors;
+    private long mergedMoves;
+
+    private volatile boolean overflowed;
+
+    public BackpressureWebSocketSession(WebSocketSession delegate, Executor drainExecutor, int moveLimit,
+                                        int structuralSoftLimit, int structuralHardLimit, long overLimitGraceMillis) {
+        super(delegate);
+        this.drainExecutor = drainExecutor;
+        this.moveLimit = moveLimit;
+        this.structuralSoftLimit = structuralSoftLimit;
+        this.structuralHardLimit = structuralHardLimit;
+        this.overLimitGraceMillis = overLimitGraceMillis;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        if (overflowed) return;
+
+        String destination = destinationOf(message);
+        MessageClass messageClass = classify(destination);
+        boolean startDrain;
+        boolean overflow = false;
+
+        synchronized (this) {
+            switch (messageClass) {
+                case CURSOR -> {
+                    if (enqueueBatch(cursors, destination, message, messageClass)) {
+                        mergedCursors++;
+                    }
+                    overflow = cursors.size() > moveLimit;
+                }
+                case MOVE -> {
+                    if (enqueueBatch(moves, destination, message, messageClass)) {
+                        mergedMoves++;
+                    }
+                    overflow = moves.size() > moveLimit;
+                }
+                case STRUCTURAL -> {
+                    structural.add(message);
+                    overflow = isOverLimit();
+                }
+            }
+            startDrain = !overflow && !draining;
+            if (startDrain) draining = true;
+        }
+
+        if (overflow) {
+            closeForOverflow();
+        } else if (startDrain) {
+            drainExecutor.execute(this::drain);
+        }
+    }
+
+    public synchronized int getQueueDepth() {
+        return cursors.size() + moves.size() + structural.size();
+    }
+
+    public synchronized long getDroppedCount(MessageClass messageClass) {
+        return switch (messageClass) {
+            case CURSOR -> mergedCursors;
+            case MOVE -> mergedMoves;
+            case STRUCTURAL -> 0;
+        };
+    }
+
+    public boolean isOverflowed() {
+        return overflowed;
+    }
+
+    public synchronized void discard() {
+        cursors.clear();
+        moves.clear();
+        structural.clear();
+    }
+
+    /**
+     * Merge the batch into the latest queued batch of the same subscription, or
+     * queue it behind. Returns whether it was merged.
+     */
+    private boolean enqueueBatch(ArrayDeque<PendingBatch> queue, String destination, WebSocketMessage<?> message,
+                                 MessageClass messageClass) {
+        String key = BatchFrameMerger.subscriptionKey(message);
+        if (key == null) key = destination;
+
+        Iterator<PendingBatch> iterator = queue.descendingIterator();
+        while (iterator.hasNext()) {
+            PendingBatch pending = iterator.next();
+            if (!pending.key.equals(key)) continue;
+            if (pending.sealed) break;
+
+            WebSocketMessage<?> merged = BatchFrameMerger.merge(pending.message, message, messageClass);
+            if (merged == null) break;
+            pending.message = merged;
+            pending.sealed = messageClass == MessageClass.MOVE && BatchFrameMerger.endsDrag(message);
+            return true;
+        }
+
+        PendingBatch pending = new PendingBatch(key, message);
+        pending.sealed = messageClass == MessageClass.MOVE && BatchFrameMerger.endsDrag(message);
+        queue.add(pending);
+        return false;
+    }
+
+    private void drain() {
+        while (true) {
+            WebSocketMessage<?> next;
+            synchronized (this) {
+                next = poll();
+                if (next == null || overflowed) {
+                    draining = false;
+                    return;
+                }
+            }
+            try {
+                getDelegate().sendMessage(next);
+            } catch (IOException | RuntimeException e) {
+                log.debug("Outbound send failed for session {}: {}", getId(), e.getMessage());
+                synchronized (this) {
+                    draining = false;
+                }
+                discard();
+                return;
+            }
+        }
+    }
+
+    // Structural frames first so edits are never starved by cursor traffic
+    private WebSocketMessage<?> poll() {
+        WebSocketMessage<?> next = structural.poll();
+        if (structural.size() <= structuralSoftLimit) {
+            overLimitSince = -1;
+        }
+        if (next != null) return next;
+
+        PendingBatch batch = moves.poll();
+        if (batch == null) {
+            batch = cursors.poll();
+        }
+        return batch != null ? batch.message : null;
+    }
+
+    private boolean isOverLimit() {
+        int size = structural.size();
+        if (size > structuralHardLimit) return true;
+        if (size <= structuralSoftLimit) return false;
+
+        long now = System.currentTimeMillis();
+        if (overLimitSince < 0) {
+            overLimitSince = now;
+            return false;
+        }
+        return now - overLimitSince > overLimitGraceMillis;
+    }
+
+    private void closeForOverflow() {
+        overflowed = true;
+        discard();
+        log.warn("Disconnecting session {}: outbound queue stayed over its limit", getId());
+        drainExecutor.execute(() -> {
+            try {
+                getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException e) {
+                log.debug("Failed to close session {}: {}", getId(), e.getMessage());
+            }
+        });
+    }
+
+    static MessageClass classify(String destination) {
+        if (destination == null || !(destination.startsWith("/topic/diagram/")
+                || destination.startsWith("/user/queue/diagram/"))) {
+            return MessageClass.STRUCTURAL;
+        }
+        if (destination.endsWith("/cursors")) return MessageClass.CURSOR;
+        if (destination.endsWith("/table-moved")) return MessageClass.MOVE;
+        return MessageClass.STRUCTURAL;
+    }
+
+    /**
+     * Reads the destination header of an outbound STOMP MESSAGE frame without
+     * decoding the body. Envelopes on the multiplexed /stream topic report the
+     * topic they wrap, so they are queued by the same policy.
+     */
+    static String destinationOf(WebSocketMessage<?> message) {
+        String head;
+        if (message instanceof TextMessage text) {
+            String payload = text.getPayload();
+            head = payload.substring(0, Math.min(payload.length(), HEADER_SCAN_LIMIT));
+        } else if (message instanceof BinaryMessage binary) {
+            ByteBuffer buffer = binary.getPayload().duplicate();
+            byte[] bytes = new byte[Math.min(buffer.remaining(), HEADER_SCAN_LIMIT)];
+            buffer.get(bytes);
+            head = new String(bytes, StandardCharsets.ISO_8859_1);
+        } else {
+            return null;
+        }
+
+        if (!head.startsWith("MESSAGE")) return null;
+        String destination = headerValue(head, "destination");
+        if (destination != null && destination.endsWith("/stream")) {
+            String streamType = headerValue(head, DiagramStreamInterceptor.STREAM_TYPE_HEADER);
+            if (streamType != null) {
+                return destination.substring(0, destination.length() - "stream".length()) + streamType;
+            }
+        }
+        return destination;
+    }
+
+    private static final class PendingBatch {
+
+        private final String key;
+        private WebSocketMessage<?> message;
+        // Later batches of the subscription queue behind this one instead of merging into it
+        private boolean sealed;
+
+        PendingBatch(String key, WebSocketMessage<?> message) {
+            this.key = key;
+            this.message = message;
+        }
+    }
+
+    private static String headerValue(String head, String name) {
+        int headerEnd = head.indexOf("\n\n");
+        int start = head.indexOf("\n" + name + ":");
+        if (start < 0 || (headerEnd >= 0 && start > headerEnd)) return null;
+        start += name.length() + 2;
+        int end = head.indexOf('\n', start);
+        return end < 0 ? null : head.substring(start, end);
+    }
+}
@@ -0,0 +1,240 @@
+package com.chartdb.websocket;
+
+import com.chartdb.dto.websocket.CursorBroadcast;
+import com.chartdb.dto.websocket.TableMoveMessage;
+import com.chartdb.websocket.BackpressureWebSocketSession.MessageClass;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.cfg.JsonNodeFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Merges two serialized cursor or table-move batch frames for the same
+ * subscription into one.
+ *
+ * Batches are deltas: each carries only the entries that changed since the
+ * previous tick, so a superseded frame cannot simply be dropped. Entries are
+ * merged by cursor user id or table id, newest wins, in first-seen order.
+ * JSON and {@link BinaryFrameCodec binary-v1} frames are merged; anything else
+ * (deflated frames, relative batch moves) is reported as not mergeable and must
+ * be delivered as it is.
+ */
+final class BatchFrameMerger {
+
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+        .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+        .disable(JsonNodeFeature.STRIP_TRAILING_BIGDECIMAL_ZEROES)
+        .build();
+
+    private static final String DRAG_END = "\"dragEnd\":true";
+
+    private BatchFrameMerger() {}
+
+    /**
+     * Key of the subscription a frame was sent to, so only frames of the same
+     * subscription are merged.
+     */
+    static String subscriptionKey(WebSocketMessage<?> message) {
+        Frame frame = Frame.parse(message);
+        if (frame == null) return null;
+        return frame.header("subscription") + "|" + frame.header("destination");
+    }
+
+    /**
+     * Whether a table-move frame ends a drag. Such a frame carries a final
+     * position and is never merged into; frames that cannot be read count as
+     * final too.
+     */
+    static boolean endsDrag(WebSocketMessage<?> message) {
+        Frame frame = Frame.parse(message);
+        if (frame == null) return true;
+        if (frame.isJson()) return frame.text.contains(DRAG_END);
+        if (!frame.isBinary()) return true;
+        try {
+            return BinaryFrameCodec.decodeTableMoves(frame.bytes, String::valueOf).stream()
+                .anyMatch(move -> Boolean.TRUE.equals(move.getDragEnd()));
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Merge {@code newer} into {@code older}, or null when either frame is not a
+     * mergeable batch. The result carries the newer frame's headers.
+     */
+    static WebSocketMessage<?> merge(WebSocketMessage<?> older, WebSocketMessage<?> newer, MessageClass messageClass) {
+        String field;
+        String key;
+        switch (messageClass) {
+            case CURSOR -> { field = "cursors"; key = "userId"; }
+            case MOVE -> { field = "moves"; key = "tableId"; }
+            default -> { return null; }
+        }
+
+        Frame olderFrame = Frame.parse(older);
+        Frame newerFrame = Frame.parse(newer);
+        if (olderFrame == null || newerFrame == null) return null;
+        if (olderFrame.isBinary() && newerFrame.isBinary()) {
+            return mergeBinary(olderFrame, newerFrame, messageClass);
+        }
+        if (!olderFrame.isJson() || !newerFrame.isJson()) return null;
+
+        try {
+            JsonNode olderRoot = MAPPER.readTree(olderFrame.text);
+            JsonNode newerRoot = MAPPER.readTree(newerFrame.text);
+            // Envelopes on the multiplexed /stream topic wrap the batch in "d"
+            boolean envelope = newerFrame.header(DiagramStreamInterceptor.STREAM_TYPE_HEADER) != null;
+            ObjectNode olderBatch = batch(envelope ? olderRoot.get("d") : olderRoot, field, key);
+            ObjectNode newerBatch = batch(envelope ? newerRoot.get("d") : newerRoot, field, key);
+            if (olderBatch == null || newerBatch == null) return null;
+
+            Map<String, JsonNode> entries = new LinkedHashMap<>();
+            for (JsonNode entry : olderBatch.get(field)) {
+                entries.put(entry.get(key).asText(), entry);
+            }
+            for (JsonNode entry : newerBatch.get(field)) {
+                entries.put(entry.get(key).asText(), entry);
+            }
+            ArrayNode merged = newerBatch.putArray(field);
+            entries.values().forEach(merged::add);
+
+            return newerFrame.withBody(MAPPER.writeValueAsString(envelope ? newerRoot : newerBatch));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Slots stand in for user ids: decoded as their decimal string and encoded back from it
+    private static WebSocketMessage<?> mergeBinary(Frame olderFrame, Frame newerFrame, MessageClass messageClass) {
+        try {
+            byte[] merged = switch (messageClass) {
+                case CURSOR -> BinaryFrameCodec.encodeCursors(
+                    mergeEntries(BinaryFrameCodec.decodeCursors(olderFrame.bytes, String::valueOf),
+                        BinaryFrameCodec.decodeCursors(newerFrame.bytes, String::valueOf),
+                        CursorBroadcast::getUserId),
+                    Integer::parseInt);
+                case MOVE -> BinaryFrameCodec.encodeTableMoves(
+                    mergeEntries(BinaryFrameCodec.decodeTableMoves(olderFrame.bytes, String::valueOf),
+                        BinaryFrameCodec.decodeTableMoves(newerFrame.bytes, String::valueOf),
+                        TableMoveMessage::getTableId),
+                    Integer::parseInt);
+                default -> null;
+            };
+            return merged != null ? newerFrame.withBody(merged) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static <T> List<T> mergeEntries(List<T> older, List<T> newer, Function<T, String> keyOf) {
+        Map<String, T> entries = new LinkedHashMap<>();
+        older.forEach(entry -> entries.put(keyOf.apply(entry), entry));
+        newer.forEach(entry -> entries.put(keyOf.apply(entry), entry));
+        return new ArrayList<>(entries.values());
+    }
+
+    // The batch object, or null unless every entry is keyed (relative batch moves carry no table id)
+    private static ObjectNode batch(JsonNode node, String field, String key) {
+        if (!(node instanceof ObjectNode object) || !(object.get(field) instanceof ArrayNode entries)) return null;
+        for (JsonNode entry : entries) {
+            JsonNode id = entry.get(key);
+            if (id == null || !id.isTextual()) return null;
+        }
+        return object;
+    }
+
+    /**
+     * An outbound STOMP frame split into its head (command and headers) and
+     * body, which is {@code text} for text frames and {@code bytes} for binary ones.
+     */
+    private record Frame(String head, String text, byte[] bytes) {
+
+        static Frame parse(WebSocketMessage<?> message) {
+            if (message instanceof TextMessage textMessage) {
+                String payload = textMessage.getPayload();
+                int headEnd = payload.indexOf("\n\n");
+                if (headEnd < 0 || !payload.endsWith("\0")) return null;
+                return new Frame(payload.substring(0, headEnd + 1),
+                    payload.substring(headEnd + 2, payload.length() - 1), null);
+            }
+            if (message instanceof BinaryMessage binaryMessage) {
+                ByteBuffer buffer = binaryMessage.getPayload().duplicate();
+                byte[] payload = new byte[buffer.remaining()];
+                buffer.get(payload);
+                int headEnd = indexOfBlankLine(payload);
+                if (headEnd < 0 || payload[payload.length - 1] != 0) return null;
+                byte[] body = new byte[payload.length - headEnd - 3];
+                System.arraycopy(payload, headEnd + 2, body, 0, body.length);
+                return new Frame(new String(payload, 0, headEnd + 1, StandardCharsets.UTF_8), null, body);
+            }
+            return null;
+        }
+
+        boolean isJson() {
+            String contentType = header("content-type");
+            return text != null && contentType != null && contentType.startsWith("application/json")
+                && header("content-encoding") == null;
+        }
+
+        boolean isBinary() {
+            String contentType = header("content-type");
+            return bytes != null && bytes.length > 0 && contentType != null
+                && contentType.startsWith("application/octet-stream") && header("content-encoding") == null
+                && (bytes[0] == BinaryFrameCodec.CURSOR_BATCH || bytes[0] == BinaryFrameCodec.TABLE_MOVE_BATCH);
+        }
+
+        String header(String name) {
+            int start = head.indexOf("\n" + name + ":");
+            if (start < 0) return null;
+            start += name.length() + 2;
+            return head.substring(start, head.indexOf('\n', start));
+        }
+
+        TextMessage withBody(String newBody) {
+            String newHead = headWithLength(newBody.getBytes(StandardCharsets.UTF_8).length);
+            return new TextMessage(newHead + newBody + '\0');
+        }
+
+        BinaryMessage withBody(byte[] newBody) {
+            byte[] newHead = headWithLength(newBody.length).getBytes(StandardCharsets.UTF_8);
+            byte[] frame = new byte[newHead.length + newBody.length + 1];
+            System.arraycopy(newHead, 0, frame, 0, newHead.length);
+            System.arraycopy(newBody, 0, frame, newHead.length, newBody.length);
+            return new BinaryMessage(frame);
+        }
+
+        // Head followed by the blank line that ends it, with content-length set to the new body
+        private String headWithLength(int length) {
+            StringBuilder newHead = new StringBuilder(head.length() + 8);
+            for (String line : head.split("\n")) {
+                if (line.startsWith("content-length:")) {
+                    line = "content-length:" + length;
+                }
+                newHead.append(line).append('\n');
+            }
+            return newHead.append('\n').toString();
+        }
+
+        private static int indexOfBlankLine(byte[] payload) {
+            for (int i = 0; i + 1 < payload.length; i++) {
+                if (payload[i] == '\n' && payload[i + 1] == '\n') return i;
+            }
+            return -1;
+        }
+    }
+}
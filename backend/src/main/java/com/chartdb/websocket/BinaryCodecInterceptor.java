@@ -0,0 +1,114 @@
+package com.chartdb.websocket;
+
+import com.chartdb.dto.websocket.CursorBatchBroadcast;
+import com.chartdb.dto.websocket.TableMoveBatchMessage;
+import com.chartdb.service.PresenceRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Negotiates and applies the binary frame encoding.
+ *
+ * On the inbound channel it records sessions whose STOMP CONNECT carries
+ * {@code codec:binary-v1}; this is only honoured on the /ws-native endpoint,
+ * since SockJS cannot carry binary frames. On the outbound channel it swaps the
+ * JSON body of cursor and table-move batches for the binary encoding when the
+ * receiving session asked for it. A broadcast is encoded once and the bytes are
+ * reused for every subscriber it fans out to.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BinaryCodecInterceptor implements ChannelInterceptor {
+
+    public static final String NATIVE_TRANSPORT_ATTRIBUTE = "chartdbNativeTransport";
+
+    private final PresenceRegistry presenceRegistry;
+
+    private final Set<String> binarySessions = ConcurrentHashMap.newKeySet();
+
+    // The broker fans one message out to all subscribers on the same thread
+    private final ThreadLocal<Encoded> lastEncoded = new ThreadLocal<>();
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (type == null || sessionId == null) return message;
+
+        switch (type) {
+            case CONNECT -> negotiate(sessionId, headers);
+            case DISCONNECT -> binarySessions.remove(sessionId);
+            case MESSAGE -> {
+                Object source = headers.get(BinaryFrameCodec.SOURCE_HEADER);
+                if (source != null && binarySessions.contains(sessionId)) {
+                    return encode(message, source);
+                }
+            }
+            default -> { }
+        }
+        return message;
+    }
+
+    private void negotiate(String sessionId, MessageHeaders headers) {
+        String codec = NativeMessageHeaderAccessor.getFirstNativeHeader(BinaryFrameCodec.CODEC_HEADER, headers);
+        if (!BinaryFrameCodec.BINARY_V1.equals(codec)) return;
+
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(headers);
+        if (attributes != null && Boolean.TRUE.equals(attributes.get(NATIVE_TRANSPORT_ATTRIBUTE))) {
+            binarySessions.add(sessionId);
+            log.debug("Session {} negotiated {} frames", sessionId, BinaryFrameCodec.BINARY_V1);
+        }
+    }
+
+    private Message<?> encode(Message<?> message, Object source) {
+        Encoded cached = lastEncoded.get();
+        byte[] bytes;
+        if (cached != null && cached.source() == source) {
+            bytes = cached.bytes();
+        } else {
+            bytes = encode(source);
+            lastEncoded.set(new Encoded(source, bytes));
+        }
+        // No slot for some user (e.g. presence on another node): fall back to JSON
+        if (bytes == null) return message;
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        accessor.removeHeader(BinaryFrameCodec.SOURCE_HEADER);
+        return MessageBuilder.createMessage(bytes, accessor.getMessageHeaders());
+    }
+
+    private byte[] encode(Object source) {
+        if (source instanceof CursorBatchBroadcast batch) {
+            return BinaryFrameCodec.encodeCursors(batch.getCursors(), userId -> slotOf(batch.getDiagramId(), userId));
+        }
+        if (source instanceof TableMoveBatchMessage batch) {
+            return BinaryFrameCodec.encodeTableMoves(batch.getMoves(), userId -> slotOf(batch.getDiagramId(), userId));
+        }
+        return null;
+    }
+
+    private int slotOf(String diagramId, String userId) {
+        return presenceRegistry.get(diagramId, userId)
+            .map(PresenceRegistry.Presence::getUserSlot)
+            .orElse(-1);
+    }
+
+    private record Encoded(Object source, byte[] bytes) {}
+}
@@ -0,0 +1,247 @@
+package com.chartdb.websocket;
+
+import com.chartdb.dto.websocket.CursorBroadcast;
+import com.chartdb.dto.websocket.TableMoveMessage;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Compact binary encoding for the high-frequency collaboration frames.
+ *
+ * Coordinates are quantized to 1/{@value #COORDINATE_SCALE} unit and written as
+ * zigzag varints; users are identified by their per-diagram slot (see
+ * {@code CollaboratorResponse.userSlot}) instead of ids and display names.
+ *
+ * <pre>
+ * cursor batch:  0x01, varint count, then per cursor ordered by slot:
+ *                varint slot delta, zigzag x delta, zigzag y delta
+ *                (deltas against the previous cursor in the same frame)
+ * table moves:   0x02, varint count, then per move:
+ *                varint slot, flags (bit0 dragEnd, bit1 non-UUID table id),
+ *                table id (16 UUID bytes, or varint length + UTF-8),
+ *                zigzag x, zigzag y
+ * </pre>
+ *
+ * Deltas never reach across frames, so frames merged by outbound backpressure
+ * (which decodes and re-encodes them) do not corrupt later ones.
+ */
+public final class BinaryFrameCodec {
+
+    public static final String CODEC_HEADER = "codec";
+    public static final String BINARY_V1 = "binary-v1";
+
+    // Message header carrying the batch object a binary frame is encoded from
+    public static final String SOURCE_HEADER = "chartdbBinarySource";
+
+    public static final byte CURSOR_BATCH = 0x01;
+    public static final byte TABLE_MOVE_BATCH = 0x02;
+
+    static final int COORDINATE_SCALE = 10;
+
+    private BinaryFrameCodec() {
+    }
+
+    /**
+     * Headers for {@code SimpMessagingTemplate.convertAndSend} that let binary
+     * sessions receive {@code source} in this encoding.
+     */
+    public static MessageHeaders sourceHeaders(Object source) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setHeader(SOURCE_HEADER, source);
+        accessor.setLeaveMutable(true);
+        return accessor.getMessageHeaders();
+    }
+
+    /**
+     * @return the encoded frame, or {@code null} if a user has no slot
+     */
+    public static byte[] encodeCursors(List<CursorBroadcast> cursors, ToIntFunction<String> slotOf) {
+        List<int[]> entries = new ArrayList<>(cursors.size());
+        for (CursorBroadcast cursor : cursors) {
+            int slot = slotOf.applyAsInt(cursor.getUserId());
+            if (slot < 0) return null;
+            entries.add(new int[] {slot, quantize(cursor.getX()), quantize(cursor.getY())});
+        }
+        entries.sort(Comparator.comparingInt(entry -> entry[0]));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(2 + entries.size() * 6);
+        out.write(CURSOR_BATCH);
+        writeVarint(out, entries.size());
+        int previousSlot = 0;
+        int previousX = 0;
+        int previousY = 0;
+        for (int[] entry : entries) {
+            writeVarint(out, entry[0] - previousSlot);
+            writeVarint(out, zigzag(entry[1] - previousX));
+            writeVarint(out, zigzag(entry[2] - previousY));
+            previousSlot = entry[0];
+            previousX = entry[1];
+            previousY = entry[2];
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the encoded frame, or {@code null} if a user has no slot
+     */
+    public static byte[] encodeTableMoves(List<TableMoveMessage> moves, ToIntFunction<String> slotOf) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(2 + moves.size() * 24);
+        out.write(TABLE_MOVE_BATCH);
+        writeVarint(out, moves.size());
+        for (TableMoveMessage move : moves) {
+            int slot = slotOf.applyAsInt(move.getUserId());
+            if (slot < 0 || move.getTableId() == null) return null;
+
+            UUID tableUuid = parseUuid(move.getTableId());
+            int flags = (Boolean.TRUE.equals(move.getDragEnd()) ? 1 : 0) | (tableUuid == null ? 2 : 0);
+
+            writeVarint(out, slot);
+            out.write(flags);
+            if (tableUuid != null) {
+                writeLong(out, tableUuid.getMostSignificantBits());
+                writeLong(out, tableUuid.getLeastSignificantBits());
+            } else {
+                byte[] id = move.getTableId().getBytes(StandardCharsets.UTF_8);
+                writeVarint(out, id.length);
+                out.write(id, 0, id.length);
+            }
+            writeVarint(out, zigzag(quantize(move.getX())));
+            writeVarint(out, zigzag(quantize(move.getY())));
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Inverse of {@link #encodeCursors}; coordinates come back quantized.
+     *
+     * @throws IllegalArgumentException if the frame is not a cursor batch
+     */
+    public static List<CursorBroadcast> decodeCursors(byte[] frame, IntFunction<String> userOf) {
+        ByteBuffer in = open(frame, CURSOR_BATCH);
+        try {
+            int count = readVarint(in);
+            List<CursorBroadcast> cursors = new ArrayList<>(count);
+            int slot = 0;
+            int x = 0;
+            int y = 0;
+            for (int i = 0; i < count; i++) {
+                slot += readVarint(in);
+                x += unzigzag(readVarint(in));
+                y += unzigzag(readVarint(in));
+                cursors.add(CursorBroadcast.builder()
+                    .userId(userOf.apply(slot))
+                    .x(dequantize(x))
+                    .y(dequantize(y))
+                    .build());
+            }
+            return cursors;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated cursor batch");
+        }
+    }
+
+    /**
+     * Inverse of {@link #encodeTableMoves}; coordinates come back quantized.
+     *
+     * @throws IllegalArgumentException if the frame is not a table-move batch
+     */
+    public static List<TableMoveMessage> decodeTableMoves(byte[] frame, IntFunction<String> userOf) {
+        ByteBuffer in = open(frame, TABLE_MOVE_BATCH);
+        try {
+            int count = readVarint(in);
+            List<TableMoveMessage> moves = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int slot = readVarint(in);
+                int flags = in.get();
+                String tableId;
+                if ((flags & 2) == 0) {
+                    tableId = new UUID(in.getLong(), in.getLong()).toString();
+                } else {
+                    byte[] id = new byte[readVarint(in)];
+                    in.get(id);
+                    tableId = new String(id, StandardCharsets.UTF_8);
+                }
+                moves.add(TableMoveMessage.builder()
+                    .userId(userOf.apply(slot))
+                    .tableId(tableId)
+                    .x(dequantize(unzigzag(readVarint(in))))
+                    .y(dequantize(unzigzag(readVarint(in))))
+                    .dragEnd((flags & 1) != 0 ? Boolean.TRUE : null)
+                    .build());
+            }
+            return moves;
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Truncated table-move batch");
+        }
+    }
+
+    private static ByteBuffer open(byte[] frame, byte type) {
+        if (frame.length == 0 || frame[0] != type) {
+            throw new IllegalArgumentException("Not a frame of type " + type);
+        }
+        return ByteBuffer.wrap(frame, 1, frame.length - 1);
+    }
+
+    private static int quantize(BigDecimal value) {
+        return value == null ? 0 : (int) Math.round(value.doubleValue() * COORDINATE_SCALE);
+    }
+
+    private static BigDecimal dequantize(int value) {
+        // One decimal place per COORDINATE_SCALE of 10
+        return BigDecimal.valueOf(value, 1);
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    private static UUID parseUuid(String id) {
+        if (id.length() != 36) return null;
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.chartdb.websocket;
+
+import java.util.function.Consumer;
+
+/**
+ * Cluster bus for diagram topic messages. Every node publishes the messages its
+ * local broker delivers and re-delivers what other nodes publish, so
+ * collaborators connected to different replicas see each other's edits.
+ */
+public interface BrokerRelay {
+
+    void publish(RelayEnvelope envelope);
+
+    /**
+     * Register the listener for envelopes from the bus. Implementations may also
+     * hand back this node's own envelopes; callers filter on nodeId.
+     */
+    void subscribe(Consumer<RelayEnvelope> listener);
+}
@@ -0,0 +1,100 @@
+package com.chartdb.websocket;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Broker channel interceptor that mirrors diagram topic messages onto the
+ * {@link BrokerRelay}. Local subscribers are served straight from the local
+ * broker; messages relayed from other nodes are injected back into the broker
+ * channel marked as relayed so they are not published again. Native headers
+ * travel with the message; the viewport routed marker does not, as the other
+ * node's viewport sessions were not served a routed copy.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BrokerRelayInterceptor implements ChannelInterceptor {
+
+    static final String RELAYED_HEADER = "chartdbRelayedFrom";
+    private static final String DIAGRAM_TOPIC_PREFIX = "/topic/diagram/";
+
+    private final BrokerRelay brokerRelay;
+    private final ObjectProvider<SimpMessagingTemplate> messagingTemplate;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @PostConstruct
+    public void subscribe() {
+        brokerRelay.subscribe(this::deliver);
+        log.info("Broker relay {} started for node {}", brokerRelay.getClass().getSimpleName(), nodeId);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE
+                || headers.containsKey(RELAYED_HEADER)
+                || headers.containsKey(DiagramStreamInterceptor.STREAM_HEADER)
+                || !(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        if (destination == null || !destination.startsWith(DIAGRAM_TOPIC_PREFIX)) {
+            return message;
+        }
+
+        MimeType contentType = headers.get(MessageHeaders.CONTENT_TYPE, MimeType.class);
+        try {
+            brokerRelay.publish(new RelayEnvelope(nodeId, destination,
+                contentType != null ? contentType.toString() : null, nativeHeaders(headers), payload));
+        } catch (Exception e) {
+            // Local subscribers still get the message
+            log.warn("Failed to relay message for {}: {}", destination, e.getMessage());
+        }
+        return message;
+    }
+
+    private void deliver(RelayEnvelope envelope) {
+        if (nodeId.equals(envelope.nodeId())) return;
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(envelope.destination());
+        if (envelope.contentType() != null) {
+            accessor.setContentType(MimeType.valueOf(envelope.contentType()));
+        }
+        envelope.nativeHeaders().forEach((name, values) ->
+            values.forEach(value -> accessor.addNativeHeader(name, value)));
+        accessor.setHeader(RELAYED_HEADER, envelope.nodeId());
+
+        Message<byte[]> message = MessageBuilder.createMessage(envelope.payload(), accessor.getMessageHeaders());
+        messagingTemplate.getObject().send(envelope.destination(), message);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, List<String>> nativeHeaders(MessageHeaders headers) {
+        Object nativeHeaders = headers.get(NativeMessageHeaderAccessor.NATIVE_HEADERS);
+        return nativeHeaders instanceof Map<?, ?> map
+            ? new LinkedHashMap<>((Map<String, List<String>>) map)
+            : Map.of();
+    }
+}
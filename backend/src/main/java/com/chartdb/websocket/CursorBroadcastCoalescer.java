@@ -0,0 +1,76 @@
+package com.chartdb.websocket;
+
+import com.chartdb.dto.websocket.CursorBatchBroadcast;
+import com.chartdb.dto.websocket.CursorBroadcast;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalesces cursor frames per diagram and publishes them on a fixed-rate tick.
+ * Only the latest position per user survives a tick, so each subscriber receives
+ * at most one cursor frame per tick regardless of how many users are moving.
+ * Sessions that reported a viewport only get the cursors inside it (see {@link ViewportRouter}).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CursorBroadcastCoalescer {
+    
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ViewportRouter viewportRouter;
+    
+    // diagramId -> userId -> latest cursor since the last tick
+    private final Map<String, Map<String, CursorBroadcast>> pending = new ConcurrentHashMap<>();
+    
+    public void submit(String diagramId, CursorBroadcast cursor) {
+        pending.compute(diagramId, (id, cursors) -> {
+            if (cursors == null) {
+                cursors = new LinkedHashMap<>();
+            }
+            cursors.put(cursor.getUserId(), cursor);
+            return cursors;
+        });
+    }
+    
+    @Scheduled(fixedRateString = "${collaboration.cursor.broadcast-interval-ms:40}")
+    public void flush() {
+        for (String diagramId : pending.keySet()) {
+            // remove() is atomic with submit()'s compute(), so no update is lost
+            Map<String, CursorBroadcast> cursors = pending.remove(diagramId);
+            if (cursors == null || cursors.isEmpty()) continue;
+            
+            CursorBatchBroadcast batch = CursorBatchBroadcast.builder()
+                .diagramId(diagramId)
+                .cursors(new ArrayList<>(cursors.values()))
+                .timestamp(System.currentTimeMillis())
+                .build();
+            
+            try {
+                messagingTemplate.convertAndSend("/topic/diagram/" + diagramId + "/cursors", batch,
+                    viewportRouter.topicHeaders(diagramId, batch));
+                viewportRouter.route(diagramId, "cursors", batch.getCursors(), cursor -> false,
+                    CursorBroadcast::getUserId, CursorBroadcastCoalescer::boundsOf,
+                    visible -> CursorBatchBroadcast.builder()
+                        .diagramId(diagramId)
+                        .cursors(visible)
+                        .timestamp(batch.getTimestamp())
+                        .build());
+            } catch (Exception e) {
+                log.warn("Failed to broadcast cursor batch for diagram {}: {}", diagramId, e.getMessage());
+            }
+        }
+    }
+    
+    private static ViewportRouter.Box boundsOf(CursorBroadcast cursor) {
+        if (cursor.getX() == null || cursor.getY() == null) return null;
+        return ViewportRouter.Box.point(cursor.getX().doubleValue(), cursor.getY().doubleValue());
+    }
+}
@@ -0,0 +1,236 @@
+package com.chartdb.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Negotiates and applies deflate compression of large JSON frames.
+ *
+ * A session opts in with {@code accept-encoding:deflate} on its STOMP CONNECT,
+ * honoured on /ws-native only since the compressed body travels as a binary
+ * frame. Outbound JSON bodies of at least {@code min-bytes} are then replaced
+ * by their zlib-deflated bytes, marked {@code content-encoding:deflate};
+ * smaller frames such as cursor batches go out untouched. A broadcast is
+ * compressed once and reused for every subscriber it fans out to, and each
+ * compression is recorded per destination type (table-updated, column-updated,
+ * snapshot, ...) as input/output bytes, ratio and time. The reused result is
+ * dropped once the broker has finished the fan-out, see {@link #fanOutScope()}.
+ *
+ * WebSocket permessage-deflate is not used: it compresses every frame of the
+ * connection and cannot skip small ones.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DeflateCodecInterceptor implements ChannelInterceptor {
+
+    public static final String ACCEPT_ENCODING_HEADER = "accept-encoding";
+    public static final String CONTENT_ENCODING_HEADER = "content-encoding";
+    public static final String DEFLATE = "deflate";
+
+    private static final String[] DIAGRAM_PREFIXES = {"/topic/diagram/", "/user/queue/diagram/"};
+
+    // Column/relationship topic suffixes come from clients; cap the tag values
+    private static final int MAX_DESTINATION_TYPES = 64;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${collaboration.compression.min-bytes:4096}")
+    private int minBytes;
+
+    @Value("${collaboration.compression.level:1}")
+    private int level;
+
+    private final Set<String> deflateSessions = ConcurrentHashMap.newKeySet();
+
+    // The broker fans one payload out to all subscribers on the same thread; cleared after the fan-out
+    private final ThreadLocal<Compressed> lastCompressed = new ThreadLocal<>();
+    private final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(() -> new Deflater(level));
+
+    private final Map<String, Meters> meters = new ConcurrentHashMap<>();
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (type == null || sessionId == null) return message;
+
+        switch (type) {
+            case CONNECT -> negotiate(sessionId, headers);
+            case DISCONNECT -> deflateSessions.remove(sessionId);
+            case MESSAGE -> {
+                if (deflateSessions.contains(sessionId)
+                        && message.getPayload() instanceof byte[] payload
+                        && payload.length >= minBytes
+                        && isJson(headers)) {
+                    return compress(message, payload);
+                }
+            }
+            default -> { }
+        }
+        return message;
+    }
+
+    /**
+     * Interceptor for the broker channel that forgets the last compressed
+     * payload once the broker has handed a message to every subscriber, so
+     * broker threads do not keep it alive.
+     */
+    public ChannelInterceptor fanOutScope() {
+        return new ExecutorChannelInterceptor() {
+            @Override
+            public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+                lastCompressed.remove();
+            }
+
+            @Override
+            public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler,
+                                            Exception ex) {
+                lastCompressed.remove();
+            }
+        };
+    }
+
+    private void negotiate(String sessionId, MessageHeaders headers) {
+        String accepted = NativeMessageHeaderAccessor.getFirstNativeHeader(ACCEPT_ENCODING_HEADER, headers);
+        if (accepted == null || !accepted.contains(DEFLATE)) return;
+
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(headers);
+        if (attributes != null && Boolean.TRUE.equals(attributes.get(BinaryCodecInterceptor.NATIVE_TRANSPORT_ATTRIBUTE))) {
+            deflateSessions.add(sessionId);
+            log.debug("Session {} negotiated {} frames", sessionId, DEFLATE);
+        }
+    }
+
+    private Message<?> compress(Message<?> message, byte[] payload) {
+        Compressed cached = lastCompressed.get();
+        byte[] bytes;
+        if (cached != null && cached.source() == payload) {
+            bytes = cached.bytes();
+        } else {
+            bytes = deflate(payload, destinationType(destinationOf(message.getHeaders())));
+            lastCompressed.set(new Compressed(payload, bytes));
+        }
+        // Incompressible: not worth the client's inflate
+        if (bytes == null) return message;
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        // Octet-stream makes the STOMP handler send a binary WebSocket frame
+        accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        accessor.setNativeHeader(CONTENT_ENCODING_HEADER, DEFLATE);
+        return MessageBuilder.createMessage(bytes, accessor.getMessageHeaders());
+    }
+
+    private byte[] deflate(byte[] payload, String destinationType) {
+        long start = System.nanoTime();
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(payload);
+        deflater.finish();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 4 + 64);
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            int length = deflater.deflate(buffer);
+            out.write(buffer, 0, length);
+        }
+        byte[] compressed = out.toByteArray();
+
+        Meters destinationMeters = meters.get(destinationType);
+        if (destinationMeters == null) {
+            String tag = meters.size() < MAX_DESTINATION_TYPES ? destinationType : "other";
+            destinationMeters = meters.computeIfAbsent(tag, this::registerMeters);
+        }
+        destinationMeters.time().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        destinationMeters.bytesIn().increment(payload.length);
+        destinationMeters.bytesOut().increment(compressed.length);
+        destinationMeters.ratio().record((double) compressed.length / payload.length);
+
+        return compressed.length < payload.length ? compressed : null;
+    }
+
+    private Meters registerMeters(String destinationType) {
+        return new Meters(
+            Timer.builder("chartdb.websocket.deflate.time")
+                .description("CPU time spent compressing outbound frames")
+                .tag("destination", destinationType)
+                .register(meterRegistry),
+            Counter.builder("chartdb.websocket.deflate.bytes")
+                .description("Bytes before compression")
+                .tag("destination", destinationType)
+                .tag("stage", "in")
+                .register(meterRegistry),
+            Counter.builder("chartdb.websocket.deflate.bytes")
+                .description("Bytes after compression")
+                .tag("destination", destinationType)
+                .tag("stage", "out")
+                .register(meterRegistry),
+            DistributionSummary.builder("chartdb.websocket.deflate.ratio")
+                .description("Compressed size over original size")
+                .tag("destination", destinationType)
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry)
+        );
+    }
+
+    private static boolean isJson(MessageHeaders headers) {
+        MimeType contentType = headers.get(MessageHeaders.CONTENT_TYPE, MimeType.class);
+        return contentType != null && MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(contentType);
+    }
+
+    /**
+     * The destination the client subscribed to. User destinations reach the
+     * outbound channel resolved to /queue/...-user{session}; the original
+     * /user/queue/... destination travels in a native header.
+     */
+    static String destinationOf(MessageHeaders headers) {
+        String original = NativeMessageHeaderAccessor.getFirstNativeHeader(
+            SimpMessageHeaderAccessor.ORIGINAL_DESTINATION, headers);
+        return original != null ? original : SimpMessageHeaderAccessor.getDestination(headers);
+    }
+
+    /**
+     * The topic suffix of a diagram destination, e.g. "table-updated"; keeps
+     * the meter tags free of diagram ids.
+     */
+    static String destinationType(String destination) {
+        if (destination == null) return "other";
+        for (String prefix : DIAGRAM_PREFIXES) {
+            if (destination.startsWith(prefix)) {
+                int slash = destination.indexOf('/', prefix.length());
+                return slash < 0 ? "other" : destination.substring(slash + 1);
+            }
+        }
+        return "other";
+    }
+
+    private record Compressed(byte[] source, byte[] bytes) {}
+
+    private record Meters(Timer time, Counter bytesIn, Counter bytesOut, DistributionSummary ratio) {}
+}
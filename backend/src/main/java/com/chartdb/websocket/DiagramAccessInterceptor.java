@@ -0,0 +1,126 @@
+package com.chartdb.websocket;
+
+import com.chartdb.exception.AccessDeniedException;
+import com.chartdb.security.UserPrincipal;
+import com.chartdb.service.DiagramAccessCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.util.Set;
+
+/**
+ * Inbound interceptor that authorizes diagram destinations against
+ * {@link DiagramAccessCache}.
+ *
+ * SUBSCRIBE to /topic/diagram/{id}[/**] or /user/queue/diagram/{id}[/**] needs
+ * view access and is rejected with an error frame otherwise, as are patterns
+ * (the simple broker would match them against every diagram), diagram prefixes
+ * without an id, and /queue/** (other sessions' resolved user queues). SEND to
+ * /app/diagram/{id}/** needs view access for presence-type actions and edit
+ * access for everything else; SEND straight to a broker destination (/topic,
+ * /queue, /user) is never allowed. Unauthorized frames are dropped.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DiagramAccessInterceptor implements ChannelInterceptor {
+
+    private static final String[] SUBSCRIBE_PREFIXES = {"/topic/diagram/", "/user/queue/diagram/"};
+    private static final String SEND_PREFIX = "/app/diagram/";
+    private static final String[] BROKER_PREFIXES = {"/topic/", "/queue/", "/user/"};
+
+    // Actions any viewer may send; all other diagram actions modify it
+    private static final Set<String> VIEW_ACTIONS = Set.of(
+        "join", "leave", "cursor", "viewport", "selection", "idle", "resume");
+
+    private final DiagramAccessCache accessCache;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        if (type == null || destination == null) return message;
+
+        if (type == SimpMessageType.SUBSCRIBE) {
+            authorizeSubscribe(destination, headers);
+        } else if (type == SimpMessageType.MESSAGE && !isSendAllowed(destination, headers)) {
+            log.debug("Dropping {} from user {}: not authorized", destination, userIdOf(headers));
+            return null;
+        }
+        return message;
+    }
+
+    private void authorizeSubscribe(String destination, MessageHeaders headers) {
+        if (isPattern(destination) || destination.startsWith("/queue/")) {
+            throw new AccessDeniedException("You can't subscribe to " + destination);
+        }
+        for (String prefix : SUBSCRIBE_PREFIXES) {
+            if (!startsWithSegment(destination, prefix)) continue;
+
+            String diagramId = diagramIdAfter(destination, prefix);
+            if (diagramId == null) {
+                throw new AccessDeniedException("You can't subscribe to " + destination);
+            }
+            if (!accessCache.canView(diagramId, userIdOf(headers))) {
+                throw new AccessDeniedException("You don't have permission to view this diagram");
+            }
+        }
+    }
+
+    private boolean isSendAllowed(String destination, MessageHeaders headers) {
+        for (String prefix : BROKER_PREFIXES) {
+            if (startsWithSegment(destination, prefix)) return false;
+        }
+        if (!startsWithSegment(destination, SEND_PREFIX)) return true;
+
+        String diagramId = diagramIdAfter(destination, SEND_PREFIX);
+        int actionStart = SEND_PREFIX.length() + (diagramId != null ? diagramId.length() + 1 : 0);
+        if (diagramId == null || actionStart > destination.length()) return false;
+
+        String userId = userIdOf(headers);
+        String action = destination.substring(actionStart);
+        return VIEW_ACTIONS.contains(action)
+            ? accessCache.canView(diagramId, userId)
+            : userId != null && accessCache.canEdit(diagramId, userId);
+    }
+
+    /**
+     * The path segment following {@code prefix}, up to the next slash or the
+     * end, or null if it is empty.
+     */
+    private static String diagramIdAfter(String destination, String prefix) {
+        if (destination.length() <= prefix.length()) return null;
+        int end = destination.indexOf('/', prefix.length());
+        String segment = destination.substring(prefix.length(), end < 0 ? destination.length() : end);
+        return segment.isEmpty() ? null : segment;
+    }
+
+    // Also matches the prefix without its trailing slash, e.g. /topic/diagram
+    private static boolean startsWithSegment(String destination, String prefix) {
+        return destination.startsWith(prefix) || destination.equals(prefix.substring(0, prefix.length() - 1));
+    }
+
+    // Ant-style patterns the simple broker would expand
+    private static boolean isPattern(String destination) {
+        return destination.indexOf('*') >= 0 || destination.indexOf('?') >= 0 || destination.indexOf('{') >= 0;
+    }
+
+    private static String userIdOf(MessageHeaders headers) {
+        Principal principal = SimpMessageHeaderAccessor.getUser(headers);
+        if (principal instanceof UsernamePasswordAuthenticationToken token
+                && token.getPrincipal() instanceof UserPrincipal user) {
+            return user.getId();
+        }
+        return null;
+    }
+}
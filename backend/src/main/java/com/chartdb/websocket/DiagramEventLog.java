@@ -0,0 +1,193 @@
+package com.chartdb.websocket;
+
+import com.chartdb.dto.websocket.ResumeResponse;
+import com.chartdb.dto.websocket.SequencedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+
+/**
+ * Sequenced log of structural broadcasts per diagram.
+ *
+ * Every event published through here gets the next per-diagram sequence number
+ * and is kept in a bounded ring buffer, so a reconnecting client can ask for the
+ * events after the last seq it applied instead of reloading the whole diagram.
+ * Sequences are seeded from the clock, so a log that was evicted or lost in a
+ * restart never reuses numbers a client may still hold.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DiagramEventLog {
+
+    // STOMP header carrying the seq, so consumers of the broker channel need not parse the payload
+    public static final String SEQ_HEADER = "seq";
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    @Value("${collaboration.event-log.capacity:1000}")
+    private int capacity;
+
+    @Value("${collaboration.event-log.idle-eviction-ms:1800000}")
+    private long idleEvictionMillis;
+
+    private final Map<String, EventRing> logs = new ConcurrentHashMap<>();
+
+    /**
+     * Assign the next seq, record the event and broadcast it to
+     * /topic/diagram/{diagramId}/{type}. Runs under the diagram's log monitor
+     * so subscribers see events in seq order.
+     */
+    public long publish(String diagramId, String type, Object payload, LongConsumer seqStamp) {
+        while (true) {
+            EventRing ring = logs.computeIfAbsent(diagramId, id -> new EventRing(capacity));
+            synchronized (ring) {
+                // Evicted between the lookup and the monitor; the next lookup starts a new log
+                if (ring.evicted) continue;
+
+                long seq = ring.nextSeq();
+                seqStamp.accept(seq);
+                ring.append(new SequencedEvent(seq, type, payload));
+                messagingTemplate.convertAndSend("/topic/diagram/" + diagramId + "/" + type, payload,
+                    Map.<String, Object>of(SEQ_HEADER, seq));
+                return seq;
+            }
+        }
+    }
+
+    public long latestSeq(String diagramId) {
+        EventRing ring = logs.get(diagramId);
+        if (ring == null) return 0;
+        synchronized (ring) {
+            return ring.latestSeq();
+        }
+    }
+
+    /**
+     * The latest seq published at or before {@code millis}. When every retained
+     * event is newer, the seq just before the oldest one.
+     */
+    public long seqBefore(String diagramId, long millis) {
+        EventRing ring = logs.get(diagramId);
+        if (ring == null) return 0;
+        synchronized (ring) {
+            return ring.seqBefore(millis);
+        }
+    }
+
+    /**
+     * Events after {@code afterSeq}, or a full-reload marker when some of them
+     * are no longer in the buffer.
+     */
+    public ResumeResponse resume(String diagramId, long afterSeq) {
+        ResumeResponse.ResumeResponseBuilder response = ResumeResponse.builder()
+            .diagramId(diagramId)
+            .afterSeq(afterSeq);
+
+        EventRing ring = logs.get(diagramId);
+        if (ring == null) {
+            // Nothing published since this node started (or the log went idle)
+            return response.fullReloadRequired(true).events(List.of()).build();
+        }
+
+        synchronized (ring) {
+            long latest = ring.latestSeq();
+            response.latestSeq(latest);
+
+            if (afterSeq == latest) {
+                return response.events(List.of()).build();
+            }
+            if (afterSeq > latest || afterSeq < ring.oldestSeq() - 1) {
+                return response.fullReloadRequired(true).events(List.of()).build();
+            }
+            return response.events(ring.after(afterSeq)).build();
+        }
+    }
+
+    /**
+     * Drop logs without events for {@code idle-eviction-ms}. The idle check and
+     * the removal happen under the ring's monitor, so an event is either
+     * appended before the check or goes to a new log.
+     */
+    @Scheduled(fixedRate = 60000)
+    public void evictIdleLogs() {
+        long threshold = System.currentTimeMillis() - idleEvictionMillis;
+        for (String diagramId : logs.keySet()) {
+            logs.computeIfPresent(diagramId, (id, ring) -> {
+                synchronized (ring) {
+                    if (ring.lastAppendMillis >= threshold) return ring;
+                    ring.evicted = true;
+                    return null;
+                }
+            });
+        }
+    }
+
+    /**
+     * Fixed-capacity ring of the most recent events. Guarded by its own monitor.
+     */
+    private static class EventRing {
+
+        private final SequencedEvent[] events;
+        private final long[] publishedAt;
+        private final long firstSeq;
+        private long nextSeq;
+        private int size;
+        private volatile long lastAppendMillis;
+        private boolean evicted;
+
+        EventRing(int capacity) {
+            this.events = new SequencedEvent[capacity];
+            this.publishedAt = new long[capacity];
+            this.lastAppendMillis = System.currentTimeMillis();
+            this.firstSeq = lastAppendMillis * 1000;
+            this.nextSeq = firstSeq;
+        }
+
+        long nextSeq() {
+            return nextSeq++;
+        }
+
+        void append(SequencedEvent event) {
+            int slot = (int) (event.getSeq() % events.length);
+            lastAppendMillis = System.currentTimeMillis();
+            events[slot] = event;
+            publishedAt[slot] = lastAppendMillis;
+            size = Math.min(size + 1, events.length);
+        }
+
+        long latestSeq() {
+            return nextSeq - 1;
+        }
+
+        long oldestSeq() {
+            return size == 0 ? firstSeq : nextSeq - size;
+        }
+
+        long seqBefore(long millis) {
+            long seq = latestSeq();
+            long oldest = oldestSeq();
+            while (seq >= oldest && publishedAt[(int) (seq % events.length)] > millis) {
+                seq--;
+            }
+            return seq;
+        }
+
+        List<SequencedEvent> after(long afterSeq) {
+            List<SequencedEvent> result = new ArrayList<>((int) (latestSeq() - afterSeq));
+            for (long seq = afterSeq + 1; seq < nextSeq; seq++) {
+                result.add(events[(int) (seq % events.length)]);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.chartdb.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor for the client inbound channel that serializes messages per diagram.
+ *
+ * Messages sent to /app/diagram/{diagramId}/** are appended to that diagram's
+ * mailbox and handled one at a time, in arrival order, on a virtual thread.
+ * A mailbox only exists while it has work: the drain that empties it also
+ * removes it, both inside the map's per-key lock, so no message can be left
+ * behind. Everything else (CONNECT, SUBSCRIBE, ping) runs on the regular pool.
+ *
+ * Mailboxes are bounded with the same policy as the outbound queues: a cursor
+ * update, or an absolute drag frame that does not end the drag, replaces the
+ * one still queued from the same session (for the same table); anything else
+ * is never dropped, and a message that finds the mailbox full is rejected,
+ * which sends the client an ERROR frame.
+ */
+@Slf4j
+public class DiagramMailboxExecutor extends ThreadPoolTaskExecutor {
+
+    private static final String DIAGRAM_PREFIX = "/app/diagram/";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final int mailboxLimit;
+
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final ExecutorService drainers = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLong superseded = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public DiagramMailboxExecutor(int mailboxLimit) {
+        this.mailboxLimit = mailboxLimit;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!(task instanceof MessageHandlingRunnable runnable)) {
+            super.execute(task);
+            return;
+        }
+        Message<?> message = runnable.getMessage();
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        String diagramId = diagramIdOf(destination);
+        if (diagramId == null) {
+            super.execute(task);
+            return;
+        }
+
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        String supersedeKey = sessionId != null ? supersedeKey(sessionId, message, destination) : null;
+        boolean[] startDrain = {false};
+        boolean[] full = {false};
+        mailboxes.compute(diagramId, (id, mailbox) -> {
+            if (mailbox == null) {
+                mailbox = new Mailbox();
+                startDrain[0] = true;
+            }
+            if (supersedeKey != null) {
+                Slot pending = mailbox.latest.get(supersedeKey);
+                if (pending != null) {
+                    // Replaced in place; a message the update must not overtake would have cleared the key
+                    pending.task = task;
+                    superseded.incrementAndGet();
+                    return mailbox;
+                }
+            }
+            if (mailbox.tasks.size() >= mailboxLimit) {
+                full[0] = true;
+                // A mailbox created for this message is not kept
+                return mailbox.tasks.isEmpty() ? null : mailbox;
+            }
+            Slot slot = new Slot(task, supersedeKey);
+            mailbox.tasks.add(slot);
+            if (supersedeKey != null) {
+                mailbox.latest.put(supersedeKey, slot);
+            } else if (sessionId != null) {
+                // Later updates from this session must not overtake this message
+                mailbox.latest.keySet().removeIf(key -> key.startsWith(sessionId + "|"));
+            }
+            return mailbox;
+        });
+
+        if (full[0]) {
+            rejected.incrementAndGet();
+            log.warn("Rejecting {} for diagram {}: mailbox is full", destination, diagramId);
+            throw new TaskRejectedException("Mailbox of diagram " + diagramId + " is full");
+        }
+        if (startDrain[0]) {
+            drainers.execute(() -> drain(diagramId));
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        drainers.shutdown();
+        super.shutdown();
+    }
+
+    public int getActiveMailboxCount() {
+        return mailboxes.size();
+    }
+
+    public long getSupersededCount() {
+        return superseded.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    private void drain(String diagramId) {
+        while (true) {
+            Runnable[] next = {null};
+            mailboxes.computeIfPresent(diagramId, (id, mailbox) -> {
+                Slot slot = mailbox.tasks.poll();
+                if (slot == null) {
+                    // Removing the empty mailbox ends this drain; the next message starts a new one
+                    return null;
+                }
+                if (slot.supersedeKey != null) {
+                    mailbox.latest.remove(slot.supersedeKey, slot);
+                }
+                next[0] = slot.task;
+                return mailbox;
+            });
+            if (next[0] == null) return;
+
+            try {
+                next[0].run();
+            } catch (Throwable e) {
+                log.error("Failed to handle message for diagram {}", diagramId, e);
+            }
+        }
+    }
+
+    /**
+     * Key under which a queued message may be replaced by a newer one, or null
+     * when it must be handled. Cursor updates and absolute drag frames carry a
+     * full position, so only the latest per session (and table) matters; the
+     * frame that ends a drag and relative batch moves are always handled.
+     */
+    private static String supersedeKey(String sessionId, Message<?> message, String destination) {
+        if (destination.endsWith("/cursor")) {
+            return sessionId + "|cursor";
+        }
+        if (destination.endsWith("/table-move") && message.getPayload() instanceof byte[] payload) {
+            try {
+                JsonNode move = MAPPER.readTree(payload);
+                JsonNode tableId = move.get("tableId");
+                if (tableId == null || !tableId.isTextual() || move.path("dragEnd").asBoolean(false)) return null;
+                return sessionId + "|table-move|" + tableId.asText();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static String diagramIdOf(String destination) {
+        if (destination == null || !destination.startsWith(DIAGRAM_PREFIX)) return null;
+
+        int end = destination.indexOf('/', DIAGRAM_PREFIX.length());
+        return end < 0 ? null : destination.substring(DIAGRAM_PREFIX.length(), end);
+    }
+
+    /**
+     * Queued work of one diagram. Guarded by the map's per-key lock.
+     */
+    private static final class Mailbox {
+
+        private final ArrayDeque<Slot> tasks = new ArrayDeque<>();
+        // Latest queued slot per supersede key
+        private final Map<String, Slot> latest = new HashMap<>();
+    }
+
+    private static final class Slot {
+
+        private Runnable task;
+        private final String supersedeKey;
+
+        Slot(Runnable task, String supersedeKey) {
+            this.task = task;
+            this.supersedeKey = supersedeKey;
+        }
+    }
+}
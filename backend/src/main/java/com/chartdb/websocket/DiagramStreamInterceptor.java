@@ -0,0 +1,99 @@
+package com.chartdb.websocket;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Broker channel interceptor for the opt-in multiplexed protocol.
+ *
+ * Clients that subscribe to /topic/diagram/{id}/stream instead of the individual
+ * topics receive every diagram message wrapped as {@code {"t":"<topic>","d":<payload>}},
+ * where {@code t} is the topic suffix (cursors, table-created, presence, ...).
+ * The envelope is spliced around the already-serialized JSON, so payloads are
+ * never encoded twice, and it is only built while the diagram has stream subscribers.
+ */
+@Component
+@RequiredArgsConstructor
+public class DiagramStreamInterceptor implements ChannelInterceptor {
+
+    // Marks envelopes so they are neither wrapped again nor relayed to other nodes
+    public static final String STREAM_HEADER = "chartdbStream";
+    // STOMP header carrying the envelope type, so outbound queues can classify without parsing the body
+    public static final String STREAM_TYPE_HEADER = "stream-type";
+    private static final String DIAGRAM_TOPIC_PREFIX = "/topic/diagram/";
+
+    private static final byte[] TYPE_OPEN = "{\"t\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DATA_OPEN = "\",\"d\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CLOSE = "}".getBytes(StandardCharsets.UTF_8);
+
+    private final DiagramStreamSubscriptions streamSubscriptions;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE
+                || headers.containsKey(STREAM_HEADER)
+                || !(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        if (destination == null || !destination.startsWith(DIAGRAM_TOPIC_PREFIX)) {
+            return message;
+        }
+
+        int slash = destination.indexOf('/', DIAGRAM_TOPIC_PREFIX.length());
+        if (slash < 0) return message;
+        String diagramId = destination.substring(DIAGRAM_TOPIC_PREFIX.length(), slash);
+        String type = destination.substring(slash + 1);
+        if (type.isEmpty() || !streamSubscriptions.hasSubscribers(diagramId)) {
+            return message;
+        }
+
+        MimeType contentType = headers.get(MessageHeaders.CONTENT_TYPE, MimeType.class);
+        if (contentType != null && !MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(contentType)) {
+            return message;
+        }
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(DIAGRAM_TOPIC_PREFIX + diagramId + DiagramStreamSubscriptions.STREAM_SUFFIX);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setHeader(STREAM_HEADER, type);
+        accessor.setNativeHeader(STREAM_TYPE_HEADER, type);
+        // Viewport sessions got their own filtered copy of a routed batch
+        Object routed = headers.get(ViewportRouter.ROUTED_HEADER);
+        if (routed != null) {
+            accessor.setHeader(ViewportRouter.ROUTED_HEADER, routed);
+        }
+        channel.send(MessageBuilder.createMessage(envelope(type, payload), accessor.getMessageHeaders()));
+
+        return message;
+    }
+
+    private static byte[] envelope(String type, byte[] payload) {
+        byte[] typeBytes = type.getBytes(StandardCharsets.UTF_8);
+        byte[] envelope = new byte[TYPE_OPEN.length + typeBytes.length + DATA_OPEN.length + payload.length + CLOSE.length];
+        int offset = 0;
+        System.arraycopy(TYPE_OPEN, 0, envelope, offset, TYPE_OPEN.length);
+        offset += TYPE_OPEN.length;
+        System.arraycopy(typeBytes, 0, envelope, offset, typeBytes.length);
+        offset += typeBytes.length;
+        System.arraycopy(DATA_OPEN, 0, envelope, offset, DATA_OPEN.length);
+        offset += DATA_OPEN.length;
+        System.arraycopy(payload, 0, envelope, offset, payload.length);
+        offset += payload.length;
+        System.arraycopy(CLOSE, 0, envelope, offset, CLOSE.length);
+        return envelope;
+    }
+}
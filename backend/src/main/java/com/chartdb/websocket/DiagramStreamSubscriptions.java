@@ -0,0 +1,81 @@
+package com.chartdb.websocket;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Inbound interceptor that counts subscriptions to /topic/diagram/{id}/stream,
+ * so the multiplexed envelope is only built for diagrams somebody listens to.
+ */
+@Component
+public class DiagramStreamSubscriptions implements ChannelInterceptor {
+
+    static final String STREAM_SUFFIX = "/stream";
+    private static final String DIAGRAM_TOPIC_PREFIX = "/topic/diagram/";
+
+    // diagramId -> number of stream subscriptions on this node
+    private final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+
+    // sessionId -> subscriptionId -> diagramId
+    private final Map<String, Map<String, String>> sessions = new ConcurrentHashMap<>();
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        var headers = message.getHeaders();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (type == null || sessionId == null) return message;
+
+        switch (type) {
+            case SUBSCRIBE -> {
+                String diagramId = streamDiagramId(SimpMessageHeaderAccessor.getDestination(headers));
+                String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+                if (diagramId != null && subscriptionId != null) {
+                    sessions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>()).put(subscriptionId, diagramId);
+                    counts.computeIfAbsent(diagramId, id -> new AtomicInteger()).incrementAndGet();
+                }
+            }
+            case UNSUBSCRIBE -> {
+                Map<String, String> subscriptions = sessions.get(sessionId);
+                String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+                if (subscriptions != null && subscriptionId != null) {
+                    release(subscriptions.remove(subscriptionId));
+                }
+            }
+            case DISCONNECT -> {
+                Map<String, String> subscriptions = sessions.remove(sessionId);
+                if (subscriptions != null) {
+                    subscriptions.values().forEach(this::release);
+                }
+            }
+            default -> { }
+        }
+        return message;
+    }
+
+    public boolean hasSubscribers(String diagramId) {
+        AtomicInteger count = counts.get(diagramId);
+        return count != null && count.get() > 0;
+    }
+
+    private void release(String diagramId) {
+        if (diagramId == null) return;
+        counts.computeIfPresent(diagramId, (id, count) -> count.decrementAndGet() <= 0 ? null : count);
+    }
+
+    private static String streamDiagramId(String destination) {
+        if (destination == null || !destination.startsWith(DIAGRAM_TOPIC_PREFIX) || !destination.endsWith(STREAM_SUFFIX)) {
+            return null;
+        }
+        String diagramId = destination.substring(DIAGRAM_TOPIC_PREFIX.length(), destination.length() - STREAM_SUFFIX.length());
+        return diagramId.isEmpty() || diagramId.contains("/") ? null : diagramId;
+    }
+}
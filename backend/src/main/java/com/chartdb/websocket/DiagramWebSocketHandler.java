@@ -1,20 +1,31 @@
 package com.chartdb.websocket;
 
 import com.chartdb.dto.websocket.*;
+import com.chartdb.exception.BadRequestException;
+import com.chartdb.model.enums.PermissionLevel;
 import com.chartdb.security.UserPrincipal;
 import com.chartdb.service.CollaborationService;
+import com.chartdb.service.DiagramAccessCache;
+import com.chartdb.service.DiagramSnapshotCache;
+import com.chartdb.service.TableLockManager;
+import com.chartdb.service.TableMovePipeline;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.stereotype.Controller;
 
 import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 
 @Slf4j
 @Controller
@@ -23,58 +34,57 @@ public class DiagramWebSocketHandler {
     
     private final CollaborationService collaborationService;
     private final SimpMessagingTemplate messagingTemplate;
+    private final CursorBroadcastCoalescer cursorBroadcastCoalescer;
+    private final TableMovePipeline tableMovePipeline;
+    private final DiagramEventLog diagramEventLog;
+    private final ViewportRouter viewportRouter;
+    private final DiagramSnapshotCache diagramSnapshotCache;
+    private final DiagramAccessCache diagramAccessCache;
+    
+    @Value("${collaboration.lock.max-batch-size:200}")
+    private int maxLockBatchSize;
     
     // ═══════════════════════════════════════════════════════════════
     // JOIN / LEAVE DIAGRAM
     // ═══════════════════════════════════════════════════════════════
     
+    /**
+     * Join the diagram. With {@code snapshot: true} the session also gets the
+     * diagram state on /user/queue/diagram/{diagramId}/snapshot, replacing the
+     * REST full load: subscribe to the diagram topics first, buffer what arrives
+     * until the snapshot, then apply only events with a seq above the snapshot's.
+     * Access was already checked for this frame by DiagramAccessInterceptor.
+     */
     @MessageMapping("/diagram/{diagramId}/join")
     public void joinDiagram(
             @DestinationVariable String diagramId,
+            @Payload(required = false) JoinRequest request,
             SimpMessageHeaderAccessor headerAccessor,
             Principal principal) {
         
         UserPrincipal user = extractUserPrincipal(principal);
         if (user == null) return;
         
-        String sessionId = headerAccessor.getSessionId();
-        collaborationService.joinDiagram(diagramId, user.getId(), sessionId);
+        // The service broadcasts the single JOIN presence message
+        collaborationService.joinDiagram(diagramId, user, headerAccessor.getSessionId());
         
-        // Broadcast to other users that someone joined
-        PresenceMessage presenceMessage = PresenceMessage.builder()
-            .diagramId(diagramId)
-            .userId(user.getId())
-            .userDisplayName(user.getDisplayName())
-            .userAvatarUrl(user.getAvatarUrl())
-            .action("joined")
-            .timestamp(System.currentTimeMillis())
-            .build();
-        
-        messagingTemplate.convertAndSend("/topic/diagram/" + diagramId + "/presence", presenceMessage);
-        log.info("User {} joined diagram {}", user.getId(), diagramId);
+        if (request != null && Boolean.TRUE.equals(request.getSnapshot())) {
+            sendSnapshot(diagramId, user, headerAccessor.getSessionId());
+        }
     }
     
     @MessageMapping("/diagram/{diagramId}/leave")
     public void leaveDiagram(
             @DestinationVariable String diagramId,
+            SimpMessageHeaderAccessor headerAccessor,
             Principal principal) {
         
         UserPrincipal user = extractUserPrincipal(principal);
         if (user == null) return;
         
+        // The service broadcasts the single LEAVE presence message
         collaborationService.leaveDiagram(diagramId, user.getId());
-        
-        // Broadcast to remaining users
-        PresenceMessage presenceMessage = PresenceMessage.builder()
-            .diagramId(diagramId)
-            .userId(user.getId())
-            .userDisplayName(user.getDisplayName())
-            .action("left")
-            .timestamp(System.currentTimeMillis())
-            .build();
-        
-        messagingTemplate.convertAndSend("/topic/diagram/" + diagramId + "/presence", presenceMessage);
-        log.info("User {} left diagram {}", user.getId(), diagramId);
+        viewportRouter.remove(headerAccessor.getSessionId());
     }
     
     // ═══════════════════════════════════════════════════════════════
@@ -90,10 +100,10 @@ public class DiagramWebSocketHandler {
         UserPrincipal user = extractUserPrincipal(principal);
         if (user == null) return;
         
-        // Update in database
+        // Update in-memory presence
         collaborationService.updateCursorPosition(diagramId, user.getId(), message.getX(), message.getY());
         
-        // Broadcast to other users
+        // Queue for the next batched broadcast tick
         CursorBroadcast broadcast = CursorBroadcast.builder()
             .userId(user.getId())
             .userDisplayName(user.getDisplayName())
@@ -103,7 +113,25 @@ public class DiagramWebSocketHandler {
             .y(message.getY())
             .build();
         
-        messagingTemplate.convertAndSend("/topic/diagram/" + diagramId + "/cursors", broadcast);
+        cursorBroadcastCoalescer.submit(diagramId, broadcast);
+    }
+    
+    /**
+     * Report the visible part of the canvas. From then on this session gets
+     * cursor and table-move batches on /user/queue/diagram/{diagramId}/cursors
+     * and /table-moved, filtered to its viewport, instead of the topic copies.
+     */
+    @MessageMapping("/diagram/{diagramId}/viewport")
+    public void handleViewport(
+            @DestinationVariable String diagramId,
+            @Payload ViewportMessage message,
+            SimpMessageHeaderAccessor headerAccessor,
+            Principal principal) {
+        
+        UserPrincipal user = extractUserPrincipal(principal);
+        if (user == null) return;
+        
+        viewportRouter.update(diagramId, headerAccessor.getSessionId(), message);
     }
     
     @MessageMapping("/diagram/{diagramId}/selection")
@@ -115,7 +143,7 @@ public class DiagramWebSocketHandler {
         UserPrincipal user = extractUserPrincipal(principal);
         if (user == null) return;
         
-        // Update in database
+        // Update in-memory presence
         collaborationService.updateSelection(diagramId, user.getId(), message.getTableId(), message.getColumnId());
         
         // Broadcast to other users
@@ -159,7 +187,13 @@ public class DiagramWebSocketHandler {
         message.setUserName(user.getDisplayName());
         message.setTimestamp(System.currentTimeMillis());
         
-        // Broadcast position update to all collaborators
+        if (message.getTableId() != null) {
+            // Absolute drag position: coalesced for broadcast and written behind
+            tableMovePipeline.submitDrag(diagramId, message);
+            return;
+        }
+        
+        // Relative batch moves are not coalesced; broadcast as-is
         messagingTemplate.convertAndSend("/topic/diagram/" + diagramId + "/table-moved", message);
     }
     
@@ -176,7 +210,7 @@ public class DiagramWebSocketHandler {
         message.setUserName(user.getDisplayName());
         message.setTimestamp(System.currentTimeMillis());
         
-        messagingTemplate.convertAndSend("/topic/diagram/" + diagramId + "/table-created", message);
+        diagramEventLog.publish(diagramId, "table-created", message, message::setSeq);
         log.info("User {} created table {} in diagram {}", user.getId(), message.getTableId(), diagramId);
     }
     
@@ -193,7 +227,7 @@ public class DiagramWebSocketHandler {
         message.setUserName(user.getDisplayName());
         message.setTimestamp(System.currentTimeMillis());
         
-        messagingTemplate.convertAndSend("/topic/diagram/" + diagramId + "/table-updated", message);
+        diagramEventLog.publish(diagramId, "table-updated", message, message::setSeq);
     }
     
     @MessageMapping("/diagram/{diagramId}/table-delete")
@@ -209,10 +243,8 @@ public class DiagramWebSocketHandler {
         message.setUserName(user.getDisplayName());
         message.setTimestamp(System.currentTimeMillis());
         
-        // Release any locks on this table
-        collaborationService.unlockTable(diagramId, message.getTableId());
-        
-        messagingTemplate.convertAndSend("/topic/diagram/" + diagramId + "/table-deleted", message);
+        // Locks on the table are released by TableService once the delete commits
+        diagramEventLog.publish(diagramId, "table-deleted", message, message::setSeq);
         log.info("User {} deleted table {} from diagram {}", user.getId(), message.getTableId(), diagramId);
     }
     
@@ -233,8 +265,7 @@ public class DiagramWebSocketHandler {
         message.setUserName(user.getDisplayName());
         message.setTimestamp(System.currentTimeMillis());
         
-        String destination = String.format("/topic/diagram/%s/column-%s", diagramId, message.getAction());
-        messagingTemplate.convertAndSend(destination, message);
+        diagramEventLog.publish(diagramId, "column-" + message.getAction(), message, message::setSeq);
     }
     
     // ═══════════════════════════════════════════════════════════════
@@ -254,19 +285,27 @@ public class DiagramWebSocketHandler {
         message.setUserName(user.getDisplayName());
         message.setTimestamp(System.currentTimeMillis());
         
-        String destination = String.format("/topic/diagram/%s/relationship-%s", diagramId, message.getAction());
-        messagingTemplate.convertAndSend(destination, message);
+        diagramEventLog.publish(diagramId, "relationship-" + message.getAction(), message, message::setSeq);
     }
     
     // ═══════════════════════════════════════════════════════════════
     // LOCKING MECHANISM
     // ═══════════════════════════════════════════════════════════════
     
+    /**
+     * Lock a table, or one of its columns when {@code columnId} is set. Grants
+     * are broadcast on /topic/diagram/{diagramId}/table-locked, column locks
+     * carrying their columnId. With {@code wait: true} a held target queues the
+     * request instead: the lock manager itself replies with the queue position,
+     * so the reply cannot trail the handoff, and a second result follows when
+     * the lock is handed over or the wait ends.
+     */
     @MessageMapping("/diagram/{diagramId}/lock-table")
     @SendToUser("/queue/lock-result")
     public LockResultMessage requestTableLock(
             @DestinationVariable String diagramId,
             @Payload LockMessage message,
+            SimpMessageHeaderAccessor headerAccessor,
             Principal principal) {
         
         UserPrincipal user = extractUserPrincipal(principal);
@@ -274,41 +313,103 @@ public class DiagramWebSocketHandler {
             return LockResultMessage.builder()
                 .acquired(false)
                 .tableId(message.getTableId())
+                .columnId(message.getColumnId())
                 .message("Authentication required")
                 .build();
         }
         
-        boolean acquired = collaborationService.lockTable(diagramId, message.getTableId(), user.getId());
-        
-        if (acquired) {
-            // Broadcast lock to all collaborators
-            LockMessage broadcastMessage = LockMessage.builder()
-                .diagramId(diagramId)
-                .tableId(message.getTableId())
-                .userId(user.getId())
-                .userName(user.getDisplayName())
-                .action("locked")
-                .timestamp(System.currentTimeMillis())
-                .build();
-            
-            messagingTemplate.convertAndSend("/topic/diagram/" + diagramId + "/table-locked", broadcastMessage);
-            
+        TableLockManager.Target target = new TableLockManager.Target(message.getTableId(), message.getColumnId());
+        try {
+            return requestTableLock(diagramId, target, message.getWait(), headerAccessor.getSessionId(), user);
+        } catch (BadRequestException e) {
             return LockResultMessage.builder()
-                .acquired(true)
-                .tableId(message.getTableId())
-                .lockedByUserId(user.getId())
-                .lockedByUserName(user.getDisplayName())
-                .message("Lock acquired")
+                .acquired(false)
+                .tableId(target.tableId())
+                .columnId(target.columnId())
+                .message(e.getMessage())
                 .build();
         }
+    }
+    
+    private LockResultMessage requestTableLock(String diagramId, TableLockManager.Target target, Boolean wait,
+                                               String sessionId, UserPrincipal user) {
+        if (Boolean.TRUE.equals(wait) && sessionId != null) {
+            TableLockManager.Attempt attempt = collaborationService.lockOrWait(
+                diagramId, target, user.getId(), user.getDisplayName(), sessionId);
+            if (attempt.isQueued()) {
+                // Already told by the lock manager
+                return null;
+            }
+            if (attempt.lease() != null && attempt.lease().isHeldBy(user.getId())) {
+                broadcastLocked(diagramId, attempt.lease());
+                return lockResult(target, attempt.lease(), user.getId());
+            }
+            LockResultMessage result = lockResult(target, attempt.lease(), user.getId());
+            result.setMessage("Too many requests are waiting for this lock");
+            return result;
+        }
+        
+        TableLockManager.Lease lease = collaborationService.lock(diagramId, target, user.getId(), user.getDisplayName());
+        
+        if (lease != null && lease.isHeldBy(user.getId())) {
+            broadcastLocked(diagramId, lease);
+        }
+        return lockResult(target, lease, user.getId());
+    }
+    
+    /**
+     * Lock a set of tables and columns, e.g. a multi-select, in one round trip.
+     * Either every target is granted or none is; the single reply lists the
+     * outcome per target, with the holder of each blocked one.
+     */
+    @MessageMapping("/diagram/{diagramId}/lock-batch")
+    @SendToUser("/queue/lock-result")
+    public LockResultMessage requestBatchLock(
+            @DestinationVariable String diagramId,
+            @Payload LockBatchMessage message,
+            Principal principal) {
         
-        return LockResultMessage.builder()
+        LockResultMessage.LockResultMessageBuilder result = LockResultMessage.builder()
             .acquired(false)
-            .tableId(message.getTableId())
-            .message("Table is locked by another user")
+            .requestId(message.getRequestId());
+        
+        UserPrincipal user = extractUserPrincipal(principal);
+        if (user == null) {
+            return result.message("Authentication required").build();
+        }
+        List<TableLockManager.Target> targets = toTargets(message);
+        if (targets.isEmpty() || targets.size() > maxLockBatchSize) {
+            return result.message("A batch must have between 1 and " + maxLockBatchSize + " targets").build();
+        }
+        
+        List<TableLockManager.Lease> leases;
+        try {
+            leases = collaborationService.lockAll(diagramId, targets, user.getId(), user.getDisplayName());
+        } catch (BadRequestException e) {
+            return result.message(e.getMessage()).build();
+        }
+        boolean granted = leases.stream().allMatch(lease -> lease != null && lease.isHeldBy(user.getId()));
+        
+        List<TableLockManager.Target> distinct = targets.stream().distinct().toList();
+        List<LockResultMessage> results = new ArrayList<>(distinct.size());
+        for (int i = 0; i < distinct.size(); i++) {
+            results.add(lockResult(distinct.get(i), leases.get(i), user.getId()));
+        }
+        if (granted) {
+            leases.forEach(lease -> broadcastLocked(diagramId, lease));
+        }
+        
+        return result
+            .acquired(granted)
+            .results(results)
+            .message(granted ? "Locks acquired" : "Some targets are locked by another user")
             .build();
     }
     
+    /**
+     * Release a lock, or withdraw a queued request for it. The lock manager
+     * broadcasts the unlock and any handoff that follows.
+     */
     @MessageMapping("/diagram/{diagramId}/unlock-table")
     public void releaseTableLock(
             @DestinationVariable String diagramId,
@@ -318,19 +419,69 @@ public class DiagramWebSocketHandler {
         UserPrincipal user = extractUserPrincipal(principal);
         if (user == null) return;
         
-        collaborationService.unlockTable(diagramId, message.getTableId(), user.getId());
+        collaborationService.unlock(
+            diagramId, new TableLockManager.Target(message.getTableId(), message.getColumnId()), user.getId());
+    }
+    
+    @MessageMapping("/diagram/{diagramId}/unlock-batch")
+    public void releaseBatchLock(
+            @DestinationVariable String diagramId,
+            @Payload LockBatchMessage message,
+            Principal principal) {
+        
+        UserPrincipal user = extractUserPrincipal(principal);
+        if (user == null) return;
         
-        // Broadcast unlock to all collaborators
+        collaborationService.unlockAll(diagramId, toTargets(message), user.getId());
+    }
+    
+    private void broadcastLocked(String diagramId, TableLockManager.Lease lease) {
         LockMessage broadcastMessage = LockMessage.builder()
             .diagramId(diagramId)
-            .tableId(message.getTableId())
-            .userId(user.getId())
-            .userName(user.getDisplayName())
-            .action("unlocked")
+            .tableId(lease.tableId())
+            .columnId(lease.columnId())
+            .userId(lease.userId())
+            .userName(lease.userName())
+            .action("locked")
+            .fencingToken(lease.fencingToken())
+            .expiresAt(lease.expiresAt())
             .timestamp(System.currentTimeMillis())
             .build();
         
-        messagingTemplate.convertAndSend("/topic/diagram/" + diagramId + "/table-unlocked", broadcastMessage);
+        messagingTemplate.convertAndSend("/topic/diagram/" + diagramId + "/table-locked", broadcastMessage);
+    }
+    
+    /**
+     * @param lease the lease now on the target, or null for a free target of a
+     *              denied batch or one that only earlier waiters are queued for
+     */
+    private static LockResultMessage lockResult(TableLockManager.Target target, TableLockManager.Lease lease,
+                                                String userId) {
+        LockResultMessage.LockResultMessageBuilder result = LockResultMessage.builder()
+            .tableId(target.tableId())
+            .columnId(target.columnId());
+        if (lease == null) {
+            return result.acquired(false)
+                .message("Not acquired: other targets are locked, or another user is queued for this one")
+                .build();
+        }
+        
+        result.lockedByUserId(lease.userId())
+            .lockedByUserName(lease.userName())
+            .expiresAt(lease.expiresAt());
+        if (lease.isHeldBy(userId)) {
+            return result.acquired(true).fencingToken(lease.fencingToken()).message("Lock acquired").build();
+        }
+        String holder = lease.columnId() == null ? "Table" : "Column";
+        return result.acquired(false).message(holder + " is locked by another user").build();
+    }
+    
+    private static List<TableLockManager.Target> toTargets(LockBatchMessage message) {
+        if (message.getTargets() == null) return List.of();
+        return message.getTargets().stream()
+            .filter(target -> target != null && target.getTableId() != null)
+            .map(target -> new TableLockManager.Target(target.getTableId(), target.getColumnId()))
+            .toList();
     }
     
     // ═══════════════════════════════════════════════════════════════
@@ -350,7 +501,7 @@ public class DiagramWebSocketHandler {
         message.setUserName(user.getDisplayName());
         message.setTimestamp(System.currentTimeMillis());
         
-        messagingTemplate.convertAndSend("/topic/diagram/" + diagramId + "/updated", message);
+        diagramEventLog.publish(diagramId, "updated", message, message::setSeq);
     }
     
     // ═══════════════════════════════════════════════════════════════
@@ -374,10 +525,36 @@ public class DiagramWebSocketHandler {
         message.put("timestamp", java.time.Instant.now().toString());
         
         // Broadcast to all subscribers of this diagram's events topic
-        messagingTemplate.convertAndSend("/topic/diagram/" + diagramId + "/events", message);
+        diagramEventLog.publish(diagramId, "events", message, seq -> message.put("seq", seq));
         log.debug("Broadcasting event {} from user {} to diagram {}", message.get("type"), user.getId(), diagramId);
     }
     
+    // ═══════════════════════════════════════════════════════════════
+    // RESUME AFTER RECONNECT
+    // ═══════════════════════════════════════════════════════════════
+    
+    @MessageMapping("/diagram/{diagramId}/resume")
+    @SendToUser("/queue/resume")
+    public ResumeResponse resume(
+            @DestinationVariable String diagramId,
+            @Payload ResumeRequest request,
+            Principal principal) {
+        
+        UserPrincipal user = extractUserPrincipal(principal);
+        if (user == null || request.getAfterSeq() == null) {
+            return ResumeResponse.builder()
+                .diagramId(diagramId)
+                .fullReloadRequired(true)
+                .events(java.util.List.of())
+                .build();
+        }
+        
+        ResumeResponse response = diagramEventLog.resume(diagramId, request.getAfterSeq());
+        log.debug("User {} resumed diagram {} after seq {} ({} events, full reload: {})",
+            user.getId(), diagramId, request.getAfterSeq(), response.getEvents().size(), response.isFullReloadRequired());
+        return response;
+    }
+    
     // ═══════════════════════════════════════════════════════════════
     // PING/PONG (Latency Measurement)
     // ═══════════════════════════════════════════════════════════════
@@ -393,6 +570,32 @@ public class DiagramWebSocketHandler {
     // HELPER METHODS
     // ═══════════════════════════════════════════════════════════════
     
+    private void sendSnapshot(String diagramId, UserPrincipal user, String sessionId) {
+        Optional<DiagramSnapshotCache.CatchUp> catchUp = diagramSnapshotCache.catchUp(diagramId);
+        if (catchUp.isEmpty()) return;
+        
+        long seq = catchUp.get().seq();
+        List<SequencedEvent> events = catchUp.get().events();
+        DiagramSnapshotCache.Snapshot snapshot = catchUp.get().snapshot();
+        
+        PermissionLevel level = diagramAccessCache.getLevel(diagramId, user.getId());
+        DiagramSnapshotMessage message = DiagramSnapshotMessage.builder()
+            .diagramId(diagramId)
+            .seq(seq)
+            .permissionLevel(level != null ? level.name() : "VIEWER")
+            .diagram(snapshot.json())
+            .events(events)
+            .build();
+        
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setLeaveMutable(true);
+        messagingTemplate.convertAndSendToUser(sessionId, "/queue/diagram/" + diagramId + "/snapshot",
+            message, accessor.getMessageHeaders());
+        log.debug("Sent snapshot of diagram {} at seq {} to session {} ({} events replayed)",
+            diagramId, seq, sessionId, events.size());
+    }
+    
     private UserPrincipal extractUserPrincipal(Principal principal) {
         if (principal instanceof UsernamePasswordAuthenticationToken) {
             Object credentials = ((UsernamePasswordAuthenticationToken) principal).getPrincipal();
@@ -0,0 +1,41 @@
+package com.chartdb.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-JVM relay. Every application context in the same JVM shares one bus, which
+ * is enough for a single node and for tests that start several contexts side by side.
+ */
+@Slf4j
+public class LocalBrokerRelay implements BrokerRelay {
+
+    private static final List<Consumer<RelayEnvelope>> BUS = new CopyOnWriteArrayList<>();
+
+    private final List<Consumer<RelayEnvelope>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(RelayEnvelope envelope) {
+        for (Consumer<RelayEnvelope> listener : BUS) {
+            try {
+                listener.accept(envelope);
+            } catch (Exception e) {
+                log.warn("Relay listener failed for {}: {}", envelope.destination(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<RelayEnvelope> listener) {
+        listeners.add(listener);
+        BUS.add(listener);
+    }
+
+    public void close() {
+        BUS.removeAll(listeners);
+        listeners.clear();
+    }
+}
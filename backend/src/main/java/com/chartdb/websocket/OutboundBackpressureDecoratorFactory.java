@@ -0,0 +1,133 @@
+package com.chartdb.websocket;
+
+import com.chartdb.websocket.BackpressureWebSocketSession.MessageClass;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Wraps every WebSocket session in a {@link BackpressureWebSocketSession} and
+ * publishes its queue depth and merge counts as metrics tagged by session id.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OutboundBackpressureDecoratorFactory implements WebSocketHandlerDecoratorFactory {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${collaboration.outbound.move-queue-limit:64}")
+    private int moveLimit;
+
+    @Value("${collaboration.outbound.structural-soft-limit:500}")
+    private int structuralSoftLimit;
+
+    @Value("${collaboration.outbound.structural-hard-limit:5000}")
+    private int structuralHardLimit;
+
+    @Value("${collaboration.outbound.over-limit-grace-ms:5000}")
+    private long overLimitGraceMillis;
+
+    // Drains block on socket writes, so each runs on its own virtual thread
+    private final ExecutorService drainExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Map<String, TrackedSession> sessions = new ConcurrentHashMap<>();
+
+    @PreDestroy
+    public void shutdown() {
+        drainExecutor.shutdownNow();
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                super.afterConnectionEstablished(track(session).session());
+            }
+
+            @Override
+            public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+                super.handleMessage(wrapped(session), message);
+            }
+
+            @Override
+            public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+                super.handleTransportError(wrapped(session), exception);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                WebSocketSession wrapped = wrapped(session);
+                untrack(session.getId());
+                super.afterConnectionClosed(wrapped, closeStatus);
+            }
+        };
+    }
+
+    private TrackedSession track(WebSocketSession session) {
+        BackpressureWebSocketSession wrapped = new BackpressureWebSocketSession(session, drainExecutor,
+            moveLimit, structuralSoftLimit, structuralHardLimit, overLimitGraceMillis);
+
+        List<Meter> meters = new ArrayList<>();
+        meters.add(Gauge.builder("chartdb.websocket.outbound.queue.depth", wrapped,
+                BackpressureWebSocketSession::getQueueDepth)
+            .tag("session", session.getId())
+            .description("Frames waiting in the session's outbound queue")
+            .register(meterRegistry));
+        for (MessageClass messageClass : List.of(MessageClass.CURSOR, MessageClass.MOVE)) {
+            meters.add(FunctionCounter.builder("chartdb.websocket.outbound.dropped", wrapped,
+                    s -> s.getDroppedCount(messageClass))
+                .tag("session", session.getId())
+                .tag("class", messageClass.name().toLowerCase())
+                .description("Batches merged into a queued batch before they were written")
+                .register(meterRegistry));
+        }
+
+        TrackedSession tracked = new TrackedSession(wrapped, meters);
+        sessions.put(session.getId(), tracked);
+        return tracked;
+    }
+
+    private WebSocketSession wrapped(WebSocketSession session) {
+        TrackedSession tracked = sessions.get(session.getId());
+        return tracked != null ? tracked.session() : session;
+    }
+
+    private void untrack(String sessionId) {
+        TrackedSession tracked = sessions.remove(sessionId);
+        if (tracked == null) return;
+
+        if (tracked.session().isOverflowed()) {
+            Counter.builder("chartdb.websocket.outbound.disconnects")
+                .description("Sessions closed because their outbound queue stayed over its limit")
+                .register(meterRegistry)
+                .increment();
+        }
+        tracked.session().discard();
+        tracked.meters().forEach(meterRegistry::remove);
+    }
+
+    private record TrackedSession(BackpressureWebSocketSession session, List<Meter> meters) {}
+}
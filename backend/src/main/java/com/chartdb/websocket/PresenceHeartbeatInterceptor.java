@@ -0,0 +1,38 @@
+package com.chartdb.websocket;
+
+import com.chartdb.service.PresenceRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Inbound interceptor that treats every frame from a joined session, STOMP
+ * heartbeats included, as proof of life for its presence. Only the in-memory
+ * lastSeen moves; the row follows on a later checkpoint once it is older than
+ * the persist interval.
+ */
+@Component
+@RequiredArgsConstructor
+public class PresenceHeartbeatInterceptor implements ChannelInterceptor {
+
+    private final PresenceRegistry presenceRegistry;
+
+    @Value("${collaboration.presence.heartbeat-persist-ms:300000}")
+    private long heartbeatPersistMillis;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId != null) {
+            presenceRegistry.getBySession(sessionId)
+                .ifPresent(presence -> presence.heartbeat(Duration.ofMillis(heartbeatPersistMillis)));
+        }
+        return message;
+    }
+}
@@ -0,0 +1,450 @@
+package com.chartdb.websocket;
+
+import com.chartdb.dto.websocket.ResumeResponse;
+import com.chartdb.dto.websocket.SequencedEvent;
+import com.chartdb.service.DiagramSnapshotCache;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Server-Sent Events feed of public diagrams for anonymous readers.
+ *
+ * Registered on the broker channel, it sees every structural delta published
+ * for a diagram, including those relayed from other nodes. While a diagram has
+ * readers, each delta is turned into one SSE frame from its already-serialized
+ * payload and handed to every reader, so a reader costs one write per event
+ * and no STOMP session. Frames for a diagram are ordered by a single lane (a
+ * virtual thread that exists only while there is work), which also queues the
+ * cached snapshot and the events since it for new readers.
+ *
+ * The lane never writes to a connection: each reader has its own queue and
+ * drain, bounded like a WebSocket session's never-dropped frames. A reader
+ * that stays over {@code outbound.structural-soft-limit} for the grace period,
+ * or goes over the hard limit, is closed and resumes with Last-Event-ID.
+ * Keepalives are dropped for readers that still have frames queued.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PublicDiagramBroadcaster implements ChannelInterceptor {
+
+    private static final String DIAGRAM_TOPIC_PREFIX = "/topic/diagram/";
+
+    // Topic suffixes forwarded to readers; presence, cursors, selections and locks stay private
+    private static final Set<String> PUBLIC_TYPES = Set.of(
+        "table-created", "table-updated", "table-deleted", "table-moved", "updated", "events");
+    private static final List<String> PUBLIC_TYPE_PREFIXES = List.of("column-", "relationship-");
+
+    private final ObjectProvider<DiagramEventLog> eventLog;
+    private final ObjectProvider<DiagramSnapshotCache> snapshotCache;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${collaboration.public-feed.timeout-ms:1800000}")
+    private long timeoutMillis;
+
+    @Value("${collaboration.outbound.structural-soft-limit:500}")
+    private int softLimit;
+
+    @Value("${collaboration.outbound.structural-hard-limit:5000}")
+    private int hardLimit;
+
+    @Value("${collaboration.outbound.over-limit-grace-ms:5000}")
+    private long overLimitGraceMillis;
+
+    private final Map<String, Feed> feeds = new ConcurrentHashMap<>();
+    private final ExecutorService lanes = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger readerCount = new AtomicInteger();
+    private Counter disconnects;
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("chartdb.public.feed.readers", readerCount, AtomicInteger::get)
+            .description("Open SSE readers of public diagrams on this node")
+            .register(meterRegistry);
+        disconnects = Counter.builder("chartdb.public.feed.disconnects")
+            .description("Public readers closed because their queue stayed over its limit")
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lanes.shutdown();
+    }
+
+    /**
+     * Open a feed for the diagram. The first frame is a {@code snapshot} event
+     * with the diagram state, followed by deltas named after their topic. Frames
+     * carry the event seq as id, so a reconnect with Last-Event-ID resumes from
+     * the event log when the gap is still there.
+     */
+    public SseEmitter subscribe(String diagramId, Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Reader reader = new Reader(diagramId, emitter);
+        emitter.onCompletion(() -> remove(reader));
+        emitter.onError(error -> remove(reader));
+        emitter.onTimeout(emitter::complete);
+
+        enqueue(diagramId, feed -> open(diagramId, feed, reader, lastEventId), true);
+        return emitter;
+    }
+
+    /**
+     * End every feed of the diagram, e.g. when it stops being public.
+     */
+    public void close(String diagramId) {
+        enqueue(diagramId, feed -> {
+            feed.readers.forEach(reader -> {
+                reader.discard();
+                reader.emitter.complete();
+            });
+            readerCount.addAndGet(-feed.readers.size());
+            feed.readers.clear();
+        }, false);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        if (feeds.isEmpty()
+                || SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE
+                || headers.containsKey(DiagramStreamInterceptor.STREAM_HEADER)
+                || !(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        if (destination == null || !destination.startsWith(DIAGRAM_TOPIC_PREFIX)) return message;
+        int slash = destination.indexOf('/', DIAGRAM_TOPIC_PREFIX.length());
+        if (slash < 0) return message;
+
+        String diagramId = destination.substring(DIAGRAM_TOPIC_PREFIX.length(), slash);
+        String type = destination.substring(slash + 1);
+        if (!feeds.containsKey(diagramId) || !isPublicType(type)) return message;
+
+        Long seq = seqOf(message);
+        try {
+            Set<ResponseBodyEmitter.DataWithMediaType> frame =
+                frame(type, seq, publicJson(type, new String(payload, StandardCharsets.UTF_8)));
+            enqueue(diagramId, feed -> deliver(feed, frame, seq), false);
+        } catch (Exception e) {
+            log.warn("Failed to forward {} of diagram {} to public readers: {}", type, diagramId, e.getMessage());
+        }
+        return message;
+    }
+
+    @Scheduled(fixedRateString = "${collaboration.public-feed.keepalive-ms:25000}")
+    public void sendKeepalives() {
+        // Keeps idle connections open through proxies and surfaces dead readers
+        Set<ResponseBodyEmitter.DataWithMediaType> frame = SseEmitter.event().comment("keepalive").build();
+        for (String diagramId : feeds.keySet()) {
+            enqueue(diagramId, feed -> {
+                for (Reader reader : feed.readers) {
+                    if (reader.isIdle()) offer(reader, frame);
+                }
+            }, false);
+        }
+    }
+
+    private void open(String diagramId, Feed feed, Reader reader, Long lastEventId) {
+        try {
+            if (lastEventId != null) {
+                ResumeResponse replay = eventLog.getObject().resume(diagramId, lastEventId);
+                if (!replay.isFullReloadRequired()) {
+                    queue(reader, replay.getEvents());
+                    reader.lastSeq = replay.getLatestSeq();
+                    join(feed, reader);
+                    return;
+                }
+            }
+
+            Optional<DiagramSnapshotCache.CatchUp> catchUp = snapshotCache.getObject().catchUp(diagramId);
+            if (catchUp.isEmpty()) {
+                reader.emitter.complete();
+                return;
+            }
+            DiagramSnapshotCache.Snapshot snapshot = catchUp.get().snapshot();
+            offer(reader, frame("snapshot", snapshot.seq(), snapshot.json()));
+            queue(reader, catchUp.get().events());
+            reader.lastSeq = catchUp.get().seq();
+            join(feed, reader);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to open public feed of diagram {}: {}", diagramId, e.getMessage());
+            reader.emitter.completeWithError(e);
+        }
+    }
+
+    private void join(Feed feed, Reader reader) {
+        // A reader that already fell behind while being caught up is not added
+        if (reader.isClosed()) return;
+        feed.readers.add(reader);
+        readerCount.incrementAndGet();
+    }
+
+    private void remove(Reader reader) {
+        reader.discard();
+        enqueue(reader.diagramId, feed -> {
+            if (feed.readers.remove(reader)) readerCount.decrementAndGet();
+        }, false);
+    }
+
+    private void queue(Reader reader, List<SequencedEvent> events) throws IOException {
+        for (SequencedEvent event : events) {
+            if (!isPublicType(event.getType())) continue;
+            String json = publicJson(event.getType(), objectMapper.writeValueAsString(event.getPayload()));
+            offer(reader, frame(event.getType(), event.getSeq(), json));
+        }
+    }
+
+    private void deliver(Feed feed, Set<ResponseBodyEmitter.DataWithMediaType> frame, Long seq) {
+        Iterator<Reader> readers = feed.readers.iterator();
+        while (readers.hasNext()) {
+            Reader reader = readers.next();
+            // Already queued while the reader was being caught up
+            if (seq != null && seq <= reader.lastSeq) continue;
+            if (!offer(reader, frame)) {
+                readers.remove();
+                readerCount.decrementAndGet();
+                continue;
+            }
+            if (seq != null) reader.lastSeq = seq;
+        }
+    }
+
+    /**
+     * Queue a frame for the reader and start its drain. Returns false when the
+     * reader is closed, including when this frame put it over its limit.
+     */
+    private boolean offer(Reader reader, Set<ResponseBodyEmitter.DataWithMediaType> frame) {
+        boolean startDrain;
+        boolean overflow;
+        synchronized (reader) {
+            if (reader.closed) return false;
+            reader.frames.add(frame);
+            overflow = isOverLimit(reader);
+            if (overflow) {
+                reader.closed = true;
+                reader.frames.clear();
+            }
+            startDrain = !overflow && !reader.draining;
+            if (startDrain) reader.draining = true;
+        }
+
+        if (overflow) {
+            disconnects.increment();
+            log.info("Closing public reader of diagram {}: its queue stayed over its limit", reader.diagramId);
+            lanes.execute(reader.emitter::complete);
+            return false;
+        }
+        if (startDrain) {
+            lanes.execute(() -> drain(reader));
+        }
+        return true;
+    }
+
+    private void drain(Reader reader) {
+        while (true) {
+            Set<ResponseBodyEmitter.DataWithMediaType> next;
+            synchronized (reader) {
+                next = reader.frames.poll();
+                if (reader.frames.size() <= softLimit) {
+                    reader.overLimitSince = -1;
+                }
+                if (next == null || reader.closed) {
+                    reader.draining = false;
+                    return;
+                }
+            }
+            try {
+                reader.emitter.send(next);
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Public reader of diagram {} went away: {}", reader.diagramId, e.getMessage());
+                synchronized (reader) {
+                    reader.draining = false;
+                }
+                remove(reader);
+                return;
+            }
+        }
+    }
+
+    // Called with the reader's monitor held
+    private boolean isOverLimit(Reader reader) {
+        int size = reader.frames.size();
+        if (size > hardLimit) return true;
+        if (size <= softLimit) return false;
+
+        long now = System.currentTimeMillis();
+        if (reader.overLimitSince < 0) {
+            reader.overLimitSince = now;
+            return false;
+        }
+        return now - reader.overLimitSince > overLimitGraceMillis;
+    }
+
+    private void enqueue(String diagramId, Consumer<Feed> task, boolean create) {
+        boolean[] startLane = {false};
+        feeds.compute(diagramId, (id, feed) -> {
+            if (feed == null) {
+                if (!create) return null;
+                feed = new Feed();
+            }
+            feed.tasks.add(task);
+            if (!feed.draining) {
+                feed.draining = true;
+                startLane[0] = true;
+            }
+            return feed;
+        });
+        if (startLane[0]) {
+            lanes.execute(() -> drain(diagramId));
+        }
+    }
+
+    private void drain(String diagramId) {
+        while (true) {
+            Feed[] current = {null};
+            @SuppressWarnings("unchecked")
+            Consumer<Feed>[] next = new Consumer[1];
+            feeds.computeIfPresent(diagramId, (id, feed) -> {
+                next[0] = feed.tasks.poll();
+                if (next[0] != null) {
+                    current[0] = feed;
+                    return feed;
+                }
+                // Ending the lane; a feed without readers goes with it
+                feed.draining = false;
+                return feed.readers.isEmpty() ? null : feed;
+            });
+            if (next[0] == null) return;
+
+            try {
+                next[0].accept(current[0]);
+            } catch (Throwable e) {
+                log.error("Public feed task failed for diagram {}", diagramId, e);
+            }
+        }
+    }
+
+    /**
+     * Generic events carry the sender's email for editors; readers don't get it.
+     */
+    private String publicJson(String type, String json) throws JsonProcessingException {
+        if (!"events".equals(type)) return json;
+        JsonNode node = objectMapper.readTree(json);
+        if (node instanceof ObjectNode object && object.remove("userEmail") != null) {
+            return objectMapper.writeValueAsString(object);
+        }
+        return json;
+    }
+
+    private static Set<ResponseBodyEmitter.DataWithMediaType> frame(String type, Long seq, String json) {
+        SseEmitter.SseEventBuilder event = SseEmitter.event().name(type);
+        if (seq != null) {
+            event.id(String.valueOf(seq));
+        }
+        return event.data(json).build();
+    }
+
+    private static Long seqOf(Message<?> message) {
+        Object nativeHeaders = message.getHeaders().get(SimpMessageHeaderAccessor.NATIVE_HEADERS);
+        if (nativeHeaders instanceof Map<?, ?> map && map.get(DiagramEventLog.SEQ_HEADER) instanceof List<?> values
+                && !values.isEmpty()) {
+            try {
+                return Long.valueOf(String.valueOf(values.get(0)));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isPublicType(String type) {
+        if (PUBLIC_TYPES.contains(type)) return true;
+        for (String prefix : PUBLIC_TYPE_PREFIXES) {
+            if (type.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Readers and pending tasks of one diagram. {@code tasks} and
+     * {@code draining} are guarded by the feed map's per-key lock; readers are
+     * only touched by the lane. Tasks only queue frames on readers, so the lane
+     * keeps up with the broker however slow the readers are.
+     */
+    private static class Feed {
+        private final ArrayDeque<Consumer<Feed>> tasks = new ArrayDeque<>();
+        private boolean draining;
+        private final List<Reader> readers = new ArrayList<>();
+    }
+
+    /**
+     * One SSE connection. {@code lastSeq} is only touched by the lane; the
+     * queue and its state are guarded by the instance.
+     */
+    private static class Reader {
+        private final String diagramId;
+        private final SseEmitter emitter;
+        private long lastSeq;
+
+        private final ArrayDeque<Set<ResponseBodyEmitter.DataWithMediaType>> frames = new ArrayDeque<>();
+        private boolean draining;
+        private boolean closed;
+        private long overLimitSince = -1;
+
+        Reader(String diagramId, SseEmitter emitter) {
+            this.diagramId = diagramId;
+            this.emitter = emitter;
+        }
+
+        synchronized boolean isIdle() {
+            return frames.isEmpty();
+        }
+
+        synchronized boolean isClosed() {
+            return closed;
+        }
+
+        synchronized void discard() {
+            closed = true;
+            frames.clear();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.chartdb.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Relay over a single Redis pub/sub channel shared by all nodes.
+ *
+ * Publishes go over one connection opened on first use and shared by every
+ * publishing thread; Lettuce multiplexes their commands over its native
+ * connection. A connection that fails is dropped and reopened on the next publish.
+ */
+@Slf4j
+public class RedisBrokerRelay implements BrokerRelay {
+
+    private final RedisConnectionFactory connectionFactory;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final String channel;
+
+    private final byte[] channelBytes;
+    private volatile RedisConnection connection;
+
+    public RedisBrokerRelay(RedisConnectionFactory connectionFactory, RedisMessageListenerContainer listenerContainer,
+                            String channel) {
+        this.connectionFactory = connectionFactory;
+        this.listenerContainer = listenerContainer;
+        this.channel = channel;
+        this.channelBytes = channel.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void publish(RelayEnvelope envelope) {
+        RedisConnection current = connection();
+        try {
+            current.publish(channelBytes, envelope.encode());
+        } catch (RuntimeException e) {
+            reset(current);
+            throw e;
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<RelayEnvelope> listener) {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            try {
+                listener.accept(RelayEnvelope.decode(message.getBody()));
+            } catch (Exception e) {
+                log.warn("Dropping malformed relay message: {}", e.getMessage());
+            }
+        }, new ChannelTopic(channel));
+    }
+
+    public synchronized void close() {
+        if (connection != null) {
+            connection.close();
+            connection = null;
+        }
+    }
+
+    private RedisConnection connection() {
+        RedisConnection current = connection;
+        if (current != null) return current;
+        synchronized (this) {
+            if (connection == null) {
+                connection = connectionFactory.getConnection();
+            }
+            return connection;
+        }
+    }
+
+    private synchronized void reset(RedisConnection failed) {
+        if (connection != failed) return;
+        connection = null;
+        try {
+            failed.close();
+        } catch (RuntimeException e) {
+            log.debug("Failed to close relay connection: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.chartdb.websocket;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A broker message as it travels between nodes: the already-serialized payload
+ * plus the few headers needed to deliver it again on the receiving node,
+ * including its STOMP native headers (such as the event seq).
+ */
+public record RelayEnvelope(String nodeId, String destination, String contentType,
+                            Map<String, List<String>> nativeHeaders, byte[] payload) {
+
+    public RelayEnvelope {
+        nativeHeaders = nativeHeaders == null ? Map.of() : nativeHeaders;
+    }
+
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + 128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(nodeId);
+            out.writeUTF(destination);
+            out.writeUTF(contentType == null ? "" : contentType);
+            out.writeInt(nativeHeaders.size());
+            for (Map.Entry<String, List<String>> header : nativeHeaders.entrySet()) {
+                out.writeUTF(header.getKey());
+                out.writeInt(header.getValue().size());
+                for (String value : header.getValue()) {
+                    out.writeUTF(value);
+                }
+            }
+            out.writeInt(payload.length);
+            out.write(payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static RelayEnvelope decode(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            String nodeId = in.readUTF();
+            String destination = in.readUTF();
+            String contentType = in.readUTF();
+            int headerCount = in.readInt();
+            Map<String, List<String>> nativeHeaders = new LinkedHashMap<>();
+            for (int i = 0; i < headerCount; i++) {
+                String name = in.readUTF();
+                int valueCount = in.readInt();
+                List<String> values = new ArrayList<>(valueCount);
+                for (int j = 0; j < valueCount; j++) {
+                    values.add(in.readUTF());
+                }
+                nativeHeaders.put(name, values);
+            }
+            byte[] payload = new byte[in.readInt()];
+            in.readFully(payload);
+            return new RelayEnvelope(nodeId, destination, contentType.isEmpty() ? null : contentType, nativeHeaders,
+                payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
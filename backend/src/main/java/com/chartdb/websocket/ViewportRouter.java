@@ -0,0 +1,389 @@
+package com.chartdb.websocket;
+
+import com.chartdb.dto.websocket.ViewportMessage;
+import com.chartdb.service.PresenceRegistry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Viewport-aware delivery of cursor and table-move batches.
+ *
+ * Sessions that report their viewport are kept in a per-diagram uniform grid.
+ * Each tick, the bounding box of every batch entry is looked up in the grid and
+ * the session gets only the entries overlapping its (padded) viewport, on
+ * /user/queue/diagram/{diagramId}/{type}. An entry that leaves a viewport is
+ * sent to it once more, so the client does not keep it frozen at the edge.
+ * Sessions that see the same entries share one serialized frame. The topic copy of a routed batch is suppressed
+ * for those sessions on the outbound channel; sessions that never reported a
+ * viewport keep receiving the full topic broadcast.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ViewportRouter implements ChannelInterceptor {
+
+    // Set to the diagram id on topic batches whose viewport sessions were served separately
+    public static final String ROUTED_HEADER = "chartdbViewportRouted";
+
+    // Viewports covering more cells than this (zoomed far out) are matched against everything
+    private static final int MAX_CELLS_PER_VIEWPORT = 1024;
+
+    private final PresenceRegistry presenceRegistry;
+    private final ObjectMapper objectMapper;
+
+    // The template depends on the broker configuration this interceptor is part of
+    private final ObjectProvider<SimpMessagingTemplate> messagingTemplate;
+
+    @Value("${collaboration.viewport.cell-size:512}")
+    private double cellSize;
+
+    @Value("${collaboration.viewport.margin-ratio:0.25}")
+    private double marginRatio;
+
+    private final Map<String, DiagramViewports> diagrams = new ConcurrentHashMap<>();
+
+    // websocketSessionId -> diagramId of its reported viewport
+    private final Map<String, String> sessionDiagrams = new ConcurrentHashMap<>();
+
+    /**
+     * Record the viewport of a session that has joined the diagram, or clear it
+     * when the message does not describe a visible area.
+     */
+    public void update(String diagramId, String sessionId, ViewportMessage message) {
+        boolean joined = presenceRegistry.getBySession(sessionId)
+            .filter(presence -> diagramId.equals(presence.getDiagramId()))
+            .isPresent();
+        Viewport viewport = joined ? toViewport(sessionId, message) : null;
+        if (viewport == null) {
+            remove(sessionId);
+            return;
+        }
+
+        String previous = sessionDiagrams.put(sessionId, diagramId);
+        if (previous != null && !previous.equals(diagramId)) {
+            removeFrom(previous, sessionId);
+        }
+        diagrams.compute(diagramId, (id, viewports) -> {
+            if (viewports == null) {
+                viewports = new DiagramViewports();
+            }
+            viewports.put(viewport);
+            return viewports;
+        });
+    }
+
+    public void remove(String sessionId) {
+        String diagramId = sessionDiagrams.remove(sessionId);
+        if (diagramId != null) {
+            removeFrom(diagramId, sessionId);
+        }
+    }
+
+    /**
+     * Headers for the topic broadcast of a positional batch; marks it as routed
+     * when some session in the diagram gets its own filtered copy.
+     */
+    public MessageHeaders topicHeaders(String diagramId, Object batch) {
+        MessageHeaders headers = BinaryFrameCodec.sourceHeaders(batch);
+        if (diagrams.containsKey(diagramId)) {
+            MessageHeaderAccessor.getAccessor(headers, SimpMessageHeaderAccessor.class)
+                .setHeader(ROUTED_HEADER, diagramId);
+        }
+        return headers;
+    }
+
+    /**
+     * Send every viewport session of the diagram the entries it can see, plus
+     * the entries it saw last time that have now left its viewport. Entries
+     * matching {@code toAll}, or without bounds, go to all of them.
+     *
+     * @param keyOf    identity of an entry across ticks (user id, table id)
+     * @param boundsOf canvas area the entry covers, or {@code null} if unknown
+     */
+    public <T> void route(String diagramId, String type, List<T> entries, Predicate<T> toAll,
+                          Function<T, String> keyOf, Function<T, Box> boundsOf,
+                          Function<List<T>, Object> batchFactory) {
+        DiagramViewports viewports = diagrams.get(diagramId);
+        if (viewports == null) return;
+
+        Map<String, Set<String>> shown = viewports.shown.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+        Map<String, BitSet> visible = new HashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            T entry = entries.get(i);
+            String key = keyOf.apply(entry);
+            Box bounds = boundsOf.apply(entry);
+            if (toAll.test(entry) || bounds == null) {
+                for (String sessionId : viewports.viewports.keySet()) {
+                    visible.computeIfAbsent(sessionId, id -> new BitSet()).set(i);
+                }
+                // Everyone now has this entry's latest state
+                shown.remove(key);
+                continue;
+            }
+
+            Set<String> seeing = overlapping(viewports, bounds);
+            for (String sessionId : seeing) {
+                visible.computeIfAbsent(sessionId, id -> new BitSet()).set(i);
+            }
+
+            Set<String> previous = shown.get(key);
+            if (previous != null) {
+                // Sessions the entry just left get this update as its last one
+                for (String sessionId : previous) {
+                    if (!seeing.contains(sessionId) && viewports.viewports.containsKey(sessionId)) {
+                        visible.computeIfAbsent(sessionId, id -> new BitSet()).set(i);
+                    }
+                }
+            }
+            if (seeing.isEmpty()) {
+                shown.remove(key);
+            } else {
+                shown.put(key, seeing);
+            }
+        }
+
+        // Sessions that see the same entries share one serialized frame
+        Map<BitSet, List<String>> groups = new LinkedHashMap<>();
+        visible.forEach((sessionId, indices) ->
+            groups.computeIfAbsent(indices, k -> new ArrayList<>()).add(sessionId));
+
+        groups.forEach((indices, sessionIds) -> {
+            List<T> subset = new ArrayList<>(indices.cardinality());
+            indices.stream().forEach(i -> subset.add(entries.get(i)));
+            Object batch = batchFactory.apply(subset);
+            byte[] json;
+            try {
+                json = objectMapper.writeValueAsBytes(batch);
+            } catch (JsonProcessingException e) {
+                log.warn("Failed to serialize {} batch for diagram {}: {}", type, diagramId, e.getMessage());
+                return;
+            }
+            for (String sessionId : sessionIds) {
+                send(sessionId, diagramId, type, batch, json);
+            }
+        });
+    }
+
+    /**
+     * Drops the topic copy of a routed batch for sessions that were served
+     * their own, and forgets viewports of disconnected sessions.
+     */
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (type == null || sessionId == null) return message;
+
+        if (type == SimpMessageType.DISCONNECT) {
+            remove(sessionId);
+        } else if (type == SimpMessageType.MESSAGE) {
+            Object routed = headers.get(ROUTED_HEADER);
+            if (routed != null && routed.equals(sessionDiagrams.get(sessionId))) {
+                return null;
+            }
+        }
+        return message;
+    }
+
+    // Sessions whose viewport overlaps the box
+    private Set<String> overlapping(DiagramViewports viewports, Box bounds) {
+        Set<String> seeing = new HashSet<>();
+        int minCx = cellOf(bounds.minX());
+        int maxCx = cellOf(bounds.maxX());
+        int minCy = cellOf(bounds.minY());
+        int maxCy = cellOf(bounds.maxY());
+        if ((long) (maxCx - minCx + 1) * (maxCy - minCy + 1) > MAX_CELLS_PER_VIEWPORT) {
+            collect(viewports, viewports.viewports.keySet(), bounds, seeing);
+            return seeing;
+        }
+        for (int cx = minCx; cx <= maxCx; cx++) {
+            for (int cy = minCy; cy <= maxCy; cy++) {
+                Set<String> cell = viewports.cells.get(cellKey(cx, cy));
+                if (cell != null) {
+                    collect(viewports, cell, bounds, seeing);
+                }
+            }
+        }
+        collect(viewports, viewports.unbounded, bounds, seeing);
+        return seeing;
+    }
+
+    private void collect(DiagramViewports viewports, Set<String> sessionIds, Box bounds, Set<String> seeing) {
+        for (String sessionId : sessionIds) {
+            Viewport viewport = viewports.viewports.get(sessionId);
+            if (viewport != null && viewport.overlaps(bounds)) {
+                seeing.add(sessionId);
+            }
+        }
+    }
+
+    private void send(String sessionId, String diagramId, String type, Object batch, byte[] json) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setHeader(BinaryFrameCodec.SOURCE_HEADER, batch);
+        accessor.setLeaveMutable(true);
+        try {
+            // A user destination named after the session id targets exactly that session
+            messagingTemplate.getObject().send("/user/" + sessionId + "/queue/diagram/" + diagramId + "/" + type,
+                MessageBuilder.createMessage(json, accessor.getMessageHeaders()));
+        } catch (Exception e) {
+            log.debug("Failed to send {} batch to session {}: {}", type, sessionId, e.getMessage());
+        }
+    }
+
+    private void removeFrom(String diagramId, String sessionId) {
+        diagrams.computeIfPresent(diagramId, (id, viewports) -> {
+            viewports.remove(sessionId);
+            return viewports.isEmpty() ? null : viewports;
+        });
+    }
+
+    private Viewport toViewport(String sessionId, ViewportMessage message) {
+        if (message == null || message.getZoom() == null || message.getWidth() == null
+                || message.getHeight() == null) {
+            return null;
+        }
+        double zoom = message.getZoom().doubleValue();
+        double width = message.getWidth().doubleValue() / zoom;
+        double height = message.getHeight().doubleValue() / zoom;
+        if (!(zoom > 0) || !(width > 0) || !(height > 0)) return null;
+
+        double minX = -(message.getX() != null ? message.getX().doubleValue() : 0) / zoom - width * marginRatio;
+        double minY = -(message.getY() != null ? message.getY().doubleValue() : 0) / zoom - height * marginRatio;
+        double maxX = minX + width * (1 + 2 * marginRatio);
+        double maxY = minY + height * (1 + 2 * marginRatio);
+
+        long columns = (long) cellOf(maxX) - cellOf(minX) + 1;
+        long rows = (long) cellOf(maxY) - cellOf(minY) + 1;
+        long[] cells = null;
+        if (columns * rows <= MAX_CELLS_PER_VIEWPORT) {
+            cells = new long[(int) (columns * rows)];
+            int n = 0;
+            for (int cx = cellOf(minX); cx <= cellOf(maxX); cx++) {
+                for (int cy = cellOf(minY); cy <= cellOf(maxY); cy++) {
+                    cells[n++] = cellKey(cx, cy);
+                }
+            }
+        }
+        return new Viewport(sessionId, minX, minY, maxX, maxY, cells);
+    }
+
+    private int cellOf(double coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private static long cellKey(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Canvas area covered by a batch entry, in canvas units.
+     */
+    public record Box(double minX, double minY, double maxX, double maxY) {
+
+        public static Box point(double x, double y) {
+            return new Box(x, y, x, y);
+        }
+    }
+
+    /**
+     * @param cells grid cells the viewport overlaps, or {@code null} if it is
+     *              too large to index and is matched against every entry
+     */
+    private record Viewport(String sessionId, double minX, double minY, double maxX, double maxY, long[] cells) {
+
+        boolean overlaps(Box box) {
+            return box.maxX() >= minX && box.minX() <= maxX && box.maxY() >= minY && box.minY() <= maxY;
+        }
+    }
+
+    /**
+     * Grid of one diagram's viewports. Mutated only inside the owning map's
+     * compute, read concurrently by the broadcast ticks.
+     */
+    private static class DiagramViewports {
+
+        final Map<String, Viewport> viewports = new ConcurrentHashMap<>();
+        final Map<Long, Set<String>> cells = new ConcurrentHashMap<>();
+        final Set<String> unbounded = ConcurrentHashMap.newKeySet();
+        // type -> entry key -> sessions that were last sent the entry inside their viewport
+        final Map<String, Map<String, Set<String>>> shown = new ConcurrentHashMap<>();
+
+        // New cells are added before stale ones are dropped, so a panning session is never unindexed
+        void put(Viewport viewport) {
+            String sessionId = viewport.sessionId();
+            Viewport previous = viewports.put(sessionId, viewport);
+
+            Set<Long> current = new HashSet<>();
+            if (viewport.cells() == null) {
+                unbounded.add(sessionId);
+            } else {
+                for (long key : viewport.cells()) {
+                    current.add(key);
+                    cells.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(sessionId);
+                }
+            }
+
+            if (previous == null) return;
+            if (previous.cells() == null) {
+                if (viewport.cells() != null) unbounded.remove(sessionId);
+            } else {
+                for (long key : previous.cells()) {
+                    if (!current.contains(key)) unindex(key, sessionId);
+                }
+            }
+        }
+
+        void remove(String sessionId) {
+            Viewport previous = viewports.remove(sessionId);
+            if (previous == null) return;
+            if (previous.cells() == null) {
+                unbounded.remove(sessionId);
+            } else {
+                for (long key : previous.cells()) {
+                    unindex(key, sessionId);
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return viewports.isEmpty();
+        }
+
+        private void unindex(long key, String sessionId) {
+            cells.computeIfPresent(key, (k, sessionIds) -> {
+                sessionIds.remove(sessionId);
+                return sessionIds.isEmpty() ? null : sessionIds;
+            });
+        }
+    }
+}
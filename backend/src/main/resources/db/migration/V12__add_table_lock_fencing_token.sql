@@ -0,0 +1,3 @@
+-- V12: Fencing tokens for table locks
+-- Locks are held in memory; rows are only kept for crash recovery.
+ALTER TABLE table_locks ADD COLUMN fencing_token BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,9 @@
+-- V13: One active_collaborators row per diagram and user
+-- Joins upsert on this key instead of reading the row first.
+DELETE c1 FROM active_collaborators c1
+JOIN active_collaborators c2
+  ON c1.diagram_id = c2.diagram_id
+ AND c1.user_id = c2.user_id
+ AND (c1.last_seen < c2.last_seen OR (c1.last_seen = c2.last_seen AND c1.id < c2.id));
+
+ALTER TABLE active_collaborators ADD CONSTRAINT unique_diagram_user UNIQUE (diagram_id, user_id);
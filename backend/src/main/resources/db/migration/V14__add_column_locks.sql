@@ -0,0 +1,12 @@
+-- V14: Column-level locks
+-- A lock row targets a whole table or one of its columns; lock_key is unique per target.
+ALTER TABLE table_locks ADD COLUMN lock_key VARCHAR(80) NULL;
+ALTER TABLE table_locks ADD COLUMN column_id VARCHAR(36) NULL;
+
+UPDATE table_locks SET lock_key = table_id;
+
+ALTER TABLE table_locks MODIFY lock_key VARCHAR(80) NOT NULL;
+ALTER TABLE table_locks DROP INDEX unique_table_lock;
+ALTER TABLE table_locks ADD CONSTRAINT unique_lock_key UNIQUE (lock_key);
+ALTER TABLE table_locks ADD CONSTRAINT fk_locks_column
+    FOREIGN KEY (column_id) REFERENCES columns(id) ON DELETE CASCADE;
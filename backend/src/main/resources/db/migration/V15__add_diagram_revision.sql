@@ -0,0 +1,3 @@
+-- V15: Diagram revision
+-- Bumped in the same transaction as every write to a diagram or its content; backs the /full ETag.
+ALTER TABLE diagrams ADD COLUMN revision BIGINT NOT NULL DEFAULT 0;
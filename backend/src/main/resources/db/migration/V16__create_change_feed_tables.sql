@@ -0,0 +1,24 @@
+-- V16: Change feed bookkeeping
+-- diagram_revisions records when each revision was reached, so /changes?since=<rev> can select rows by updated_at;
+-- diagram_tombstones records deleted content. Both are purged after the change feed retention.
+CREATE TABLE diagram_revisions (
+    diagram_id VARCHAR(36) NOT NULL,
+    revision BIGINT NOT NULL,
+    changed_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (diagram_id, revision),
+    CONSTRAINT fk_revisions_diagram FOREIGN KEY (diagram_id) REFERENCES diagrams(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_revisions_changed ON diagram_revisions(changed_at);
+
+CREATE TABLE diagram_tombstones (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    diagram_id VARCHAR(36) NOT NULL,
+    entity_type VARCHAR(20) NOT NULL,
+    entity_id VARCHAR(36) NOT NULL,
+    deleted_at TIMESTAMP NOT NULL,
+    CONSTRAINT fk_tombstones_diagram FOREIGN KEY (diagram_id) REFERENCES diagrams(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_tombstones_diagram ON diagram_tombstones(diagram_id, deleted_at);
+CREATE INDEX idx_tombstones_deleted ON diagram_tombstones(deleted_at);
@@ -0,0 +1,98 @@
+package com.chartdb.repository;
+
+import com.chartdb.model.Diagram;
+import com.chartdb.model.DiagramTable;
+import com.chartdb.model.Relationship;
+import com.chartdb.model.TableColumn;
+import com.chartdb.model.User;
+import com.chartdb.model.enums.RelationshipType;
+import jakarta.persistence.EntityManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A diagram of chained tables: every table after the first has a foreign key
+ * column to the previous table's primary key, and a relationship along it.
+ */
+final class DiagramContentFixture {
+
+    private DiagramContentFixture() {}
+
+    static String persist(EntityManager entityManager, int tableCount, int columnsPerTable) {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        User owner = User.builder()
+            .email("owner-" + suffix + "@example.com")
+            .username("owner-" + suffix)
+            .displayName("Owner " + suffix)
+            .build();
+        entityManager.persist(owner);
+
+        Diagram diagram = Diagram.builder()
+            .owner(owner)
+            .name("Shop " + suffix)
+            .description("Fixture diagram")
+            .canvasZoom(new BigDecimal("1.250"))
+            .build();
+        entityManager.persist(diagram);
+
+        DiagramTable previous = null;
+        TableColumn previousKey = null;
+        for (int t = 0; t < tableCount; t++) {
+            DiagramTable table = DiagramTable.builder()
+                .diagram(diagram)
+                .name("table_" + t)
+                .description(t % 3 == 0 ? null : "Table " + t)
+                .positionX(BigDecimal.valueOf(t * 240L, 2))
+                .positionY(BigDecimal.valueOf(t % 7 * 180L, 2))
+                .sortOrder(t)
+                .isCollapsed(t % 5 == 0)
+                .indexesJson(t % 4 == 0 ? "[{\"name\":\"idx_" + t + "\",\"columns\":[\"id\"]}]" : null)
+                .build();
+            entityManager.persist(table);
+
+            TableColumn key = null;
+            for (int c = 0; c < columnsPerTable; c++) {
+                boolean foreignKey = c == 1 && previousKey != null;
+                TableColumn column = TableColumn.builder()
+                    .table(table)
+                    .name(c == 0 ? "id" : "column_" + c)
+                    .dataType(c == 0 ? "bigint" : "varchar(255)")
+                    .isPrimaryKey(c == 0)
+                    .isNullable(c != 0)
+                    .isAutoIncrement(c == 0)
+                    .isForeignKey(foreignKey)
+                    .fkTable(foreignKey ? previous : null)
+                    .fkColumn(foreignKey ? previousKey : null)
+                    .defaultValue(c % 6 == 5 ? "'none'" : null)
+                    .orderIndex(c)
+                    .build();
+                entityManager.persist(column);
+                if (c == 0) {
+                    key = column;
+                }
+            }
+
+            if (previous != null) {
+                Relationship relationship = Relationship.builder()
+                    .diagram(diagram)
+                    .name("fk_" + t)
+                    .sourceTable(table)
+                    .targetTable(previous)
+                    .targetColumn(previousKey)
+                    .relationshipType(RelationshipType.MANY_TO_ONE)
+                    .pathPoints(t % 2 == 0 ? List.of(Map.of("x", t, "y", 10)) : null)
+                    .build();
+                entityManager.persist(relationship);
+            }
+            previous = table;
+            previousKey = key;
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+        return diagram.getId();
+    }
+}
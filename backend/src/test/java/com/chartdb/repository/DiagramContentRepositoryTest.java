@@ -0,0 +1,84 @@
+package com.chartdb.repository;
+
+import com.chartdb.dto.response.DiagramFullResponse;
+import com.chartdb.dto.response.RelationshipResponse;
+import com.chartdb.mapper.ColumnMapperImpl;
+import com.chartdb.mapper.DiagramMapper;
+import com.chartdb.mapper.DiagramMapperImpl;
+import com.chartdb.mapper.RelationshipMapper;
+import com.chartdb.mapper.RelationshipMapperImpl;
+import com.chartdb.mapper.TableMapper;
+import com.chartdb.mapper.TableMapperImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The JDBC read model against the entity path it replaced: loading entities
+ * and mapping them with the MapStruct mappers.
+ */
+@DataJpaTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:content;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.flyway.enabled=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({DiagramContentRepository.class, DiagramMapperImpl.class, TableMapperImpl.class,
+    ColumnMapperImpl.class, RelationshipMapperImpl.class})
+class DiagramContentRepositoryTest {
+
+    @Autowired private EntityManager entityManager;
+    @Autowired private DiagramContentRepository contentRepository;
+    @Autowired private DiagramRepository diagramRepository;
+    @Autowired private TableRepository tableRepository;
+    @Autowired private RelationshipRepository relationshipRepository;
+    @Autowired private DiagramMapper diagramMapper;
+    @Autowired private TableMapper tableMapper;
+    @Autowired private RelationshipMapper relationshipMapper;
+    @Autowired private ObjectMapper objectMapper;
+
+    @Test
+    void fullDiagramIsTheSameJsonAsTheEntityPath() throws Exception {
+        String diagramId = DiagramContentFixture.persist(entityManager, 12, 8);
+
+        DiagramFullResponse viaJdbc = contentRepository.findFullDiagram(diagramId).orElseThrow();
+        DiagramFullResponse viaEntities = loadThroughEntities(diagramId);
+        entityManager.clear();
+
+        assertThat(viaJdbc.getTables()).hasSize(12);
+        assertThat(viaJdbc.getTables().get(11).getColumns()).hasSize(8);
+        assertThat(viaJdbc.getRelationships()).hasSize(11);
+        assertThat(objectMapper.readTree(objectMapper.writeValueAsString(viaJdbc)))
+            .isEqualTo(objectMapper.readTree(objectMapper.writeValueAsString(viaEntities)));
+    }
+
+    @Test
+    void unknownDiagramIsEmpty() {
+        assertThat(contentRepository.findFullDiagram("missing")).isEmpty();
+    }
+
+    // What getFullDiagram did before the read model, with relationships in the read model's id order
+    private DiagramFullResponse loadThroughEntities(String diagramId) {
+        List<RelationshipResponse> relationships = relationshipMapper.toResponseList(
+            relationshipRepository.findByDiagramId(diagramId));
+        relationships.sort(Comparator.comparing(RelationshipResponse::getId));
+        return diagramMapper.toFullResponse(diagramRepository.findById(diagramId).orElseThrow(),
+            tableMapper.toResponseList(tableRepository.findByDiagramIdWithColumns(diagramId)), relationships);
+    }
+}
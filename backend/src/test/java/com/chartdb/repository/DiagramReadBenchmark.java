@@ -0,0 +1,107 @@
+package com.chartdb.repository;
+
+import com.chartdb.mapper.ColumnMapperImpl;
+import com.chartdb.mapper.DiagramMapper;
+import com.chartdb.mapper.DiagramMapperImpl;
+import com.chartdb.mapper.RelationshipMapper;
+import com.chartdb.mapper.RelationshipMapperImpl;
+import com.chartdb.mapper.TableMapper;
+import com.chartdb.mapper.TableMapperImpl;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.lang.management.ManagementFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Latency and allocation of a full diagram load through the JDBC read model
+ * and through the entity path it replaced, in-process on H2. Run with
+ * {@code mvn test -Dtest=DiagramReadBenchmark -Dbenchmark=true}; skipped
+ * otherwise, since timings on a shared build machine are not a stable gate.
+ */
+@DataJpaTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:benchmark;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.show-sql=false",
+    "spring.flyway.enabled=false",
+    "logging.level.com.chartdb=INFO"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({DiagramContentRepository.class, DiagramMapperImpl.class, TableMapperImpl.class,
+    ColumnMapperImpl.class, RelationshipMapperImpl.class})
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class DiagramReadBenchmark {
+
+    private static final int TABLES = 300;
+    private static final int COLUMNS_PER_TABLE = 20;
+    private static final int WARM_UP = 20;
+    private static final int LOADS = 50;
+
+    @Autowired private EntityManager entityManager;
+    @Autowired private DiagramContentRepository contentRepository;
+    @Autowired private DiagramRepository diagramRepository;
+    @Autowired private TableRepository tableRepository;
+    @Autowired private RelationshipRepository relationshipRepository;
+    @Autowired private DiagramMapper diagramMapper;
+    @Autowired private TableMapper tableMapper;
+    @Autowired private RelationshipMapper relationshipMapper;
+
+    @Test
+    void readModelAllocatesLessAndIsFasterThanEntities() {
+        String diagramId = DiagramContentFixture.persist(entityManager, TABLES, COLUMNS_PER_TABLE);
+
+        Result entities = measure("entities + MapStruct", () -> {
+            diagramMapper.toFullResponse(diagramRepository.findById(diagramId).orElseThrow(),
+                tableMapper.toResponseList(tableRepository.findByDiagramIdWithColumns(diagramId)),
+                relationshipMapper.toResponseList(relationshipRepository.findByDiagramId(diagramId)));
+            // The old read-write transaction dirty-checked every loaded entity on commit
+            entityManager.flush();
+            entityManager.clear();
+        });
+        Result jdbc = measure("JDBC read model", () -> contentRepository.findFullDiagram(diagramId).orElseThrow());
+
+        System.out.printf("%d tables x %d columns, %d relationships, %d loads after %d warm-up%n",
+            TABLES, COLUMNS_PER_TABLE, TABLES - 1, LOADS, WARM_UP);
+        System.out.println(entities);
+        System.out.println(jdbc);
+        assertThat(jdbc.bytesPerLoad()).isLessThan(entities.bytesPerLoad());
+        assertThat(jdbc.millisPerLoad()).isLessThan(entities.millisPerLoad());
+    }
+
+    private static Result measure(String name, Runnable load) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        for (int i = 0; i < WARM_UP; i++) {
+            load.run();
+        }
+        long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+        long started = System.nanoTime();
+        for (int i = 0; i < LOADS; i++) {
+            load.run();
+        }
+        double millis = (System.nanoTime() - started) / 1e6 / LOADS;
+        long bytes = (threads.getThreadAllocatedBytes(threadId) - bytesBefore) / LOADS;
+        return new Result(name, millis, bytes);
+    }
+
+    private record Result(String name, double millisPerLoad, long bytesPerLoad) {
+
+        @Override
+        public String toString() {
+            return String.format("  %-22s %8.1f ms  %8.1f MB allocated per load", name, millisPerLoad, bytesPerLoad / 1e6);
+        }
+    }
+}
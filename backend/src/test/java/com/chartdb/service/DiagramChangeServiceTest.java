@@ -0,0 +1,125 @@
+package com.chartdb.service;
+
+import com.chartdb.dto.response.DiagramChangesResponse;
+import com.chartdb.dto.response.DiagramFullResponse;
+import com.chartdb.mapper.AreaMapperImpl;
+import com.chartdb.mapper.CustomTypeMapperImpl;
+import com.chartdb.mapper.DependencyMapperImpl;
+import com.chartdb.mapper.NoteMapperImpl;
+import com.chartdb.model.Diagram;
+import com.chartdb.model.DiagramCustomType;
+import com.chartdb.model.DiagramDependency;
+import com.chartdb.model.DiagramRevisionStamp;
+import com.chartdb.model.DiagramTombstone;
+import com.chartdb.model.enums.ChangeEntityType;
+import com.chartdb.repository.AreaRepository;
+import com.chartdb.repository.CustomTypeRepository;
+import com.chartdb.repository.DependencyRepository;
+import com.chartdb.repository.DiagramContentRepository;
+import com.chartdb.repository.DiagramRevisionStampRepository;
+import com.chartdb.repository.DiagramTombstoneRepository;
+import com.chartdb.repository.NoteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Revision 4 was reached at {@code STAMPED}; the diagram is at revision 7.
+ */
+class DiagramChangeServiceTest {
+
+    private static final Instant STAMPED = Instant.parse("2026-01-01T12:00:00Z");
+
+    private final DiagramService diagramService = mock(DiagramService.class);
+    private final DiagramContentRepository contentRepository = mock(DiagramContentRepository.class);
+    private final DiagramRevisionStampRepository stampRepository = mock(DiagramRevisionStampRepository.class);
+    private final DiagramTombstoneRepository tombstoneRepository = mock(DiagramTombstoneRepository.class);
+    private final CustomTypeRepository customTypeRepository = mock(CustomTypeRepository.class);
+    private final DependencyRepository dependencyRepository = mock(DependencyRepository.class);
+    private final Diagram diagram = Diagram.builder().id("d1").revision(7L).build();
+    private DiagramChangeService changeService;
+
+    @BeforeEach
+    void setUp() {
+        changeService = new DiagramChangeService(diagramService, contentRepository, stampRepository,
+            tombstoneRepository, mock(AreaRepository.class), mock(NoteRepository.class),
+            customTypeRepository, dependencyRepository, new AreaMapperImpl(), new NoteMapperImpl(),
+            new CustomTypeMapperImpl(), new DependencyMapperImpl());
+        ReflectionTestUtils.setField(changeService, "clockMarginMillis", 5000L);
+
+        diagram.setUpdatedAt(STAMPED.minusSeconds(60));
+        when(diagramService.findDiagramById("d1")).thenReturn(diagram);
+        when(diagramService.canUserView(diagram, "u1")).thenReturn(true);
+        when(stampRepository.findByDiagramIdAndRevision("d1", 4L))
+            .thenReturn(Optional.of(DiagramRevisionStamp.builder().diagramId("d1").revision(4L).changedAt(STAMPED).build()));
+    }
+
+    @Test
+    void headerChangesAreReturnedWithTheDiagramFields() {
+        diagram.setUpdatedAt(STAMPED.plusSeconds(1));
+        when(contentRepository.findDiagram("d1"))
+            .thenReturn(Optional.of(DiagramFullResponse.builder().id("d1").name("Renamed").isPublic(true).build()));
+
+        DiagramChangesResponse changes = changeService.getChangesSince("d1", "u1", 4);
+
+        assertThat(changes.getFullReloadRequired()).isFalse();
+        assertThat(changes.getRevision()).isEqualTo(7);
+        assertThat(changes.getDiagram().getName()).isEqualTo("Renamed");
+        assertThat(changes.getDiagram().getTables()).isNull();
+    }
+
+    @Test
+    void unchangedHeaderIsLeftOut() {
+        DiagramChangesResponse changes = changeService.getChangesSince("d1", "u1", 4);
+
+        assertThat(changes.getDiagram()).isNull();
+        verify(contentRepository, never()).findDiagram(anyString());
+    }
+
+    @Test
+    void customTypesAndDependenciesAreUpsertedAndTombstoned() {
+        Instant after = STAMPED.minusMillis(5000);
+        when(customTypeRepository.findByDiagramIdAndUpdatedAtAfter("d1", after))
+            .thenReturn(List.of(DiagramCustomType.builder().id("ct1").name("mood").kind("enum").build()));
+        when(dependencyRepository.findByDiagramIdAndUpdatedAtAfter("d1", after))
+            .thenReturn(List.of(DiagramDependency.builder().id("dep1").sourceTableId("t1").targetTableId("t2").build()));
+        when(tombstoneRepository.findByDiagramIdAndDeletedAtAfterOrderByDeletedAt("d1", after)).thenReturn(List.of(
+            tombstone(ChangeEntityType.CUSTOM_TYPE, "ct1"),
+            tombstone(ChangeEntityType.DEPENDENCY, "dep0"),
+            tombstone(ChangeEntityType.COLUMN, "c9")));
+
+        DiagramChangesResponse changes = changeService.getChangesSince("d1", "u1", 4);
+
+        assertThat(changes.getCustomTypes()).extracting("id").containsExactly("ct1");
+        assertThat(changes.getDependencies()).extracting("id").containsExactly("dep1");
+        // ct1 was deleted and created again, so it is only an upsert
+        assertThat(changes.getDeleted()).extracting("type", "id").containsExactly(
+            tuple(ChangeEntityType.DEPENDENCY, "dep0"),
+            tuple(ChangeEntityType.COLUMN, "c9"));
+    }
+
+    @Test
+    void purgedRevisionRequiresAFullReload() {
+        DiagramChangesResponse changes = changeService.getChangesSince("d1", "u1", 2);
+
+        assertThat(changes.getFullReloadRequired()).isTrue();
+        verify(contentRepository, never()).findTablesChangedSince(anyString(), any());
+    }
+
+    private static DiagramTombstone tombstone(ChangeEntityType type, String id) {
+        return DiagramTombstone.builder().diagramId("d1").entityType(type).entityId(id).deletedAt(STAMPED).build();
+    }
+}
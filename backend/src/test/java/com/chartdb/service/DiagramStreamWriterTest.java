@@ -0,0 +1,85 @@
+package com.chartdb.service;
+
+import com.chartdb.dto.response.ColumnResponse;
+import com.chartdb.dto.response.DiagramFullResponse;
+import com.chartdb.dto.response.TableResponse;
+import com.chartdb.repository.DiagramContentRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DiagramStreamWriterTest {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private boolean committed;
+    private DiagramStreamWriter streamWriter;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        DiagramContentRepository contentRepository = mock(DiagramContentRepository.class);
+        when(contentRepository.findDiagram("d1"))
+            .thenReturn(Optional.of(DiagramFullResponse.builder().id("d1").name("Shop").build()));
+        doAnswer(invocation -> {
+            Consumer<TableResponse> onTable = invocation.getArgument(1);
+            Consumer<ColumnResponse> onColumn = invocation.getArgument(2);
+            for (int t = 0; t < 50; t++) {
+                onTable.accept(TableResponse.builder().id("t" + t).name("table_" + t).build());
+                for (int c = 0; c < 3; c++) {
+                    onColumn.accept(ColumnResponse.builder().id("t" + t + "c" + c).name("column_" + c).build());
+                }
+            }
+            return null;
+        }).when(contentRepository).forEachTable(eq("d1"), any(), any());
+        doAnswer(invocation -> committed = true).when(transactionManager).commit(any());
+
+        streamWriter = new DiagramStreamWriter(contentRepository, objectMapper, new TransactionTemplate(transactionManager));
+        streamWriter.createWriter();
+        // Small enough that the body spills to a temporary file
+        ReflectionTestUtils.setField(streamWriter, "spillMemoryBytes", 256);
+    }
+
+    @Test
+    void clientIsWrittenToOnlyAfterTheReadCommitted() throws Exception {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        boolean[] committedBeforeWrite = {true};
+        streamWriter.write("d1", "EDITOR", new OutputStream() {
+            @Override
+            public void write(int b) {
+                committedBeforeWrite[0] &= committed;
+                body.write(b);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                committedBeforeWrite[0] &= committed;
+                body.write(bytes, offset, length);
+            }
+        });
+
+        assertThat(committedBeforeWrite[0]).isTrue();
+        JsonNode data = objectMapper.readTree(body.toByteArray()).get("data");
+        assertThat(data.get("permissionLevel").asText()).isEqualTo("EDITOR");
+        assertThat(data.get("tableCount").asInt()).isEqualTo(50);
+        assertThat(data.get("tables").get(49).get("columns")).hasSize(3);
+        assertThat(data.get("tables").get(49).get("columns").get(2).get("id").asText()).isEqualTo("t49c2");
+    }
+}
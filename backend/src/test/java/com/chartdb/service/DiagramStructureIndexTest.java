@@ -0,0 +1,85 @@
+package com.chartdb.service;
+
+import com.chartdb.repository.TableRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@code rows} stands in for the committed tables and columns of diagram d1.
+ */
+class DiagramStructureIndexTest {
+
+    private final List<TableRepository.TableColumnId> rows = new CopyOnWriteArrayList<>();
+    private final TableRepository tableRepository = mock(TableRepository.class);
+    private DiagramStructureIndex index;
+
+    @BeforeEach
+    void setUp() {
+        rows.add(row("t1", "c1"));
+        rows.add(row("t1", "c2"));
+        rows.add(row("t2", null));
+        when(tableRepository.findColumnIdsByDiagramId("d1")).thenAnswer(invocation -> List.copyOf(rows));
+        index = new DiagramStructureIndex(tableRepository);
+    }
+
+    @Test
+    void knownTargetsAreAnsweredFromMemory() {
+        assertThat(index.contains("d1", "t1", null)).isTrue();
+        assertThat(index.contains("d1", "t1", "c2")).isTrue();
+        assertThat(index.contains("d1", "t2", null)).isTrue();
+
+        verify(tableRepository, times(1)).findColumnIdsByDiagramId("d1");
+    }
+
+    @Test
+    void columnMustBelongToItsTable() {
+        assertThat(index.contains("d1", "t2", "c1")).isFalse();
+        assertThat(index.contains("d1", "t3", null)).isFalse();
+    }
+
+    @Test
+    void createAndDeletePathsKeepTheIndexCurrent() {
+        index.contains("d1", "t1", null);
+
+        index.tableCreatedOnCommit("d1", "t3", List.of("c3"));
+        index.columnsDeletedOnCommit("d1", "t1", List.of("c1"));
+        rows.removeIf(row -> "c1".equals(row.getColumnId()));
+        rows.add(row("t3", "c3"));
+
+        assertThat(index.contains("d1", "t3", "c3")).isTrue();
+        verify(tableRepository, times(1)).findColumnIdsByDiagramId("d1");
+        assertThat(index.contains("d1", "t1", "c1")).isFalse();
+    }
+
+    @Test
+    void missReadsTheDiagramAgain() {
+        index.contains("d1", "t1", null);
+        // Committed while the diagram was being read, so no update reached the index
+        rows.add(row("t4", null));
+
+        assertThat(index.contains("d1", "t4", null)).isTrue();
+    }
+
+    private static TableRepository.TableColumnId row(String tableId, String columnId) {
+        return new TableRepository.TableColumnId() {
+            @Override
+            public String getTableId() {
+                return tableId;
+            }
+
+            @Override
+            public String getColumnId() {
+                return columnId;
+            }
+        };
+    }
+}
@@ -0,0 +1,200 @@
+package com.chartdb.service;
+
+import com.chartdb.dto.websocket.LockResultMessage;
+import com.chartdb.exception.BadRequestException;
+import com.chartdb.exception.ConflictException;
+import com.chartdb.repository.TableLockRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TableLockManagerTest {
+
+    private static final String DIAGRAM = "diagram-1";
+    private static final String FOREIGN_TABLE = "t-of-another-diagram";
+    private static final String FOREIGN_COLUMN = "c-of-another-table";
+
+    private TableLockRepository lockRepository;
+    private SimpMessagingTemplate messagingTemplate;
+    private TableLockManager manager;
+
+    @BeforeEach
+    void setUp() {
+        lockRepository = mock(TableLockRepository.class);
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        DiagramStructureIndex structureIndex = mock(DiagramStructureIndex.class);
+        when(structureIndex.contains(anyString(), anyString(), any())).thenAnswer(invocation ->
+            !FOREIGN_TABLE.equals(invocation.getArgument(1)) && !FOREIGN_COLUMN.equals(invocation.getArgument(2)));
+        manager = new TableLockManager(
+            lockRepository,
+            structureIndex,
+            messagingTemplate,
+            new TransactionTemplate(mock(PlatformTransactionManager.class)),
+            new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(manager, "leaseSeconds", 120L);
+        ReflectionTestUtils.setField(manager, "maxWaitMillis", 60_000L);
+        ReflectionTestUtils.setField(manager, "maxWaiters", 32);
+        ReflectionTestUtils.setField(manager, "wheelTickMillis", 1000L);
+        manager.recover();
+    }
+
+    @Test
+    void tableLeaseBlocksOtherUsersAndKeepsItsTokenOnExtension() {
+        TableLockManager.Lease granted = manager.acquire(DIAGRAM, TableLockManager.Target.table("t1"), "alice", "Alice");
+        TableLockManager.Lease blocked = manager.acquire(DIAGRAM, TableLockManager.Target.table("t1"), "bob", "Bob");
+        TableLockManager.Lease extended = manager.acquire(DIAGRAM, TableLockManager.Target.table("t1"), "alice", "Alice");
+
+        assertThat(granted.isHeldBy("alice")).isTrue();
+        assertThat(blocked).isEqualTo(granted);
+        assertThat(extended.fencingToken()).isEqualTo(granted.fencingToken());
+    }
+
+    @Test
+    void writesToALockedTableNeedTheHoldersCurrentToken() {
+        TableLockManager.Target table = TableLockManager.Target.table("t1");
+        assertThatCode(() -> manager.checkWrite(DIAGRAM, table, "bob", null)).doesNotThrowAnyException();
+
+        TableLockManager.Lease lease = manager.acquire(DIAGRAM, table, "alice", "Alice");
+
+        assertThatThrownBy(() -> manager.checkWrite(DIAGRAM, table, "bob", lease.fencingToken()))
+            .isInstanceOf(ConflictException.class);
+        assertThatThrownBy(() -> manager.checkWrite(DIAGRAM, table, "alice", null))
+            .isInstanceOf(ConflictException.class);
+        assertThatThrownBy(() -> manager.checkWrite(DIAGRAM, table, "alice", lease.fencingToken() - 1))
+            .isInstanceOf(ConflictException.class);
+        assertThatCode(() -> manager.checkWrite(DIAGRAM, table, "alice", lease.fencingToken()))
+            .doesNotThrowAnyException();
+    }
+
+    @Test
+    void tokenOfAReleasedLeaseIsStale() {
+        TableLockManager.Target table = TableLockManager.Target.table("t1");
+        TableLockManager.Lease lease = manager.acquire(DIAGRAM, table, "alice", "Alice");
+        manager.release(table, "alice");
+
+        assertThat(manager.canWrite(DIAGRAM, table, "alice", lease.fencingToken())).isFalse();
+        assertThat(manager.canWrite(DIAGRAM, table, "alice", null)).isTrue();
+    }
+
+    @Test
+    void columnLeaseBlocksWritesToTheWholeTable() {
+        TableLockManager.Lease lease = manager.acquire(DIAGRAM, TableLockManager.Target.column("t1", "c1"), "alice", "Alice");
+
+        assertThat(manager.canWrite(DIAGRAM, TableLockManager.Target.table("t1"), "bob", null)).isFalse();
+        assertThat(manager.canWrite(DIAGRAM, TableLockManager.Target.column("t1", "c2"), "bob", null)).isTrue();
+        assertThat(manager.canWrite(DIAGRAM, TableLockManager.Target.column("t1", "c1"), "alice", lease.fencingToken()))
+            .isTrue();
+    }
+
+    @Test
+    void recoveryLogSeesTheGrantBeforeTheRelease() throws InterruptedException {
+        TableLockManager.Target table = TableLockManager.Target.table("t1");
+        TableLockManager.Lease lease = manager.acquire(DIAGRAM, table, "alice", "Alice");
+        manager.release(table, "alice");
+        manager.shutdown();
+
+        InOrder order = inOrder(lockRepository);
+        order.verify(lockRepository).upsertLease(any(), eq("t1"), eq("t1"), any(), eq("alice"), any(), any(), anyLong());
+        order.verify(lockRepository).deleteByLockKeyAndFencingToken("t1", lease.fencingToken());
+    }
+
+    @Test
+    void tablesOfAnotherDiagramCannotBeLocked() {
+        List<TableLockManager.Target> targets = List.of(
+            TableLockManager.Target.table("t1"), TableLockManager.Target.table(FOREIGN_TABLE));
+
+        assertThatThrownBy(() -> manager.acquireAll(DIAGRAM, targets, "alice", "Alice"))
+            .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> manager.acquireOrWait(DIAGRAM, TableLockManager.Target.table(FOREIGN_TABLE),
+                "alice", "Alice", "s1"))
+            .isInstanceOf(BadRequestException.class);
+        assertThat(manager.isLocked("t1")).isFalse();
+    }
+
+    @Test
+    void columnsOfAnotherTableCannotBeLocked() {
+        assertThatThrownBy(() -> manager.acquire(DIAGRAM, TableLockManager.Target.column("t1", FOREIGN_COLUMN),
+                "alice", "Alice"))
+            .isInstanceOf(BadRequestException.class)
+            .hasMessageContaining("is not part of table t1");
+        assertThat(manager.isLocked("t1")).isFalse();
+    }
+
+    @Test
+    void releasingAColumnNeedsItsId() {
+        manager.acquire(DIAGRAM, TableLockManager.Target.table("t1"), "alice", "Alice");
+
+        assertThatThrownBy(() -> manager.releaseColumn(DIAGRAM, "t1", null))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThat(manager.isLocked("t1")).isTrue();
+    }
+
+    @Test
+    void deletedColumnIsReleasedOnlyOnceTheDeleteCommits() {
+        TableLockManager.Target column = TableLockManager.Target.column("t1", "c1");
+        manager.acquire(DIAGRAM, column, "alice", "Alice");
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            manager.releaseColumnOnCommit(DIAGRAM, "t1", "c1");
+            assertThat(manager.getLease(column)).isPresent();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(manager.getLease(column)).isEmpty();
+    }
+
+    @Test
+    void requestsThatDoNotWaitCannotJumpTheQueue() {
+        manager.acquire(DIAGRAM, TableLockManager.Target.column("t1", "c1"), "alice", "Alice");
+        TableLockManager.Attempt queued = manager.acquireOrWait(DIAGRAM, TableLockManager.Target.table("t1"),
+            "bob", "Bob", "s-bob");
+        assertThat(queued.isQueued()).isTrue();
+
+        // c2 itself is free, but bob is queued for the whole table
+        TableLockManager.Lease refused = manager.acquire(DIAGRAM, TableLockManager.Target.column("t1", "c2"),
+            "carol", "Carol");
+        assertThat(refused).isNull();
+
+        manager.release(TableLockManager.Target.column("t1", "c1"), "alice");
+        assertThat(manager.getLease("t1")).hasValueSatisfying(lease -> assertThat(lease.isHeldBy("bob")).isTrue());
+    }
+
+    @Test
+    void queuedReplyIsSentBeforeTheHandoff() {
+        TableLockManager.Target table = TableLockManager.Target.table("t1");
+        manager.acquire(DIAGRAM, table, "alice", "Alice");
+        manager.acquireOrWait(DIAGRAM, table, "bob", "Bob", "s-bob");
+        manager.release(table, "alice");
+
+        InOrder order = inOrder(messagingTemplate);
+        order.verify(messagingTemplate).convertAndSendToUser(eq("s-bob"), eq("/queue/lock-result"),
+            argThat((LockResultMessage result) -> !result.isAcquired() && result.getQueuePosition() == 1), anyMap());
+        order.verify(messagingTemplate).convertAndSendToUser(eq("s-bob"), eq("/queue/lock-result"),
+            argThat((LockResultMessage result) -> result.isAcquired()), anyMap());
+    }
+}
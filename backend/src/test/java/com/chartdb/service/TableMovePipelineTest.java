@@ -0,0 +1,121 @@
+package com.chartdb.service;
+
+import com.chartdb.repository.TableRepository;
+import com.chartdb.repository.TableRepositoryCustom.PositionUpdate;
+import com.chartdb.websocket.ViewportRouter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TableMovePipelineTest {
+
+    private static final String DIAGRAM = "diagram-1";
+    private static final String USER = "user-1";
+
+    private TableRepository tableRepository;
+    private DiagramRevisionService revisionService;
+    private TableMovePipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        tableRepository = mock(TableRepository.class);
+        revisionService = mock(DiagramRevisionService.class);
+        pipeline = new TableMovePipeline(
+            tableRepository,
+            mock(DiagramService.class),
+            revisionService,
+            mock(SimpMessagingTemplate.class),
+            new TransactionTemplate(mock(PlatformTransactionManager.class)),
+            mock(ViewportRouter.class),
+            mock(TableLockManager.class));
+    }
+
+    @Test
+    void flushNowWritesPendingPositionsAndBumpsTheRevision() {
+        pipeline.submitPosition(DIAGRAM, "t1", USER, BigDecimal.ONE, BigDecimal.TEN);
+
+        pipeline.flushNow(DIAGRAM);
+
+        verify(revisionService).markChanged(DIAGRAM);
+        verify(tableRepository).batchUpdatePositions(eq(DIAGRAM),
+            eq(List.of(new PositionUpdate("t1", BigDecimal.ONE, BigDecimal.TEN))), any());
+
+        pipeline.flushNow(DIAGRAM);
+        verify(revisionService).markChanged(DIAGRAM);
+    }
+
+    @Test
+    void flushNowThrowsWhileFlushOnlyLogs() {
+        when(tableRepository.batchUpdatePositions(eq(DIAGRAM), anyCollection(), any()))
+            .thenThrow(new IllegalStateException("database down"));
+
+        pipeline.submitPosition(DIAGRAM, "t1", USER, BigDecimal.ONE, BigDecimal.ONE);
+        assertThatThrownBy(() -> pipeline.flushNow(DIAGRAM)).isInstanceOf(IllegalStateException.class);
+
+        pipeline.submitPosition(DIAGRAM, "t1", USER, BigDecimal.ONE, BigDecimal.ONE);
+        assertThatCode(() -> pipeline.flush(DIAGRAM)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void flushesOfOneDiagramCommitInTheOrderTheirBatchesWereTaken() throws Exception {
+        CountDownLatch firstWriting = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        List<BigDecimal> written = new CopyOnWriteArrayList<>();
+        when(tableRepository.batchUpdatePositions(eq(DIAGRAM), anyCollection(), any())).thenAnswer(invocation -> {
+            Collection<PositionUpdate> updates = invocation.getArgument(1);
+            BigDecimal x = updates.iterator().next().x();
+            if (written.isEmpty() && x.equals(BigDecimal.ONE)) {
+                firstWriting.countDown();
+                releaseFirst.await(5, TimeUnit.SECONDS);
+            }
+            written.add(x);
+            return updates.size();
+        });
+
+        pipeline.submitPosition(DIAGRAM, "t1", USER, BigDecimal.ONE, BigDecimal.ZERO);
+        Thread scheduled = new Thread(pipeline::flushAll);
+        scheduled.start();
+        assertThat(firstWriting.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // A drag end lands while the scheduled flush still writes the older batch
+        pipeline.submitPosition(DIAGRAM, "t1", USER, BigDecimal.TWO, BigDecimal.ZERO);
+        Thread dragEnd = new Thread(() -> pipeline.flush(DIAGRAM));
+        dragEnd.start();
+        dragEnd.join(200);
+        assertThat(written).isEmpty();
+
+        releaseFirst.countDown();
+        scheduled.join(5000);
+        dragEnd.join(5000);
+        assertThat(written).containsExactly(BigDecimal.ONE, BigDecimal.TWO);
+    }
+
+    @Test
+    void positionsWithoutCoordinatesAreNotWritten() {
+        pipeline.submitPosition(DIAGRAM, "t1", USER, null, BigDecimal.ONE);
+
+        pipeline.flushNow(DIAGRAM);
+
+        verify(revisionService, never()).markChanged(any());
+    }
+}
@@ -0,0 +1,108 @@
+package com.chartdb.websocket;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Frames are queued while the drain is held back, then written in one go.
+ */
+class BackpressureWebSocketSessionTest {
+
+    private static final String CURSORS = "/topic/diagram/d1/cursors";
+    private static final String MOVES = "/topic/diagram/d1/table-moved";
+
+    private final List<Runnable> drains = new ArrayList<>();
+    private final List<String> written = new ArrayList<>();
+    private BackpressureWebSocketSession session;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        WebSocketSession delegate = mock(WebSocketSession.class);
+        when(delegate.getId()).thenReturn("s1");
+        doAnswer(invocation -> {
+            written.add(((TextMessage) invocation.getArgument(0)).getPayload());
+            return null;
+        }).when(delegate).sendMessage(any());
+        session = new BackpressureWebSocketSession(delegate, drains::add, 4, 100, 1000, 5000);
+    }
+
+    @Test
+    void cursorBatchesAreMergedPerUserNewestWins() {
+        session.sendMessage(frame(CURSORS, "{\"diagramId\":\"d1\",\"cursors\":[{\"userId\":\"a\",\"x\":1.0,\"y\":1.0},"
+            + "{\"userId\":\"b\",\"x\":5.0,\"y\":5.0}],\"timestamp\":1}"));
+        session.sendMessage(frame(CURSORS, "{\"diagramId\":\"d1\",\"cursors\":[{\"userId\":\"a\",\"x\":2.50,\"y\":2.0}],"
+            + "\"timestamp\":2}"));
+        drain();
+
+        assertThat(written).hasSize(1);
+        assertThat(body(written.get(0))).isEqualTo("{\"diagramId\":\"d1\",\"cursors\":[{\"userId\":\"a\",\"x\":2.50,"
+            + "\"y\":2.0},{\"userId\":\"b\",\"x\":5.0,\"y\":5.0}],\"timestamp\":2}");
+        assertThat(contentLength(written.get(0))).isEqualTo(body(written.get(0)).getBytes(StandardCharsets.UTF_8).length);
+        assertThat(session.getDroppedCount(BackpressureWebSocketSession.MessageClass.CURSOR)).isEqualTo(1);
+    }
+
+    @Test
+    void moveBatchEndingADragIsNeverMergedInto() {
+        session.sendMessage(frame(MOVES, "{\"moves\":[{\"tableId\":\"t1\",\"x\":1,\"y\":1}]}"));
+        session.sendMessage(frame(MOVES, "{\"moves\":[{\"tableId\":\"t1\",\"x\":9,\"y\":9,\"dragEnd\":true}]}"));
+        session.sendMessage(frame(MOVES, "{\"moves\":[{\"tableId\":\"t2\",\"x\":3,\"y\":3}]}"));
+        session.sendMessage(frame(MOVES, "{\"moves\":[{\"tableId\":\"t2\",\"x\":4,\"y\":4}]}"));
+        drain();
+
+        assertThat(written).extracting(BackpressureWebSocketSessionTest::body).containsExactly(
+            "{\"moves\":[{\"tableId\":\"t1\",\"x\":9,\"y\":9,\"dragEnd\":true}]}",
+            "{\"moves\":[{\"tableId\":\"t2\",\"x\":4,\"y\":4}]}");
+    }
+
+    @Test
+    void relativeBatchMovesAreNotMerged() {
+        session.sendMessage(frame(MOVES, "{\"moves\":[{\"tableIds\":[\"t1\"],\"deltaX\":1,\"deltaY\":1}]}"));
+        session.sendMessage(frame(MOVES, "{\"moves\":[{\"tableIds\":[\"t1\"],\"deltaX\":1,\"deltaY\":1}]}"));
+        drain();
+
+        assertThat(written).hasSize(2);
+    }
+
+    @Test
+    void tooManyUnmergedBatchesDisconnect() {
+        for (int i = 0; i < 5; i++) {
+            session.sendMessage(frame(MOVES, "{\"moves\":[{\"tableId\":\"t" + i + "\",\"x\":1,\"y\":1,\"dragEnd\":true}]}"));
+        }
+
+        assertThat(session.isOverflowed()).isTrue();
+    }
+
+    private void drain() {
+        while (!drains.isEmpty()) {
+            drains.remove(0).run();
+        }
+    }
+
+    private static WebSocketMessage<?> frame(String destination, String json) {
+        return new TextMessage("MESSAGE\ndestination:" + destination + "\ncontent-type:application/json\n"
+            + "subscription:sub-0\nmessage-id:m-1\ncontent-length:" + json.getBytes(StandardCharsets.UTF_8).length
+            + "\n\n" + json + "\0");
+    }
+
+    private static String body(String frame) {
+        return frame.substring(frame.indexOf("\n\n") + 2, frame.length() - 1);
+    }
+
+    private static int contentLength(String frame) {
+        int start = frame.indexOf("content-length:") + "content-length:".length();
+        return Integer.parseInt(frame.substring(start, frame.indexOf('\n', start)));
+    }
+}
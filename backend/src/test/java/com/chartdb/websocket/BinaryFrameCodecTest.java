@@ -0,0 +1,146 @@
+package com.chartdb.websocket;
+
+import com.chartdb.dto.websocket.CursorBatchBroadcast;
+import com.chartdb.dto.websocket.CursorBroadcast;
+import com.chartdb.dto.websocket.TableMoveMessage;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BinaryFrameCodecTest {
+
+    private static final Map<String, Integer> SLOTS = Map.of("alice", 0, "bob", 3, "carol", 7, "dave", 12, "erin", 130);
+
+    @Test
+    void cursorsRoundTripQuantizedToATenth() {
+        List<CursorBroadcast> cursors = List.of(
+            cursor("bob", "-12.34", "5"),
+            cursor("alice", "1024.96", "-0.04"),
+            cursor("erin", "99999.9", "-99999.9"));
+
+        byte[] frame = BinaryFrameCodec.encodeCursors(cursors, SLOTS::get);
+        List<CursorBroadcast> decoded = BinaryFrameCodec.decodeCursors(frame, this::userOf);
+
+        // Ordered by slot on the wire
+        assertThat(decoded).extracting(CursorBroadcast::getUserId).containsExactly("alice", "bob", "erin");
+        assertThat(decoded).extracting(CursorBroadcast::getX)
+            .containsExactly(new BigDecimal("1025.0"), new BigDecimal("-12.3"), new BigDecimal("99999.9"));
+        assertThat(decoded).extracting(CursorBroadcast::getY)
+            .containsExactly(new BigDecimal("0.0"), new BigDecimal("5.0"), new BigDecimal("-99999.9"));
+    }
+
+    @Test
+    void tableMovesRoundTripWithUuidAndOtherIds() {
+        List<TableMoveMessage> moves = List.of(
+            move("carol", "0f8fad5b-d9cb-469f-a165-70867728950e", "10.5", "-20.25", true),
+            move("alice", "orders", "-3", "7.7", false));
+
+        byte[] frame = BinaryFrameCodec.encodeTableMoves(moves, SLOTS::get);
+        List<TableMoveMessage> decoded = BinaryFrameCodec.decodeTableMoves(frame, this::userOf);
+
+        assertThat(decoded).extracting(TableMoveMessage::getUserId).containsExactly("carol", "alice");
+        assertThat(decoded).extracting(TableMoveMessage::getTableId)
+            .containsExactly("0f8fad5b-d9cb-469f-a165-70867728950e", "orders");
+        assertThat(decoded).extracting(TableMoveMessage::getX)
+            .containsExactly(new BigDecimal("10.5"), new BigDecimal("-3.0"));
+        assertThat(decoded).extracting(TableMoveMessage::getY)
+            .containsExactly(new BigDecimal("-20.2"), new BigDecimal("7.7"));
+        assertThat(decoded).extracting(TableMoveMessage::getDragEnd).containsExactly(true, null);
+    }
+
+    @Test
+    void truncatedOrForeignFramesAreRejected() {
+        byte[] frame = BinaryFrameCodec.encodeTableMoves(
+            List.of(move("alice", "0f8fad5b-d9cb-469f-a165-70867728950e", "1", "1", false)), SLOTS::get);
+        byte[] truncated = new byte[frame.length - 4];
+        System.arraycopy(frame, 0, truncated, 0, truncated.length);
+
+        assertThatThrownBy(() -> BinaryFrameCodec.decodeTableMoves(truncated, this::userOf))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> BinaryFrameCodec.decodeCursors(frame, this::userOf))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void fiveCursorBatchIsAFractionOfItsJson() throws Exception {
+        List<CursorBroadcast> cursors = new ArrayList<>();
+        String[] users = {"alice", "bob", "carol", "dave", "erin"};
+        for (int i = 0; i < users.length; i++) {
+            CursorBroadcast cursor = cursor(users[i], String.valueOf(400 + i * 37.5), String.valueOf(-250 + i * 12.25));
+            cursor.setUserDisplayName("User " + users[i]);
+            cursor.setCursorColor("#3b82f6");
+            cursors.add(cursor);
+        }
+        ObjectMapper mapper = JsonMapper.builder().serializationInclusion(JsonInclude.Include.NON_NULL).build();
+        byte[] json = mapper.writeValueAsBytes(CursorBatchBroadcast.builder()
+            .diagramId("0f8fad5b-d9cb-469f-a165-70867728950e").cursors(cursors).timestamp(1_700_000_000_000L).build());
+
+        byte[] binary = BinaryFrameCodec.encodeCursors(cursors, SLOTS::get);
+
+        assertThat(binary.length).isLessThanOrEqualTo(30);
+        assertThat(binary.length * 10).isLessThan(json.length);
+    }
+
+    @Test
+    void binaryBatchesMergeNewestWinsPerTable() {
+        WebSocketMessage<?> older = frame(BinaryFrameCodec.encodeTableMoves(List.of(
+            move("alice", "orders", "1", "1", false), move("bob", "users", "2", "2", false)), SLOTS::get));
+        WebSocketMessage<?> newer = frame(BinaryFrameCodec.encodeTableMoves(List.of(
+            move("alice", "orders", "5", "5", true)), SLOTS::get));
+
+        WebSocketMessage<?> merged = BatchFrameMerger.merge(older, newer, BackpressureWebSocketSession.MessageClass.MOVE);
+
+        List<TableMoveMessage> moves = BinaryFrameCodec.decodeTableMoves(body(merged), this::userOf);
+        assertThat(moves).extracting(TableMoveMessage::getTableId).containsExactly("orders", "users");
+        assertThat(moves.get(0).getX()).isEqualTo(new BigDecimal("5.0"));
+        assertThat(BatchFrameMerger.endsDrag(merged)).isTrue();
+        assertThat(BatchFrameMerger.endsDrag(older)).isFalse();
+    }
+
+    private String userOf(int slot) {
+        return SLOTS.entrySet().stream().filter(entry -> entry.getValue() == slot)
+            .map(Map.Entry::getKey).findFirst().orElseThrow();
+    }
+
+    private static CursorBroadcast cursor(String userId, String x, String y) {
+        return CursorBroadcast.builder().userId(userId).x(new BigDecimal(x)).y(new BigDecimal(y)).build();
+    }
+
+    private static TableMoveMessage move(String userId, String tableId, String x, String y, boolean dragEnd) {
+        return TableMoveMessage.builder().userId(userId).tableId(tableId)
+            .x(new BigDecimal(x)).y(new BigDecimal(y)).dragEnd(dragEnd ? true : null).build();
+    }
+
+    private static WebSocketMessage<?> frame(byte[] body) {
+        byte[] head = ("MESSAGE\ndestination:/topic/diagram/d1/table-moved\ncontent-type:application/octet-stream\n"
+            + "subscription:sub-0\ncontent-length:" + body.length + "\n\n").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(head.length + body.length + 1);
+        frame.put(head).put(body).put((byte) 0);
+        return new BinaryMessage(frame.array());
+    }
+
+    private static byte[] body(WebSocketMessage<?> message) {
+        byte[] payload = ((BinaryMessage) message).getPayload().array();
+        String text = new String(payload, StandardCharsets.ISO_8859_1);
+        int start = text.indexOf("\n\n") + 2;
+        int length = Integer.parseInt(text.substring(text.indexOf("content-length:") + 15, text.indexOf('\n',
+            text.indexOf("content-length:"))));
+        assertThat(payload.length).isEqualTo(start + length + 1);
+        byte[] body = new byte[length];
+        System.arraycopy(payload, start, body, 0, length);
+        return body;
+    }
+}
@@ -0,0 +1,122 @@
+package com.chartdb.websocket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Two nodes in one JVM, each with its own broker and interceptor, joined by
+ * the loopback relay.
+ */
+class BrokerRelayInterceptorTest {
+
+    private Node first;
+    private Node second;
+
+    @BeforeEach
+    void setUp() {
+        first = new Node();
+        second = new Node();
+    }
+
+    @AfterEach
+    void tearDown() {
+        first.relay.close();
+        second.relay.close();
+    }
+
+    @Test
+    void diagramTopicMessageReachesTheOtherNodeOnce() {
+        first.interceptor.preSend(brokerMessage("/topic/diagram/d1/table-created", "{\"tableId\":\"t1\"}"),
+            mock(MessageChannel.class));
+
+        ArgumentCaptor<Message<?>> delivered = messageCaptor();
+        verify(second.template).send(anyString(), delivered.capture());
+        verify(first.template, never()).send(anyString(), any(Message.class));
+
+        Message<?> message = delivered.getValue();
+        assertThat(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))
+            .isEqualTo("/topic/diagram/d1/table-created");
+        assertThat(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8)).isEqualTo("{\"tableId\":\"t1\"}");
+        assertThat(message.getHeaders().get(MessageHeaders.CONTENT_TYPE).toString()).isEqualTo("application/json");
+        assertThat(NativeMessageHeaderAccessor.getFirstNativeHeader(DiagramEventLog.SEQ_HEADER, message.getHeaders()))
+            .isEqualTo("42");
+
+        // Re-injected on the receiving node, it is not published back
+        second.interceptor.preSend(message, mock(MessageChannel.class));
+        verify(first.template, never()).send(anyString(), any(Message.class));
+    }
+
+    @Test
+    void envelopeKeepsNativeHeadersOnTheWire() {
+        RelayEnvelope envelope = new RelayEnvelope("node-1", "/topic/diagram/d1/table-created", null,
+            Map.of(DiagramEventLog.SEQ_HEADER, List.of("42"), "multi", List.of("a", "b")),
+            "{}".getBytes(StandardCharsets.UTF_8));
+
+        RelayEnvelope decoded = RelayEnvelope.decode(envelope.encode());
+
+        assertThat(decoded.nodeId()).isEqualTo("node-1");
+        assertThat(decoded.destination()).isEqualTo("/topic/diagram/d1/table-created");
+        assertThat(decoded.contentType()).isNull();
+        assertThat(decoded.nativeHeaders()).isEqualTo(envelope.nativeHeaders());
+        assertThat(decoded.payload()).isEqualTo(envelope.payload());
+    }
+
+    @Test
+    void otherDestinationsStayOnTheNode() {
+        first.interceptor.preSend(brokerMessage("/topic/public/d1", "{}"), mock(MessageChannel.class));
+
+        verify(second.template, never()).send(anyString(), any(Message.class));
+    }
+
+    private static Message<byte[]> brokerMessage(String destination, String json) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setNativeHeader(DiagramEventLog.SEQ_HEADER, "42");
+        return MessageBuilder.createMessage(json.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<Message<?>> messageCaptor() {
+        return ArgumentCaptor.forClass((Class<Message<?>>) (Class<?>) Message.class);
+    }
+
+    private static class Node {
+
+        final LocalBrokerRelay relay = new LocalBrokerRelay();
+        final SimpMessagingTemplate template = mock(SimpMessagingTemplate.class);
+        final BrokerRelayInterceptor interceptor;
+
+        @SuppressWarnings("unchecked")
+        Node() {
+            ObjectProvider<SimpMessagingTemplate> provider = mock(ObjectProvider.class);
+            when(provider.getObject()).thenReturn(template);
+            interceptor = new BrokerRelayInterceptor(relay, provider);
+            interceptor.subscribe();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.chartdb.websocket;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class DeflateCodecInterceptorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MessageChannel channel = mock(MessageChannel.class);
+    private DeflateCodecInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        interceptor = new DeflateCodecInterceptor(meterRegistry);
+        ReflectionTestUtils.setField(interceptor, "minBytes", 64);
+        ReflectionTestUtils.setField(interceptor, "level", 1);
+
+        StompHeaderAccessor connect = StompHeaderAccessor.create(StompCommand.CONNECT);
+        connect.setSessionId("s1");
+        connect.setNativeHeader(DeflateCodecInterceptor.ACCEPT_ENCODING_HEADER, DeflateCodecInterceptor.DEFLATE);
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(BinaryCodecInterceptor.NATIVE_TRANSPORT_ATTRIBUTE, true);
+        connect.setSessionAttributes(attributes);
+        interceptor.preSend(MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()), channel);
+    }
+
+    @Test
+    void userDestinationFramesAreTaggedByTheirOriginalDestination() {
+        SimpMessageHeaderAccessor accessor = outbound("/queue/diagram/d1/snapshot-users1");
+        accessor.setNativeHeader(SimpMessageHeaderAccessor.ORIGINAL_DESTINATION, "/user/queue/diagram/d1/snapshot");
+
+        Message<?> sent = interceptor.preSend(MessageBuilder.createMessage(json(), accessor.getMessageHeaders()), channel);
+
+        assertThat(sent.getHeaders().get(MessageHeaders.CONTENT_TYPE).toString())
+            .isEqualTo(MimeTypeUtils.APPLICATION_OCTET_STREAM_VALUE);
+        assertThat(meterRegistry.find("chartdb.websocket.deflate.time").tag("destination", "snapshot").timer())
+            .isNotNull();
+    }
+
+    @Test
+    void fanOutScopeForgetsTheLastCompressedPayload() {
+        byte[] payload = json();
+        interceptor.preSend(MessageBuilder.createMessage(payload,
+            outbound("/topic/diagram/d1/table-updated").getMessageHeaders()), channel);
+        assertThat(lastCompressed().get()).isNotNull();
+
+        interceptor.fanOutScope().afterSendCompletion(MessageBuilder.withPayload(payload).build(), channel, true, null);
+
+        assertThat(lastCompressed().get()).isNull();
+    }
+
+    @SuppressWarnings("unchecked")
+    private ThreadLocal<Object> lastCompressed() {
+        return (ThreadLocal<Object>) ReflectionTestUtils.getField(interceptor, "lastCompressed");
+    }
+
+    private static SimpMessageHeaderAccessor outbound(String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId("s1");
+        accessor.setDestination(destination);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return accessor;
+    }
+
+    private static byte[] json() {
+        return ("{\"tables\":[" + "{\"name\":\"users\",\"x\":1},".repeat(20) + "{}]}").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,92 @@
+package com.chartdb.websocket;
+
+import com.chartdb.exception.AccessDeniedException;
+import com.chartdb.security.UserPrincipal;
+import com.chartdb.service.DiagramAccessCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DiagramAccessInterceptorTest {
+
+    private DiagramAccessCache accessCache;
+    private DiagramAccessInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        accessCache = mock(DiagramAccessCache.class);
+        interceptor = new DiagramAccessInterceptor(accessCache);
+        // Alice views d1 but only edits d2
+        when(accessCache.canView("d1", "alice")).thenReturn(true);
+        when(accessCache.canView("d2", "alice")).thenReturn(true);
+        when(accessCache.canEdit("d2", "alice")).thenReturn(true);
+    }
+
+    @Test
+    void subscribingToADiagramNeedsViewAccessWithOrWithoutASuffix() {
+        assertThatCode(() -> subscribe("/topic/diagram/d1/presence")).doesNotThrowAnyException();
+        assertThatCode(() -> subscribe("/topic/diagram/d1")).doesNotThrowAnyException();
+        assertThatCode(() -> subscribe("/user/queue/diagram/d1/cursors")).doesNotThrowAnyException();
+
+        assertThatThrownBy(() -> subscribe("/topic/diagram/d3/presence")).isInstanceOf(AccessDeniedException.class);
+        assertThatThrownBy(() -> subscribe("/topic/diagram/d3")).isInstanceOf(AccessDeniedException.class);
+        assertThatThrownBy(() -> subscribe("/user/queue/diagram/d3")).isInstanceOf(AccessDeniedException.class);
+    }
+
+    @Test
+    void patternsPrefixesWithoutAnIdAndResolvedQueuesAreRejected() {
+        for (String destination : List.of("/topic/**", "/topic/diagram/**", "/topic/diagram/*/cursors",
+                "/topic/diagram/", "/topic/diagram", "/user/queue/diagram/", "/queue/lock-result-usersession1")) {
+            assertThatThrownBy(() -> subscribe(destination)).as(destination).isInstanceOf(AccessDeniedException.class);
+        }
+        assertThatCode(() -> subscribe("/user/queue/pong")).doesNotThrowAnyException();
+    }
+
+    @Test
+    void sendsToBrokerDestinationsAreDropped() {
+        assertThat(send("/topic/diagram/d2/table-created")).isNull();
+        assertThat(send("/topic/diagram/d2")).isNull();
+        assertThat(send("/user/bob/queue/diagram/d2/lock-result")).isNull();
+        assertThat(send("/queue/messages-usersession1")).isNull();
+        assertThat(send("/app/ping")).isNotNull();
+    }
+
+    @Test
+    void diagramActionsNeedEditAccessUnlessTheyArePresence() {
+        assertThat(send("/app/diagram/d1/cursor")).isNotNull();
+        assertThat(send("/app/diagram/d1/table-move")).isNull();
+        assertThat(send("/app/diagram/d2/table-move")).isNotNull();
+        assertThat(send("/app/diagram/d3/cursor")).isNull();
+        assertThat(send("/app/diagram/d2")).isNull();
+    }
+
+    private void subscribe(String destination) {
+        interceptor.preSend(message(SimpMessageType.SUBSCRIBE, destination), mock(MessageChannel.class));
+    }
+
+    private Message<?> send(String destination) {
+        return interceptor.preSend(message(SimpMessageType.MESSAGE, destination), mock(MessageChannel.class));
+    }
+
+    private static Message<byte[]> message(SimpMessageType type, String destination) {
+        UserPrincipal alice = mock(UserPrincipal.class);
+        when(alice.getId()).thenReturn("alice");
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setDestination(destination);
+        accessor.setUser(new UsernamePasswordAuthenticationToken(alice, null, List.of()));
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,104 @@
+package com.chartdb.websocket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * The first message of a diagram blocks its drain, so later ones stay queued
+ * until the test releases it.
+ */
+class DiagramMailboxExecutorTest {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final List<String> handled = new CopyOnWriteArrayList<>();
+    private DiagramMailboxExecutor executor;
+    private ExecutorSubscribableChannel channel;
+
+    @BeforeEach
+    void setUp() {
+        executor = new DiagramMailboxExecutor(4);
+        executor.initialize();
+        channel = new ExecutorSubscribableChannel(executor);
+        channel.subscribe(message -> {
+            String payload = new String((byte[]) message.getPayload(), StandardCharsets.UTF_8);
+            if (payload.equals("block")) {
+                started.countDown();
+                await(release);
+            } else if (payload.equals("done")) {
+                done.countDown();
+            } else {
+                handled.add(payload);
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void cursorAndDragFramesAreReplacedButTheDragEndIsKept() throws InterruptedException {
+        send("/app/diagram/d1/table-create", "block");
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        send("/app/diagram/d1/cursor", "{\"x\":1}");
+        send("/app/diagram/d1/cursor", "{\"x\":2}");
+        send("/app/diagram/d1/table-move", "{\"tableId\":\"t1\",\"x\":1}");
+        send("/app/diagram/d1/table-move", "{\"tableId\":\"t1\",\"x\":2,\"dragEnd\":true}");
+        release.countDown();
+        send("/app/diagram/d1/ping-done", "done");
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(handled).containsExactly("{\"x\":2}", "{\"tableId\":\"t1\",\"x\":1}",
+            "{\"tableId\":\"t1\",\"x\":2,\"dragEnd\":true}");
+        assertThat(executor.getSupersededCount()).isEqualTo(1);
+    }
+
+    @Test
+    void fullMailboxRejectsMessagesThatCannotBeReplaced() throws InterruptedException {
+        send("/app/diagram/d1/table-create", "block");
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 4; i++) {
+            send("/app/diagram/d1/table-update", "{\"n\":" + i + "}");
+        }
+
+        assertThatThrownBy(() -> send("/app/diagram/d1/table-update", "{\"n\":4}"))
+            .hasRootCauseInstanceOf(TaskRejectedException.class);
+        release.countDown();
+    }
+
+    private void send(String destination, String payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        accessor.setSessionId("s1");
+        Message<byte[]> message = MessageBuilder.createMessage(payload.getBytes(StandardCharsets.UTF_8),
+            accessor.getMessageHeaders());
+        channel.send(message);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
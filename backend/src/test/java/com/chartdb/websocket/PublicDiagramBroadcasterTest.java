@@ -0,0 +1,165 @@
+package com.chartdb.websocket;
+
+import com.chartdb.service.DiagramSnapshotCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Lanes run inline while reader drains are held back, so queued frames pile
+ * up exactly as they would behind a reader that stopped reading.
+ */
+class PublicDiagramBroadcasterTest {
+
+    private static final String DIAGRAM = "d1";
+
+    private final HeldDrains executor = new HeldDrains();
+    private SimpleMeterRegistry meterRegistry;
+    private PublicDiagramBroadcaster broadcaster;
+    private long seq;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        DiagramSnapshotCache snapshotCache = mock(DiagramSnapshotCache.class);
+        when(snapshotCache.catchUp(DIAGRAM)).thenReturn(Optional.of(new DiagramSnapshotCache.CatchUp(
+            new DiagramSnapshotCache.Snapshot(0, "{}", 0), 0, List.of())));
+        ObjectProvider<DiagramSnapshotCache> snapshotProvider = mock(ObjectProvider.class);
+        when(snapshotProvider.getObject()).thenReturn(snapshotCache);
+
+        meterRegistry = new SimpleMeterRegistry();
+        broadcaster = new PublicDiagramBroadcaster(mock(ObjectProvider.class), snapshotProvider, new ObjectMapper(),
+            meterRegistry);
+        ReflectionTestUtils.setField(broadcaster, "lanes", executor);
+        ReflectionTestUtils.setField(broadcaster, "timeoutMillis", 60_000L);
+        ReflectionTestUtils.setField(broadcaster, "softLimit", 2);
+        ReflectionTestUtils.setField(broadcaster, "hardLimit", 4);
+        ReflectionTestUtils.setField(broadcaster, "overLimitGraceMillis", 60_000L);
+        broadcaster.registerMetrics();
+    }
+
+    @Test
+    void readerThatStopsReadingIsClosedWithoutHoldingUpTheOthers() {
+        broadcaster.subscribe(DIAGRAM, null);
+        broadcaster.subscribe(DIAGRAM, null);
+        assertThat(readers()).isEqualTo(2);
+
+        // Snapshot plus four deltas puts both readers over the hard limit
+        for (int i = 0; i < 4; i++) {
+            publish();
+        }
+
+        assertThat(readers()).isZero();
+        assertThat(meterRegistry.get("chartdb.public.feed.disconnects").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void readerThatKeepsUpStaysOpen() {
+        broadcaster.subscribe(DIAGRAM, null);
+
+        for (int i = 0; i < 20; i++) {
+            publish();
+            executor.runHeld();
+        }
+
+        assertThat(readers()).isEqualTo(1);
+        assertThat(meterRegistry.get("chartdb.public.feed.disconnects").counter().count()).isZero();
+    }
+
+    @Test
+    void keepalivesAreDroppedForReadersWithQueuedFrames() {
+        broadcaster.subscribe(DIAGRAM, null);
+
+        // Only the snapshot is queued; keepalives would otherwise push the reader over the hard limit
+        for (int i = 0; i < 10; i++) {
+            broadcaster.sendKeepalives();
+        }
+
+        assertThat(readers()).isEqualTo(1);
+    }
+
+    private void publish() {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination("/topic/diagram/" + DIAGRAM + "/table-updated");
+        accessor.setNativeHeader(DiagramEventLog.SEQ_HEADER, String.valueOf(++seq));
+        Message<byte[]> message = MessageBuilder.createMessage("{\"id\":\"t1\"}".getBytes(StandardCharsets.UTF_8),
+            accessor.getMessageHeaders());
+        broadcaster.preSend(message, mock(MessageChannel.class));
+    }
+
+    private double readers() {
+        return meterRegistry.get("chartdb.public.feed.readers").gauge().value();
+    }
+
+    private static final class HeldDrains extends AbstractExecutorService {
+
+        private final List<Runnable> held = new ArrayList<>();
+        private int depth;
+
+        @Override
+        public void execute(Runnable task) {
+            // Lanes are started from outside a task; everything they start is held
+            if (depth > 0) {
+                held.add(task);
+                return;
+            }
+            depth++;
+            try {
+                task.run();
+            } finally {
+                depth--;
+            }
+        }
+
+        void runHeld() {
+            while (!held.isEmpty()) {
+                List<Runnable> tasks = new ArrayList<>(held);
+                held.clear();
+                tasks.forEach(this::execute);
+            }
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
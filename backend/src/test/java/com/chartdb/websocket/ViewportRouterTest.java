@@ -0,0 +1,104 @@
+package com.chartdb.websocket;
+
+import com.chartdb.dto.websocket.ViewportMessage;
+import com.chartdb.service.PresenceRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ViewportRouterTest {
+
+    private static final String DIAGRAM = "d1";
+    private static final String QUEUE = "/user/s1/queue/diagram/d1/table-moved";
+
+    private SimpMessagingTemplate template;
+    private ViewportRouter router;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        template = mock(SimpMessagingTemplate.class);
+        ObjectProvider<SimpMessagingTemplate> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(template);
+
+        PresenceRegistry presenceRegistry = mock(PresenceRegistry.class);
+        PresenceRegistry.Presence presence = mock(PresenceRegistry.Presence.class);
+        when(presence.getDiagramId()).thenReturn(DIAGRAM);
+        when(presenceRegistry.getBySession("s1")).thenReturn(Optional.of(presence));
+
+        router = new ViewportRouter(presenceRegistry, new ObjectMapper(), provider);
+        ReflectionTestUtils.setField(router, "cellSize", 512.0);
+        ReflectionTestUtils.setField(router, "marginRatio", 0.0);
+
+        // Canvas area [0, 1000] x [0, 1000]
+        ViewportMessage viewport = new ViewportMessage();
+        viewport.setX(BigDecimal.ZERO);
+        viewport.setY(BigDecimal.ZERO);
+        viewport.setZoom(BigDecimal.ONE);
+        viewport.setWidth(BigDecimal.valueOf(1000));
+        viewport.setHeight(BigDecimal.valueOf(1000));
+        router.update(DIAGRAM, "s1", viewport);
+    }
+
+    @Test
+    void tableOverlappingTheViewportIsDeliveredThoughItsCornerIsOutside() {
+        route(new Entry("t1", -150, 100));
+
+        assertThat(delivered()).isEqualTo("[\"t1\"]");
+    }
+
+    @Test
+    void entryLeavingTheViewportIsSentOnceMore() {
+        route(new Entry("t1", 100, 100));
+        clearInvocations(template);
+
+        route(new Entry("t1", -500, 100));
+        assertThat(delivered()).isEqualTo("[\"t1\"]");
+        clearInvocations(template);
+
+        route(new Entry("t1", -600, 100));
+        verify(template, never()).send(anyString(), any(Message.class));
+    }
+
+    @Test
+    void entriesFarAwayAreNotDelivered() {
+        route(new Entry("t1", 5000, 5000));
+
+        verify(template, never()).send(anyString(), any(Message.class));
+    }
+
+    private void route(Entry entry) {
+        router.route(DIAGRAM, "table-moved", List.of(entry), e -> false, Entry::id,
+            e -> new ViewportRouter.Box(e.x(), e.y(), e.x() + 200, e.y() + 200),
+            visible -> visible.stream().map(Entry::id).toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private String delivered() {
+        ArgumentCaptor<Message<?>> message = ArgumentCaptor.forClass((Class<Message<?>>) (Class<?>) Message.class);
+        verify(template).send(eq(QUEUE), message.capture());
+        return new String((byte[]) message.getValue().getPayload(), StandardCharsets.UTF_8);
+    }
+
+    private record Entry(String id, double x, double y) {}
+}
@@ -6,7 +6,7 @@ import {
     TooltipContent,
     TooltipTrigger,
 } from '@/components/tooltip/tooltip';
-import { Wifi, WifiOff, Users, Activity } from 'lucide-react';
+import { Wifi, WifiOff, Users, Activity, Eye } from 'lucide-react';
 
 // Generate a consistent color from a string
 const stringToColor = (str: string) => {
@@ -31,6 +31,7 @@ export const CollaborationIndicator: React.FC = () => {
         isConnected,
         isConnecting,
         activeUsers,
+        audience,
         currentDiagramId,
         latency,
     } = useCollaboration();
@@ -166,6 +167,43 @@ export const CollaborationIndicator: React.FC = () => {
                     </div>
                 </div>
             )}
+
+            {/* Viewers, summarized by the server */}
+            {audience && audience.viewerCount > 0 && (
+                <Tooltip>
+                    <TooltipTrigger asChild>
+                        <div className="flex items-center gap-1">
+                            <Eye className="size-4 text-muted-foreground" />
+                            <span className="text-sm text-muted-foreground">
+                                {audience.viewerCount}
+                            </span>
+                        </div>
+                    </TooltipTrigger>
+                    <TooltipContent>
+                        <div className="text-sm">
+                            <div className="font-medium">Viewing</div>
+                            {audience.sample.map((viewer) => (
+                                <div key={viewer.userId}>
+                                    {viewer.userDisplayName || viewer.userId}
+                                </div>
+                            ))}
+                            {audience.viewerCount > audience.sample.length && (
+                                <div className="text-xs text-muted-foreground">
+                                    +
+                                    {audience.viewerCount -
+                                        audience.sample.length}{' '}
+                                    more
+                                </div>
+                            )}
+                            {audience.idleCount > 0 && (
+                                <div className="text-xs text-muted-foreground">
+                                    {audience.idleCount} idle
+                                </div>
+                            )}
+                        </div>
+                    </TooltipContent>
+                </Tooltip>
+            )}
         </div>
     );
 };
@@ -1,5 +1,6 @@
 import { createContext } from 'react';
 import type {
+    AudienceSummary,
     UserPresence,
     DiagramEvent,
     DiagramEventType,
@@ -13,6 +14,7 @@ export interface CollaborationContextValue {
 
     // Presence
     activeUsers: UserPresence[];
+    audience: AudienceSummary | null; // viewers, commenters and public visitors
     currentDiagramId: string | null;
 
     // Actions
@@ -35,6 +37,7 @@ export const collaborationContext = createContext<CollaborationContextValue>({
     isConnecting: false,
     latency: -1,
     activeUsers: [],
+    audience: null,
     currentDiagramId: null,
     joinDiagram: async () => {},
     leaveDiagram: () => {},
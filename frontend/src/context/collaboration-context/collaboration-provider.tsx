@@ -5,6 +5,7 @@ import {
 } from './collaboration-context';
 import {
     wsService,
+    type AudienceSummary,
     type UserPresence,
     type DiagramEvent,
     type DiagramEventType,
@@ -24,6 +25,7 @@ export const CollaborationProvider: React.FC<CollaborationProviderProps> = ({
     const [isConnecting, setIsConnecting] = useState(false);
     const [latency, setLatency] = useState<number>(-1);
     const [activeUsers, setActiveUsers] = useState<UserPresence[]>([]);
+    const [audience, setAudience] = useState<AudienceSummary | null>(null);
     const [currentDiagramId, setCurrentDiagramId] = useState<string | null>(
         null
     );
@@ -51,6 +53,11 @@ export const CollaborationProvider: React.FC<CollaborationProviderProps> = ({
         []
     );
 
+    // Handle viewer summaries
+    const handleAudienceUpdate = useCallback((summary: AudienceSummary) => {
+        setAudience(summary);
+    }, []);
+
     // Handle diagram events
     const handleDiagramEvent = useCallback((event: DiagramEvent) => {
         // Notify specific listeners
@@ -69,15 +76,22 @@ export const CollaborationProvider: React.FC<CollaborationProviderProps> = ({
     // Set up WebSocket event handlers
     useEffect(() => {
         wsService.addPresenceListener(handlePresenceUpdate);
+        wsService.addAudienceListener(handleAudienceUpdate);
         wsService.addEventListener('*', handleDiagramEvent);
         wsService.addLatencyListener(handleLatencyUpdate);
 
         return () => {
             wsService.removePresenceListener(handlePresenceUpdate);
+            wsService.removeAudienceListener(handleAudienceUpdate);
             wsService.removeEventListener('*', handleDiagramEvent);
             wsService.removeLatencyListener(handleLatencyUpdate);
         };
-    }, [handlePresenceUpdate, handleDiagramEvent, handleLatencyUpdate]);
+    }, [
+        handlePresenceUpdate,
+        handleAudienceUpdate,
+        handleDiagramEvent,
+        handleLatencyUpdate,
+    ]);
 
     // Update connection state and handle reconnection
     useEffect(() => {
@@ -161,6 +175,7 @@ export const CollaborationProvider: React.FC<CollaborationProviderProps> = ({
             wsService.disconnect();
             setIsConnected(false);
             setActiveUsers([]);
+            setAudience(null);
             setCurrentDiagramId(null);
         }
     }, [isAuthenticated]);
@@ -201,6 +216,7 @@ export const CollaborationProvider: React.FC<CollaborationProviderProps> = ({
             wsService.leaveDiagram(currentDiagramId);
             setCurrentDiagramId(null);
             setActiveUsers([]);
+            setAudience(null);
         }
     }, [currentDiagramId]);
 
@@ -270,6 +286,7 @@ export const CollaborationProvider: React.FC<CollaborationProviderProps> = ({
         isConnecting,
         latency,
         activeUsers,
+        audience,
         currentDiagramId,
         joinDiagram,
         leaveDiagram,
@@ -56,8 +56,24 @@ export interface CollaborationSession {
     users: UserPresence[];
 }
 
+export interface AudienceMember {
+    userId: string;
+    userDisplayName?: string;
+    userAvatarUrl?: string;
+}
+
+// Read-only collaborators are summarized periodically instead of announced one by one
+export interface AudienceSummary {
+    diagramId: string;
+    viewerCount: number;
+    idleCount: number;
+    sample: AudienceMember[];
+    timestamp?: number;
+}
+
 type EventCallback = (event: DiagramEvent) => void;
 type PresenceCallback = (session: CollaborationSession) => void;
+type AudienceCallback = (audience: AudienceSummary) => void;
 type LatencyCallback = (latency: number) => void;
 
 class WebSocketService {
@@ -65,6 +81,7 @@ class WebSocketService {
     private subscriptions: Map<string, StompSubscription> = new Map();
     private eventListeners: Map<string, Set<EventCallback>> = new Map();
     private presenceListeners: Set<PresenceCallback> = new Set();
+    private audienceListeners: Set<AudienceCallback> = new Set();
     private latencyListeners: Set<LatencyCallback> = new Set();
     private currentDiagramId: string | null = null;
     private latencyInterval: ReturnType<typeof setInterval> | null = null;
@@ -172,6 +189,7 @@ class WebSocketService {
         this.subscriptions.clear();
         this.eventListeners.clear();
         this.presenceListeners.clear();
+        this.audienceListeners.clear();
         this.latencyListeners.clear();
 
         if (this.client) {
@@ -236,27 +254,43 @@ class WebSocketService {
         );
         this.subscriptions.set(`presence-${diagramId}`, presenceSub);
 
+        // Subscribe to the viewer summary
+        const audienceSub = this.client.subscribe(
+            `/topic/diagram/${diagramId}/audience`,
+            (message: IMessage) => {
+                const audience: AudienceSummary = JSON.parse(message.body);
+                this.notifyAudienceListeners(audience);
+            }
+        );
+        this.subscriptions.set(`audience-${diagramId}`, audienceSub);
+
         // Subscribe to cursor updates
         const cursorSub = this.client.subscribe(
             `/topic/diagram/${diagramId}/cursors`,
             (message: IMessage) => {
-                const cursorData = JSON.parse(message.body);
-                // Convert cursor broadcast to diagram event format
-                const event: DiagramEvent = {
-                    type: 'CURSOR_MOVED',
-                    diagramId,
-                    userId: cursorData.userId,
-                    userEmail: cursorData.userDisplayName,
-                    payload: {
-                        x: cursorData.x,
-                        y: cursorData.y,
-                        userDisplayName: cursorData.userDisplayName,
-                        userAvatarUrl: cursorData.userAvatarUrl,
-                        cursorColor: cursorData.cursorColor,
-                    },
-                    timestamp: new Date().toISOString(),
-                };
-                this.notifyEventListeners(event);
+                const data = JSON.parse(message.body);
+                // Server batches the latest cursor of each user per tick
+                const cursors = Array.isArray(data.cursors)
+                    ? data.cursors
+                    : [data];
+                for (const cursorData of cursors) {
+                    // Convert cursor broadcast to diagram event format
+                    const event: DiagramEvent = {
+                        type: 'CURSOR_MOVED',
+                        diagramId,
+                        userId: cursorData.userId,
+                        userEmail: cursorData.userDisplayName,
+                        payload: {
+                            x: cursorData.x,
+                            y: cursorData.y,
+                            userDisplayName: cursorData.userDisplayName,
+                            userAvatarUrl: cursorData.userAvatarUrl,
+                            cursorColor: cursorData.cursorColor,
+                        },
+                        timestamp: new Date().toISOString(),
+                    };
+                    this.notifyEventListeners(event);
+                }
             }
         );
         this.subscriptions.set(`cursors-${diagramId}`, cursorSub);
@@ -291,6 +325,12 @@ class WebSocketService {
             this.subscriptions.delete(`presence-${diagramId}`);
         }
 
+        const audienceSub = this.subscriptions.get(`audience-${diagramId}`);
+        if (audienceSub) {
+            audienceSub.unsubscribe();
+            this.subscriptions.delete(`audience-${diagramId}`);
+        }
+
         const cursorSub = this.subscriptions.get(`cursors-${diagramId}`);
         if (cursorSub) {
             cursorSub.unsubscribe();
@@ -426,6 +466,20 @@ class WebSocketService {
         this.presenceListeners.delete(callback);
     }
 
+    /**
+     * Add audience listener
+     */
+    addAudienceListener(callback: AudienceCallback): void {
+        this.audienceListeners.add(callback);
+    }
+
+    /**
+     * Remove audience listener
+     */
+    removeAudienceListener(callback: AudienceCallback): void {
+        this.audienceListeners.delete(callback);
+    }
+
     /**
      * Notify event listeners
      */
@@ -450,6 +504,13 @@ class WebSocketService {
         this.presenceListeners.forEach((callback) => callback(session));
     }
 
+    /**
+     * Notify audience listeners
+     */
+    private notifyAudienceListeners(audience: AudienceSummary): void {
+        this.audienceListeners.forEach((callback) => callback(audience));
+    }
+
     /**
      * Start latency measurement (ping every 5 seconds)
      */